@@ -0,0 +1,92 @@
+package de.qabel.core.repositories
+
+import android.support.test.InstrumentationRegistry
+import android.support.test.runner.AndroidJUnit4
+import android.test.RenamingDelegatingContext
+import de.qabel.qabelbox.persistence.RepositoryFactory
+import org.hamcrest.Matchers.contains
+import org.hamcrest.Matchers.equalTo
+import org.junit.After
+import org.junit.Assert.assertThat
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.sql.SQLException
+
+@RunWith(AndroidJUnit4::class)
+class AndroidClientDatabaseTest {
+
+    lateinit var factory: RepositoryFactory
+    lateinit var database: AndroidClientDatabase
+
+    @Before
+    fun setUp() {
+        factory = RepositoryFactory(RenamingDelegatingContext(
+                InstrumentationRegistry.getInstrumentation().targetContext, "databasetest_"))
+        factory.deleteDatabase()
+        database = factory.getAndroidClientDatabase()
+        execute("CREATE TABLE batch_test (id INTEGER PRIMARY KEY, name TEXT NOT NULL)")
+    }
+
+    @After
+    fun tearDown() {
+        factory.deleteDatabase()
+    }
+
+    private fun execute(sql: String) {
+        val statement = database.prepare(sql)
+        try {
+            statement.execute()
+        } finally {
+            statement.close()
+        }
+    }
+
+    @Test
+    fun testGeneratedKeys() {
+        val statement = database.prepare("INSERT INTO batch_test (name) VALUES ('single')")
+        statement.executeUpdate()
+        val keys = statement.generatedKeys
+        keys.next()
+        assertThat(keys.getLong(1), equalTo(1L))
+    }
+
+    @Test
+    fun testGeneratedKeysPerStatement() {
+        val first = database.prepare("INSERT INTO batch_test (name) VALUES ('first')")
+        val second = database.prepare("INSERT INTO batch_test (name) VALUES ('second')")
+        first.executeUpdate()
+        second.executeUpdate()
+
+        val firstKeys = first.generatedKeys
+        val secondKeys = second.generatedKeys
+        firstKeys.next()
+        secondKeys.next()
+        assertThat(firstKeys.getLong(1), equalTo(1L))
+        assertThat(secondKeys.getLong(1), equalTo(2L))
+    }
+
+    @Test
+    fun testInsertBatch() {
+        execute("INSERT INTO batch_test (id, name) VALUES (3, 'taken')")
+
+        val ids = database.insertBatch("INSERT OR IGNORE INTO batch_test (id, name) VALUES (?, ?)",
+                listOf(Pair(1L, "a"), Pair(3L, "b"), Pair(7L, "c"))) {
+            statement, row ->
+            statement.setLong(1, row.first)
+            statement.setString(2, row.second)
+        }
+
+        assertThat(ids, contains(1L, null, 7L))
+    }
+
+    @Test(expected = SQLException::class)
+    fun testGeneratedKeysOverwrittenByOtherInsert() {
+        val first = database.prepare("INSERT INTO batch_test (name) VALUES ('first')")
+        first.executeUpdate()
+        execute("INSERT INTO batch_test (name) VALUES ('second')")
+
+        first.generatedKeys
+    }
+
+}
@@ -20,6 +20,7 @@ import org.mockito.Matchers
 import org.mockito.Mockito.*
 import rx.lang.kotlin.observable
 import rx.lang.kotlin.toSingletonObservable
+import java.io.OutputStream
 import java.util.*
 
 class BoxDocumentIdAdapterTest : MockedBoxDocumentIdAdapterTest() {
@@ -67,10 +68,12 @@ class BoxDocumentIdAdapterTest : MockedBoxDocumentIdAdapterTest() {
         val sampleFolder = document.copy(path = BoxPath.Root / "folder")
         val listing = listOf(ProviderEntry(sampleId, sample),
                 ProviderEntry(sampleFolder, BrowserEntry.Folder("folder")))
+        stubResult(useCase.queryCachedChildDocuments(document), emptyList<ProviderEntry>().toSingletonObservable())
         stubResult(useCase.queryChildDocuments(document), listing.toSingletonObservable())
 
         val query = provider.queryChildDocuments(document.toString(), null, null)
 
+        query.extras.getBoolean(DocumentsContract.EXTRA_LOADING) shouldMatch equalTo(false)
         query.count shouldMatch equalTo(2)
         query.moveToFirst()
         val idCol = query.getColumnIndex(DocumentsContract.Document.COLUMN_DOCUMENT_ID)
@@ -83,10 +86,11 @@ class BoxDocumentIdAdapterTest : MockedBoxDocumentIdAdapterTest() {
         val document = docId.copy(path = BoxPath.Root * "foobar.txt")
         val operation = FileOperationState(BoxReadFileBrowser.KeyAndPrefix("", ""), "foobar.txt", docId.path.parent)
         stubResult(useCase.query(document), sample.toSingletonObservable())
-        `when`(useCase.downloadFile(document, provider.targetFile)).then {
+        `when`(useCase.streamFile(Matchers.eq(document), Matchers.any())).then {
+            val target = it.arguments[1] as OutputStream
             return@then Pair(operation, observable<FileOperationState> { subscriber ->
                 subscriber.onNext(operation)
-                IOUtils.write(samplePayLoad, provider.targetFile.outputStream())
+                IOUtils.write(samplePayLoad, target)
                 subscriber.onCompleted()
             })
         }
@@ -97,7 +101,8 @@ class BoxDocumentIdAdapterTest : MockedBoxDocumentIdAdapterTest() {
             val inputStream = mockContentResolver.openInputStream(documentUri)
             inputStream.asString() shouldMatch equalTo(samplePayLoad)
             //Start/stop = 2
-            verify(provider.notificationManager, atLeast(2)).updateDownloadNotification(Matchers.any())
+            verify(provider.notificationManager, timeout(1000).atLeast(2)).updateDownloadNotification(Matchers.any())
+            provider.targetFile.length() shouldMatch equalTo(0L)
         }
     }
 
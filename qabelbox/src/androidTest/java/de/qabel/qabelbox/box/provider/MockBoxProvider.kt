@@ -5,8 +5,13 @@ import android.content.Context
 import android.content.pm.ProviderInfo
 import de.qabel.qabelbox.BuildConfig
 import de.qabel.qabelbox.TestConstants
+import de.qabel.qabelbox.box.RecentDocuments
+import de.qabel.qabelbox.box.ThumbnailCache
 import de.qabel.box.storage.dto.BoxPath
 import de.qabel.qabelbox.box.interactor.DocumentIdAdapter
+import de.qabel.qabelbox.box.repository.RecentDocumentRepository
+import de.qabel.qabelbox.storage.FileCache
+import org.mockito.Mockito.mock
 import java.io.File
 
 class MockBoxProvider : BoxProvider() {
@@ -20,6 +25,9 @@ class MockBoxProvider : BoxProvider() {
 
     fun injectProvider(documentIdAdapter: DocumentIdAdapter) {
         useCase = documentIdAdapter
+        thumbnailCache = ThumbnailCache(createTempDir("thumbnails"))
+        recentDocuments = RecentDocuments(mock(RecentDocumentRepository::class.java),
+                FileCache(context), createTempDir("files"))
     }
 
     @Throws(Exception::class)
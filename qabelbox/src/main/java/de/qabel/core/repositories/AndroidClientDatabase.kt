@@ -2,7 +2,14 @@ package de.qabel.core.repositories
 
 import de.qabel.chat.repository.sqlite.ChatClientDatabase
 import de.qabel.core.logging.QabelLog
+import de.qabel.core.repositories.migration.Migration1477000000BlockIndex
+import de.qabel.core.repositories.migration.Migration1477000200PartialDownload
+import de.qabel.core.repositories.migration.Migration1477000300ChatUnreadIndex
+import de.qabel.core.repositories.migration.Migration1477000400ChatHistoryIndex
+import de.qabel.core.repositories.migration.Migration1477000500FileSearchIndex
+import de.qabel.core.repositories.migration.Migration1477000600RecentDocuments
 import de.qabel.core.repository.sqlite.ClientDatabase
+import de.qabel.core.repository.sqlite.migration.AbstractMigration
 import org.sqldroid.SQLDroidConnection
 import java.sql.Connection
 import java.sql.PreparedStatement
@@ -11,14 +18,118 @@ import java.sql.SQLException
 class AndroidClientDatabase(connection: Connection) : ChatClientDatabase(connection), ClientDatabase, QabelLog {
 
     private val versionAdapter = AndroidVersionAdapter(connection)
+    private var lastInsertRowId: PreparedStatement? = null
+    private var inserts = 0L
 
     override var version by versionAdapter
 
+    override fun getMigrations(connection: Connection): Array<AbstractMigration> =
+            arrayOf(*super.getMigrations(connection),
+                    Migration1477000000BlockIndex(connection),
+                    Migration1477000200PartialDownload(connection),
+                    Migration1477000300ChatUnreadIndex(connection),
+                    Migration1477000400ChatHistoryIndex(connection),
+                    Migration1477000500FileSearchIndex(connection),
+                    Migration1477000600RecentDocuments(connection))
+
+    /**
+     * Runs the block in a single transaction, which is rolled back if the block throws.
+     *
+     * The transaction holds the lock of this database, which every statement prepared by
+     * [prepare] takes as well. Statements of other threads wait until it is finished instead
+     * of being committed or rolled back with it.
+     */
+    @Synchronized
+    @Throws(SQLException::class)
+    fun <T> transaction(block: () -> T): T {
+        val autoCommit = connection.autoCommit
+        connection.autoCommit = false
+        try {
+            val result = block()
+            connection.commit()
+            return result
+        } catch (e: Exception) {
+            connection.rollback()
+            throw e
+        } finally {
+            connection.autoCommit = autoCommit
+        }
+    }
+
+    /**
+     * Inserts all rows with a single statement in one transaction.
+     *
+     * @return the generated id of each row in the order of the rows, null for rows which
+     * inserted nothing, e.g. with INSERT OR IGNORE
+     */
+    @Throws(SQLException::class)
+    fun <T> insertBatch(sql: String, rows: List<T>, bind: (PreparedStatement, T) -> Unit): List<Long?> {
+        if (rows.isEmpty()) {
+            return emptyList()
+        }
+        return transaction {
+            val statement = connection.prepareStatement(sql)
+            try {
+                rows.map {
+                    statement.clearParameters()
+                    bind(statement, it)
+                    val updated = statement.executeUpdate()
+                    inserted()
+                    if (updated > 0) lastInsertRowId() else null
+                }
+            } finally {
+                statement.close()
+            }
+        }
+    }
+
+    /**
+     * Counts an insert on this connection, must be called while the lock of this database is held.
+     *
+     * @return the number of the insert, to check with [isLastInsert] whether another insert ran since
+     */
+    @Synchronized
+    fun inserted(): Long = ++inserts
+
+    @Synchronized
+    fun isLastInsert(insert: Long): Boolean = insert == inserts
+
+    /**
+     * Reads the rowid of the last insert on this connection with a statement shared by all inserts.
+     */
+    @Synchronized
+    @Throws(SQLException::class)
+    fun lastInsertRowId(): Long {
+        val statement = lastInsertRowId ?: connection.prepareStatement("SELECT last_insert_rowid()").apply {
+            lastInsertRowId = this
+        }
+        val result = statement.executeQuery()
+        try {
+            result.next()
+            return result.getLong(1)
+        } finally {
+            result.close()
+        }
+    }
+
+    /**
+     * Closes the statements kept by this database, before its connection is closed.
+     */
+    @Synchronized
+    fun closeStatements() {
+        try {
+            lastInsertRowId?.close()
+        } catch (e: SQLException) {
+            warn("Could not close statement", e)
+        }
+        lastInsertRowId = null
+    }
+
     @Throws(SQLException::class)
     override fun prepare(sql: String): PreparedStatement {
         if (connection is SQLDroidConnection) {
             trace(sql)
-            return GeneratedKeysPreparedStatement(sql, connection)
+            return GeneratedKeysPreparedStatement(sql, connection, this)
         } else {
             return super.prepare(sql)
         }
@@ -0,0 +1,117 @@
+package de.qabel.core.repositories
+
+import de.qabel.core.config.Identity
+import de.qabel.core.config.SyncSettingItem
+import de.qabel.core.drop.DropURL
+import de.qabel.core.repository.EntityManager
+import de.qabel.core.repository.HasId
+import java.lang.ref.ReferenceQueue
+import java.lang.ref.SoftReference
+import java.util.*
+
+/**
+ * Identity map shared by the repositories, so each entity is hydrated once.
+ *
+ * Only the [cachedTypes] are mapped. Other entities like chat messages change through
+ * plain SQL updates that bypass the map, so they are always read from the database.
+ * Contacts are not mapped either, their status differs per identity while the map only knows
+ * their id.
+ * The [maxStrong] most recently used entities are held strongly, older entities only by
+ * soft references and are dropped when memory gets low. Saving an entity replaces the
+ * mapped instance, [remove] and [clear] drop entities explicitly.
+ */
+class AndroidEntityManager(private val maxStrong: Int = DEFAULT_MAX_STRONG,
+                           private val cachedTypes: Set<Class<*>> = DEFAULT_CACHED_TYPES) : EntityManager() {
+
+    private data class Key(val type: Class<*>, val id: Int)
+
+    private class Entry(val key: Key, entity: Any, queue: ReferenceQueue<Any>) : SoftReference<Any>(entity, queue)
+
+    private val queue = ReferenceQueue<Any>()
+    private val entries = HashMap<Key, Entry>()
+    private val recent = object : LinkedHashMap<Key, Any>(maxStrong, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Any>?) = size > maxStrong
+    }
+
+    val size: Int
+        @Synchronized get() {
+            expunge()
+            return entries.size
+        }
+
+    @Synchronized
+    override fun contains(entityType: Class<*>?, id: Int?): Boolean = lookup(entityType, id) != null
+
+    @Suppress("UNCHECKED_CAST")
+    @Synchronized
+    override fun <T : Any?> get(entityType: Class<T>?, id: Int?): T? = lookup(entityType, id) as T?
+
+    @Synchronized
+    override fun <T : Any?> put(entityType: Class<T>?, entity: Any?, id: Int?) {
+        if (entityType == null || entity == null || id == null || !isCached(entityType)) {
+            return
+        }
+        expunge()
+        val key = Key(entityType, id)
+        entries.put(key, Entry(key, entity, queue))
+        recent.put(key, entity)
+    }
+
+    override fun <T : Any?> put(entityType: Class<T>?, entity: HasId?) = put(entityType, entity, entity?.id)
+
+    override fun <T : Any?> put(entityType: Class<T>?, entity: SyncSettingItem?) = put(entityType, entity, entity?.id)
+
+    @Synchronized
+    fun remove(entityType: Class<*>, id: Int) {
+        val key = Key(entityType, id)
+        entries.remove(key)
+        recent.remove(key)
+    }
+
+    /**
+     * Drops all entities of [entityType].
+     */
+    @Synchronized
+    fun remove(entityType: Class<*>) {
+        entries.keys.removeAll { it.type == entityType }
+        recent.keys.removeAll { it.type == entityType }
+    }
+
+    @Synchronized
+    override fun clear() {
+        entries.clear()
+        recent.clear()
+    }
+
+    private fun isCached(entityType: Class<*>) = cachedTypes.any { it.isAssignableFrom(entityType) }
+
+    /**
+     * Returns the entity and marks it as recently used, so it stays reachable
+     * between a [contains] and the following [get].
+     */
+    private fun lookup(entityType: Class<*>?, id: Int?): Any? {
+        if (entityType == null || id == null) {
+            return null
+        }
+        val key = Key(entityType, id)
+        recent[key]?.let { return it }
+        val entity = entries[key]?.get() ?: return null
+        recent.put(key, entity)
+        return entity
+    }
+
+    private fun expunge() {
+        while (true) {
+            val entry = queue.poll() as Entry? ?: return
+            if (entries[entry.key] === entry) {
+                entries.remove(entry.key)
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_STRONG = 256
+        val DEFAULT_CACHED_TYPES: Set<Class<*>> = setOf(Identity::class.java, DropURL::class.java)
+    }
+
+}
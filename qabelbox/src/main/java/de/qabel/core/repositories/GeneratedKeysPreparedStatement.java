@@ -1,21 +1,89 @@
 package de.qabel.core.repositories;
 
+import android.database.MatrixCursor;
+
 import org.sqldroid.SQLDroidConnection;
 import org.sqldroid.SQLDroidPreparedStatement;
+import org.sqldroid.SQLDroidResultSet;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
 public class GeneratedKeysPreparedStatement extends SQLDroidPreparedStatement implements PreparedStatement {
-    public GeneratedKeysPreparedStatement(String sql, SQLDroidConnection sqldroid) {
+
+    private static final String[] COLUMNS = {"last_insert_rowid()"};
+
+    private final AndroidClientDatabase database;
+    private final boolean insert;
+    private Long lastInsert;
+
+    public GeneratedKeysPreparedStatement(String sql, SQLDroidConnection sqldroid, AndroidClientDatabase database) {
         super(sql, sqldroid);
+        this.database = database;
+        insert = sql.trim().regionMatches(true, 0, "INSERT", 0, 6);
+    }
+
+    /**
+     * Statements on the write connection hold the database lock, so they can not run inside of a
+     * transaction another thread has opened with {@link AndroidClientDatabase#transaction}.
+     */
+    @Override
+    public boolean execute() throws SQLException {
+        synchronized (database) {
+            boolean result = super.execute();
+            countInsert();
+            return result;
+        }
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        synchronized (database) {
+            return super.executeQuery();
+        }
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        synchronized (database) {
+            int updated = super.executeUpdate();
+            countInsert();
+            return updated;
+        }
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        synchronized (database) {
+            int[] updated = super.executeBatch();
+            countInsert();
+            return updated;
+        }
+    }
+
+    private void countInsert() {
+        if (insert) {
+            lastInsert = database.inserted();
+        }
     }
 
+    /**
+     * Reads the key with the statement shared by the connection instead of preparing one per insert.
+     * The key is only read if no other insert ran since the last insert of this statement.
+     */
     @Override
     public ResultSet getGeneratedKeys() throws SQLException {
-        PreparedStatement statement = sqldroidConnection.prepareStatement(
-                "SELECT last_insert_rowid()");
-		return statement.executeQuery();
+        synchronized (database) {
+            if (lastInsert == null) {
+                return new SQLDroidResultSet(new MatrixCursor(COLUMNS));
+            }
+            if (!database.isLastInsert(lastInsert)) {
+                throw new SQLException("Generated keys were overwritten by another insert");
+            }
+            MatrixCursor cursor = new MatrixCursor(COLUMNS);
+            cursor.addRow(new Object[]{database.lastInsertRowId()});
+            return new SQLDroidResultSet(cursor);
+        }
     }
 }
@@ -0,0 +1,24 @@
+package de.qabel.core.repositories.migration
+
+import de.qabel.core.repository.sqlite.migration.AbstractMigration
+import java.sql.Connection
+
+class Migration1477000000BlockIndex(connection: Connection) : AbstractMigration(connection) {
+
+    override fun getVersion(): Long = 1477000000L
+
+    override fun up() {
+        execute("""
+            CREATE TABLE block_index (
+                id INTEGER PRIMARY KEY,
+                prefix VARCHAR(255) NOT NULL,
+                block VARCHAR(255) NOT NULL,
+                hash VARCHAR(64) NOT NULL
+            )""")
+        execute("CREATE UNIQUE INDEX idx_block_index_block ON block_index (prefix, block)")
+    }
+
+    override fun down() {
+        execute("DROP TABLE block_index")
+    }
+}
@@ -0,0 +1,25 @@
+package de.qabel.core.repositories.migration
+
+import de.qabel.core.repository.sqlite.migration.AbstractMigration
+import java.sql.Connection
+
+class Migration1477000200PartialDownload(connection: Connection) : AbstractMigration(connection) {
+
+    override fun getVersion(): Long = 1477000200L
+
+    override fun up() {
+        execute("""
+            CREATE TABLE partial_download (
+                id INTEGER PRIMARY KEY,
+                prefix VARCHAR(255) NOT NULL,
+                name VARCHAR(255) NOT NULL,
+                etag VARCHAR(255) NOT NULL,
+                path VARCHAR(4096) NOT NULL
+            )""")
+        execute("CREATE UNIQUE INDEX idx_partial_download_name ON partial_download (prefix, name)")
+    }
+
+    override fun down() {
+        execute("DROP TABLE partial_download")
+    }
+}
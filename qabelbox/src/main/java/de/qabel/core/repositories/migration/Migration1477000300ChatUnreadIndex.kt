@@ -0,0 +1,21 @@
+package de.qabel.core.repositories.migration
+
+import de.qabel.core.repository.sqlite.migration.AbstractMigration
+import java.sql.Connection
+
+/**
+ * Covers the unread counts per conversation. The latest message of a conversation is ordered by
+ * creation time and found through [Migration1477000400ChatHistoryIndex] instead.
+ */
+class Migration1477000300ChatUnreadIndex(connection: Connection) : AbstractMigration(connection) {
+
+    override fun getVersion(): Long = 1477000300L
+
+    override fun up() {
+        execute("CREATE INDEX idx_chat_drop_message_unread ON chat_drop_message (identity_id, contact_id, status)")
+    }
+
+    override fun down() {
+        execute("DROP INDEX idx_chat_drop_message_unread")
+    }
+}
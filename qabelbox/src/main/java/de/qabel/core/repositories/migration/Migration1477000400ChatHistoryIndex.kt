@@ -0,0 +1,20 @@
+package de.qabel.core.repositories.migration
+
+import de.qabel.core.repository.sqlite.migration.AbstractMigration
+import java.sql.Connection
+
+/**
+ * Covers the keyset pages of a conversation, ordered by creation time and id.
+ */
+class Migration1477000400ChatHistoryIndex(connection: Connection) : AbstractMigration(connection) {
+
+    override fun getVersion(): Long = 1477000400L
+
+    override fun up() {
+        execute("CREATE INDEX idx_chat_drop_message_history ON chat_drop_message (identity_id, contact_id, created_on, id)")
+    }
+
+    override fun down() {
+        execute("DROP INDEX idx_chat_drop_message_history")
+    }
+}
@@ -0,0 +1,43 @@
+package de.qabel.core.repositories.migration
+
+import de.qabel.core.repository.sqlite.migration.AbstractMigration
+import java.sql.Connection
+
+/**
+ * Full text index of the known files and folders of all volumes.
+ *
+ * The fts table only holds the searchable columns of the entries in box_file_index, which share
+ * their id with the docid of the fts row. The simple fts tokenizer only folds ASCII, so the
+ * search repository inserts the lowercased names itself and a trigger only deletes them.
+ */
+class Migration1477000500FileSearchIndex(connection: Connection) : AbstractMigration(connection) {
+
+    override fun getVersion(): Long = 1477000500L
+
+    override fun up() {
+        execute("""
+            CREATE TABLE box_file_index (
+                id INTEGER PRIMARY KEY,
+                identity_key VARCHAR(255) NOT NULL,
+                prefix VARCHAR(255) NOT NULL,
+                folder_path TEXT NOT NULL,
+                name TEXT NOT NULL,
+                is_folder INTEGER NOT NULL,
+                size INTEGER NOT NULL DEFAULT 0,
+                mtime INTEGER NOT NULL DEFAULT 0,
+                block VARCHAR(255)
+            )""")
+        execute("CREATE UNIQUE INDEX idx_box_file_index_entry ON box_file_index (identity_key, prefix, folder_path, name, is_folder)")
+        execute("CREATE VIRTUAL TABLE box_file_search USING fts4(name, folder_path)")
+        execute("""
+            CREATE TRIGGER box_file_index_delete AFTER DELETE ON box_file_index BEGIN
+                DELETE FROM box_file_search WHERE docid = old.id;
+            END""")
+    }
+
+    override fun down() {
+        execute("DROP TRIGGER box_file_index_delete")
+        execute("DROP TABLE box_file_search")
+        execute("DROP TABLE box_file_index")
+    }
+}
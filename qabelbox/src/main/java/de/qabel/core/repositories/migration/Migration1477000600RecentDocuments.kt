@@ -0,0 +1,32 @@
+package de.qabel.core.repositories.migration
+
+import de.qabel.core.repository.sqlite.migration.AbstractMigration
+import java.sql.Connection
+
+/**
+ * Recently opened and uploaded documents per volume with the block they resolved to.
+ */
+class Migration1477000600RecentDocuments(connection: Connection) : AbstractMigration(connection) {
+
+    override fun getVersion(): Long = 1477000600L
+
+    override fun up() {
+        execute("""
+            CREATE TABLE box_recent_document (
+                id INTEGER PRIMARY KEY,
+                identity_key VARCHAR(255) NOT NULL,
+                prefix VARCHAR(255) NOT NULL,
+                document_id TEXT NOT NULL,
+                block VARCHAR(255) NOT NULL,
+                size INTEGER NOT NULL,
+                mtime INTEGER NOT NULL,
+                accessed INTEGER NOT NULL
+            )""")
+        execute("CREATE UNIQUE INDEX idx_box_recent_document_id ON box_recent_document (document_id)")
+        execute("CREATE INDEX idx_box_recent_document_accessed ON box_recent_document (identity_key, prefix, accessed)")
+    }
+
+    override fun down() {
+        execute("DROP TABLE box_recent_document")
+    }
+}
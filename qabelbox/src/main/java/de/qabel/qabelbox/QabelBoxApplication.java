@@ -77,7 +77,6 @@ public class QabelBoxApplication extends Application {
 
         IntentFilter chatFilter = new IntentFilter();
         chatFilter.addAction(QblBroadcastConstants.Chat.Service.MESSAGES_READ);
-        chatFilter.addAction(QblBroadcastConstants.Chat.NOTIFY_NEW_MESSAGES);
         registerReceiver(chatReceiver, chatFilter);
     }
 
@@ -33,7 +33,6 @@ public class QblBroadcastConstants {
     }
 
     public static class Chat {
-        public static final String NOTIFY_NEW_MESSAGES = PREFIX + "chat.notification";
         public static final String MESSAGE_STATE_CHANGED = PREFIX + "chat.state_change";
 
         public static class Service {
@@ -23,6 +23,7 @@ import com.mikepenz.materialdrawer.holder.BadgeStyle
 import com.mikepenz.materialdrawer.model.*
 import de.qabel.chat.repository.ChatDropMessageRepository
 import de.qabel.core.config.Identity
+import de.qabel.core.event.EventDispatcher
 import de.qabel.core.repository.ContactRepository
 import de.qabel.core.repository.IdentityRepository
 import de.qabel.core.repository.exception.PersistenceException
@@ -31,6 +32,7 @@ import de.qabel.qabelbox.QblBroadcastConstants.*
 import de.qabel.qabelbox.R
 import de.qabel.qabelbox.account.AccountManager
 import de.qabel.qabelbox.account.AccountStatusCodes
+import de.qabel.qabelbox.chat.events.NewMessagesEvent
 import de.qabel.qabelbox.communication.connection.ConnectivityManager
 import de.qabel.qabelbox.config.AppPreference
 import de.qabel.qabelbox.contacts.extensions.color
@@ -62,6 +64,8 @@ import org.jetbrains.anko.AnkoLogger
 import org.jetbrains.anko.browse
 import org.jetbrains.anko.ctx
 import org.jetbrains.anko.toast
+import rx.Subscription
+import rx.android.schedulers.AndroidSchedulers
 import javax.inject.Inject
 
 class MainActivity : CrashReportingActivity(),
@@ -98,6 +102,9 @@ class MainActivity : CrashReportingActivity(),
 
     @Inject
     lateinit var messageRepository: ChatDropMessageRepository
+    @Inject
+    lateinit var eventDispatcher: EventDispatcher
+    private var newMessagesSubscription: Subscription? = null
 
     @Inject
     lateinit internal var appPreferences: AppPreference
@@ -248,6 +255,14 @@ class MainActivity : CrashReportingActivity(),
     override fun onResume() {
         super.onResume()
         updateNewMessageBadge()
+        newMessagesSubscription = eventDispatcher.events(NewMessagesEvent::class.java)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe { updateNewMessageBadge() }
+    }
+
+    override fun onPause() {
+        newMessagesSubscription?.unsubscribe()
+        super.onPause()
     }
 
     override fun onRequestPermissionsResult(requestCode: Int, permissions: Array<out String>, grantResults: IntArray) {
@@ -4,6 +4,7 @@ import android.app.Service
 import android.content.Intent
 import android.net.Uri
 import android.os.IBinder
+import de.qabel.box.storage.dto.BoxPath
 import de.qabel.core.event.EventSink
 import de.qabel.core.logging.QabelLog
 import de.qabel.qabelbox.QabelBoxApplication
@@ -20,7 +21,6 @@ import de.qabel.qabelbox.reporter.CrashSubmitter
 import org.jetbrains.anko.ctx
 import org.jetbrains.anko.longToast
 import org.jetbrains.anko.runOnUiThread
-import rx.Observable
 import rx.Subscription
 import java.util.concurrent.TimeUnit
 import javax.inject.Inject
@@ -35,8 +35,12 @@ class AndroidBoxService : Service(), QabelLog {
     lateinit var eventSink: EventSink
     @Inject
     lateinit var crashSubmitter: CrashSubmitter
+    @Inject
+    lateinit var transferScheduler: TransferScheduler
+
+    private class PendingOperation(val subscription: Subscription, val onCancel: () -> Unit)
 
-    private val pendingMap: MutableMap<DocumentId, Pair<Observable<*>, Subscription>> = mutableMapOf()
+    private val pendingMap: MutableMap<DocumentId, PendingOperation> = mutableMapOf()
 
     override fun onCreate() {
         super.onCreate()
@@ -58,6 +62,11 @@ class AndroidBoxService : Service(), QabelLog {
                     val documentId = intent.getStringExtra(KEY_DOC_ID).toDocumentId()
                     uploadFile(documentId, intent.data, startId)
                 }
+                Actions.UPLOAD_FILES -> {
+                    val documentIds = intent.getStringArrayListExtra(KEY_DOC_IDS).map { it.toDocumentId() }
+                    val sources = intent.getParcelableArrayListExtra<Uri>(KEY_SOURCES)
+                    uploadFiles(documentIds.zip(sources), startId)
+                }
                 Actions.DOWNLOAD_FILE -> {
                     val documentId = intent.getStringExtra(KEY_DOC_ID).toDocumentId()
                     downloadFile(documentId, intent.data, startId)
@@ -70,6 +79,10 @@ class AndroidBoxService : Service(), QabelLog {
                     val documentId = intent.getStringExtra(KEY_DOC_ID).toDocumentId()
                     deletePath(documentId, startId)
                 }
+                Actions.CANCEL -> {
+                    val documentId = intent.getStringExtra(KEY_DOC_ID).toDocumentId()
+                    cancelOperation(documentId, startId)
+                }
             }
         } catch (ex: Throwable) {
             error("Error handling file intent", ex)
@@ -91,7 +104,7 @@ class AndroidBoxService : Service(), QabelLog {
             eventSink.push(BoxPathEvent(path, true))
             handleOperationComplete(documentId, startId)
         }).let {
-            pendingMap.put(documentId, Pair(observable, it))
+            addPendingOperation(documentId, it)
         }
     }
 
@@ -109,11 +122,34 @@ class AndroidBoxService : Service(), QabelLog {
             eventSink.push(BoxPathEvent(path, true))
             handleOperationComplete(documentId, startId)
         }).let {
-            pendingMap.put(documentId, Pair(observable, it))
+            addPendingOperation(documentId, it)
         }
     }
 
-    private fun isPendingOperation(documentId: DocumentId) = pendingMap.containsKey(documentId)
+    private fun isPendingOperation(documentId: DocumentId) = synchronized(pendingMap, {
+        pendingMap.containsKey(documentId)
+    })
+
+    private fun addPendingOperation(documentId: DocumentId, subscription: Subscription,
+                                    onCancel: () -> Unit = {}) {
+        synchronized(pendingMap, {
+            pendingMap.put(documentId, PendingOperation(subscription, onCancel))
+        })
+    }
+
+    /**
+     * Unsubscribe a pending operation, queued transfers are removed from the [TransferScheduler].
+     * Sent by the cancel action of the transfer notifications.
+     */
+    private fun cancelOperation(documentId: DocumentId, startId: Int) {
+        val pending = synchronized(pendingMap, { pendingMap[documentId] })
+        pending?.let {
+            debug("Cancel operation for $documentId")
+            it.subscription.unsubscribe()
+            it.onCancel()
+        }
+        handleOperationComplete(documentId, startId)
+    }
 
     /**
      * Remove pending operation, stop service if all operations done.
@@ -138,7 +174,8 @@ class AndroidBoxService : Service(), QabelLog {
         }
         debug("Starting upload $uri to $documentId")
         useCase.uploadFile(uri, documentId).let {
-            val (operation, observable) = it
+            val (operation, source) = it
+            val observable = transferScheduler.schedule(operation, TransferScheduler.Priority.USER_VISIBLE, source)
             observable.doOnCompleted {
                 ctx.runOnUiThread {
                     longToast(ctx.getString(R.string.upload_complete_msg, operation.entryName))
@@ -152,7 +189,49 @@ class AndroidBoxService : Service(), QabelLog {
                 notifyForUpload(operation)
                 handleOperationComplete(documentId, startId)
             }).let {
-                pendingMap.put(documentId, Pair(observable, it))
+                addPendingOperation(documentId, it) {
+                    operation.status = FileOperationState.Status.CANCELED
+                    notifyForUpload(operation)
+                }
+            }
+        }
+    }
+
+    /**
+     * Uploads the files of each volume as one transfer, canceling one of them cancels its batch.
+     */
+    private fun uploadFiles(uploads: List<Pair<DocumentId, Uri>>, startId: Int) {
+        val (pending, startable) = uploads.partition { isPendingOperation(it.first) }
+        pending.forEach { debug("DocumentId is in progress ${it.first}") }
+        startable.groupBy { it.first.copy(path = BoxPath.Root) }.values.forEach { batch ->
+            val documentIds = batch.map { it.first }
+            debug("Starting upload of ${batch.size} files")
+            val (operations, source) = useCase.uploadFiles(batch.map { Pair(it.second, it.first) })
+            val observable = transferScheduler.schedule(operations.first().ownerKey,
+                    TransferScheduler.Priority.USER_VISIBLE, source, { operations.fold(0L) { sum, it -> sum + it.done } })
+            val complete = { documentIds.forEach { handleOperationComplete(it, startId) } }
+            observable.doOnCompleted {
+                ctx.runOnUiThread {
+                    longToast(ctx.getString(R.string.upload_complete_msg, operations.joinToString { it.entryName }))
+                }
+                operations.forEach { notifyForUpload(it) }
+                complete()
+            }.sample(200L, TimeUnit.MILLISECONDS).subscribe({
+                operations.forEach { notifyForUpload(it) }
+            }, {
+                error("Error uploading ${batch.size} files", it)
+                operations.forEach { notifyForUpload(it) }
+                complete()
+            }).let { subscription ->
+                documentIds.forEach {
+                    addPendingOperation(it, subscription) {
+                        operations.filter { it.status != FileOperationState.Status.COMPLETE }.forEach {
+                            it.status = FileOperationState.Status.CANCELED
+                            notifyForUpload(it)
+                        }
+                        complete()
+                    }
+                }
             }
         }
     }
@@ -168,7 +247,8 @@ class AndroidBoxService : Service(), QabelLog {
         }
         debug("Starting download $documentId to $targetUri")
         useCase.downloadFile(documentId, targetUri).let {
-            val (operation, observable) = it
+            val (operation, source) = it
+            val observable = transferScheduler.schedule(operation, TransferScheduler.Priority.BACKGROUND, source)
             observable.doOnCompleted {
                 ctx.runOnUiThread {
                     longToast(ctx.getString(R.string.upload_complete_msg, operation.entryName))
@@ -182,7 +262,10 @@ class AndroidBoxService : Service(), QabelLog {
                         notifyForDownload(operation)
                         handleOperationComplete(documentId, startId)
                     }).let {
-                pendingMap.put(documentId, Pair(observable, it))
+                addPendingOperation(documentId, it) {
+                    operation.status = FileOperationState.Status.CANCELED
+                    notifyForDownload(operation)
+                }
             }
         }
     }
@@ -203,13 +286,17 @@ class AndroidBoxService : Service(), QabelLog {
 
     object Actions {
         const val UPLOAD_FILE = "upload_file"
+        const val UPLOAD_FILES = "upload_files"
         const val DOWNLOAD_FILE = "download_file"
         const val DELETE = "delete"
         const val CREATE_FOLDER = "create_folder"
+        const val CANCEL = "cancel"
     }
 
     companion object {
         const val KEY_DOC_ID = "doc_id"
+        const val KEY_DOC_IDS = "doc_ids"
+        const val KEY_SOURCES = "sources"
     }
 
 }
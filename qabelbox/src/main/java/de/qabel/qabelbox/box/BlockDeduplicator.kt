@@ -0,0 +1,77 @@
+package de.qabel.qabelbox.box
+
+import de.qabel.box.storage.BoxFile
+import de.qabel.core.logging.QabelLog
+import de.qabel.qabelbox.box.repository.BlockIndexRepository
+import org.spongycastle.util.encoders.Hex
+import java.io.File
+import java.io.InputStream
+import java.security.DigestInputStream
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Skips uploads of files that already have the uploaded content.
+ *
+ * The plaintext of uploaded blocks is hashed and indexed by block. If the file at the target path
+ * references an indexed block with the same hash the upload is skipped. Blocks are never shared
+ * between files, a block referenced by two files would be lost with the first delete from any device.
+ */
+class BlockDeduplicator(private val index: BlockIndexRepository,
+                        private val enabled: () -> Boolean = { true }) : QabelLog {
+
+    class HashedContent(val file: File, val hash: String)
+
+    class HashingInputStream(source: InputStream) :
+            DigestInputStream(source, MessageDigest.getInstance(HASH_ALGORITHM)) {
+
+        val hash: String by lazy { Hex.toHexString(messageDigest.digest()) }
+
+    }
+
+    private val saved = AtomicLong()
+
+    val isEnabled: Boolean
+        get() = enabled()
+
+    /**
+     * Bytes that did not have to be uploaded because the file already had the content.
+     */
+    val bytesSaved: Long
+        get() = saved.get()
+
+    fun spool(source: InputStream): HashedContent {
+        val file = createTempFile("upload", ".tmp")
+        try {
+            val input = HashingInputStream(source)
+            file.outputStream().use { input.copyTo(it) }
+            return HashedContent(file, input.hash)
+        } catch (e: Throwable) {
+            file.delete()
+            throw e
+        }
+    }
+
+    /**
+     * Hash of the content of [file] if it was uploaded from this device.
+     */
+    fun hashOf(prefix: String, file: BoxFile): String? = index.findHash(prefix, file.block)
+
+    fun skipped(file: BoxFile) {
+        saved.addAndGet(file.size)
+        info("Content of ${file.name} is unchanged, $bytesSaved bytes saved")
+    }
+
+    fun uploaded(prefix: String, file: BoxFile, hash: String) {
+        index.save(prefix, file.block, hash)
+    }
+
+    fun replaced(prefix: String, file: BoxFile) {
+        index.delete(prefix, file.block)
+    }
+
+    companion object {
+        const val HASH_ALGORITHM = "SHA-256"
+    }
+
+}
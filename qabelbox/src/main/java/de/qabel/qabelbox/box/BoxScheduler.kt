@@ -2,4 +2,14 @@ package de.qabel.qabelbox.box
 
 import rx.Scheduler
 
-class BoxScheduler(val rxScheduler: Scheduler)
+class BoxScheduler(val rxScheduler: Scheduler) {
+
+    companion object {
+        /**
+         * Threads of the box executor, transfers take at most [TransferScheduler.DEFAULT_MAX_ACTIVE]
+         * of them and the rest stays free for listings and queries.
+         */
+        const val MAX_THREADS = 8
+    }
+
+}
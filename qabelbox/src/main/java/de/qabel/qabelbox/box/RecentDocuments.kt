@@ -0,0 +1,198 @@
+package de.qabel.qabelbox.box
+
+import de.qabel.core.logging.QabelLog
+import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser.KeyAndPrefix
+import de.qabel.qabelbox.box.provider.DocumentId
+import de.qabel.qabelbox.box.repository.RecentDocumentRepository
+import de.qabel.qabelbox.box.repository.RecentDocumentRepository.RecentDocument
+import de.qabel.qabelbox.storage.FileCache
+import java.io.File
+import java.io.IOException
+import java.io.OutputStream
+
+/**
+ * Recently opened and uploaded documents with their decrypted content kept in the [FileCache].
+ *
+ * A recent document is reopened from the cache as long as its block did not change, without
+ * navigating the volume. Without a known listing to compare the block with, it is only reopened
+ * within [UNLISTED_TTL] after it has been opened last. Files larger than a quarter of the cache
+ * budget are not cached.
+ *
+ * The content is kept decrypted in the private cache directory of the app, like the thumbnails
+ * of the [ThumbnailCache]. It is as well protected as the database next to it, which holds
+ * the keys to decrypt the volume anyway, and the system clears it when storage runs low.
+ */
+class RecentDocuments(private val repository: RecentDocumentRepository,
+                      private val fileCache: FileCache,
+                      private val directory: File,
+                      private val clock: () -> Long = { System.currentTimeMillis() }) : QabelLog {
+
+    private val maxCachedBytes: Long
+        get() = fileCache.maxBytes / 4
+
+    init {
+        // spool files of streams that were interrupted by the end of the process
+        directory.listFiles { file -> file.name.startsWith(SPOOL_PREFIX) && file.name.endsWith(SPOOL_SUFFIX) }
+                ?.forEach { it.delete() }
+    }
+
+    /**
+     * @param known the entry of the last known listing, a different block means the cached file is outdated
+     * @return the cached content of [documentId] if it has been opened or uploaded recently
+     */
+    fun cachedFile(documentId: DocumentId, known: BrowserEntry.File?): Pair<RecentDocument, File>? {
+        val recent = repository.find(documentId) ?: return null
+        val knownBlock = known?.block
+        if (knownBlock != null && knownBlock != recent.block) {
+            return null
+        }
+        if (knownBlock == null && clock() - recent.accessed > UNLISTED_TTL) {
+            return null
+        }
+        val file = fileCache.get(recent.block, recent.mtime) ?: return null
+        repository.save(recent)
+        return Pair(recent, file)
+    }
+
+    /**
+     * Remembers [documentId] as most recent document of its volume.
+     *
+     * @param content decrypted file, it is copied into the cache unless it is a [Spool] file
+     *                which is moved or deleted
+     */
+    fun opened(documentId: DocumentId, file: BrowserEntry.File, content: File?) {
+        val block = file.block
+        if (block == null) {
+            discard(content)
+            return
+        }
+        val recent = RecentDocument(documentId, block, file.size, file.mTime.time)
+        repository.save(recent)
+        if (content != null) {
+            cache(recent, content)
+        }
+    }
+
+    /**
+     * Caches the content of an upload, the uploading file browser already remembered its block.
+     *
+     * @return the recent document of the upload or null if it is unknown
+     */
+    fun uploaded(documentId: DocumentId, content: File): RecentDocument? {
+        val recent = repository.find(documentId) ?: return null
+        cache(recent, content)
+        return recent
+    }
+
+    fun recent(volume: KeyAndPrefix): List<RecentDocument> = repository.findRecent(volume)
+
+    fun removed(documentId: DocumentId) = repository.delete(documentId)
+
+    private fun cache(recent: RecentDocument, content: File) {
+        if (content.length() > maxCachedBytes) {
+            discard(content)
+            return
+        }
+        val target = File(directory, recent.block.replace(UNSAFE_CHARACTERS, "_"))
+        var copy: File? = null
+        try {
+            directory.mkdirs()
+            // the cached file may still be read through a descriptor, it is replaced instead of rewritten
+            if (!isSpool(content) || !content.renameTo(target)) {
+                copy = File.createTempFile(SPOOL_PREFIX, SPOOL_SUFFIX, directory).apply {
+                    content.copyTo(this, true)
+                    if (!renameTo(target)) {
+                        throw IOException("Could not move the copy to $target")
+                    }
+                }
+                discard(content)
+            }
+            fileCache.put(recent.block, recent.mtime, target)
+        } catch (e: IOException) {
+            warn("Could not cache ${recent.documentId}: ${e.message}")
+            copy?.delete()
+            target.delete()
+            discard(content)
+        }
+    }
+
+    private fun isSpool(content: File) = content.parentFile == directory && content.name.startsWith(SPOOL_PREFIX)
+
+    /**
+     * Deletes [content] if it is a [Spool] file, other files belong to the caller.
+     */
+    private fun discard(content: File?) {
+        if (content != null && isSpool(content)) {
+            content.delete()
+        }
+    }
+
+    fun spool(target: OutputStream) = Spool(target)
+
+    /**
+     * Writes through to [target] and keeps a copy of everything written in a file of the cache
+     * directory until the copy grows above the cacheable size.
+     */
+    inner class Spool(private val target: OutputStream) : OutputStream() {
+
+        private val file = directory.apply { mkdirs() }.let { File.createTempFile(SPOOL_PREFIX, SPOOL_SUFFIX, it) }
+        private var copy: OutputStream? = file.outputStream()
+        private var written = 0L
+
+        /**
+         * @return the complete copy after the stream has been closed or null if it was abandoned
+         */
+        val content: File?
+            get() = if (copy != null) file else null
+
+        override fun write(b: Int) = write(byteArrayOf(b.toByte()), 0, 1)
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            target.write(b, off, len)
+            val out = copy ?: return
+            written += len
+            try {
+                if (written > maxCachedBytes) {
+                    abandon()
+                } else {
+                    out.write(b, off, len)
+                }
+            } catch (e: IOException) {
+                warn("Spooling failed: ${e.message}")
+                abandon()
+            }
+        }
+
+        override fun flush() {
+            target.flush()
+        }
+
+        override fun close() {
+            try {
+                target.close()
+            } finally {
+                copy?.close()
+            }
+        }
+
+        fun abandon() {
+            try {
+                copy?.close()
+            } catch (e: IOException) {
+                debug("Spool already closed")
+            }
+            copy = null
+            file.delete()
+        }
+    }
+
+    companion object {
+        private val UNSAFE_CHARACTERS = Regex("[^A-Za-z0-9-]")
+        private const val SPOOL_PREFIX = "spool"
+        private const val SPOOL_SUFFIX = ".tmp"
+
+        const val UNLISTED_TTL = 60 * 1000L
+    }
+
+}
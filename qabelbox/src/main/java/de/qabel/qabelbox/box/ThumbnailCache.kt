@@ -0,0 +1,139 @@
+package de.qabel.qabelbox.box
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import de.qabel.core.logging.QabelLog
+import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.box.provider.ShareId
+import org.spongycastle.util.encoders.Hex
+import java.io.File
+import java.net.URLConnection
+import java.security.MessageDigest
+
+/**
+ * Size-bounded disk cache of image previews.
+ *
+ * Thumbnails are decoded once after a file has been downloaded or uploaded, files are keyed by
+ * their block and modification time so a changed file gets a new thumbnail. The least recently
+ * used thumbnails are deleted when the cache grows above [maxBytes].
+ */
+class ThumbnailCache(private val directory: File,
+                     private val maxBytes: Long = DEFAULT_MAX_BYTES,
+                     private val thumbnailSize: Int = DEFAULT_THUMBNAIL_SIZE) : QabelLog {
+
+    fun get(key: String): File? {
+        val file = fileOf(key)
+        if (!file.exists()) {
+            return null
+        }
+        file.setLastModified(System.currentTimeMillis())
+        return file
+    }
+
+    fun contains(key: String) = fileOf(key).exists()
+
+    /**
+     * Decodes a thumbnail of [image] if it is an image according to [name].
+     *
+     * @return the cached thumbnail or null if [image] could not be decoded
+     */
+    fun put(key: String, name: String, image: File): File? {
+        if (!isImage(name)) {
+            return null
+        }
+        val bitmap = decode(image, thumbnailSize) ?: return null
+        val target = fileOf(key)
+        try {
+            directory.mkdirs()
+            // concurrent puts of one key must not write into the same file
+            val tmp = File.createTempFile(target.nameWithoutExtension, ".tmp", directory)
+            tmp.outputStream().use { bitmap.compress(Bitmap.CompressFormat.JPEG, QUALITY, it) }
+            if (!tmp.renameTo(target)) {
+                tmp.delete()
+                return null
+            }
+        } finally {
+            bitmap.recycle()
+        }
+        trim()
+        debug("Cached thumbnail of $name: ${target.length()} bytes")
+        return target
+    }
+
+    fun putIfAbsent(key: String, name: String, image: File): File? = get(key) ?: put(key, name, image)
+
+    @Synchronized
+    internal fun trim() {
+        val files = directory.listFiles { file -> !file.name.endsWith(".tmp") } ?: return
+        var size = files.sumByLong { it.length() }
+        if (size <= maxBytes) {
+            return
+        }
+        for (file in files.sortedBy { it.lastModified() }) {
+            if (size <= maxBytes) {
+                break
+            }
+            val length = file.length()
+            if (file.delete()) {
+                size -= length
+            }
+        }
+    }
+
+    private fun Array<File>.sumByLong(selector: (File) -> Long): Long {
+        var sum = 0L
+        forEach { sum += selector(it) }
+        return sum
+    }
+
+    private fun fileOf(key: String): File {
+        val digest = MessageDigest.getInstance("SHA-1").digest(key.toByteArray())
+        return File(directory, Hex.toHexString(digest) + ".jpg")
+    }
+
+    companion object {
+        const val DEFAULT_MAX_BYTES = 20L * 1024 * 1024
+        const val DEFAULT_THUMBNAIL_SIZE = 720
+        private const val QUALITY = 85
+
+        fun key(file: BrowserEntry.File): String? = file.block?.let { "$it:${file.mTime.time}" }
+
+        fun key(shareId: ShareId): String = shareId.toString()
+
+        fun isImage(name: String) = URLConnection.guessContentTypeFromName(name)?.startsWith("image") ?: false
+
+        /**
+         * Largest power of two that keeps both sides of the decoded image at least [size] pixels.
+         */
+        fun sampleSize(width: Int, height: Int, size: Int): Int {
+            var sampleSize = 1
+            while (width / (sampleSize * 2) >= size && height / (sampleSize * 2) >= size) {
+                sampleSize *= 2
+            }
+            return sampleSize
+        }
+
+        fun decode(image: File, size: Int): Bitmap? {
+            val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+            BitmapFactory.decodeFile(image.path, bounds)
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+                return null
+            }
+            val options = BitmapFactory.Options().apply {
+                inSampleSize = sampleSize(bounds.outWidth, bounds.outHeight, size)
+            }
+            val sampled = BitmapFactory.decodeFile(image.path, options) ?: return null
+            val scale = size.toFloat() / Math.max(sampled.width, sampled.height)
+            if (scale >= 1) {
+                return sampled
+            }
+            val scaled = Bitmap.createScaledBitmap(sampled,
+                    Math.round(sampled.width * scale), Math.round(sampled.height * scale), true)
+            if (scaled !== sampled) {
+                sampled.recycle()
+            }
+            return scaled
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package de.qabel.qabelbox.box
+
+import de.qabel.core.logging.QabelLog
+import de.qabel.qabelbox.box.dto.FileOperationState
+import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser.KeyAndPrefix
+import rx.Observable
+import rx.Subscriber
+import rx.subscriptions.Subscriptions
+import java.util.*
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Limits the number of concurrent file transfers, in total and per volume.
+ *
+ * Scheduled transfers are started when subscribed and a slot is free,
+ * ordered by their [Priority] and the order they were scheduled in.
+ * Unsubscribing from a queued transfer removes it from the queue. A running transfer blocks its
+ * thread until it is done, unsubscribing only stops its events and the slot is released when
+ * the transfer has actually terminated.
+ */
+class TransferScheduler(private val maxActive: Int = DEFAULT_MAX_ACTIVE,
+                        private val maxActivePerVolume: Int = DEFAULT_MAX_ACTIVE_PER_VOLUME) : QabelLog {
+
+    enum class Priority {
+        USER_VISIBLE, BACKGROUND
+    }
+
+    data class Metrics(val queueDepth: Int, val active: Int, val completed: Long,
+                       val bytesTransferred: Long, val bytesPerSecond: Long)
+
+    private class Transfer(val volume: KeyAndPrefix, val priority: Priority, val sequence: Long) {
+        var start: () -> Unit = {}
+        var started = false
+        val finished = AtomicBoolean(false)
+    }
+
+    private val queue = TreeSet<Transfer>(compareBy<Transfer>({ it.priority }, { it.sequence }))
+    private val activePerVolume = mutableMapOf<KeyAndPrefix, Int>()
+    private var active = 0
+    private var sequence = 0L
+    private var completed = 0L
+    private var bytesTransferred = 0L
+    private var busyTime = 0L
+    private var busySince = 0L
+
+    val metrics: Metrics
+        @Synchronized get() {
+            val time = busyTime + if (active > 0) System.currentTimeMillis() - busySince else 0L
+            val bytesPerSecond = if (time > 0) bytesTransferred * 1000 / time else 0L
+            return Metrics(queue.size, active, completed, bytesTransferred, bytesPerSecond)
+        }
+
+    fun <T> schedule(operation: FileOperationState, priority: Priority, source: Observable<T>): Observable<T> =
+            schedule(operation.ownerKey, priority, source, { operation.done })
+
+    /**
+     * Schedules a transfer of several files on one [volume] as a single transfer.
+     *
+     * @param transferred bytes transferred by the source when it terminates
+     */
+    fun <T> schedule(volume: KeyAndPrefix, priority: Priority, source: Observable<T>,
+                     transferred: () -> Long): Observable<T> =
+            Observable.create<T> { subscriber ->
+                val transfer = synchronized(this) { Transfer(volume, priority, sequence++) }
+                transfer.start = {
+                    if (subscriber.isUnsubscribed) {
+                        finish(transfer, 0)
+                    } else {
+                        source.doOnTerminate { finish(transfer, transferred()) }
+                                .unsafeSubscribe(detached(subscriber))
+                    }
+                }
+                subscriber.add(Subscriptions.create { cancel(transfer) })
+                synchronized(this) { queue.add(transfer) }
+                dispatch()
+            }
+
+    /**
+     * Forwards the events to [subscriber] while it is subscribed, without unsubscribing from the
+     * transfer itself.
+     */
+    private fun <T> detached(subscriber: Subscriber<in T>) = object : Subscriber<T>() {
+        override fun onNext(value: T) {
+            if (!subscriber.isUnsubscribed) subscriber.onNext(value)
+        }
+
+        override fun onError(e: Throwable) {
+            if (!subscriber.isUnsubscribed) subscriber.onError(e)
+        }
+
+        override fun onCompleted() {
+            if (!subscriber.isUnsubscribed) subscriber.onCompleted()
+        }
+    }
+
+    @Synchronized
+    private fun cancel(transfer: Transfer) {
+        if (queue.remove(transfer)) {
+            debug("Canceled queued transfer for ${transfer.volume}")
+        }
+    }
+
+    private fun finish(transfer: Transfer, bytes: Long) {
+        if (!transfer.finished.compareAndSet(false, true)) {
+            return
+        }
+        synchronized(this) {
+            if (!transfer.started) {
+                return
+            }
+            active--
+            val volumeActive = (activePerVolume[transfer.volume] ?: 1) - 1
+            if (volumeActive > 0) {
+                activePerVolume.put(transfer.volume, volumeActive)
+            } else {
+                activePerVolume.remove(transfer.volume)
+            }
+            completed++
+            bytesTransferred += bytes
+            if (active == 0) {
+                busyTime += System.currentTimeMillis() - busySince
+            }
+        }
+        debug("Transfer finished: $metrics")
+        dispatch()
+    }
+
+    private fun dispatch() {
+        val startable = mutableListOf<Transfer>()
+        synchronized(this) {
+            val iterator = queue.iterator()
+            while (active < maxActive && iterator.hasNext()) {
+                val transfer = iterator.next()
+                val volumeActive = activePerVolume[transfer.volume] ?: 0
+                if (volumeActive < maxActivePerVolume) {
+                    iterator.remove()
+                    if (active == 0) {
+                        busySince = System.currentTimeMillis()
+                    }
+                    active++
+                    activePerVolume.put(transfer.volume, volumeActive + 1)
+                    transfer.started = true
+                    startable.add(transfer)
+                }
+            }
+        }
+        startable.forEach { it.start() }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_ACTIVE = 4
+        const val DEFAULT_MAX_ACTIVE_PER_VOLUME = 2
+    }
+
+}
@@ -4,42 +4,63 @@ import de.qabel.box.storage.*
 import de.qabel.box.storage.exceptions.QblStorageException
 import de.qabel.box.storage.exceptions.QblStorageNotFound
 import de.qabel.core.logging.QabelLog
+import de.qabel.qabelbox.box.repository.PartialDownloadRepository
+import de.qabel.qabelbox.box.repository.PartialDownloadRepository.PartialDownload
 import de.qabel.qabelbox.communication.callbacks.DownloadRequestCallback
 import de.qabel.qabelbox.communication.callbacks.RequestCallback
 import de.qabel.qabelbox.communication.callbacks.UploadRequestCallback
 import de.qabel.qabelbox.storage.server.BlockServer
 import org.apache.http.HttpHeaders
 import org.apache.http.client.utils.DateUtils
+import okhttp3.ResponseBody
 import java.io.File
+import java.io.IOException
 import java.io.InputStream
+import java.io.SequenceInputStream
 import java.util.*
 import java.util.concurrent.CountDownLatch
 
+/**
+ * Storage backend on top of the [BlockServer].
+ *
+ * With [streaming] enabled downloads hand out the live response body instead of
+ * spooling the whole block to a temporary file before the first byte can be read.
+ * Interrupted downloads continue with range requests. With [partialDownloads] the first
+ * [MAX_RECORDED_SIZE] bytes read are kept in a file, an interrupted download continues
+ * from them on the next attempt.
+ */
 class BoxHttpStorageBackend(
         private val blockServer: BlockServer,
-        private val prefix: String) :
+        private val prefix: String,
+        private val streaming: Boolean = false,
+        val metrics: DownloadMetrics = DownloadMetrics(),
+        private val partialDownloads: PartialDownloadRepository? = null) :
         StorageReadBackend, StorageWriteBackend, QabelLog {
 
     override fun getUrl(name: String): String = blockServer.urlForFile(prefix, name)
 
-    data class Response(val eTag: String?, val status: Int, val date: Date?, val error: Exception?)
+    data class Response(val eTag: String?, val status: Int, val date: Date?, val error: Exception?,
+                        val body: ResponseBody? = null, val range: String? = null)
 
     override fun download(name: String): StorageDownload {
         return download(name, null)
     }
 
-    fun downloadRequest(file: File, name: String, ifModified: String?): Response {
+    fun downloadRequest(file: File, name: String, ifModified: String?): Response =
+            downloadRequest(file, name, ifModified, 0, null)
+
+    fun downloadRequest(file: File, name: String, ifModified: String?, offset: Long, ifRange: String?): Response {
         val latch = CountDownLatch(1)
         var error: Exception? = null
         var etag: String? = null
         var status: Int = 0
         var date: Date? = null
-        blockServer.downloadFile(prefix, name, ifModified, object : DownloadRequestCallback(file) {
+        val callback = object : DownloadRequestCallback(file, true) {
             override fun onSuccess(statusCode: Int, response: okhttp3.Response?) {
-                super.onSuccess(statusCode, response)
                 etag = response?.header(HttpHeaders.ETAG)
                 date = DateUtils.parseDate(response?.header(HttpHeaders.DATE))
                 status = statusCode
+                super.onSuccess(statusCode, response)
                 latch.countDown()
             }
 
@@ -49,12 +70,44 @@ class BoxHttpStorageBackend(
                 latch.countDown()
             }
 
-        })
+        }
+        if (offset > 0) {
+            blockServer.downloadFile(prefix, name, offset, ifRange, callback)
+        } else {
+            blockServer.downloadFile(prefix, name, ifModified, callback)
+        }
         latch.await()
         return Response(etag, status, date, error)
     }
 
-    fun handleDownloadResponse(response: Response, file: File): StorageDownload {
+    fun streamRequest(name: String, ifModified: String?): Response =
+            streamRequest { blockServer.streamFile(prefix, name, ifModified, it) }
+
+    fun streamRequest(name: String, offset: Long, ifRange: String?): Response =
+            streamRequest { blockServer.streamFile(prefix, name, offset, ifRange, it) }
+
+    private fun streamRequest(request: (RequestCallback) -> Unit): Response {
+        val latch = CountDownLatch(1)
+        var response = Response(null, 0, null, null)
+        request(object : RequestCallback(200, 206) {
+            override fun onSuccess(statusCode: Int, httpResponse: okhttp3.Response?) {
+                response = Response(httpResponse?.header(HttpHeaders.ETAG), statusCode,
+                        DateUtils.parseDate(httpResponse?.header(HttpHeaders.DATE)), null, httpResponse?.body())
+                latch.countDown()
+            }
+
+            override fun onError(e: Exception?, httpResponse: okhttp3.Response?) {
+                httpResponse?.body()?.close()
+                response = Response(null, httpResponse?.code() ?: 0, null, e)
+                latch.countDown()
+            }
+
+        })
+        latch.await()
+        return response
+    }
+
+    private fun checkDownloadResponse(response: Response) {
         val (eTag, status, date, error) = response
         when (status) {
             0 -> throw QblStorageException("Download failed")
@@ -63,13 +116,161 @@ class BoxHttpStorageBackend(
             304 -> throw UnmodifiedException()
         }
         error?.let { throw QblStorageException(it) }
-        return StorageDownload(file.inputStream(), eTag, file.length())
+    }
+
+    fun handleDownloadResponse(response: Response, file: File): StorageDownload {
+        checkDownloadResponse(response)
+        return StorageDownload(file.inputStream(), response.eTag, file.length())
+    }
+
+    fun handleStreamResponse(response: Response, name: String? = null, offset: Long = 0): StorageDownload {
+        try {
+            checkDownloadResponse(response)
+        } catch (e: QblStorageException) {
+            response.body?.close()
+            throw e
+        }
+        val body = response.body ?: throw QblStorageException("Download failed")
+        val eTag = response.eTag
+        val stream = if (name != null && eTag != null) {
+            ResumingInputStream(body.byteStream(), MAX_DOWNLOAD_ATTEMPTS) { resumeStream(name, offset + it, eTag) }
+        } else {
+            body.byteStream()
+        }
+        return StorageDownload(stream, eTag, body.contentLength())
+    }
+
+    private fun resumeStream(name: String, offset: Long, eTag: String): InputStream? {
+        val response = streamRequest(name, offset, eTag)
+        if (response.status != 206 || response.error != null) {
+            response.body?.close()
+            return null
+        }
+        debug("Resumed download of $name at $offset")
+        metrics.bytesResumed.addAndGet(offset)
+        return response.body?.byteStream()
+    }
+
+    /**
+     * Downloads into a file, an interrupted download is recorded in the [partialDownloads]
+     * and continued with a range request on the next attempt.
+     */
+    private fun downloadToFile(name: String, ifModified: String?): StorageDownload {
+        val partials = partialDownloads
+        if (partials == null || ifModified != null) {
+            val file = createTempFile()
+            return handleDownloadResponse(downloadRequest(file, name, ifModified), file).apply {
+                metrics.bytesWrittenToDisk.addAndGet(file.length())
+            }
+        }
+        var partial = partials.find(prefix, name)
+        val file = partial?.let { File(it.path) } ?: createTempFile()
+        if (!file.exists()) {
+            partial = null
+        }
+        var attempts = 0
+        while (true) {
+            val offset = if (partial != null) file.length() else 0L
+            val response = downloadRequest(file, name, null, offset, partial?.eTag)
+            val eTag = response.eTag
+            if (response.error == null && (response.status == 200 || response.status == 206)) {
+                partials.delete(prefix, name)
+                if (response.status == 206) {
+                    metrics.bytesResumed.addAndGet(offset)
+                }
+                val download = handleDownloadResponse(response, file)
+                metrics.bytesWrittenToDisk.addAndGet(file.length())
+                file.delete()
+                return download
+            } else if (response.status == 416) {
+                partial = null
+                partials.delete(prefix, name)
+            } else if (response.status == 0 && eTag != null && file.length() > 0) {
+                partial = PartialDownload(prefix, name, eTag, file.absolutePath)
+                partials.save(partial)
+            } else {
+                partials.delete(prefix, name)
+                file.delete()
+                return handleDownloadResponse(response, file)
+            }
+            if (++attempts >= MAX_DOWNLOAD_ATTEMPTS) {
+                return handleDownloadResponse(response, file)
+            }
+        }
+    }
+
+    /**
+     * Streams the download and records it in a file, an interrupted download is recorded in the
+     * [partialDownloads] and the next attempt serves the recorded part before streaming the rest.
+     */
+    private fun streamDownload(name: String, ifModified: String?): StorageDownload {
+        val partials = partialDownloads
+        if (partials == null || ifModified != null) {
+            return handleStreamResponse(streamRequest(name, ifModified), name)
+        }
+        val partial = partials.find(prefix, name)
+        val file = partial?.let { File(it.path) }
+        if (partial != null && file != null && file.exists()) {
+            val offset = file.length()
+            val response = streamRequest(name, offset, partial.eTag)
+            if (response.status == 206 && response.error == null) {
+                metrics.bytesResumed.addAndGet(offset)
+                val size = offset + (response.body?.contentLength() ?: 0)
+                val rest = handleStreamResponse(response, name, offset).inputStream
+                // the recorded part is read to its end before the rest is appended to the file
+                return StorageDownload(SequenceInputStream(file.inputStream(), record(name, rest, response.eTag, file)),
+                        response.eTag, size)
+            }
+            response.body?.close()
+        }
+        partials.delete(prefix, name)
+        file?.delete()
+        val response = streamRequest(name, null)
+        val size = response.body?.contentLength() ?: 0
+        val input = handleStreamResponse(response, name).inputStream
+        val recording = try {
+            createTempFile()
+        } catch (e: IOException) {
+            warn("Not recording download of $name: ${e.message}")
+            return StorageDownload(input, response.eTag, size)
+        }
+        return StorageDownload(record(name, input, response.eTag, recording), response.eTag, size)
+    }
+
+    private fun record(name: String, input: InputStream, eTag: String?, file: File): InputStream {
+        if (eTag == null) {
+            file.delete()
+            return input
+        }
+        return RecordingInputStream(input, file, MAX_RECORDED_SIZE,
+                finished = {
+                    partialDownloads?.delete(prefix, name)
+                    metrics.bytesWrittenToDisk.addAndGet(file.length())
+                    file.delete()
+                },
+                interrupted = {
+                    if (file.length() > 0) {
+                        try {
+                            partialDownloads?.save(PartialDownload(prefix, name, eTag, file.absolutePath))
+                        } catch (e: Throwable) {
+                            warn("Could not record partial download of $name: ${e.message}")
+                            file.delete()
+                        }
+                    } else {
+                        file.delete()
+                    }
+                })
     }
 
     override fun download(name: String, ifModified: String?): StorageDownload {
-        val file = createTempFile()
-        val response = downloadRequest(file, name, ifModified)
-        return handleDownloadResponse(response, file)
+        val start = System.currentTimeMillis()
+        val download = if (streaming) {
+            streamDownload(name, ifModified)
+        } else {
+            downloadToFile(name, ifModified)
+        }
+        metrics.recordDownload(System.currentTimeMillis() - start)
+        return download
     }
 
     fun uploadRequest(inputStream: InputStream, name: String, etag: String?): Response {
@@ -152,5 +353,9 @@ class BoxHttpStorageBackend(
         handleDeleteResponse(response)
     }
 
-}
+    companion object {
+        private const val MAX_DOWNLOAD_ATTEMPTS = 3
+        const val MAX_RECORDED_SIZE = 8L * 1024 * 1024
+    }
 
+}
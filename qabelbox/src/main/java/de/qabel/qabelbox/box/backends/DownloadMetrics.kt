@@ -0,0 +1,30 @@
+package de.qabel.qabelbox.box.backends
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Counters for the downloads of a storage backend.
+ *
+ * The time to first byte is measured until the download stream is handed to the caller,
+ * resumed bytes were already fetched before a download was interrupted and not fetched again.
+ */
+class DownloadMetrics {
+
+    val downloads = AtomicLong()
+    val bytesWrittenToDisk = AtomicLong()
+    val totalTimeToFirstByte = AtomicLong()
+    val bytesResumed = AtomicLong()
+
+    val averageTimeToFirstByte: Long
+        get() = downloads.get().let { if (it == 0L) 0L else totalTimeToFirstByte.get() / it }
+
+    fun recordDownload(timeToFirstByte: Long) {
+        downloads.incrementAndGet()
+        totalTimeToFirstByte.addAndGet(timeToFirstByte)
+    }
+
+    override fun toString() = "DownloadMetrics(downloads=$downloads, " +
+            "averageTimeToFirstByte=${averageTimeToFirstByte}ms, bytesWrittenToDisk=$bytesWrittenToDisk, " +
+            "bytesResumed=$bytesResumed)"
+
+}
@@ -0,0 +1,98 @@
+package de.qabel.qabelbox.box.backends
+
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * Stream of a download that appends the first [limit] bytes read to [file], so an interrupted
+ * download can be continued from the file instead of fetching that part again.
+ * A failing write to the file, e.g. on a full disk, only stops the recording and discards the file.
+ *
+ * [finished] is called after the end of the content has been read,
+ * [interrupted] if reading fails or the stream is closed before the end.
+ */
+class RecordingInputStream(private val input: InputStream,
+                           private val file: File,
+                           private val limit: Long,
+                           private val finished: () -> Unit,
+                           private val interrupted: () -> Unit) : InputStream() {
+
+    private var output: FileOutputStream? = try {
+        FileOutputStream(file, true)
+    } catch (e: IOException) {
+        file.delete()
+        null
+    }
+    private var recorded = file.length()
+    private var done = false
+
+    override fun read(): Int {
+        val buffer = ByteArray(1)
+        val read = read(buffer, 0, 1)
+        return if (read == -1) -1 else buffer[0].toInt() and 0xff
+    }
+
+    override fun read(buffer: ByteArray, offset: Int, length: Int): Int {
+        val read = try {
+            input.read(buffer, offset, length)
+        } catch (e: IOException) {
+            stop(false)
+            throw e
+        }
+        if (read == -1) {
+            stop(true)
+        } else if (!done) {
+            record(buffer, offset, read)
+        }
+        return read
+    }
+
+    private fun record(buffer: ByteArray, offset: Int, read: Int) {
+        val out = output ?: return
+        val count = Math.min(read.toLong(), limit - recorded).toInt()
+        if (count <= 0) {
+            return
+        }
+        try {
+            out.write(buffer, offset, count)
+            recorded += count
+        } catch (e: IOException) {
+            output = null
+            closeQuietly(out)
+            file.delete()
+        }
+    }
+
+    override fun available(): Int = input.available()
+
+    override fun close() {
+        try {
+            input.close()
+        } finally {
+            stop(false)
+        }
+    }
+
+    private fun stop(complete: Boolean) {
+        if (done) {
+            return
+        }
+        done = true
+        output?.let {
+            if (!closeQuietly(it)) {
+                file.delete()
+            }
+        }
+        if (complete) finished() else interrupted()
+    }
+
+    private fun closeQuietly(out: FileOutputStream): Boolean = try {
+        out.close()
+        true
+    } catch (e: IOException) {
+        false
+    }
+
+}
@@ -0,0 +1,56 @@
+package de.qabel.qabelbox.box.backends
+
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * Stream of a download that continues at the current position if reading fails.
+ *
+ * [resume] opens the remaining content from the given offset or returns null
+ * if the download cannot be resumed.
+ */
+class ResumingInputStream(private var input: InputStream,
+                          private val maxAttempts: Int,
+                          private val resume: (Long) -> InputStream?) : InputStream() {
+
+    private var position = 0L
+    private var attempts = 0
+
+    override fun read(): Int {
+        val buffer = ByteArray(1)
+        val read = read(buffer, 0, 1)
+        return if (read == -1) -1 else buffer[0].toInt() and 0xff
+    }
+
+    override fun read(buffer: ByteArray, offset: Int, length: Int): Int {
+        while (true) {
+            try {
+                val read = input.read(buffer, offset, length)
+                if (read > 0) {
+                    position += read
+                }
+                return read
+            } catch (e: IOException) {
+                reopen(e)
+            }
+        }
+    }
+
+    private fun reopen(cause: IOException) {
+        if (++attempts > maxAttempts) {
+            throw cause
+        }
+        try {
+            input.close()
+        } catch (ignored: IOException) {
+        }
+        input = resume(position) ?: throw cause
+    }
+
+    override fun available(): Int = input.available()
+
+    override fun close() {
+        input.close()
+    }
+
+}
@@ -8,7 +8,7 @@ sealed class BrowserEntry(val name: String) {
 
     val sharedTo : MutableList<Contact?> = mutableListOf()
 
-    class File(name: String, val size: Long, val mTime: Date) : BrowserEntry(name) {
+    class File(name: String, val size: Long, val mTime: Date, val block: String? = null) : BrowserEntry(name) {
         override fun toString(): String {
             return "File($name, $size, $mTime)"
         }
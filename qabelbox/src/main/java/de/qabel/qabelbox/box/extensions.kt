@@ -25,7 +25,7 @@ fun ContentResolver.queryNameAndSize(uri: Uri): Pair<String, Long> =
             }
 
 fun BoxObject.toEntry() = when (this) {
-    is BoxFile -> BrowserEntry.File(this.name, this.size, Date(this.mtime))
+    is BoxFile -> BrowserEntry.File(this.name, this.size, Date(this.mtime), this.block)
     is BoxFolder -> BrowserEntry.Folder(this.name)
     else -> null
 }
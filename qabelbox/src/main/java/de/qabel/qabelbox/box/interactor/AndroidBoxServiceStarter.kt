@@ -5,6 +5,7 @@ import android.content.Intent
 import android.net.Uri
 import de.qabel.qabelbox.box.AndroidBoxService
 import de.qabel.qabelbox.box.provider.DocumentId
+import java.util.*
 import javax.inject.Inject
 
 class AndroidBoxServiceStarter @Inject constructor(private val context: Context) : BoxServiceStarter {
@@ -12,6 +13,14 @@ class AndroidBoxServiceStarter @Inject constructor(private val context: Context)
     override fun startUpload(documentId: DocumentId, source: Uri) =
             startBoxService(AndroidBoxService.Actions.UPLOAD_FILE, documentId, source)
 
+    override fun startUploads(uploads: List<Pair<DocumentId, Uri>>) {
+        context.startService(Intent(AndroidBoxService.Actions.UPLOAD_FILES, null,
+                context, AndroidBoxService::class.java).apply {
+            putStringArrayListExtra(AndroidBoxService.KEY_DOC_IDS, ArrayList(uploads.map { it.first.toString() }))
+            putParcelableArrayListExtra(AndroidBoxService.KEY_SOURCES, ArrayList(uploads.map { it.second }))
+        })
+    }
+
     override fun startDownload(documentId: DocumentId, target: Uri) =
             startBoxService(AndroidBoxService.Actions.DOWNLOAD_FILE, documentId, target)
 
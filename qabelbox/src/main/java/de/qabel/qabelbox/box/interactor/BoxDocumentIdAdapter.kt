@@ -18,6 +18,8 @@ import rx.Observable
 import rx.lang.kotlin.single
 import rx.lang.kotlin.toSingletonObservable
 import java.io.File
+import java.io.FileNotFoundException
+import java.io.OutputStream
 import javax.inject.Inject
 
 class BoxDocumentIdAdapter @Inject constructor(context: Context,
@@ -34,15 +36,36 @@ class BoxDocumentIdAdapter @Inject constructor(context: Context,
     override fun downloadFile(documentId: DocumentId, targetFile: File): Pair<FileOperationState, Observable<FileOperationState>> =
             downloadFile(documentId, targetFile.outputStream())
 
+    override fun downloadFile(documentId: DocumentId, targetFile: File,
+                              offset: Long, length: Long): Pair<FileOperationState, Observable<FileOperationState>> {
+        val path = documentId.path as? BoxPath.File ?: throw FileNotFoundException("Not a file")
+        return browserByDocumentId(documentId).download(path, targetFile.outputStream(), offset, length)
+    }
+
+    override fun streamFile(documentId: DocumentId, targetStream: OutputStream): Pair<FileOperationState, Observable<FileOperationState>> =
+            downloadFile(documentId, targetStream)
 
     override fun availableRoots(): List<VolumeRoot> = volumeManager.roots
 
-    override fun queryChildDocuments(documentId: DocumentId): Observable<List<ProviderEntry>> {
+    override fun queryChildDocuments(documentId: DocumentId): Observable<List<ProviderEntry>> =
+            queryChildDocuments(documentId) { browser, path -> browser.list(path) }
+
+    override fun queryCachedChildDocuments(documentId: DocumentId): Observable<List<ProviderEntry>> =
+            queryChildDocuments(documentId) { browser, path -> browser.listCached(path) }
+
+    override fun searchDocuments(rootId: DocumentId, query: String): Observable<List<ProviderEntry>> =
+            browserByDocumentId(rootId).search(query).map { matches ->
+                matches.map { ProviderEntry(rootId.copy(path = it.path), it.entry) }
+            }
+
+    private fun queryChildDocuments(documentId: DocumentId,
+                                    list: (ReadFileBrowser, BoxPath.FolderLike) -> Observable<List<BrowserEntry>>):
+            Observable<List<ProviderEntry>> {
         when (documentId.path) {
             is BoxPath.File -> return emptyList<ProviderEntry>().toSingletonObservable()
             is BoxPath.FolderLike -> {
                 val listing: Observable<List<BrowserEntry>> =
-                        browserByDocumentId(documentId).list(documentId.path)
+                        list(browserByDocumentId(documentId), documentId.path)
                 return listing.map { entries ->
                     transformToProviderEntries(entries, documentId.path, documentId)
                 }
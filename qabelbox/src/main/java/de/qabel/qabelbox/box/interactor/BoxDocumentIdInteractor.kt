@@ -9,6 +9,7 @@ import de.qabel.qabelbox.box.dto.BrowserEntry
 import de.qabel.qabelbox.box.dto.FileOperationState
 import de.qabel.qabelbox.box.dto.UploadSource
 import de.qabel.qabelbox.box.provider.DocumentId
+import de.qabel.qabelbox.box.queryNameAndSize
 import rx.Observable
 import java.io.File
 import java.io.FileNotFoundException
@@ -40,6 +41,55 @@ open class BoxDocumentIdInteractor @Inject constructor(val context: Context,
         }
     }
 
+    /**
+     * Uploads all files with one batch per volume, see [OperationFileBrowser.uploadAll]
+     *
+     * The sources are opened one at a time when their upload starts and closed by the batch.
+     */
+    override fun uploadFiles(uploads: List<Pair<Uri, DocumentId>>): Pair<List<FileOperationState>, Observable<FileOperationState>> {
+        val batches = uploads.groupBy { it.second.copy(path = BoxPath.Root) }.map {
+            val (rootId, volumeUploads) = it
+            browserByDocumentId(rootId).uploadAll(volumeUploads.map {
+                val (sourceUri, targetDocumentId) = it
+                val path = targetDocumentId.path as? BoxPath.File ?: throw FileNotFoundException("Not a file")
+                Pair(path, UploadSource(DeferredInputStream { openSource(sourceUri) },
+                        BrowserEntry.File(path.name, sizeOf(sourceUri), Date())))
+            })
+        }
+        return Pair(batches.flatMap { it.first }, Observable.concat(Observable.from(batches.map { it.second })))
+    }
+
+    private fun openSource(uri: Uri): InputStream =
+            context.contentResolver.openInputStream(uri) ?: throw FileNotFoundException("Cannot open $uri")
+
+    private fun sizeOf(uri: Uri): Long =
+            try {
+                context.contentResolver.queryNameAndSize(uri).second
+            } catch (e: Exception) {
+                openSource(uri).use { it.available().toLong() }
+            }
+
+    /**
+     * Opens the source on first access, so a batch only holds the descriptor of the file being uploaded.
+     */
+    private class DeferredInputStream(private val open: () -> InputStream) : InputStream() {
+
+        private var stream: InputStream? = null
+
+        private val source: InputStream
+            get() = stream ?: open().apply { stream = this }
+
+        override fun read() = source.read()
+
+        override fun read(b: ByteArray, off: Int, len: Int) = source.read(b, off, len)
+
+        override fun available() = source.available()
+
+        override fun close() {
+            stream?.close()
+        }
+    }
+
     override fun downloadFile(documentId: DocumentId, targetUri: Uri): Pair<FileOperationState, Observable<FileOperationState>> {
         with(context.contentResolver) {
             debug("open output stream for download")
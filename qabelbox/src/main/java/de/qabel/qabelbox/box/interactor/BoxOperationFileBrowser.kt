@@ -6,19 +6,30 @@ import de.qabel.box.storage.dto.BoxPath
 import de.qabel.box.storage.exceptions.QblStorageException
 import de.qabel.box.storage.exceptions.QblStorageNotFound
 import de.qabel.core.repository.ContactRepository
+import de.qabel.qabelbox.box.BlockDeduplicator
 import de.qabel.qabelbox.box.BoxScheduler
 import de.qabel.qabelbox.box.dto.FileOperationState
 import de.qabel.qabelbox.box.dto.UploadSource
+import de.qabel.qabelbox.box.provider.DocumentId
+import de.qabel.qabelbox.box.repository.FileSearchRepository
+import de.qabel.qabelbox.box.repository.RecentDocumentRepository
+import de.qabel.qabelbox.box.repository.RecentDocumentRepository.RecentDocument
+import org.apache.commons.io.IOUtils.closeQuietly
 import rx.Observable
+import rx.Subscriber
 import rx.lang.kotlin.observable
+import java.io.InputStream
 import java.io.OutputStream
 import javax.inject.Inject
 
 class BoxOperationFileBrowser @Inject constructor(keyAndPrefix: BoxReadFileBrowser.KeyAndPrefix,
                                                   volumeNavigator: VolumeNavigator,
                                                   contactRepo: ContactRepository,
-                                                  scheduler: BoxScheduler) :
-        BoxReadFileBrowser(keyAndPrefix, volumeNavigator, contactRepo, scheduler), OperationFileBrowser {
+                                                  scheduler: BoxScheduler,
+                                                  private val deduplicator: BlockDeduplicator? = null,
+                                                  searchIndex: FileSearchRepository? = null,
+                                                  private val recents: RecentDocumentRepository? = null) :
+        BoxReadFileBrowser(keyAndPrefix, volumeNavigator, contactRepo, scheduler, searchIndex), OperationFileBrowser {
 
     override fun upload(path: BoxPath.File, source: UploadSource): Pair<FileOperationState, Observable<FileOperationState>> {
         val boxFile = source.entry
@@ -28,23 +39,10 @@ class BoxOperationFileBrowser @Inject constructor(keyAndPrefix: BoxReadFileBrows
         return Pair(operation, observable<FileOperationState> {
             try {
                 it.onNext(operation)
-                recursiveCreateFolder(path.parent).upload(path.name, source.source, boxFile.size,
-                        object : ProgressListener() {
-                            override fun setSize(size: Long) {
-                                operation.size = size
-                                if (operation.loadDone) {
-                                    operation.status = FileOperationState.Status.COMPLETING
-                                } else {
-                                    operation.status = FileOperationState.Status.LOADING
-                                }
-                                it.onNext(operation)
-                            }
-
-                            override fun setProgress(progress: Long) {
-                                operation.done = progress
-                                it.onNext(operation)
-                            }
-                        })
+                val nav = recursiveCreateFolder(path.parent)
+                upload(nav, path.name, source, uploadProgressListener(operation, it))
+                index(path.parent, nav)
+                rememberUpload(path, nav)
                 operation.status = FileOperationState.Status.COMPLETE
                 it.onCompleted()
             } catch (e: Throwable) {
@@ -54,7 +52,163 @@ class BoxOperationFileBrowser @Inject constructor(keyAndPrefix: BoxReadFileBrows
         }.subscribeOn(scheduler.rxScheduler))
     }
 
-    override fun download(path: BoxPath.File, targetStream: OutputStream): Pair<FileOperationState, Observable<FileOperationState>> {
+    override fun uploadAll(files: List<Pair<BoxPath.File, UploadSource>>): Pair<List<FileOperationState>, Observable<FileOperationState>> {
+        val uploads = files.map {
+            val (path, source) = it
+            Triple(path, source, FileOperationState(keyAndPrefix, source.entry.name, path.parent).apply {
+                size = source.entry.size
+            })
+        }
+        val operations = uploads.map { it.third }
+        return Pair(operations, observable<FileOperationState> { subscriber ->
+            try {
+                uploads.groupBy { it.first.parent.toList() }.values.forEach { folderUploads ->
+                    val nav = recursiveCreateFolder(folderUploads.first().first.parent)
+                    nav.setAutocommit(false)
+                    try {
+                        folderUploads.forEach {
+                            val (path, source, operation) = it
+                            subscriber.onNext(operation)
+                            source.source.use {
+                                upload(nav, path.name, source, uploadProgressListener(operation, subscriber))
+                            }
+                        }
+                        nav.commitIfChanged()
+                    } finally {
+                        nav.setAutocommit(true)
+                    }
+                    index(folderUploads.first().first.parent, nav)
+                    folderUploads.forEach { rememberUpload(it.first, nav) }
+                    folderUploads.forEach {
+                        it.third.status = FileOperationState.Status.COMPLETE
+                        subscriber.onNext(it.third)
+                    }
+                }
+                subscriber.onCompleted()
+            } catch (e: Throwable) {
+                operations.filter { it.status != FileOperationState.Status.COMPLETE }.forEach {
+                    it.status = FileOperationState.Status.ERROR
+                }
+                subscriber.onError(e)
+            } finally {
+                files.forEach { closeQuietly(it.second.source) }
+            }
+        }.subscribeOn(scheduler.rxScheduler))
+    }
+
+    /**
+     * Uploads into [nav], if deduplication is enabled an upload of the content the file already has is skipped.
+     * The content is only spooled to hash it before the upload when the file has an indexed block of the same size.
+     */
+    private fun upload(nav: BoxNavigation, name: String, source: UploadSource, listener: ProgressListener) {
+        val dedup = deduplicator
+        if (dedup == null || !dedup.isEnabled) {
+            nav.upload(name, source.source, source.entry.size, listener)
+            return
+        }
+        val prefix = keyAndPrefix.prefix
+        val current = nav.listFiles().find { it.name == name }
+        val currentHash = current?.let { dedup.hashOf(prefix, it) }
+        if (current == null || currentHash == null || current.size != source.entry.size) {
+            val input = BlockDeduplicator.HashingInputStream(source.source)
+            val boxFile = nav.upload(name, input, source.entry.size, listener)
+            current?.let { dedup.replaced(prefix, it) }
+            dedup.uploaded(prefix, boxFile, input.hash)
+            return
+        }
+        val content = dedup.spool(source.source)
+        try {
+            if (content.hash == currentHash) {
+                dedup.skipped(current)
+                listener.setProgress(current.size)
+                listener.setSize(current.size)
+                return
+            }
+            val boxFile = content.file.inputStream().use {
+                nav.upload(name, it, content.file.length(), listener)
+            }
+            dedup.replaced(prefix, current)
+            dedup.uploaded(prefix, boxFile, content.hash)
+        } finally {
+            content.file.delete()
+        }
+    }
+
+    /**
+     * Remembers the uploaded file with its block as recent document.
+     */
+    private fun rememberUpload(path: BoxPath.File, nav: BoxNavigation) {
+        val repository = recents ?: return
+        try {
+            val boxFile = nav.getFile(path.name)
+            repository.save(RecentDocument(documentId(path), boxFile.block, boxFile.size, boxFile.mtime))
+        } catch (e: Throwable) {
+            warn("Could not remember upload of $path: ${e.message}")
+        }
+    }
+
+    private fun forget(path: BoxPath) {
+        try {
+            recents?.delete(documentId(path))
+        } catch (e: Throwable) {
+            warn("Could not forget $path: ${e.message}")
+        }
+    }
+
+    private fun documentId(path: BoxPath) = DocumentId(keyAndPrefix.publicKey, keyAndPrefix.prefix, path)
+
+    private fun uploadProgressListener(operation: FileOperationState,
+                                       subscriber: Subscriber<in FileOperationState>) =
+            object : ProgressListener() {
+                override fun setSize(size: Long) {
+                    operation.size = size
+                    if (operation.loadDone) {
+                        operation.status = FileOperationState.Status.COMPLETING
+                    } else {
+                        operation.status = FileOperationState.Status.LOADING
+                    }
+                    subscriber.onNext(operation)
+                }
+
+                override fun setProgress(progress: Long) {
+                    operation.done = progress
+                    subscriber.onNext(operation)
+                }
+            }
+
+    override fun download(path: BoxPath.File, targetStream: OutputStream): Pair<FileOperationState, Observable<FileOperationState>> =
+            download(path) { it.copyTo(targetStream) }
+
+    override fun download(path: BoxPath.File, targetStream: OutputStream,
+                          offset: Long, length: Long): Pair<FileOperationState, Observable<FileOperationState>> =
+            download(path) { copyRange(it, targetStream, offset, length) }
+
+    private fun copyRange(input: InputStream, target: OutputStream, offset: Long, length: Long) {
+        var skipped = 0L
+        while (skipped < offset) {
+            val count = input.skip(offset - skipped)
+            if (count <= 0) {
+                if (input.read() == -1) {
+                    return
+                }
+                skipped++
+            } else {
+                skipped += count
+            }
+        }
+        val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+        var remaining = length
+        while (remaining > 0) {
+            val read = input.read(buffer, 0, Math.min(buffer.size.toLong(), remaining).toInt())
+            if (read == -1) {
+                return
+            }
+            target.write(buffer, 0, read)
+            remaining -= read
+        }
+    }
+
+    private fun download(path: BoxPath.File, copy: (InputStream) -> Unit): Pair<FileOperationState, Observable<FileOperationState>> {
         val operation = FileOperationState(keyAndPrefix, path.name, path.parent)
         return Pair(operation, observable<FileOperationState> { subscriber ->
             try {
@@ -82,9 +236,7 @@ class BoxOperationFileBrowser @Inject constructor(keyAndPrefix: BoxReadFileBrows
                             subscriber.onNext(operation)
                         }
 
-                    }).use {
-                        it.copyTo(targetStream)
-                    }
+                    }).use(copy)
                 }
                 operation.status = FileOperationState.Status.COMPLETE
                 subscriber.onCompleted()
@@ -103,10 +255,17 @@ class BoxOperationFileBrowser @Inject constructor(keyAndPrefix: BoxReadFileBrows
             val nav = volumeNavigator.navigateTo(path.parent)
             when (path) {
                 is BoxPath.Folder -> nav.getFolder(path.name).let { nav.delete(it) }
-                is BoxPath.File -> nav.getFile(path.name).let { nav.delete(it) }
+                is BoxPath.File -> nav.getFile(path.name).let {
+                    nav.delete(it)
+                    deduplicator?.replaced(keyAndPrefix.prefix, it)
+                }
             }
+            unindex(path)
+            forget(path)
             subscriber.onNext(Unit)
         } catch (e: QblStorageNotFound) {
+            unindex(path)
+            forget(path)
         } catch (e: QblStorageException) {
             subscriber.onError(e)
             return@observable
@@ -128,8 +287,14 @@ class BoxOperationFileBrowser @Inject constructor(keyAndPrefix: BoxReadFileBrows
 
     private fun recursiveCreateFolder(path: BoxPath.FolderLike): BoxNavigation =
             volumeNavigator.navigateTo(path) { p, nav ->
-                nav.listFolders().find { it.name == p.name } ?: nav.createFolder(p.name)
+                val created = nav.listFolders().none { it.name == p.name }
+                if (created) {
+                    nav.createFolder(p.name)
+                }
                 nav.commitIfChanged()
+                if (created) {
+                    index(p.parent, nav)
+                }
             }
 
 }
@@ -11,6 +11,7 @@ import de.qabel.core.repository.exception.EntityNotFoundException
 import de.qabel.qabelbox.box.BoxScheduler
 import de.qabel.qabelbox.box.dto.BrowserEntry
 import de.qabel.qabelbox.box.provider.DocumentId
+import de.qabel.qabelbox.box.repository.FileSearchRepository
 import de.qabel.qabelbox.box.toEntry
 import rx.Observable
 import rx.lang.kotlin.observable
@@ -21,7 +22,8 @@ import javax.inject.Inject
 open class BoxReadFileBrowser @Inject constructor(protected val keyAndPrefix: KeyAndPrefix,
                                                   val volumeNavigator: VolumeNavigator,
                                                   private val contactRepo: ContactRepository,
-                                                  protected val scheduler: BoxScheduler
+                                                  protected val scheduler: BoxScheduler,
+                                                  private val searchIndex: FileSearchRepository? = null
 ) : ReadFileBrowser, QabelLog {
 
     data class KeyAndPrefix(val publicKey: String, val prefix: String) {
@@ -67,10 +69,23 @@ open class BoxReadFileBrowser @Inject constructor(protected val keyAndPrefix: Ke
     }
 
     override fun list(path: BoxPath.FolderLike): Observable<List<BrowserEntry>> =
+            list { volumeNavigator.navigateTo(path).apply { refresh() } }.doOnNext { index(path, it) }
+
+    /**
+     * Lists the last indexed snapshot of the folder without touching the navigation, so it
+     * neither waits for traversals nor loads metadata. Shares are not part of the snapshot.
+     */
+    override fun listCached(path: BoxPath.FolderLike): Observable<List<BrowserEntry>> =
+            observable<List<BrowserEntry>> { subscriber ->
+                subscriber.onNext(searchIndex?.list(keyAndPrefix, path) ?: emptyList())
+                subscriber.onCompleted()
+            }.subscribeOn(scheduler.rxScheduler)
+
+    private fun list(navigate: () -> BoxNavigation): Observable<List<BrowserEntry>> =
             observable<List<BrowserEntry>> {
                 subscriber ->
                 val nav = try {
-                    volumeNavigator.navigateTo(path).apply { refresh() }
+                    navigate()
                 } catch (e: QblStorageException) {
                     subscriber.onError(e)
                     return@observable
@@ -79,4 +94,36 @@ open class BoxReadFileBrowser @Inject constructor(protected val keyAndPrefix: Ke
                 subscriber.onNext(entries.map { toEntry(it, nav) }.filterNotNull())
             }.subscribeOn(scheduler.rxScheduler)
 
+    override fun search(query: String): Observable<List<FileSearchRepository.Match>> =
+            observable<List<FileSearchRepository.Match>> { subscriber ->
+                subscriber.onNext(searchIndex?.search(keyAndPrefix, query) ?: emptyList())
+                subscriber.onCompleted()
+            }.subscribeOn(scheduler.rxScheduler)
+
+    /**
+     * Updates the search index with the current listing of [nav] at [path].
+     */
+    protected fun index(path: BoxPath.FolderLike, nav: BoxNavigation) {
+        if (searchIndex != null) {
+            index(path, (nav.listFolders() + nav.listFiles()).map { it.toEntry() }.filterNotNull())
+        }
+    }
+
+    private fun index(path: BoxPath.FolderLike, entries: List<BrowserEntry>) {
+        try {
+            searchIndex?.update(keyAndPrefix, path, entries)
+        } catch (e: Throwable) {
+            // a stale index must not break browsing
+            warn("Indexing $path failed: ${e.message}")
+        }
+    }
+
+    protected fun unindex(path: BoxPath) {
+        try {
+            searchIndex?.delete(keyAndPrefix, path)
+        } catch (e: Throwable) {
+            warn("Removing $path from the index failed: ${e.message}")
+        }
+    }
+
 }
@@ -6,6 +6,11 @@ import de.qabel.qabelbox.box.provider.DocumentId
 interface BoxServiceStarter {
 
     fun startUpload(documentId: DocumentId, source: Uri)
+
+    /**
+     * Uploads all files with one metadata commit per target folder.
+     */
+    fun startUploads(uploads: List<Pair<DocumentId, Uri>>)
     fun startDownload(documentId: DocumentId, target: Uri)
     fun startCreateFolder(documentId: DocumentId)
     fun startDelete(documentId: DocumentId)
@@ -8,6 +8,15 @@ import de.qabel.box.storage.dto.BoxPath
 import java.io.FileNotFoundException
 import javax.inject.Inject
 
+/**
+ * Navigator of one volume, shared by the provider, the box service and the UI through the
+ * [VolumeNavigatorRegistry].
+ *
+ * Each navigation on the way is refreshed and asked for its children under its own monitor, so
+ * one folder is never refreshed twice at the same time while traversals of other folders do not
+ * wait for it. The lock does not cover the returned navigation, operations on it are not
+ * serialized by the navigator.
+ */
 class BoxVolumeNavigator @Inject constructor(
         keyAndPrefix: BoxReadFileBrowser.KeyAndPrefix,
         private val volume: BoxVolume): VolumeNavigator {
@@ -16,7 +25,7 @@ class BoxVolumeNavigator @Inject constructor(
     override val prefix = keyAndPrefix.prefix
 
 
-    override val root: BoxNavigation by lazy {
+    override val root: BoxNavigation by lazy(LazyThreadSafetyMode.SYNCHRONIZED) {
         try {
             volume.navigate()
         } catch (e: QblStorageNotFound) {
@@ -27,12 +36,12 @@ class BoxVolumeNavigator @Inject constructor(
 
     override fun navigateTo(path: BoxPath, action: (BoxPath, BoxNavigation) -> Unit): BoxNavigation =
         if (path is BoxPath.Root || path.name == "") {
-            root.apply { refresh() }
+            root.apply { refresh(this) }
         } else {
             val parent = navigateTo(path.parent, action)
-            if (parent !== root) { parent.refresh() }
+            if (parent !== root) { refresh(parent) }
             action(path, parent)
-            parent.navigate(path.name)
+            synchronized(parent) { parent.navigate(path.name) }
         }
 
     override fun queryObjectAndNav(path: BoxPath): Pair<BoxObject, BoxNavigation> {
@@ -44,4 +53,6 @@ class BoxVolumeNavigator @Inject constructor(
         }
     }
 
+    private fun refresh(navigation: BoxNavigation) = synchronized(navigation) { navigation.refresh() }
+
 }
@@ -9,16 +9,21 @@ import de.qabel.qabelbox.box.provider.ShareId
 import rx.Observable
 import rx.Single
 import java.io.File
+import java.io.OutputStream
 
 interface DocumentIdAdapter : DocumentIdInteractor {
     fun availableRoots(): List<VolumeRoot>
     fun queryChildDocuments(documentId: DocumentId): Observable<List<ProviderEntry>>
+    fun queryCachedChildDocuments(documentId: DocumentId): Observable<List<ProviderEntry>>
+    fun searchDocuments(rootId: DocumentId, query: String): Observable<List<ProviderEntry>>
 
     fun query(documentId: DocumentId): Observable<BrowserEntry>
     fun download(shareId : ShareId, target : File) : Single<Unit>
     fun refreshShare(shareId: ShareId) : Single<Unit>
 
     fun downloadFile(documentId: DocumentId, targetFile : File): Pair<FileOperationState, Observable<FileOperationState>>
+    fun downloadFile(documentId: DocumentId, targetFile: File, offset: Long, length: Long): Pair<FileOperationState, Observable<FileOperationState>>
+    fun streamFile(documentId: DocumentId, targetStream: OutputStream): Pair<FileOperationState, Observable<FileOperationState>>
     fun uploadFile(sourceFile: File, targetDocumentId: DocumentId): Pair<FileOperationState, Observable<FileOperationState>>
 }
 
@@ -8,6 +8,7 @@ import rx.Observable
 interface DocumentIdInteractor {
 
     fun uploadFile(sourceUri: Uri, targetDocumentId: DocumentId): Pair<FileOperationState, Observable<FileOperationState>>
+    fun uploadFiles(uploads: List<Pair<Uri, DocumentId>>): Pair<List<FileOperationState>, Observable<FileOperationState>>
     fun downloadFile(documentId: DocumentId, targetUri: Uri): Pair<FileOperationState, Observable<FileOperationState>>
 
     fun deletePath(documentId: DocumentId): Observable<Unit>
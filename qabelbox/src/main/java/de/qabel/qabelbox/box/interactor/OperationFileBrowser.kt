@@ -10,8 +10,20 @@ import java.io.OutputStream
 interface OperationFileBrowser : ReadFileBrowser {
 
     fun upload(path: BoxPath.File, source: UploadSource): Pair<FileOperationState, Observable<FileOperationState>>
+
+    /**
+     * Uploads all files and commits the directory metadata of each target folder once.
+     * The sources are read one after another and closed when the batch terminates.
+     */
+    fun uploadAll(files: List<Pair<BoxPath.File, UploadSource>>): Pair<List<FileOperationState>, Observable<FileOperationState>>
     fun download(path: BoxPath.File, targetStream: OutputStream): Pair<FileOperationState, Observable<FileOperationState>>
 
+    /**
+     * Downloads [length] bytes of the file from the [offset] on and stops the transfer after the range.
+     */
+    fun download(path: BoxPath.File, targetStream: OutputStream,
+                 offset: Long, length: Long): Pair<FileOperationState, Observable<FileOperationState>>
+
     fun createFolder(path: BoxPath.FolderLike): Observable<Unit>
     fun delete(path: BoxPath): Observable<Unit>
 
@@ -6,12 +6,19 @@ import de.qabel.qabelbox.box.dto.DownloadSource
 import de.qabel.qabelbox.box.dto.FileOperationState
 import de.qabel.qabelbox.box.dto.UploadSource
 import de.qabel.qabelbox.box.provider.DocumentId
+import de.qabel.qabelbox.box.repository.FileSearchRepository
 import rx.Observable
 import java.io.File
 
 interface ReadFileBrowser {
     fun list(path: BoxPath.FolderLike): Observable<List<BrowserEntry>>
+    fun listCached(path: BoxPath.FolderLike): Observable<List<BrowserEntry>>
     fun query(path: BoxPath): Observable<BrowserEntry>
     fun asDocumentId(path: BoxPath): Observable<DocumentId>
+
+    /**
+     * Searches the local index of this volume, only folders that have been listed before are found.
+     */
+    fun search(query: String): Observable<List<FileSearchRepository.Match>>
 }
 
@@ -0,0 +1,60 @@
+package de.qabel.qabelbox.box.interactor
+
+import de.qabel.core.logging.QabelLog
+import java.util.*
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Keeps the live [VolumeNavigator]s of the most recently used volumes, keyed by identity key and prefix.
+ *
+ * Building a volume derives the root ref and sets up the storage backend and metadata factories,
+ * so repeated operations on the same volume reuse the existing navigator.
+ * Entries have to be invalidated when identities or prefixes change.
+ */
+class VolumeNavigatorRegistry(private val maxSize: Int = DEFAULT_MAX_SIZE) : QabelLog {
+
+    private val navigators = object : LinkedHashMap<BoxReadFileBrowser.KeyAndPrefix, VolumeNavigator>(
+            maxSize, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<BoxReadFileBrowser.KeyAndPrefix, VolumeNavigator>?) =
+                size > maxSize
+    }
+
+    private val hitCount = AtomicLong()
+    private val missCount = AtomicLong()
+
+    val hits: Long
+        get() = hitCount.get()
+
+    val misses: Long
+        get() = missCount.get()
+
+    val size: Int
+        @Synchronized get() = navigators.size
+
+    @Synchronized
+    fun get(keyAndPrefix: BoxReadFileBrowser.KeyAndPrefix,
+            create: (BoxReadFileBrowser.KeyAndPrefix) -> VolumeNavigator): VolumeNavigator {
+        navigators[keyAndPrefix]?.let {
+            hitCount.incrementAndGet()
+            return it
+        }
+        missCount.incrementAndGet()
+        return create(keyAndPrefix).apply { navigators.put(keyAndPrefix, this) }
+    }
+
+    @Synchronized
+    fun invalidate(identityKey: String) {
+        navigators.keys.removeAll { it.publicKey == identityKey }
+    }
+
+    @Synchronized
+    fun invalidateAll() {
+        debug("Invalidating ${navigators.size} volume navigators (hits: $hits, misses: $misses)")
+        navigators.clear()
+    }
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 8
+    }
+
+}
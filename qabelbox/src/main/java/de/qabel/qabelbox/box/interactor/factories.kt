@@ -10,10 +10,14 @@ import de.qabel.box.storage.jdbc.JdbcFileMetadataFactory
 import de.qabel.core.repositories.AndroidVersionAdapter
 import de.qabel.core.repository.ContactRepository
 import de.qabel.core.repository.IdentityRepository
+import de.qabel.qabelbox.box.BlockDeduplicator
 import de.qabel.qabelbox.box.BoxScheduler
 import de.qabel.qabelbox.box.backends.BoxHttpStorageBackend
 import de.qabel.qabelbox.box.dto.VolumeRoot
 import de.qabel.qabelbox.box.provider.toDocumentId
+import de.qabel.qabelbox.box.repository.FileSearchRepository
+import de.qabel.qabelbox.box.repository.PartialDownloadRepository
+import de.qabel.qabelbox.box.repository.RecentDocumentRepository
 import de.qabel.qabelbox.storage.server.BlockServer
 import java.io.File
 import java.sql.Connection
@@ -23,22 +27,21 @@ object JdbcPrefix {
     var jdbcPrefix = "jdbc:sqldroid:"
 }
 
-private fun keysAndVolume(volumeRoot: VolumeRoot,
-                          identityRepository: IdentityRepository,
-                          deviceId: ByteArray,
-                          tempDir: File,
-                          androidBlockServer: BlockServer): Pair<BoxReadFileBrowser.KeyAndPrefix, VolumeNavigator> {
-    val docId = volumeRoot.documentID.toDocumentId()
-    val key = docId.identityKey
-    val identity = identityRepository.find(key)
-    val backend = BoxHttpStorageBackend(androidBlockServer, docId.prefix)
+private fun createVolumeNavigator(keyAndPrefix: BoxReadFileBrowser.KeyAndPrefix,
+                                  identityRepository: IdentityRepository,
+                                  deviceId: ByteArray,
+                                  tempDir: File,
+                                  androidBlockServer: BlockServer,
+                                  partialDownloads: PartialDownloadRepository?): VolumeNavigator {
+    val identity = identityRepository.find(keyAndPrefix.publicKey)
+    val backend = BoxHttpStorageBackend(androidBlockServer, keyAndPrefix.prefix, streaming = true,
+            partialDownloads = partialDownloads)
     val dataBaseFactory: (Connection) -> DirectoryMetadataDatabase = { connection ->
         DirectoryMetadataDatabase(connection, AndroidVersionAdapter(connection))
     }
     //TODO PrefixChooser
-    val prefix = identity.prefixes.find { it.prefix == docId.prefix } ?: throw QblStorageException("Prefix not found!")
+    val prefix = identity.prefixes.find { it.prefix == keyAndPrefix.prefix } ?: throw QblStorageException("Prefix not found!")
     val prefixKey = prefix.prefix
-    val keyAndPrefix = BoxReadFileBrowser.KeyAndPrefix(identity.keyIdentifier, prefixKey)
 
     val rootRef = RootRefCalculator().rootFor(
             identity.primaryKeyPair.privateKey,
@@ -60,7 +63,22 @@ private fun keysAndVolume(volumeRoot: VolumeRoot,
                 JdbcFileMetadataFactory(tempDir, ::AndroidVersionAdapter, JdbcPrefix.jdbcPrefix)
             }),
             identity.primaryKeyPair)
-    return Pair(keyAndPrefix, BoxVolumeNavigator(keyAndPrefix, volume))
+    return BoxVolumeNavigator(keyAndPrefix, volume)
+}
+
+private fun keysAndVolume(volumeRoot: VolumeRoot,
+                          identityRepository: IdentityRepository,
+                          deviceId: ByteArray,
+                          tempDir: File,
+                          androidBlockServer: BlockServer,
+                          registry: VolumeNavigatorRegistry,
+                          partialDownloads: PartialDownloadRepository?): Pair<BoxReadFileBrowser.KeyAndPrefix, VolumeNavigator> {
+    val docId = volumeRoot.documentID.toDocumentId()
+    val keyAndPrefix = BoxReadFileBrowser.KeyAndPrefix(docId.identityKey, docId.prefix)
+    val volumeNavigator = registry.get(keyAndPrefix) {
+        createVolumeNavigator(it, identityRepository, deviceId, tempDir, androidBlockServer, partialDownloads)
+    }
+    return Pair(keyAndPrefix, volumeNavigator)
 }
 
 
@@ -68,17 +86,22 @@ fun makeFileBrowserFactory(identityRepository: IdentityRepository,
                            contactRepository: ContactRepository,
                            deviceId: ByteArray,
                            tempDir: File,
-                           androidBlockServer: BlockServer, scheduler: BoxScheduler):
+                           androidBlockServer: BlockServer, scheduler: BoxScheduler,
+                           registry: VolumeNavigatorRegistry,
+                           deduplicator: BlockDeduplicator? = null,
+                           searchIndex: FileSearchRepository? = null,
+                           recents: RecentDocumentRepository? = null,
+                           partialDownloads: PartialDownloadRepository? = null):
         Pair<(VolumeRoot) -> ReadFileBrowser, (VolumeRoot) -> OperationFileBrowser> {
 
     return Pair(
             fun(volumeRoot: VolumeRoot): ReadFileBrowser {
-                val (keyAndPrefix, volumeNavigator) = keysAndVolume(volumeRoot, identityRepository, deviceId, tempDir, androidBlockServer)
-                return BoxReadFileBrowser(keyAndPrefix, volumeNavigator, contactRepository, scheduler)
+                val (keyAndPrefix, volumeNavigator) = keysAndVolume(volumeRoot, identityRepository, deviceId, tempDir, androidBlockServer, registry, partialDownloads)
+                return BoxReadFileBrowser(keyAndPrefix, volumeNavigator, contactRepository, scheduler, searchIndex)
             },
             fun(volumeRoot: VolumeRoot): OperationFileBrowser {
-                val (keyAndPrefix, volumeNavigator) = keysAndVolume(volumeRoot, identityRepository, deviceId, tempDir, androidBlockServer)
-                return BoxOperationFileBrowser(keyAndPrefix, volumeNavigator, contactRepository, scheduler)
+                val (keyAndPrefix, volumeNavigator) = keysAndVolume(volumeRoot, identityRepository, deviceId, tempDir, androidBlockServer, registry, partialDownloads)
+                return BoxOperationFileBrowser(keyAndPrefix, volumeNavigator, contactRepository, scheduler, deduplicator, searchIndex, recents)
             })
 }
 
@@ -2,6 +2,7 @@ package de.qabel.qabelbox.box.notifications
 
 import de.qabel.qabelbox.box.dto.FileOperationState
 import de.qabel.qabelbox.box.dto.FileOperationState.Status
+import de.qabel.qabelbox.box.provider.DocumentId
 import javax.inject.Inject
 
 class AndroidStorageNotificationManager
@@ -33,6 +34,6 @@ class AndroidStorageNotificationManager
 
     private fun FileOperationState.toNotificationInfo(): StorageNotificationInfo =
             StorageNotificationInfo(entryName, path.toString(), ownerKey.publicKey,
-                    time, done, size)
+                    time, done, size, DocumentId(ownerKey.publicKey, ownerKey.prefix, path * entryName).toString())
 
 }
@@ -34,6 +34,18 @@ class AndroidStorageNotificationPresenter(context: Context) :
                 putExtra(MainActivity.START_FILES_FRAGMENT_PATH, info.path)
             }
 
+    fun createCancelIntent(documentId: String): Intent =
+            Intent(AndroidBoxService.Actions.CANCEL, null, context, AndroidBoxService::class.java).apply {
+                putExtra(AndroidBoxService.KEY_DOC_ID, documentId)
+            }
+
+    private fun NotificationCompat.Builder.addCancelAction(info: StorageNotificationInfo) {
+        val documentId = info.documentId ?: return
+        addAction(R.drawable.close, getString(R.string.cancel),
+                PendingIntent.getService(context, getIdForInfo(info), createCancelIntent(documentId),
+                        PendingIntent.FLAG_UPDATE_CURRENT))
+    }
+
     private fun showNotification(info: StorageNotificationInfo, builder: NotificationCompat.Builder,
                                  autoCancel: Boolean = false) {
         builder.setWhen(info.time)
@@ -55,11 +67,11 @@ class AndroidStorageNotificationPresenter(context: Context) :
     }
 
     override fun showUploadProgressNotification(info: StorageNotificationInfo) {
-        //TODO Cancel action
         createNotification(createFileBrowserIntent(info),
                 getString(R.string.uploading, info.fileName), UPLOAD_ICON,
                 formatProgress(info)).let {
             it.setProgress(100, info.progress, false)
+            it.addCancelAction(info)
             showNotification(info, it, false)
         }
     }
@@ -84,11 +96,11 @@ class AndroidStorageNotificationPresenter(context: Context) :
     }
 
     override fun showDownloadProgressNotification(info: StorageNotificationInfo) {
-        //TODO Cancel action
         createNotification(createFileBrowserIntent(info),
                 getString(R.string.downloading, info.fileName), DOWNLOAD_ICON,
                 formatProgress(info)).let {
             it.setProgress(100, info.progress, false)
+            it.addCancelAction(info)
             showNotification(info, it, false)
         }
     }
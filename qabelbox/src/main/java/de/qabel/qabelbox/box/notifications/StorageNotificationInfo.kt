@@ -7,7 +7,8 @@ data class StorageNotificationInfo(val fileName: String,
                               val identityKeyId: String,
                               val time: Long,
                               var doneBytes: Long = 0,
-                              var totalBytes: Long = 1) : QblNotificationInfo {
+                              var totalBytes: Long = 1,
+                              val documentId: String? = null) : QblNotificationInfo {
 
     override fun getIdentifier(): String {
         return identityKeyId + path + fileName
@@ -25,7 +25,19 @@ interface FileBrowserPresenter: NavigatingPresenter {
 
     fun upload(file: BrowserEntry.File, uri: Uri)
 
+    /**
+     * Uploads several files into the current folder as one batch.
+     */
+    fun uploadAll(files: List<Pair<BrowserEntry.File, Uri>>)
+
     fun startExport(exportId: DocumentId, uri: Uri)
 
+    /**
+     * Shows the entries of the volume matching [query] instead of the current folder until the search is closed.
+     */
+    fun search(query: String)
+
+    fun closeSearch()
+
 }
 
@@ -1,6 +1,7 @@
 package de.qabel.qabelbox.box.presenters
 
 import android.net.Uri
+import de.qabel.box.storage.dto.BoxPath
 import de.qabel.core.config.Contact
 import de.qabel.core.config.Identity
 import de.qabel.qabelbox.box.dto.BrowserEntry
@@ -10,8 +11,10 @@ import de.qabel.qabelbox.box.interactor.BoxServiceStarter
 import de.qabel.qabelbox.box.interactor.ReadFileBrowser
 import de.qabel.qabelbox.box.interactor.Sharer
 import de.qabel.qabelbox.box.provider.DocumentId
+import de.qabel.qabelbox.box.repository.FileSearchRepository
 import de.qabel.qabelbox.box.views.FileBrowserView
 import de.qabel.qabelbox.navigation.Navigator
+import rx.Observable
 import javax.inject.Inject
 
 class MainFileBrowserPresenter @Inject constructor(
@@ -21,9 +24,58 @@ class MainFileBrowserPresenter @Inject constructor(
         private val identity: Identity,
         private val navigator: Navigator,
         private val boxServiceStarter: BoxServiceStarter,
-        navigatingPresenter: NavigatingPresenter = MainNavigatingPresenter(view, useCase)) :
+        private val navigatingPresenter: NavigatingPresenter = MainNavigatingPresenter(view, useCase)) :
         FileBrowserPresenter, NavigatingPresenter by navigatingPresenter {
 
+    @Volatile
+    private var searchQuery: String? = null
+    @Volatile
+    private var searchResults: List<FileSearchRepository.Match> = emptyList()
+
+    override fun onRefresh() {
+        val query = searchQuery
+        if (query != null) {
+            search(query)
+        } else {
+            navigatingPresenter.onRefresh()
+        }
+    }
+
+    override fun navigateUp(): Boolean {
+        if (searchQuery != null) {
+            closeSearch()
+            view.searchClosed()
+            return true
+        }
+        return navigatingPresenter.navigateUp()
+    }
+
+    override fun search(query: String) {
+        if (query.isBlank()) {
+            closeSearch()
+            return
+        }
+        searchQuery = query
+        useCase.search(query).subscribe({ matches ->
+            // drop results of queries that have been typed over
+            if (searchQuery == query) {
+                searchResults = matches
+                view.showEntries(matches.map { it.entry })
+            }
+        }, { view.showError(it) })
+    }
+
+    override fun closeSearch() {
+        if (searchQuery == null) {
+            return
+        }
+        searchQuery = null
+        searchResults = emptyList()
+        navigatingPresenter.onRefresh()
+    }
+
+    private fun searchMatch(entry: BrowserEntry) = searchResults.find { it.entry === entry }
+
     override fun share(file: File) {
         withDocumentId(file) {
             view.share(it)
@@ -36,6 +88,15 @@ class MainFileBrowserPresenter @Inject constructor(
         }
     }
 
+    override fun uploadAll(files: List<Pair<File, Uri>>) {
+        val folder = path
+        Observable.from(files).concatMap { upload ->
+            useCase.asDocumentId(folder * upload.first.name).map { Pair(it, upload.second) }
+        }.toList().subscribe({
+            boxServiceStarter.startUploads(it)
+        }, { view.showError(it) })
+    }
+
     override fun delete(file: File) = deleteEntry(file)
 
     private fun deleteEntry(entry: BrowserEntry) {
@@ -46,7 +107,7 @@ class MainFileBrowserPresenter @Inject constructor(
 
 
     private fun withDocumentId(entry: BrowserEntry, callback: (DocumentId) -> Unit) {
-        val target = if (entry is File) path * entry.name else path / entry.name
+        val target = searchMatch(entry)?.path ?: if (entry is File) path * entry.name else path / entry.name
         useCase.asDocumentId(target).subscribe {
             callback(it)
         }
@@ -73,7 +134,15 @@ class MainFileBrowserPresenter @Inject constructor(
     override fun onClick(entry: BrowserEntry) {
         when (entry) {
             is Folder -> {
-                path /= entry.name
+                val match = searchMatch(entry)
+                if (match != null) {
+                    searchQuery = null
+                    searchResults = emptyList()
+                    path = match.path as BoxPath.FolderLike
+                    view.searchClosed()
+                } else {
+                    path /= entry.name
+                }
                 onRefresh()
             }
             is File -> {
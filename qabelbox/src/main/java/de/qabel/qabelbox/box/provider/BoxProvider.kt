@@ -4,8 +4,11 @@ import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
 import android.content.IntentFilter
+import android.content.res.AssetFileDescriptor
 import android.database.Cursor
 import android.database.MatrixCursor
+import android.graphics.Point
+import android.os.Bundle
 import android.os.CancellationSignal
 import android.os.Handler
 import android.os.ParcelFileDescriptor
@@ -21,19 +24,26 @@ import de.qabel.core.event.EventSink
 import de.qabel.qabelbox.BuildConfig
 import de.qabel.qabelbox.QblBroadcastConstants
 import de.qabel.qabelbox.R
+import de.qabel.qabelbox.box.RecentDocuments
+import de.qabel.qabelbox.box.ThumbnailCache
 import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.box.dto.FileOperationState
 import de.qabel.qabelbox.box.events.FileDownloadEvent
 import de.qabel.qabelbox.box.events.FileUploadEvent
+import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser.KeyAndPrefix
 import de.qabel.qabelbox.box.interactor.DocumentIdAdapter
 import de.qabel.qabelbox.box.notifications.StorageNotificationManager
 import de.qabel.qabelbox.dagger.components.DaggerBoxComponent
 import de.qabel.qabelbox.dagger.modules.ContextModule
 import de.qabel.qabelbox.reporter.CrashReporter
 import org.jetbrains.anko.*
+import rx.Observable
 import rx.lang.kotlin.firstOrNull
 import java.io.File
 import java.io.FileNotFoundException
+import java.io.IOException
 import java.net.URLConnection
+import java.util.*
 import java.util.concurrent.TimeUnit
 import javax.inject.Inject
 
@@ -51,8 +61,16 @@ open class BoxProvider : DocumentsProvider(), AnkoLogger {
     @Inject
     lateinit var crashReporter: CrashReporter
 
+    @Inject
+    lateinit var thumbnailCache: ThumbnailCache
+
+    @Inject
+    lateinit var recentDocuments: RecentDocuments
+
     open val handler by lazy { Handler(context.mainLooper) }
 
+    private val childDocuments by lazy { ChildDocumentsLoader(useCase, { notifyChildDocumentsChanged(it) }) }
+
     private val volumesChangedBroadcastReceiver = object : BroadcastReceiver() {
         override fun onReceive(context: Context, intent: Intent) {
             notifyRootsUpdated()
@@ -83,6 +101,13 @@ open class BoxProvider : DocumentsProvider(), AnkoLogger {
                 BuildConfig.APPLICATION_ID + AUTHORITY), null)
     }
 
+    private fun childDocumentsUri(parentDocumentId: String) =
+            DocumentsContract.buildChildDocumentsUri(BuildConfig.APPLICATION_ID + AUTHORITY, parentDocumentId)
+
+    private fun notifyChildDocumentsChanged(parentDocumentId: DocumentId) {
+        context.contentResolver.notifyChange(childDocumentsUri(parentDocumentId.toString()), null)
+    }
+
     @Throws(FileNotFoundException::class)
     override fun queryRoots(projection: Array<String>?): Cursor {
         val netProjection = reduceProjection(projection, DEFAULT_ROOT_PROJECTION)
@@ -92,7 +117,7 @@ open class BoxProvider : DocumentsProvider(), AnkoLogger {
                 add(Root.COLUMN_ROOT_ID, it.rootID)
                 add(Root.COLUMN_DOCUMENT_ID, it.documentID)
                 add(Root.COLUMN_ICON, R.drawable.qabel_logo)
-                add(Root.COLUMN_FLAGS, Root.FLAG_SUPPORTS_CREATE)
+                add(Root.COLUMN_FLAGS, Root.FLAG_SUPPORTS_CREATE or Root.FLAG_SUPPORTS_SEARCH or Root.FLAG_SUPPORTS_RECENTS)
                 add(Root.COLUMN_TITLE, "Qabel")
                 add(Root.COLUMN_SUMMARY, it.alias)
             }
@@ -138,10 +163,30 @@ open class BoxProvider : DocumentsProvider(), AnkoLogger {
             throw FileNotFoundException("Document not found")
         }
         info("Retrieve file listing for $parentDocumentId - $id")
-        val listing = useCase.queryChildDocuments(id).toBlocking().firstOrNull() ?: emptyList()
-        info("File listing for $parentDocumentId: $listing")
+        val listing = childDocuments.load(id)
+        info("File listing for $parentDocumentId (loading: ${listing.loading}): ${listing.entries}")
+        return createCursor(projection ?: DEFAULT_DOCUMENT_PROJECTION, listing.loading).apply {
+            error = listing.error
+            setNotificationUri(context.contentResolver, childDocumentsUri(parentDocumentId))
+            listing.entries.map {
+                when (it.entry) {
+                    is BrowserEntry.File -> insertFile(this, it.documentId, it.entry)
+                    is BrowserEntry.Folder -> insertFolder(this, it.documentId, it.entry)
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers from the local search index of the volume, folders that were never listed are not searched.
+     */
+    @Throws(FileNotFoundException::class)
+    override fun querySearchDocuments(rootId: String, query: String, projection: Array<String>?): Cursor {
+        val id = rootDocumentId(rootId)
+        info("Search $rootId for $query")
+        val matches = useCase.searchDocuments(id, query).toBlocking().firstOrDefault(emptyList())
         return createCursor(projection ?: DEFAULT_DOCUMENT_PROJECTION, false).apply {
-            listing.map {
+            matches.forEach {
                 when (it.entry) {
                     is BrowserEntry.File -> insertFile(this, it.documentId, it.entry)
                     is BrowserEntry.Folder -> insertFolder(this, it.documentId, it.entry)
@@ -150,6 +195,33 @@ open class BoxProvider : DocumentsProvider(), AnkoLogger {
         }
     }
 
+    /**
+     * Lists the recently opened and uploaded documents of the volume, most recent first.
+     */
+    @Throws(FileNotFoundException::class)
+    override fun queryRecentDocuments(rootId: String, projection: Array<String>?): Cursor {
+        val id = rootDocumentId(rootId)
+        val recent = recentDocuments.recent(KeyAndPrefix(id.identityKey, id.prefix))
+        return createCursor(projection ?: DEFAULT_DOCUMENT_PROJECTION, false).apply {
+            recent.forEach {
+                insertFile(this, it.documentId,
+                        BrowserEntry.File(it.documentId.path.name, it.size, Date(it.mtime), it.block))
+            }
+        }
+    }
+
+    @Throws(FileNotFoundException::class)
+    private fun rootDocumentId(rootId: String): DocumentId {
+        val root = useCase.availableRoots().find { it.rootID == rootId }
+                ?: throw FileNotFoundException("Root not found: $rootId")
+        return try {
+            root.documentID.toDocumentId()
+        } catch (e: QblStorageException) {
+            warn("Root $rootId not found")
+            throw FileNotFoundException("Root not found")
+        }
+    }
+
     private fun createCursor(projection: Array<String>, extraLoading: Boolean): BoxCursor {
         val reduced = reduceProjection(projection, DEFAULT_DOCUMENT_PROJECTION)
         return BoxCursor(reduced).apply {
@@ -160,13 +232,20 @@ open class BoxProvider : DocumentsProvider(), AnkoLogger {
     private fun insertFile(cursor: MatrixCursor, documentId: DocumentId, file: BrowserEntry.File) {
         info("Inserting file into cursor: $documentId - $file")
         val mimeType = URLConnection.guessContentTypeFromName(file.name) ?: "application/octet-stream"
+        // only offer thumbnails that do not need a download of the whole file
+        val hasThumbnail = ThumbnailCache.key(file)?.let { thumbnailCache.contains(it) } ?: false
         with(cursor.newRow()) {
             add(Document.COLUMN_DOCUMENT_ID, documentId.toString())
             add(Document.COLUMN_DISPLAY_NAME, file.name)
             add(Document.COLUMN_SUMMARY, null)
-            add(Document.COLUMN_FLAGS, Document.FLAG_SUPPORTS_WRITE)
+            add(Document.COLUMN_FLAGS, if (hasThumbnail) {
+                Document.FLAG_SUPPORTS_WRITE or Document.FLAG_SUPPORTS_THUMBNAIL
+            } else {
+                Document.FLAG_SUPPORTS_WRITE
+            })
             add(Document.COLUMN_MIME_TYPE, mimeType)
             add(Document.COLUMN_SIZE, file.size)
+            add(Document.COLUMN_LAST_MODIFIED, file.mTime.time)
             add(Media.DATA, documentId.toString())
         }
     }
@@ -192,6 +271,13 @@ open class BoxProvider : DocumentsProvider(), AnkoLogger {
             val isWrite = mode.indexOf('w') != -1
             val isRead = mode.indexOf('r') != -1
             val isShare = documentId.startsWith(ShareId.PREFIX)
+            if (isRead && !isWrite && !isShare) {
+                openRecent(documentId.toDocumentId())?.let { return it }
+            }
+            // a pipe cannot seek, other files are downloaded completely into a seekable file
+            if (isRead && !isWrite && !isShare && isSequential(documentId)) {
+                return openStream(documentId.toDocumentId(), signal)
+            }
             val file = createTmpFile()
             val parsedMode = ParcelFileDescriptor.parseMode(mode)
 
@@ -210,26 +296,16 @@ open class BoxProvider : DocumentsProvider(), AnkoLogger {
                     throw ex
                 }
                 debug("downloaded share ${file.absolutePath}")
+                thumbnailCache.putIfAbsent(ThumbnailCache.key(shareId), shareId.name, file)
             } else {
                 val id = documentId.toDocumentId()
                 if (isRead) {
                     try {
                         val (operation, observable) = useCase.downloadFile(id, file)
-                        observable.doOnCompleted {
-                            notificationManager.updateDownloadNotification(operation)
-                            context.runOnUiThread {
-                                longToast(ctx.getString(R.string.download_complete_msg, operation.entryName))
-                            }
-                            eventSink.push(FileDownloadEvent(operation))
-                        }.sample(150L, TimeUnit.MILLISECONDS)
-                                .doOnNext {
-                                    notificationManager.updateDownloadNotification(operation)
-                                    eventSink.push(FileDownloadEvent(it))
-                                }
-                                .doOnError {
-                                    error("Error downloading File ${id.path} to $file", it)
-                                    eventSink.push(FileDownloadEvent(operation))
-                                }.toBlocking().subscribe()
+                        notifyDownload(operation, observable).doOnError {
+                            error("Error downloading File ${id.path} to $file", it)
+                        }.toBlocking().subscribe()
+                        cacheDownload(id, file)
                     } catch (e: QblStorageException) {
                         throw FileNotFoundException("Download failed")
                     }
@@ -260,6 +336,9 @@ open class BoxProvider : DocumentsProvider(), AnkoLogger {
                                                 error("Error uploading File $file to ${id.path}", it)
                                                 eventSink.push(FileUploadEvent(operation))
                                             })
+                                    if (operation.status == FileOperationState.Status.COMPLETE) {
+                                        cacheUpload(id, file)
+                                    }
                                 } catch (e: QblStorageException) {
                                     throw FileNotFoundException("Upload failed")
                                 }
@@ -274,6 +353,180 @@ open class BoxProvider : DocumentsProvider(), AnkoLogger {
         }
     }
 
+    /**
+     * Opens a recently used document from the file cache without navigating the volume.
+     *
+     * The document is verified in the background, so a changed file is only served once.
+     */
+    private fun openRecent(id: DocumentId): ParcelFileDescriptor? {
+        val cached = try {
+            recentDocuments.cachedFile(id, childDocuments.find(id) as? BrowserEntry.File)
+        } catch (e: Throwable) {
+            warn("Recent document $id not available: ${e.message}")
+            null
+        }
+        val (recent, file) = cached ?: return null
+        info("Open $id from the file cache")
+        useCase.query(id).subscribe({ entry ->
+            if ((entry as? BrowserEntry.File)?.block != recent.block) {
+                recentDocuments.removed(id)
+            }
+        }, {
+            if (it is FileNotFoundException || it is QblStorageNotFound) {
+                recentDocuments.removed(id)
+            } else {
+                warn("Could not verify recent document $id: ${it.message}")
+            }
+        })
+        return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY)
+    }
+
+    /**
+     * Streams the decrypted file through a pipe, so the client can read the first bytes
+     * while the rest is still downloading and no copy is kept on the external storage.
+     * A copy of small files is spooled into the file cache for recent documents.
+     *
+     * The pipe cannot seek, it is only used for files that are read from front to back.
+     */
+    private fun openStream(id: DocumentId, signal: CancellationSignal?): ParcelFileDescriptor {
+        val (readSide, writeSide) = ParcelFileDescriptor.createReliablePipe()
+        val output = recentDocuments.spool(ParcelFileDescriptor.AutoCloseOutputStream(writeSide))
+        val (operation, observable) = useCase.streamFile(id, output)
+        val subscription = notifyDownload(operation, observable).subscribe({}, {
+            output.abandon()
+            // reported to the client as an error instead of a truncated file
+            warn("Streaming ${id.path} failed: ${it.message}")
+            try {
+                writeSide.closeWithError(it.message ?: "Download failed")
+            } catch (e: Exception) {
+                debug("Stream of ${id.path} already closed")
+            }
+        }, {
+            output.close()
+            rememberRecent(id, output.content)
+        })
+        signal?.setOnCancelListener {
+            subscription.unsubscribe()
+            output.abandon()
+            try {
+                output.close()
+            } catch (e: IOException) {
+                debug("Stream of ${id.path} already closed")
+            }
+        }
+        return readSide
+    }
+
+    private fun notifyDownload(operation: FileOperationState,
+                               observable: Observable<FileOperationState>): Observable<FileOperationState> =
+            observable.doOnCompleted {
+                notificationManager.updateDownloadNotification(operation)
+                context.runOnUiThread {
+                    longToast(ctx.getString(R.string.download_complete_msg, operation.entryName))
+                }
+                eventSink.push(FileDownloadEvent(operation))
+            }.sample(150L, TimeUnit.MILLISECONDS)
+                    .doOnNext {
+                        notificationManager.updateDownloadNotification(operation)
+                        eventSink.push(FileDownloadEvent(it))
+                    }
+                    .doOnError {
+                        eventSink.push(FileDownloadEvent(operation))
+                    }
+
+    /**
+     * Keeps a downloaded file as recent document and decodes its thumbnail if it is an image.
+     */
+    private fun cacheDownload(id: DocumentId, file: File) {
+        try {
+            val entry = findFile(id) ?: return
+            recentDocuments.opened(id, entry, file)
+            cacheThumbnail(entry, file)
+        } catch (e: Throwable) {
+            warn("Could not cache $id: ${e.message}")
+        }
+    }
+
+    /**
+     * Caches an uploaded file with the block the upload has remembered, the known listing
+     * still has the old block.
+     */
+    private fun cacheUpload(id: DocumentId, file: File) {
+        try {
+            val recent = recentDocuments.uploaded(id, file) ?: return
+            cacheThumbnail(BrowserEntry.File(id.path.name, recent.size, Date(recent.mtime), recent.block), file)
+        } catch (e: Throwable) {
+            warn("Could not cache $id: ${e.message}")
+        }
+    }
+
+    private fun cacheThumbnail(entry: BrowserEntry.File, file: File) {
+        if (ThumbnailCache.isImage(entry.name)) {
+            ThumbnailCache.key(entry)?.let { thumbnailCache.putIfAbsent(it, entry.name, file) }
+        }
+    }
+
+    private fun rememberRecent(id: DocumentId, content: File?) {
+        try {
+            val entry = findFile(id)
+            if (entry != null) {
+                recentDocuments.opened(id, entry, content)
+                return
+            }
+        } catch (e: Throwable) {
+            warn("Could not remember $id: ${e.message}")
+        }
+        content?.delete()
+    }
+
+    private fun findFile(id: DocumentId): BrowserEntry.File? =
+            (childDocuments.find(id) ?: useCase.query(id).toBlocking().firstOrNull()) as? BrowserEntry.File
+
+    /**
+     * Serves cached thumbnails only, they are created when an image is downloaded or uploaded.
+     */
+    @Throws(FileNotFoundException::class)
+    override fun openDocumentThumbnail(documentId: String, sizeHint: Point?,
+                                       signal: CancellationSignal?): AssetFileDescriptor {
+        val thumbnail = try {
+            val key = if (documentId.startsWith(ShareId.PREFIX)) {
+                ThumbnailCache.key(ShareId.parse(documentId))
+            } else {
+                findFile(documentId.toDocumentId())?.let { ThumbnailCache.key(it) }
+            }
+            key?.let { thumbnailCache.get(it) }
+        } catch (ex: Throwable) {
+            error("Error looking up thumbnail of $documentId", ex)
+            null
+        } ?: throw FileNotFoundException("No thumbnail of $documentId")
+        val descriptor = ParcelFileDescriptor.open(thumbnail, ParcelFileDescriptor.MODE_READ_ONLY)
+        return AssetFileDescriptor(descriptor, 0, AssetFileDescriptor.UNKNOWN_LENGTH)
+    }
+
+    /**
+     * Serves a byte range of a file if [EXTRA_RANGE_OFFSET] is set in the options,
+     * the download stops after [EXTRA_RANGE_LENGTH] bytes instead of fetching the whole block.
+     */
+    @Throws(FileNotFoundException::class)
+    override fun openTypedDocument(documentId: String, mimeTypeFilter: String, opts: Bundle?,
+                                   signal: CancellationSignal?): AssetFileDescriptor {
+        if (opts == null || !opts.containsKey(EXTRA_RANGE_OFFSET) || documentId.startsWith(ShareId.PREFIX)) {
+            return super.openTypedDocument(documentId, mimeTypeFilter, opts, signal)
+        }
+        val offset = opts.getLong(EXTRA_RANGE_OFFSET)
+        val length = opts.getLong(EXTRA_RANGE_LENGTH, Long.MAX_VALUE)
+        try {
+            info("Open range $offset+$length of $documentId")
+            val file = createTmpFile()
+            useCase.downloadFile(documentId.toDocumentId(), file, offset, length).second.toBlocking().subscribe()
+            val descriptor = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY)
+            file.delete()
+            return AssetFileDescriptor(descriptor, 0, AssetFileDescriptor.UNKNOWN_LENGTH)
+        } catch (ex: Throwable) {
+            error("Error opening range of document $documentId", ex)
+            throw FileNotFoundException("Cannot load range of $documentId")
+        }
+    }
 
     @Throws(FileNotFoundException::class)
     override fun createDocument(parentDocumentId: String, mimeType: String, displayName: String): String {
@@ -304,5 +557,19 @@ open class BoxProvider : DocumentsProvider(), AnkoLogger {
         val PATH_SEP = "/"
         @JvmField
         val DOCID_SEPARATOR = "::::"
+
+        /**
+         * Content types that are read from front to back and can be served through a pipe.
+         * Video, PDF and archives are read with seeks, so they are opened from a file.
+         */
+        private val SEQUENTIAL_TYPES = listOf("text/", "audio/mpeg", "audio/ogg", "audio/x-wav")
+
+        fun isSequential(name: String): Boolean {
+            val type = URLConnection.guessContentTypeFromName(name) ?: return false
+            return SEQUENTIAL_TYPES.any { type.startsWith(it) }
+        }
+
+        const val EXTRA_RANGE_OFFSET = "de.qabel.qabelbox.extra.RANGE_OFFSET"
+        const val EXTRA_RANGE_LENGTH = "de.qabel.qabelbox.extra.RANGE_LENGTH"
     }
 }
@@ -0,0 +1,100 @@
+package de.qabel.qabelbox.box.provider
+
+import de.qabel.core.logging.QabelLog
+import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.box.dto.ProviderEntry
+import de.qabel.qabelbox.box.interactor.DocumentIdAdapter
+import java.util.*
+
+/**
+ * Serves folder listings from the last known metadata and refreshes them in the background.
+ *
+ * A listing is marked as loading until its refresh finished, then [onRefreshed] is called with
+ * the folder so the provider can notify the cursor to query again. That query is answered with
+ * the refreshed listing without starting another refresh.
+ */
+class ChildDocumentsLoader(private val useCase: DocumentIdAdapter,
+                           private val onRefreshed: (DocumentId) -> Unit,
+                           private val maxSize: Int = DEFAULT_MAX_SIZE) : QabelLog {
+
+    class Listing(val entries: List<ProviderEntry>, val loading: Boolean, val error: String? = null)
+
+    private class Known(val entries: List<ProviderEntry>, val refreshed: Boolean, val error: String? = null)
+
+    private val known = object : LinkedHashMap<String, Known>(maxSize, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Known>?) = size > maxSize
+    }
+    private val refreshing = HashSet<String>()
+
+    fun load(documentId: DocumentId): Listing {
+        val key = documentId.toString()
+        takeRefreshed(key)?.let { return it }
+        val cached = synchronized(this) { known[key] }
+        val entries = cached?.entries ?: loadCached(documentId)
+        if (cached == null) {
+            synchronized(this) {
+                if (!known.containsKey(key)) known.put(key, Known(entries, false))
+            }
+        }
+        refresh(documentId)
+        // the refresh may have finished before the cursor could be notified
+        return takeRefreshed(key) ?: Listing(entries, true)
+    }
+
+    /**
+     * @return the entry of [documentId] in the known listing of its folder
+     */
+    @Synchronized
+    fun find(documentId: DocumentId): BrowserEntry? {
+        val folder = known[documentId.copy(path = documentId.path.parent).toString()] ?: return null
+        return folder.entries.firstOrNull { it.documentId == documentId }?.entry
+    }
+
+    @Synchronized
+    private fun takeRefreshed(key: String): Listing? {
+        val listing = known[key] ?: return null
+        if (!listing.refreshed) {
+            return null
+        }
+        // the next query of this folder refreshes it again
+        known.put(key, Known(listing.entries, false))
+        return Listing(listing.entries, false, listing.error)
+    }
+
+    private fun loadCached(documentId: DocumentId): List<ProviderEntry> =
+            try {
+                useCase.queryCachedChildDocuments(documentId).toBlocking().firstOrDefault(emptyList())
+            } catch (e: Throwable) {
+                warn("No cached listing for $documentId: ${e.message}")
+                emptyList()
+            }
+
+    private fun refresh(documentId: DocumentId) {
+        val key = documentId.toString()
+        synchronized(this) {
+            if (!refreshing.add(key)) {
+                return
+            }
+        }
+        useCase.queryChildDocuments(documentId).firstOrDefault(emptyList()).subscribe({ entries ->
+            finishRefresh(documentId, { Known(entries, true) })
+        }, { throwable ->
+            error("Refreshing $documentId failed", throwable)
+            finishRefresh(documentId, { Known(it?.entries ?: emptyList(), true, throwable.message) })
+        })
+    }
+
+    private fun finishRefresh(documentId: DocumentId, update: (Known?) -> Known) {
+        val key = documentId.toString()
+        synchronized(this) {
+            known.put(key, update(known[key]))
+            refreshing.remove(key)
+        }
+        onRefreshed(documentId)
+    }
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 64
+    }
+
+}
@@ -0,0 +1,17 @@
+package de.qabel.qabelbox.box.repository
+
+/**
+ * Hashes of the plaintext content of blocks uploaded from this device.
+ *
+ * Blocks are never shared between files, the index only tells whether a file
+ * already has the content that is about to be uploaded.
+ */
+interface BlockIndexRepository {
+
+    fun findHash(prefix: String, block: String): String?
+
+    fun save(prefix: String, block: String, hash: String)
+
+    fun delete(prefix: String, block: String)
+
+}
@@ -0,0 +1,44 @@
+package de.qabel.qabelbox.box.repository
+
+import de.qabel.box.storage.dto.BoxPath
+import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser.KeyAndPrefix
+
+/**
+ * Local search index of the names and folders of all known files and folders per volume.
+ *
+ * Folders are indexed whenever their metadata has been refreshed or committed, searching
+ * only reads the index and never touches the network.
+ */
+interface FileSearchRepository {
+
+    data class Match(val path: BoxPath, val entry: BrowserEntry)
+
+    /**
+     * Replaces the indexed children of [folder] with [entries].
+     * Folders that are not part of [entries] anymore are dropped with their content.
+     */
+    fun update(volume: KeyAndPrefix, folder: BoxPath.FolderLike, entries: List<BrowserEntry>)
+
+    /**
+     * Drops [path] and everything below it if it is a folder.
+     */
+    fun delete(volume: KeyAndPrefix, path: BoxPath)
+
+    /**
+     * Lists the indexed children of [folder], folders first and ordered by name.
+     * Folders that have never been indexed are empty.
+     */
+    fun list(volume: KeyAndPrefix, folder: BoxPath.FolderLike): List<BrowserEntry>
+
+    /**
+     * Finds entries whose name or folder contains words starting with all words of [query],
+     * folders first and ordered by name.
+     */
+    fun search(volume: KeyAndPrefix, query: String, limit: Int = DEFAULT_LIMIT): List<Match>
+
+    companion object {
+        const val DEFAULT_LIMIT = 100
+    }
+
+}
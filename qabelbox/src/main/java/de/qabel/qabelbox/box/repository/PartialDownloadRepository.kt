@@ -0,0 +1,17 @@
+package de.qabel.qabelbox.box.repository
+
+/**
+ * Partially fetched blocks, an interrupted download continues at the end of the file
+ * if the block still matches the etag.
+ */
+interface PartialDownloadRepository {
+
+    data class PartialDownload(val prefix: String, val name: String, val eTag: String, val path: String)
+
+    fun find(prefix: String, name: String): PartialDownload?
+
+    fun save(download: PartialDownload)
+
+    fun delete(prefix: String, name: String)
+
+}
@@ -0,0 +1,42 @@
+package de.qabel.qabelbox.box.repository
+
+import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser.KeyAndPrefix
+import de.qabel.qabelbox.box.provider.DocumentId
+
+/**
+ * Recently opened and uploaded documents per volume.
+ *
+ * Documents are stored with the block they resolved to, so they can be found in the file cache
+ * without navigating the volume again.
+ */
+interface RecentDocumentRepository {
+
+    /**
+     * @param accessed time the document has been saved last, only set by the repository
+     */
+    data class RecentDocument(val documentId: DocumentId, val block: String, val size: Long, val mtime: Long,
+                              val accessed: Long = 0)
+
+    /**
+     * Marks [document] as the most recent document of its volume,
+     * only the [MAX_PER_VOLUME] most recent documents are kept.
+     */
+    fun save(document: RecentDocument)
+
+    fun find(documentId: DocumentId): RecentDocument?
+
+    /**
+     * @return the documents of [volume], most recent first
+     */
+    fun findRecent(volume: KeyAndPrefix, limit: Int = MAX_PER_VOLUME): List<RecentDocument>
+
+    /**
+     * Drops [documentId] and everything below it if it is a folder.
+     */
+    fun delete(documentId: DocumentId)
+
+    companion object {
+        const val MAX_PER_VOLUME = 64
+    }
+
+}
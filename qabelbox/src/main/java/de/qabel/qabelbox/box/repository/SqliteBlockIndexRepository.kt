@@ -0,0 +1,33 @@
+package de.qabel.qabelbox.box.repository
+
+import de.qabel.core.repositories.AndroidClientDatabase
+import de.qabel.qabelbox.persistence.AbstractSqliteRepository
+
+class SqliteBlockIndexRepository(clientDatabase: AndroidClientDatabase) :
+        AbstractSqliteRepository(clientDatabase), BlockIndexRepository {
+
+    override fun findHash(prefix: String, block: String): String? =
+            query("SELECT hash FROM block_index WHERE prefix = ? AND block = ?") {
+                it.setString(1, prefix)
+                it.setString(2, block)
+                read(it.executeQuery()) { result -> result.getString(1) }
+            }
+
+    override fun save(prefix: String, block: String, hash: String) {
+        query("INSERT OR REPLACE INTO block_index (prefix, block, hash) VALUES (?, ?, ?)") {
+            it.setString(1, prefix)
+            it.setString(2, block)
+            it.setString(3, hash)
+            it.execute()
+        }
+    }
+
+    override fun delete(prefix: String, block: String) {
+        query("DELETE FROM block_index WHERE prefix = ? AND block = ?") {
+            it.setString(1, prefix)
+            it.setString(2, block)
+            it.execute()
+        }
+    }
+
+}
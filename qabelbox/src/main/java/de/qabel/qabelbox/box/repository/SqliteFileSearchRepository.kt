@@ -0,0 +1,196 @@
+package de.qabel.qabelbox.box.repository
+
+import de.qabel.box.storage.dto.BoxPath
+import de.qabel.core.repositories.AndroidClientDatabase
+import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser.KeyAndPrefix
+import de.qabel.qabelbox.box.repository.FileSearchRepository.Match
+import de.qabel.qabelbox.persistence.AbstractSqliteRepository
+import java.sql.PreparedStatement
+import java.sql.ResultSet
+import java.util.*
+
+class SqliteFileSearchRepository(private val clientDatabase: AndroidClientDatabase) :
+        AbstractSqliteRepository(clientDatabase), FileSearchRepository {
+
+    private class Indexed(val id: Long, val name: String, val isFolder: Boolean)
+
+    @Synchronized
+    override fun update(volume: KeyAndPrefix, folder: BoxPath.FolderLike, entries: List<BrowserEntry>) {
+        val folderPath = folderPath(folder)
+        clientDatabase.transaction {
+            val indexed = query("SELECT id, name, is_folder FROM box_file_index " +
+                    "WHERE identity_key = ? AND prefix = ? AND folder_path = ?") {
+                bindVolume(it, volume)
+                it.setString(3, folderPath)
+                readAll(it.executeQuery()) { result ->
+                    Indexed(result.getLong(1), result.getString(2), result.getInt(3) != 0)
+                }
+            }.associateBy { Pair(it.name, it.isFolder) }
+            val current = entries.map { Pair(it.name, it is BrowserEntry.Folder) }.toSet()
+            indexed.values.filter { !current.contains(Pair(it.name, it.isFolder)) }.forEach {
+                deleteEntries(volume, if (it.isFolder) folder / it.name else folder * it.name)
+            }
+            entries.forEach {
+                val existing = indexed[Pair(it.name, it is BrowserEntry.Folder)]
+                if (existing != null) {
+                    update(existing.id, it)
+                } else {
+                    insert(volume, folderPath, it)
+                }
+            }
+        }
+    }
+
+    private fun update(id: Long, entry: BrowserEntry) {
+        if (entry !is BrowserEntry.File) {
+            return
+        }
+        query("UPDATE box_file_index SET size = ?, mtime = ?, block = ? WHERE id = ?") {
+            it.setLong(1, entry.size)
+            it.setLong(2, entry.mTime.time)
+            it.setString(3, entry.block)
+            it.setLong(4, id)
+            it.execute()
+        }
+    }
+
+    private fun insert(volume: KeyAndPrefix, folderPath: String, entry: BrowserEntry) {
+        val id = query("INSERT INTO box_file_index (identity_key, prefix, folder_path, name, is_folder, size, mtime, block) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)") {
+            bindVolume(it, volume)
+            it.setString(3, folderPath)
+            it.setString(4, entry.name)
+            when (entry) {
+                is BrowserEntry.File -> {
+                    it.setInt(5, 0)
+                    it.setLong(6, entry.size)
+                    it.setLong(7, entry.mTime.time)
+                    it.setString(8, entry.block)
+                }
+                is BrowserEntry.Folder -> {
+                    it.setInt(5, 1)
+                    it.setLong(6, 0)
+                    it.setLong(7, 0)
+                    it.setString(8, null)
+                }
+            }
+            it.executeUpdate()
+            read(it.generatedKeys) { result -> result.getLong(1) }
+        } ?: return
+        query("INSERT INTO box_file_search (docid, name, folder_path) VALUES (?, ?, ?)") {
+            it.setLong(1, id)
+            it.setString(2, fold(entry.name))
+            it.setString(3, fold(folderPath))
+            it.execute()
+        }
+    }
+
+    @Synchronized
+    override fun delete(volume: KeyAndPrefix, path: BoxPath) {
+        clientDatabase.transaction { deleteEntries(volume, path) }
+    }
+
+    private fun deleteEntries(volume: KeyAndPrefix, path: BoxPath) {
+        if (path is BoxPath.Root) {
+            query("DELETE FROM box_file_index WHERE identity_key = ? AND prefix = ?") {
+                bindVolume(it, volume)
+                it.execute()
+            }
+            return
+        }
+        query("DELETE FROM box_file_index WHERE identity_key = ? AND prefix = ? " +
+                "AND folder_path = ? AND name = ? AND is_folder = ?") {
+            bindVolume(it, volume)
+            it.setString(3, folderPath(path.parent))
+            it.setString(4, path.name)
+            it.setInt(5, if (path is BoxPath.FolderLike) 1 else 0)
+            it.execute()
+        }
+        if (path is BoxPath.FolderLike) {
+            val folderPath = folderPath(path)
+            val children = folderPath + SEPARATOR
+            query("DELETE FROM box_file_index WHERE identity_key = ? AND prefix = ? " +
+                    "AND (folder_path = ? OR substr(folder_path, 1, ?) = ?)") {
+                bindVolume(it, volume)
+                it.setString(3, folderPath)
+                it.setInt(4, children.length)
+                it.setString(5, children)
+                it.execute()
+            }
+        }
+    }
+
+    override fun list(volume: KeyAndPrefix, folder: BoxPath.FolderLike): List<BrowserEntry> =
+            query("SELECT folder_path, name, is_folder, size, mtime, block FROM box_file_index " +
+                    "WHERE identity_key = ? AND prefix = ? AND folder_path = ? ORDER BY is_folder DESC, name") {
+                bindVolume(it, volume)
+                it.setString(3, folderPath(folder))
+                readAll(it.executeQuery()) { readMatch(it).entry }
+            }
+
+    override fun search(volume: KeyAndPrefix, query: String, limit: Int): List<Match> {
+        val expression = matchExpression(query) ?: return emptyList()
+        return this.query("SELECT i.folder_path, i.name, i.is_folder, i.size, i.mtime, i.block " +
+                "FROM box_file_search JOIN box_file_index i ON i.id = box_file_search.docid " +
+                "WHERE box_file_search MATCH ? AND i.identity_key = ? AND i.prefix = ? " +
+                "ORDER BY i.is_folder DESC, i.name COLLATE NOCASE LIMIT ?") {
+            it.setString(1, expression)
+            it.setString(2, volume.publicKey)
+            it.setString(3, volume.prefix)
+            it.setInt(4, limit)
+            readAll(it.executeQuery()) { readMatch(it) }
+        }
+    }
+
+    private fun readMatch(result: ResultSet): Match {
+        val folder = parseFolderPath(result.getString(1))
+        val name = result.getString(2)
+        return if (result.getInt(3) != 0) {
+            Match(folder / name, BrowserEntry.Folder(name))
+        } else {
+            Match(folder * name, BrowserEntry.File(name, result.getLong(4),
+                    Date(result.getLong(5)), result.getString(6)))
+        }
+    }
+
+    private fun bindVolume(statement: PreparedStatement, volume: KeyAndPrefix) {
+        statement.setString(1, volume.publicKey)
+        statement.setString(2, volume.prefix)
+    }
+
+    companion object {
+        private const val SEPARATOR = "/"
+        private val NON_WORD = Regex("[^\\p{L}\\p{N}]+")
+
+        fun folderPath(folder: BoxPath): String =
+                if (folder is BoxPath.Root) "" else {
+                    val parent = folderPath(folder.parent)
+                    if (parent.isEmpty()) folder.name else parent + SEPARATOR + folder.name
+                }
+
+        fun parseFolderPath(folderPath: String): BoxPath.FolderLike =
+                folderPath.split(SEPARATOR).filter { it.isNotEmpty() }
+                        .fold<String, BoxPath.FolderLike>(BoxPath.Root) { path, name -> path / name }
+
+        /**
+         * Lowercases the searchable text, the fts tokenizer would only fold ASCII letters.
+         */
+        fun fold(text: String): String = text.toLowerCase()
+
+        /**
+         * Turns the words of [query] into prefix terms that all have to match.
+         * Everything but letters and digits is dropped, so user input cannot form fts operators.
+         *
+         * @return null if [query] does not contain any word
+         */
+        fun matchExpression(query: String): String? {
+            val words = fold(query).split(NON_WORD).filter { it.isNotEmpty() }
+            if (words.isEmpty()) {
+                return null
+            }
+            return words.map { it + "*" }.joinToString(" ")
+        }
+    }
+
+}
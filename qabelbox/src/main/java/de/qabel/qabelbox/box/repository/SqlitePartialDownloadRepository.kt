@@ -0,0 +1,37 @@
+package de.qabel.qabelbox.box.repository
+
+import de.qabel.core.repository.sqlite.ClientDatabase
+import de.qabel.qabelbox.box.repository.PartialDownloadRepository.PartialDownload
+import de.qabel.qabelbox.persistence.AbstractSqliteRepository
+
+class SqlitePartialDownloadRepository(database: ClientDatabase) :
+        AbstractSqliteRepository(database), PartialDownloadRepository {
+
+    override fun find(prefix: String, name: String): PartialDownload? =
+            query("SELECT etag, path FROM partial_download WHERE prefix = ? AND name = ?") {
+                it.setString(1, prefix)
+                it.setString(2, name)
+                read(it.executeQuery()) { result ->
+                    PartialDownload(prefix, name, result.getString(1), result.getString(2))
+                }
+            }
+
+    override fun save(download: PartialDownload) {
+        query("INSERT OR REPLACE INTO partial_download (prefix, name, etag, path) VALUES (?, ?, ?, ?)") {
+            it.setString(1, download.prefix)
+            it.setString(2, download.name)
+            it.setString(3, download.eTag)
+            it.setString(4, download.path)
+            it.execute()
+        }
+    }
+
+    override fun delete(prefix: String, name: String) {
+        query("DELETE FROM partial_download WHERE prefix = ? AND name = ?") {
+            it.setString(1, prefix)
+            it.setString(2, name)
+            it.execute()
+        }
+    }
+
+}
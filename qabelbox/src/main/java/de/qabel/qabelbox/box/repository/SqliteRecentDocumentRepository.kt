@@ -0,0 +1,81 @@
+package de.qabel.qabelbox.box.repository
+
+import de.qabel.box.storage.dto.BoxPath
+import de.qabel.core.repositories.AndroidClientDatabase
+import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser.KeyAndPrefix
+import de.qabel.qabelbox.box.provider.DocumentId
+import de.qabel.qabelbox.box.provider.toDocumentId
+import de.qabel.qabelbox.box.repository.RecentDocumentRepository.Companion.MAX_PER_VOLUME
+import de.qabel.qabelbox.box.repository.RecentDocumentRepository.RecentDocument
+import de.qabel.qabelbox.persistence.AbstractSqliteRepository
+import java.sql.ResultSet
+
+class SqliteRecentDocumentRepository(private val clientDatabase: AndroidClientDatabase,
+                                     private val clock: () -> Long = { System.currentTimeMillis() }) :
+        AbstractSqliteRepository(clientDatabase), RecentDocumentRepository {
+
+    @Synchronized
+    override fun save(document: RecentDocument) {
+        val id = document.documentId
+        clientDatabase.transaction {
+            query("INSERT OR REPLACE INTO box_recent_document " +
+                    "(identity_key, prefix, document_id, block, size, mtime, accessed) VALUES (?, ?, ?, ?, ?, ?, ?)") {
+                it.setString(1, id.identityKey)
+                it.setString(2, id.prefix)
+                it.setString(3, id.toString())
+                it.setString(4, document.block)
+                it.setLong(5, document.size)
+                it.setLong(6, document.mtime)
+                it.setLong(7, clock())
+                it.execute()
+            }
+            query("DELETE FROM box_recent_document WHERE identity_key = ? AND prefix = ? AND id NOT IN (" +
+                    "SELECT id FROM box_recent_document WHERE identity_key = ? AND prefix = ? " +
+                    "ORDER BY accessed DESC, id DESC LIMIT ?)") {
+                it.setString(1, id.identityKey)
+                it.setString(2, id.prefix)
+                it.setString(3, id.identityKey)
+                it.setString(4, id.prefix)
+                it.setInt(5, MAX_PER_VOLUME)
+                it.execute()
+            }
+        }
+    }
+
+    override fun find(documentId: DocumentId): RecentDocument? =
+            query("SELECT document_id, block, size, mtime, accessed FROM box_recent_document WHERE document_id = ?") {
+                it.setString(1, documentId.toString())
+                read(it.executeQuery()) { result -> readDocument(result) }
+            }
+
+    override fun findRecent(volume: KeyAndPrefix, limit: Int): List<RecentDocument> =
+            query("SELECT document_id, block, size, mtime, accessed FROM box_recent_document " +
+                    "WHERE identity_key = ? AND prefix = ? ORDER BY accessed DESC, id DESC LIMIT ?") {
+                it.setString(1, volume.publicKey)
+                it.setString(2, volume.prefix)
+                it.setInt(3, limit)
+                readAll(it.executeQuery()) { result -> readDocument(result) }
+            }
+
+    @Synchronized
+    override fun delete(documentId: DocumentId) {
+        val id = documentId.toString()
+        if (documentId.path is BoxPath.FolderLike) {
+            query("DELETE FROM box_recent_document WHERE substr(document_id, 1, ?) = ?") {
+                it.setInt(1, id.length)
+                it.setString(2, id)
+                it.execute()
+            }
+        } else {
+            query("DELETE FROM box_recent_document WHERE document_id = ?") {
+                it.setString(1, id)
+                it.execute()
+            }
+        }
+    }
+
+    private fun readDocument(result: ResultSet) =
+            RecentDocument(result.getString(1).toDocumentId(), result.getString(2),
+                    result.getLong(3), result.getLong(4), result.getLong(5))
+
+}
@@ -4,7 +4,9 @@ import android.content.Intent
 import android.net.Uri
 import android.os.Bundle
 import android.provider.DocumentsContract
+import android.support.v4.view.MenuItemCompat
 import android.support.v7.widget.LinearLayoutManager
+import android.support.v7.widget.SearchView
 import android.text.InputType
 import android.view.*
 import com.cocosw.bottomsheet.BottomSheet
@@ -30,6 +32,7 @@ import de.qabel.qabelbox.box.provider.toDocumentId
 import de.qabel.qabelbox.box.queryNameAndSize
 import de.qabel.qabelbox.dagger.components.ActiveIdentityComponent
 import de.qabel.qabelbox.dagger.modules.FileBrowserViewModule
+import de.qabel.qabelbox.helper.bursts
 import de.qabel.qabelbox.ui.extensions.showEnterTextDialog
 import de.qabel.qabelbox.viewer.ImageViewerActivity
 import kotlinx.android.synthetic.main.fragment_files.*
@@ -38,6 +41,7 @@ import rx.Subscription
 import java.io.FileNotFoundException
 import java.net.URLConnection
 import java.util.*
+import java.util.concurrent.TimeUnit
 import javax.inject.Inject
 
 class FileBrowserFragment : FileBrowserView, FileListingView,
@@ -48,6 +52,8 @@ class FileBrowserFragment : FileBrowserView, FileListingView,
         val REQUEST_OPEN_FILE = 0
         val REQUEST_EXPORT_FILE = 1
         val KEY_EXPORT_DOCUMENT_ID = "EXPORT_DOCUMENT_ID"
+        // refresh the listing once per burst of finished operations
+        const val EVENT_WINDOW = 300L
     }
 
     var exportDocumentId: DocumentId? = null
@@ -72,6 +78,8 @@ class FileBrowserFragment : FileBrowserView, FileListingView,
 
     lateinit var adapter: FileAdapter
 
+    private var searchItem: MenuItem? = null
+
     override fun onActivityCreated(savedInstanceState: Bundle?) {
         super.onActivityCreated(savedInstanceState)
         val component = getComponent(ActiveIdentityComponent::class.java)
@@ -100,26 +108,27 @@ class FileBrowserFragment : FileBrowserView, FileListingView,
         if (!(mActivity?.TEST ?: false)) {
             presenter.onRefresh()
         }
-        subscription = eventDispatcher.events(BoxBackgroundEvent::class.java).subscribe {
-            when (it) {
-                is FileUploadEvent -> {
-                    if (listOf(Status.COMPLETE, Status.ERROR).contains(it.operation.status)) {
+        subscription = eventDispatcher.events(BoxBackgroundEvent::class.java)
+                .bursts(EVENT_WINDOW, TimeUnit.MILLISECONDS)
+                .subscribe { burst ->
+                    val states = burst.map { refreshDone(it) }.filterNotNull()
+                    if (states.contains(true)) {
                         presenter.onRefresh()
-                        backgroundRefreshDone()
-                    } else {
-                        backgroundRefreshStart()
                     }
-                }
-                is BoxPathEvent -> {
-                    if (it.complete) {
-                        presenter.onRefresh()
-                        backgroundRefreshDone()
-                    } else {
-                        backgroundRefreshStart()
+                    when (states.lastOrNull()) {
+                        true -> backgroundRefreshDone()
+                        false -> backgroundRefreshStart()
                     }
                 }
-            }
-        }
+    }
+
+    /**
+     * @return null if the event does not affect the listing
+     */
+    private fun refreshDone(event: BoxBackgroundEvent): Boolean? = when (event) {
+        is FileUploadEvent -> listOf(Status.COMPLETE, Status.ERROR).contains(event.operation.status)
+        is BoxPathEvent -> event.complete
+        else -> null
     }
 
     override fun onPause() {
@@ -196,6 +205,11 @@ class FileBrowserFragment : FileBrowserView, FileListingView,
     }
 
     override fun onActivityResult(requestCode: Int, resultCode: Int, data: Intent?) {
+        val clipData = data?.clipData
+        if (requestCode == REQUEST_OPEN_FILE && clipData != null && clipData.itemCount > 1) {
+            uploadAll((0 until clipData.itemCount).map { clipData.getItemAt(it).uri })
+            return
+        }
         val uri = data?.data
         if (uri != null) {
             when (requestCode) {
@@ -235,6 +249,19 @@ class FileBrowserFragment : FileBrowserView, FileListingView,
         }
     }
 
+    private fun uploadAll(fileUris: List<Uri>) {
+        try {
+            with(ctx.contentResolver) {
+                presenter.uploadAll(fileUris.map {
+                    val (filename, size) = queryNameAndSize(it)
+                    Pair(BrowserEntry.File(filename, size, Date()), it)
+                })
+            }
+        } catch (e: FileNotFoundException) {
+            toast(R.string.upload_failed_title)
+        }
+    }
+
     override fun refreshStart() {
         runOnUiThread {
             if (!swipeRefresh.isRefreshing) {
@@ -264,6 +291,34 @@ class FileBrowserFragment : FileBrowserView, FileListingView,
     override fun onCreateOptionsMenu(menu: Menu?, inflater: MenuInflater?) {
         menu?.clear()
         inflater?.inflate(R.menu.ab_files, menu)
+        val item = menu?.findItem(R.id.menu_search) ?: return
+        searchItem = item
+        (MenuItemCompat.getActionView(item) as SearchView).setOnQueryTextListener(
+                object : SearchView.OnQueryTextListener {
+                    override fun onQueryTextChange(newText: String): Boolean {
+                        presenter.search(newText)
+                        return true
+                    }
+
+                    override fun onQueryTextSubmit(query: String): Boolean {
+                        presenter.search(query)
+                        return true
+                    }
+                })
+        MenuItemCompat.setOnActionExpandListener(item, object : MenuItemCompat.OnActionExpandListener {
+            override fun onMenuItemActionExpand(item: MenuItem?) = true
+
+            override fun onMenuItemActionCollapse(item: MenuItem?): Boolean {
+                presenter.closeSearch()
+                return true
+            }
+        })
+    }
+
+    override fun searchClosed() {
+        runOnUiThread {
+            searchItem?.let { MenuItemCompat.collapseActionView(it) }
+        }
     }
 
     override fun onOptionsItemSelected(item: MenuItem?): Boolean {
@@ -354,6 +409,7 @@ class FileBrowserFragment : FileBrowserView, FileListingView,
                     val intent = Intent(Intent.ACTION_OPEN_DOCUMENT).apply {
                         addCategory(Intent.CATEGORY_OPENABLE)
                         type = "*/*"
+                        putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true)
                     }
                     startActivityForResult(intent, REQUEST_OPEN_FILE)
                 }
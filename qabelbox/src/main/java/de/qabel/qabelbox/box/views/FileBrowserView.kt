@@ -6,5 +6,6 @@ interface FileBrowserView: FileListingView {
     fun open(documentId: DocumentId)
     fun share(documentId: DocumentId)
     fun export(documentId: DocumentId)
+    fun searchClosed()
 }
 
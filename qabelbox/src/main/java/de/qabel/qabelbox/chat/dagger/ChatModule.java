@@ -5,7 +5,6 @@ import dagger.Provides;
 import de.qabel.core.config.Contact;
 import de.qabel.core.config.Identity;
 import de.qabel.core.repository.ContactRepository;
-import de.qabel.core.repository.IdentityRepository;
 import de.qabel.core.repository.exception.EntityNotFoundException;
 import de.qabel.qabelbox.chat.interactor.ChatUseCase;
 import de.qabel.qabelbox.chat.interactor.TransformingChatUseCase;
@@ -14,6 +13,7 @@ import de.qabel.qabelbox.chat.view.presenters.ChatPresenter;
 import de.qabel.qabelbox.chat.view.presenters.MainChatPresenter;
 import de.qabel.qabelbox.chat.view.views.ChatView;
 import de.qabel.qabelbox.dagger.scopes.ActivityScope;
+import de.qabel.qabelbox.persistence.EntityLookupCache;
 
 @ActivityScope
 @Module
@@ -41,9 +41,8 @@ public class ChatModule {
 
 
     @Provides
-    ChatMessageTransformer provideTransformer(IdentityRepository identityRepository,
-                                              ContactRepository contactRepository) {
-        return new ChatMessageTransformer(identityRepository, contactRepository);
+    ChatMessageTransformer provideTransformer(EntityLookupCache lookupCache) {
+        return new ChatMessageTransformer(lookupCache);
     }
 
 
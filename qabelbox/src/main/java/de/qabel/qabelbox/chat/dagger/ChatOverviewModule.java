@@ -2,8 +2,6 @@ package de.qabel.qabelbox.chat.dagger;
 
 import dagger.Module;
 import dagger.Provides;
-import de.qabel.core.repository.ContactRepository;
-import de.qabel.core.repository.IdentityRepository;
 import de.qabel.qabelbox.chat.interactor.FindLatestConversations;
 import de.qabel.qabelbox.chat.interactor.MainFindLatestConversations;
 import de.qabel.qabelbox.chat.transformers.ChatMessageTransformer;
@@ -11,6 +9,7 @@ import de.qabel.qabelbox.chat.view.presenters.ChatOverviewPresenter;
 import de.qabel.qabelbox.chat.view.presenters.MainChatOverviewPresenter;
 import de.qabel.qabelbox.chat.view.views.ChatOverview;
 import de.qabel.qabelbox.dagger.scopes.ActivityScope;
+import de.qabel.qabelbox.persistence.EntityLookupCache;
 
 @ActivityScope
 @Module
@@ -28,9 +27,8 @@ public class ChatOverviewModule {
     }
 
     @Provides
-    ChatMessageTransformer provideTransformer(IdentityRepository identityRepository,
-                                              ContactRepository contactRepository) {
-        return new ChatMessageTransformer(identityRepository, contactRepository);
+    ChatMessageTransformer provideTransformer(EntityLookupCache lookupCache) {
+        return new ChatMessageTransformer(lookupCache);
     }
 
     @Provides
@@ -0,0 +1,11 @@
+package de.qabel.qabelbox.chat.events
+
+import de.qabel.core.event.Event
+
+interface ChatEvent : Event
+
+/**
+ * New messages of one sync burst, [affectedKeys] are the key ids of the identities
+ * and contacts with new messages.
+ */
+data class NewMessagesEvent(val affectedKeys: Set<String>) : ChatEvent
@@ -10,8 +10,16 @@ interface ChatUseCase {
 
     val contact: Contact
 
+    /**
+     * Loads the latest messages for offset 0 and the messages before the last loaded page otherwise.
+     */
     fun load(offset: Int, pageSize: Int) : Observable<PagingResult<ChatMessage>>
 
+    /**
+     * Loads the page following the last loaded page in the background, so the next [load] does not wait for it.
+     */
+    fun prefetch()
+
     fun send(text: String): Observable<ChatMessage>
 
     fun ignoreContact(): Observable<Unit>
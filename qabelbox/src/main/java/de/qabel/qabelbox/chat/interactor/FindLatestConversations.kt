@@ -1,7 +1,6 @@
 package de.qabel.qabelbox.chat.interactor
 
 import de.qabel.core.config.Identity
-import de.qabel.qabelbox.chat.dto.ChatMessage
 import de.qabel.qabelbox.chat.dto.ChatConversationDto
 import rx.Observable
 
@@ -9,4 +8,9 @@ interface FindLatestConversations {
 
     fun findLatest(identity: Identity): Observable<ChatConversationDto>
 
+    /**
+     * Loads only the conversations with the given contacts, unknown keys are skipped.
+     */
+    fun findConversations(identity: Identity, contactKeys: Collection<String>): Observable<ChatConversationDto>
+
 }
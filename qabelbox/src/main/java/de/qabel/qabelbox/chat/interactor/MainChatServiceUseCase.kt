@@ -7,6 +7,7 @@ import de.qabel.core.repository.ContactRepository
 import de.qabel.core.repository.IdentityRepository
 import de.qabel.qabelbox.chat.dto.ChatMessage
 import de.qabel.qabelbox.chat.transformers.ChatMessageTransformer
+import de.qabel.qabelbox.persistence.EntityLookupCache
 import org.jetbrains.anko.AnkoLogger
 import org.jetbrains.anko.info
 import java.util.*
@@ -16,25 +17,28 @@ import javax.inject.Inject
 class MainChatServiceUseCase @Inject constructor(private val chatDropMessageRepository: ChatDropMessageRepository,
                              private val contactRepository: ContactRepository,
                              private val identityRepo: IdentityRepository,
-                             private val msgTransformer: ChatMessageTransformer):
+                             private val msgTransformer: ChatMessageTransformer,
+                             private val lookupCache: EntityLookupCache):
         ChatServiceUseCase, AnkoLogger {
 
     override fun addContact(identityKey: String, contactKey: String) {
-        val identity = identityRepo.find(identityKey)
+        val identity = lookupCache.identity(identityKey)
         val contact = contactRepository.findByKeyId(identity, contactKey)
         contact.status = Contact.ContactStatus.NORMAL
         contactRepository.save(contact, identity)
+        lookupCache.invalidateContacts()
         info("Contact added " + contact.alias)
     }
 
     override fun ignoreContact(identityKey: String, contactKey: String) {
-        val identity = identityRepo.find(identityKey)
+        val identity = lookupCache.identity(identityKey)
         val contact = contactRepository.findByKeyId(identity, contactKey)
         contact.isIgnored = true
         if(contact.status == Contact.ContactStatus.UNKNOWN){
             contact.status = Contact.ContactStatus.NORMAL
         }
         contactRepository.save(contact, identity)
+        lookupCache.invalidateContacts()
         info("Contact ignored " + contact.alias)
     }
 
@@ -43,7 +47,7 @@ class MainChatServiceUseCase @Inject constructor(private val chatDropMessageRepo
         identityRepo.findAll().entities.map {
             keys.add(it.keyIdentifier)
             chatDropMessageRepository.findNew(it.id).forEach {
-                keys.add(contactRepository.find(it.contactId).keyIdentifier)
+                keys.add(lookupCache.contact(it.contactId).keyIdentifier)
             }
         }
         return keys
@@ -2,20 +2,39 @@ package de.qabel.qabelbox.chat.interactor
 
 import de.qabel.chat.repository.ChatDropMessageRepository
 import de.qabel.core.config.Identity
+import de.qabel.core.repository.exception.EntityNotFoundException
 import de.qabel.qabelbox.chat.dto.ChatConversationDto
+import de.qabel.qabelbox.chat.repository.ChatConversationRepository
 import de.qabel.qabelbox.chat.transformers.ChatMessageTransformer
+import de.qabel.qabelbox.persistence.EntityLookupCache
 import rx.lang.kotlin.observable
 import javax.inject.Inject
 
 
 class MainFindLatestConversations @Inject constructor(private val chatRepo: ChatDropMessageRepository,
+                                                      private val conversationRepo: ChatConversationRepository,
+                                                      private val lookupCache: EntityLookupCache,
                                                       private val chatMessageTransformer: ChatMessageTransformer) : FindLatestConversations {
 
     override fun findLatest(identity: Identity) = observable<ChatConversationDto> { subscriber ->
-        val newMessages = chatRepo.findNew(identity.id)
+        val newMessages = conversationRepo.countNew(identity.id)
         chatRepo.findLatest(identity.id).map {
             val msg = chatMessageTransformer.transform(it)
-            subscriber.onNext(ChatConversationDto(msg, newMessages.count { it.contactId == msg.contact.id }))
+            subscriber.onNext(ChatConversationDto(msg, newMessages[msg.contact.id] ?: 0))
+        }
+        subscriber.onCompleted()
+    }
+
+    override fun findConversations(identity: Identity, contactKeys: Collection<String>) = observable<ChatConversationDto> { subscriber ->
+        contactKeys.filter { it != identity.keyIdentifier }.forEach {
+            val contact = try {
+                lookupCache.contact(it)
+            } catch (e: EntityNotFoundException) {
+                return@forEach
+            }
+            val latestId = conversationRepo.findLatestMessageId(identity.id, contact.id) ?: return@forEach
+            val msg = chatMessageTransformer.transform(chatRepo.findById(latestId))
+            subscriber.onNext(ChatConversationDto(msg, conversationRepo.countNew(identity.id, contact.id)))
         }
         subscriber.onCompleted()
     }
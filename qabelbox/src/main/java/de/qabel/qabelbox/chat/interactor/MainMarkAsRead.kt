@@ -1,30 +1,28 @@
 package de.qabel.qabelbox.chat.interactor
 
-import de.qabel.chat.repository.ChatDropMessageRepository
 import de.qabel.core.logging.QabelLog
-import de.qabel.core.repository.ContactRepository
-import de.qabel.core.repository.IdentityRepository
+import de.qabel.qabelbox.chat.repository.ChatConversationRepository
+import de.qabel.qabelbox.persistence.EntityLookupCache
 import javax.inject.Inject
 
-class MainMarkAsRead @Inject constructor(private val chatDropMessageRepository: ChatDropMessageRepository,
-                                         private val contactRepository: ContactRepository,
-                                         private val identityRepo: IdentityRepository):
+class MainMarkAsRead @Inject constructor(private val conversationRepository: ChatConversationRepository,
+                                         private val lookupCache: EntityLookupCache):
         MarkAsRead, QabelLog {
 
     override fun all(identityKey: String) {
-        val identity = identityRepo.find(identityKey)
-        contactRepository.find(identity).entities.forEach {
-            chatDropMessageRepository.markAsRead(it, identity)
-        }
-        info("Mark messaged read for identity " + identity.alias)
+        val identity = lookupCache.identity(identityKey)
+        val updated = conversationRepository.markAsRead(identity.id)
+        info("Mark $updated messages read for identity " + identity.alias)
     }
 
-    override fun forContact(identityKey: String, contactKey: String) {
-        val identity = identityRepo.find(identityKey)
-        val contact = contactRepository.findByKeyId(contactKey)
-        chatDropMessageRepository.markAsRead(contact, identity)
-        info("Mark messaged read for contact " + contact.alias)
+    override fun forContact(identityKey: String, contactKey: String) =
+            forContacts(identityKey, listOf(contactKey))
+
+    override fun forContacts(identityKey: String, contactKeys: Collection<String>) {
+        val identity = lookupCache.identity(identityKey)
+        val contactIds = contactKeys.map { lookupCache.contact(it).id }
+        val updated = conversationRepository.markAsRead(identity.id, contactIds)
+        info("Mark $updated messages read for ${contactIds.size} contacts")
     }
 
 }
-
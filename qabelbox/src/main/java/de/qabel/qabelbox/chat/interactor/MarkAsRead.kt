@@ -4,5 +4,6 @@ package de.qabel.qabelbox.chat.interactor
 interface MarkAsRead {
     fun all(identityKey: String)
     fun forContact(identityKey: String, contactKey: String)
+    fun forContacts(identityKey: String, contactKeys: Collection<String>)
 }
 
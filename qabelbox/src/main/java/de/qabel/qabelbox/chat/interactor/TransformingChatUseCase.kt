@@ -10,8 +10,11 @@ import de.qabel.core.repository.framework.PagingResult
 import de.qabel.qabelbox.QblBroadcastConstants
 import de.qabel.qabelbox.box.backends.BoxHttpStorageBackend
 import de.qabel.qabelbox.chat.dto.ChatMessage
+import de.qabel.qabelbox.chat.repository.ChatConversationRepository
+import de.qabel.qabelbox.chat.repository.MessageKey
 import de.qabel.qabelbox.chat.services.AndroidChatService
 import de.qabel.qabelbox.chat.transformers.ChatMessageTransformer
+import de.qabel.qabelbox.dagger.qualifiers.ReadOnly
 import de.qabel.qabelbox.listeners.ActionIntentSender
 import de.qabel.qabelbox.storage.server.BlockServer
 import rx.Observable
@@ -26,10 +29,21 @@ class TransformingChatUseCase @Inject constructor(val identity: Identity, overri
                                                   private val chatService: ChatService,
                                                   private val sharingService: SharingService,
                                                   private val blockServer: BlockServer,
-                                                  private val chatDropMessageRepository: ChatDropMessageRepository,
+                                                  @ReadOnly private val chatDropMessageRepository: ChatDropMessageRepository,
+                                                  @ReadOnly private val conversationRepository: ChatConversationRepository,
                                                   private val chatServiceUseCase: ChatServiceUseCase,
                                                   private val actionIntentSender: ActionIntentSender) : ChatUseCase {
 
+    private class Page(val keys: List<MessageKey>, val messages: List<ChatMessage>)
+
+    private class Prefetch(val before: MessageKey, val pageSize: Int, val page: Observable<Page>)
+
+    // keyset of the oldest loaded message, pages do not depend on the offset of the proxy
+    private var oldestLoaded: MessageKey? = null
+    private var messageCount = 0
+    private var lastPageSize = 0
+    private var prefetch: Prefetch? = null
+
     override fun send(text: String): Observable<ChatMessage> = observable<ChatMessage> { subscriber ->
         val item = ChatDropMessage(contact.id, identity.id,
                 ChatDropMessage.Direction.OUTGOING, ChatDropMessage.Status.PENDING,
@@ -38,6 +52,7 @@ class TransformingChatUseCase @Inject constructor(val identity: Identity, overri
 
         subscriber.onNext(chatMessageTransformer.transform(item))
         chatService.sendMessage(item)
+        synchronized(this) { messageCount++ }
         subscriber.onCompleted()
     }.subscribeOn(Schedulers.io())
 
@@ -47,14 +62,65 @@ class TransformingChatUseCase @Inject constructor(val identity: Identity, overri
             notifyApplication()
             notifyServices()
         }
-        chatDropMessageRepository.findByContact(contact.id, identity.id, offset, pageSize).let { pagingResult ->
-            subscriber.onNext(pagingResult.transform { chatMessageTransformer.transform(it) })
+        val before = if (offset == 0) null else synchronized(this) { oldestLoaded }
+        if (before == null) {
+            synchronized(this) { messageCount = conversationRepository.countMessages(identity.id, contact.id) }
         }
+        val page = takePrefetched(before, pageSize) ?: loadPage(before, pageSize)
+        val count = synchronized(this) {
+            oldestLoaded = page.keys.lastOrNull() ?: before
+            lastPageSize = pageSize
+            messageCount
+        }
+        subscriber.onNext(PagingResult(count, page.messages))
         subscriber.onCompleted()
     }
 
-    fun <X, T> PagingResult<T>.transform(transformer: (T) -> X): PagingResult<X> =
-            PagingResult(availableRange, result.map { transformer(it) })
+    override fun prefetch() {
+        val next = synchronized(this) {
+            val before = oldestLoaded ?: return
+            if (lastPageSize == 0 || prefetch?.before == before) {
+                return
+            }
+            val pageSize = lastPageSize
+            val page = observable<Page> { subscriber ->
+                subscriber.onNext(loadPage(before, pageSize))
+                subscriber.onCompleted()
+            }.subscribeOn(Schedulers.io()).cache()
+            val started = Prefetch(before, pageSize, page)
+            prefetch = started
+            started
+        }
+        next.page.subscribe({}, {
+            synchronized(this) {
+                if (prefetch == next) prefetch = null
+            }
+        })
+    }
+
+    private fun takePrefetched(before: MessageKey?, pageSize: Int): Page? {
+        val prefetched = synchronized(this) {
+            val current = prefetch
+            prefetch = null
+            current
+        } ?: return null
+        if (prefetched.before != before || prefetched.pageSize != pageSize) {
+            return null
+        }
+        return try {
+            prefetched.page.toBlocking().first()
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    /**
+     * Loads the messages of the keyset page by their primary key, no row outside of the page is read.
+     */
+    private fun loadPage(before: MessageKey?, pageSize: Int): Page {
+        val keys = conversationRepository.findKeysBefore(identity.id, contact.id, before, pageSize)
+        return Page(keys, keys.map { chatMessageTransformer.transform(chatDropMessageRepository.findById(it.id)) })
+    }
 
     override fun addContact() = observable<Unit> { subscriber ->
         chatServiceUseCase.addContact(identity.keyIdentifier, contact.keyIdentifier)
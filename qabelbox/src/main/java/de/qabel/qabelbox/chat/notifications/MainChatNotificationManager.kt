@@ -15,23 +15,27 @@ class MainChatNotificationManager : ChatNotificationManager {
 
     internal lateinit var chatNotificationPresenter: ChatNotificationPresenter
     internal lateinit var context: Context
+    internal lateinit var notifiedMessages: NotifiedMessages
 
     @Inject
     constructor(chatNotificationPresenter: ChatNotificationPresenter,
-                context: Context) : super() {
+                context: Context) : this(chatNotificationPresenter, context, NotifiedMessages(context))
+
+    constructor(chatNotificationPresenter: ChatNotificationPresenter,
+                context: Context,
+                notifiedMessages: NotifiedMessages) : super() {
         this.chatNotificationPresenter = chatNotificationPresenter
         this.context = context
+        this.notifiedMessages = notifiedMessages
     }
 
-    private val notifiedMap = DefaultHashMap<Identity, MutableList<ChatMessage>>({ mutableListOf() })
-
     override fun updateNotifications(receivedMessagesMap: Map<Identity, List<ChatMessage>>) {
         for ((identity, messages) in receivedMessagesMap) {
-            val identityMessages = filterDuplicated(identity, messages)
+            val identityMessages = filterDuplicated(messages)
             constructNotifications(identityMessages).forEach {
                 chatNotificationPresenter.showNotification(it)
             }
-            notifiedMap.getOrDefault(identity).addAll(identityMessages)
+            notifiedMessages.addAll(identityMessages.associate { Pair(it.notificationKey(), it.id.toLong()) })
         }
     }
 
@@ -44,16 +48,19 @@ class MainChatNotificationManager : ChatNotificationManager {
     }
 
 
-    private fun filterDuplicated(identity: Identity, messages: List<ChatMessage>): MutableList<ChatMessage> =
-            messages.filter { msg ->
-                !notifiedMap.getOrDefault(identity).any {
-                    it.contact == msg.contact &&
-                            it.identity == msg.identity &&
-                            it.time == msg.time &&
-                            it.direction == msg.direction &&
-                            it.messagePayload.toMessage() == msg.messagePayload.toMessage()
-                }
-            }.toMutableList()
+    private fun filterDuplicated(messages: List<ChatMessage>): MutableList<ChatMessage> =
+            messages.filter { !notifiedMessages.isNotified(it.notificationKey(), it.id.toLong()) }.toMutableList()
+
+    /**
+     * Stored messages are identified by their id, others by their content.
+     */
+    private fun ChatMessage.notificationKey(): String =
+            if (id != 0) {
+                "${identity.keyIdentifier}:$id"
+            } else {
+                listOf(identity.keyIdentifier, contact.keyIdentifier, time.time, direction,
+                        messagePayload.toMessage()).joinToString("|").hashCode().toString()
+            }
 
     fun constructNotifications(messages: MutableList<ChatMessage>): List<ChatNotification> {
         if (messages.size == 0) {
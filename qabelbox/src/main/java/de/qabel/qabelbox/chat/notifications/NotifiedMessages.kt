@@ -0,0 +1,139 @@
+package de.qabel.qabelbox.chat.notifications
+
+import android.content.Context
+import android.content.SharedPreferences
+import java.util.*
+
+/**
+ * Bounded set of keys of notified messages, kept in the shared preferences so that messages
+ * are not notified again after a restart.
+ *
+ * Keys expire after [maxAge] and only the [maxSize] most recent keys are kept. Stored messages
+ * whose id is not above the highest id of the forgotten keys still count as notified, so unread
+ * messages are not notified again once their keys are gone. Message ids grow monotonically in
+ * the local database, unlike the send times which come from the clock of the sender.
+ */
+class NotifiedMessages(private val preferences: SharedPreferences,
+                       private val maxSize: Int = DEFAULT_MAX_SIZE,
+                       private val maxAge: Long = DEFAULT_MAX_AGE,
+                       private val clock: () -> Long = { System.currentTimeMillis() }) {
+
+    constructor(context: Context) : this(context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE))
+
+    private class Entry(val added: Long, val id: Long)
+
+    // insertion ordered, so the oldest keys are first
+    private var loaded: LinkedHashMap<String, Entry>? = null
+    private val notified: LinkedHashMap<String, Entry>
+        get() = loaded ?: load().apply { loaded = this }
+
+    // highest message id of the dropped keys
+    private var forgotten = 0L
+
+    // other instances clear the preferences when the database is deleted and ids are reused
+    private val clearedListener = SharedPreferences.OnSharedPreferenceChangeListener { preferences, key ->
+        if (key == KEY_NOTIFIED && !preferences.contains(KEY_NOTIFIED)) {
+            synchronized(this) {
+                loaded = null
+            }
+        }
+    }
+
+    init {
+        preferences.registerOnSharedPreferenceChangeListener(clearedListener)
+    }
+
+    @Synchronized
+    fun contains(key: String): Boolean {
+        expire()
+        return notified.containsKey(key)
+    }
+
+    /**
+     * @param id local id of the message, 0 if it has not been stored
+     */
+    @Synchronized
+    fun isNotified(key: String, id: Long): Boolean = contains(key) || (id > 0 && id <= forgotten)
+
+    fun addAll(keys: Collection<String>) = addAll(keys.associate { Pair(it, 0L) })
+
+    /**
+     * @param messages keys of the notified messages with their local id, 0 if they have not been stored
+     */
+    @Synchronized
+    fun addAll(messages: Map<String, Long>) {
+        if (messages.isEmpty()) {
+            return
+        }
+        val now = clock()
+        messages.forEach {
+            notified.remove(it.key)
+            notified.put(it.key, Entry(now, it.value))
+        }
+        expire()
+        val iterator = notified.entries.iterator()
+        while (notified.size > maxSize) {
+            forget(iterator.next().value)
+            iterator.remove()
+        }
+        preferences.edit().putString(KEY_NOTIFIED, notified.entries.joinToString("\n") {
+            it.key + SEPARATOR + it.value.added + SEPARATOR + it.value.id
+        }).putLong(KEY_FORGOTTEN, forgotten).apply()
+    }
+
+    @Synchronized
+    fun size(): Int = notified.size
+
+    private fun expire() {
+        val expired = clock() - maxAge
+        val iterator = notified.entries.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next().value
+            if (entry.added >= expired) {
+                break
+            }
+            forget(entry)
+            iterator.remove()
+        }
+    }
+
+    private fun forget(entry: Entry) {
+        forgotten = Math.max(forgotten, entry.id)
+    }
+
+    private fun load(): LinkedHashMap<String, Entry> {
+        forgotten = preferences.getLong(KEY_FORGOTTEN, 0)
+        val entries = LinkedHashMap<String, Entry>()
+        preferences.getString(KEY_NOTIFIED, "").split("\n").forEach {
+            val idSeparator = it.lastIndexOf(SEPARATOR)
+            val separator = it.lastIndexOf(SEPARATOR, idSeparator - 1)
+            if (separator > 0) {
+                try {
+                    entries.put(it.substring(0, separator), Entry(it.substring(separator + 1, idSeparator).toLong(),
+                            it.substring(idSeparator + 1).toLong()))
+                } catch (e: NumberFormatException) {
+                }
+            }
+        }
+        return entries
+    }
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 1000
+        const val DEFAULT_MAX_AGE = 7 * 24 * 60 * 60 * 1000L
+
+        private const val PREFERENCES = "chat_notifications"
+        private const val KEY_NOTIFIED = "notified_message_ids"
+        private const val KEY_FORGOTTEN = "forgotten_message_id"
+        private const val SEPARATOR = '='
+
+        /**
+         * Forgets all notified messages, their keys are reused by a new database.
+         */
+        fun clear(context: Context) {
+            context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit()
+                    .remove(KEY_NOTIFIED).remove(KEY_FORGOTTEN).apply()
+        }
+    }
+
+}
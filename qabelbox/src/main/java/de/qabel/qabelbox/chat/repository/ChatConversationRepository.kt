@@ -0,0 +1,36 @@
+package de.qabel.qabelbox.chat.repository
+
+/**
+ * Aggregated state of the conversations of an identity, without hydrating the messages.
+ */
+interface ChatConversationRepository {
+
+    /**
+     * @return number of new messages by contact id, contacts without new messages are left out
+     */
+    fun countNew(identityId: Int): Map<Int, Int>
+
+    fun countNew(identityId: Int, contactId: Int): Int
+
+    fun findLatestMessageId(identityId: Int, contactId: Int): Int?
+
+    fun countMessages(identityId: Int, contactId: Int): Int
+
+    /**
+     * Keyset page of a conversation, newest message first.
+     *
+     * @param before key of the oldest message already loaded, null starts with the latest message
+     */
+    fun findKeysBefore(identityId: Int, contactId: Int, before: MessageKey?, limit: Int): List<MessageKey>
+
+    /**
+     * @return number of messages marked as read
+     */
+    fun markAsRead(identityId: Int): Int
+
+    /**
+     * @return number of messages marked as read
+     */
+    fun markAsRead(identityId: Int, contactIds: Collection<Int>): Int
+
+}
@@ -0,0 +1,6 @@
+package de.qabel.qabelbox.chat.repository
+
+/**
+ * Position of a message in the history of a conversation.
+ */
+data class MessageKey(val createdOn: Long, val id: Int)
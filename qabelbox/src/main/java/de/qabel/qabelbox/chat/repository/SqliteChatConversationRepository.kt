@@ -0,0 +1,95 @@
+package de.qabel.qabelbox.chat.repository
+
+import de.qabel.chat.repository.entities.ChatDropMessage
+import de.qabel.core.repositories.AndroidClientDatabase
+import de.qabel.qabelbox.persistence.AbstractSqliteRepository
+
+class SqliteChatConversationRepository(private val clientDatabase: AndroidClientDatabase) :
+        AbstractSqliteRepository(clientDatabase), ChatConversationRepository {
+
+    companion object {
+        // stay below the default SQLITE_MAX_VARIABLE_NUMBER of 999
+        private const val MAX_CONTACTS_PER_STATEMENT = 500
+    }
+
+    override fun countNew(identityId: Int): Map<Int, Int> =
+            query("SELECT contact_id, COUNT(*) FROM chat_drop_message " +
+                    "WHERE identity_id = ? AND status = ? GROUP BY contact_id") {
+                it.setInt(1, identityId)
+                it.setInt(2, ChatDropMessage.Status.NEW.type)
+                readAll(it.executeQuery()) { result -> Pair(result.getInt(1), result.getInt(2)) }.toMap()
+            }
+
+    override fun countNew(identityId: Int, contactId: Int): Int =
+            query("SELECT COUNT(*) FROM chat_drop_message WHERE identity_id = ? AND contact_id = ? AND status = ?") {
+                it.setInt(1, identityId)
+                it.setInt(2, contactId)
+                it.setInt(3, ChatDropMessage.Status.NEW.type)
+                read(it.executeQuery()) { result -> result.getInt(1) } ?: 0
+            }
+
+    override fun findLatestMessageId(identityId: Int, contactId: Int): Int? =
+            query("SELECT id FROM chat_drop_message WHERE identity_id = ? AND contact_id = ? " +
+                    "ORDER BY created_on DESC, id DESC LIMIT 1") {
+                it.setInt(1, identityId)
+                it.setInt(2, contactId)
+                read(it.executeQuery()) { result -> result.getInt(1) }
+            }
+
+    override fun countMessages(identityId: Int, contactId: Int): Int =
+            query("SELECT COUNT(*) FROM chat_drop_message WHERE identity_id = ? AND contact_id = ?") {
+                it.setInt(1, identityId)
+                it.setInt(2, contactId)
+                read(it.executeQuery()) { result -> result.getInt(1) } ?: 0
+            }
+
+    override fun findKeysBefore(identityId: Int, contactId: Int, before: MessageKey?, limit: Int): List<MessageKey> {
+        val keyset = if (before != null) "AND (created_on < ? OR (created_on = ? AND id < ?)) " else ""
+        return query("SELECT created_on, id FROM chat_drop_message WHERE identity_id = ? AND contact_id = ? " +
+                keyset + "ORDER BY created_on DESC, id DESC LIMIT ?") {
+            it.setInt(1, identityId)
+            it.setInt(2, contactId)
+            var i = 3
+            if (before != null) {
+                it.setLong(i++, before.createdOn)
+                it.setLong(i++, before.createdOn)
+                it.setInt(i++, before.id)
+            }
+            it.setInt(i, limit)
+            readAll(it.executeQuery()) { result -> MessageKey(result.getLong(1), result.getInt(2)) }
+        }
+    }
+
+    override fun markAsRead(identityId: Int): Int =
+            query("UPDATE chat_drop_message SET status = ? WHERE identity_id = ? AND status = ?") {
+                it.setInt(1, ChatDropMessage.Status.READ.type)
+                it.setInt(2, identityId)
+                it.setInt(3, ChatDropMessage.Status.NEW.type)
+                it.executeUpdate()
+            }
+
+    override fun markAsRead(identityId: Int, contactIds: Collection<Int>): Int {
+        if (contactIds.isEmpty()) {
+            return 0
+        }
+        val ids = contactIds.distinct()
+        return clientDatabase.transaction {
+            var updated = 0
+            for (start in 0..ids.size - 1 step MAX_CONTACTS_PER_STATEMENT) {
+                updated += markChunkAsRead(identityId, ids.subList(start, Math.min(start + MAX_CONTACTS_PER_STATEMENT, ids.size)))
+            }
+            updated
+        }
+    }
+
+    private fun markChunkAsRead(identityId: Int, contactIds: List<Int>): Int =
+            query("UPDATE chat_drop_message SET status = ? WHERE identity_id = ? AND status = ? " +
+                    "AND contact_id IN (${contactIds.map { "?" }.joinToString(",")})") {
+                it.setInt(1, ChatDropMessage.Status.READ.type)
+                it.setInt(2, identityId)
+                it.setInt(3, ChatDropMessage.Status.NEW.type)
+                contactIds.forEachIndexed { i, contactId -> it.setInt(4 + i, contactId) }
+                it.executeUpdate()
+            }
+
+}
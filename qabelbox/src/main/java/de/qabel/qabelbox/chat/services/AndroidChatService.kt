@@ -1,6 +1,7 @@
 package de.qabel.qabelbox.chat.services
 
 import android.app.IntentService
+import android.content.Context
 import android.content.Intent
 import de.qabel.qabelbox.QabelBoxApplication
 import de.qabel.qabelbox.QblBroadcastConstants
@@ -9,12 +10,11 @@ import de.qabel.qabelbox.chat.interactor.ChatServiceUseCase
 import de.qabel.qabelbox.chat.interactor.MarkAsRead
 import de.qabel.qabelbox.chat.notifications.ChatNotificationManager
 import de.qabel.qabelbox.chat.transformers.ChatMessageTransformer
-import de.qabel.qabelbox.helper.Helper
 import de.qabel.qabelbox.navigation.MainNavigator
 import de.qabel.qabelbox.reporter.CrashReporter
 import org.jetbrains.anko.AnkoLogger
 import org.jetbrains.anko.info
-import java.util.*
+import java.util.concurrent.atomic.AtomicInteger
 import javax.inject.Inject
 
 open class AndroidChatService() : IntentService(AndroidChatService::class.java.simpleName), AnkoLogger {
@@ -22,6 +22,11 @@ open class AndroidChatService() : IntentService(AndroidChatService::class.java.s
     companion object {
         const val PARAM_CONTACT_KEY = "contact_key"
         const val PARAM_IDENTITY_KEY = "identity_key"
+
+        fun notifyMessagesUpdated(context: Context) {
+            context.applicationContext.startService(Intent(Service.MESSAGES_UPDATED,
+                    null, context.applicationContext, AndroidChatService::class.java))
+        }
     }
 
 
@@ -33,6 +38,10 @@ open class AndroidChatService() : IntentService(AndroidChatService::class.java.s
     @Inject lateinit var chatMessageTransformer: ChatMessageTransformer
     @Inject lateinit var chatNotificationManager: ChatNotificationManager
     @Inject lateinit var crashReporter: CrashReporter
+    @Inject lateinit var chatEventBus: ChatEventBus
+
+    // intents started but not handled yet
+    private val pendingIntents = AtomicInteger()
 
     override fun onCreate() {
         super.onCreate()
@@ -41,18 +50,26 @@ open class AndroidChatService() : IntentService(AndroidChatService::class.java.s
         info("Service initialized!")
     }
 
+    override fun onStartCommand(intent: Intent?, flags: Int, startId: Int): Int {
+        pendingIntents.incrementAndGet()
+        return super.onStartCommand(intent, flags, startId)
+    }
+
     override public fun onHandleIntent(intent: Intent) {
+        try {
+            handleIntent(intent)
+        } finally {
+            // the service stops after the last intent, do not leave a burst behind
+            if (pendingIntents.decrementAndGet() <= 0) {
+                chatEventBus.flush()
+            }
+        }
+    }
+
+    private fun handleIntent(intent: Intent) {
         info("Received chat service intent " + intent.action)
         when (intent.action) {
-            Service.MESSAGES_UPDATED -> {
-                val affectedKeys = chatService.getNewMessageAffectedKeyIds()
-                Intent(QblBroadcastConstants.Chat.NOTIFY_NEW_MESSAGES).let {
-                    it.putStringArrayListExtra(Helper.AFFECTED_IDENTITIES_AND_CONTACTS, ArrayList(affectedKeys))
-                    applicationContext.sendOrderedBroadcast(it, null)
-                }
-                sendChatStateChanged()
-                info("NewMessages broadcast sent (" + affectedKeys.size + ")")
-            }
+            Service.MESSAGES_UPDATED -> chatEventBus.messagesReceived()
             Service.NOTIFY -> {
                 updateNotification()
             }
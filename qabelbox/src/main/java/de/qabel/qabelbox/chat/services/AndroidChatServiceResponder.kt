@@ -8,19 +8,14 @@ import org.jetbrains.anko.AnkoLogger
 import org.jetbrains.anko.info
 
 /**
- * Starts the Service on receiving QblBroadcastConstants.Chat.NOTIFY_NEW_MESSAGES
- * to show Notifications.
+ * Starts the Service on receiving QblBroadcastConstants.Chat.Service.MESSAGES_READ
+ * to hide Notifications.
  */
 class AndroidChatServiceResponder : BroadcastReceiver(), AnkoLogger {
 
     override fun onReceive(context: Context, intent: Intent?) {
-        info("Receive notify broadcast. Start service")
-        var action = QblBroadcastConstants.Chat.Service.MESSAGES_READ
-        if (intent?.action == QblBroadcastConstants.Chat.NOTIFY_NEW_MESSAGES) {
-            action = QblBroadcastConstants.Chat.Service.NOTIFY
-            abortBroadcast()
-        }
-        context.applicationContext.startService(Intent(action,
+        info("Receive messages read broadcast. Start service")
+        context.applicationContext.startService(Intent(QblBroadcastConstants.Chat.Service.MESSAGES_READ,
                 null, context.applicationContext, AndroidChatService::class.java).apply {
             putExtras(intent?.extras)
         })
@@ -0,0 +1,71 @@
+package de.qabel.qabelbox.chat.services
+
+import de.qabel.core.event.EventSink
+import de.qabel.core.logging.QabelLog
+import de.qabel.qabelbox.chat.events.NewMessagesEvent
+import de.qabel.qabelbox.chat.interactor.ChatServiceUseCase
+import de.qabel.qabelbox.chat.notifications.ChatNotificationManager
+import de.qabel.qabelbox.helper.bursts
+import rx.Scheduler
+import rx.schedulers.Schedulers
+import rx.subjects.PublishSubject
+import java.util.concurrent.TimeUnit
+
+/**
+ * Coalesces received messages into one [NewMessagesEvent] and one notification update per burst.
+ *
+ * Conversations that are currently shown suppress the notification if a burst only
+ * affects them.
+ */
+class ChatEventBus @JvmOverloads constructor(private val eventSink: EventSink,
+                                             private val chatServiceUseCase: ChatServiceUseCase,
+                                             private val notificationManager: ChatNotificationManager,
+                                             window: Long = DEFAULT_WINDOW,
+                                             scheduler: Scheduler = Schedulers.io()) : QabelLog {
+
+    private val received = PublishSubject.create<Int>()
+    private val flushes = PublishSubject.create<Unit>()
+    @Volatile private var activeConversation = emptySet<String>()
+
+    init {
+        received.bursts(window, TimeUnit.MILLISECONDS, window * MAX_WINDOWS, scheduler, flushes)
+                .subscribe { deliver(it.sum()) }
+    }
+
+    /**
+     * @param count number of received messages
+     */
+    fun messagesReceived(count: Int = 1) = received.onNext(count)
+
+    /**
+     * Delivers the pending burst on the calling thread, e.g. before a service finishes.
+     */
+    fun flush() = flushes.onNext(Unit)
+
+    fun setActiveConversation(identityKey: String, contactKey: String) {
+        activeConversation = setOf(identityKey, contactKey)
+    }
+
+    fun clearActiveConversation() {
+        activeConversation = emptySet()
+    }
+
+    private fun deliver(count: Int) {
+        try {
+            val affectedKeys = chatServiceUseCase.getNewMessageAffectedKeyIds().toSet()
+            eventSink.push(NewMessagesEvent(affectedKeys))
+            if (affectedKeys.isEmpty() || !activeConversation.containsAll(affectedKeys)) {
+                notificationManager.updateNotifications(chatServiceUseCase.getNewMessageMap())
+            }
+            info("Delivered burst of $count messages for ${affectedKeys.size} keys")
+        } catch (e: Exception) {
+            error("Delivering new messages failed", e)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_WINDOW = 500L
+        const val MAX_WINDOWS = 10
+    }
+
+}
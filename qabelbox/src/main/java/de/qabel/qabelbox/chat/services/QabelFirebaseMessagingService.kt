@@ -5,6 +5,7 @@ import com.google.firebase.messaging.RemoteMessage
 import de.qabel.qabelbox.QabelBoxApplication
 import de.qabel.qabelbox.helper.AccountHelper
 import de.qabel.qabelbox.reporter.CrashReporter
+import de.qabel.qabelbox.sync.DropMessageFetcher
 import org.jetbrains.anko.AnkoLogger
 import org.jetbrains.anko.info
 import org.jetbrains.anko.warn
@@ -13,6 +14,8 @@ import javax.inject.Inject
 class QabelFirebaseMessagingService: FirebaseMessagingService(), AnkoLogger {
 
     @Inject lateinit var crashReporter: CrashReporter
+    @Inject lateinit var dropMessageFetcher: DropMessageFetcher
+    @Inject lateinit var chatEventBus: ChatEventBus
 
     override fun onCreate() {
         super.onCreate()
@@ -30,12 +33,29 @@ class QabelFirebaseMessagingService: FirebaseMessagingService(), AnkoLogger {
         val dropId = message.data["drop-id"]
         if (dropId != null) {
             info("drop id is $dropId, polling")
-            AccountHelper.startOnDemandSyncAdapter()
+            fetchDrop(dropId)
         } else {
             warn("no drop id found in message")
         }
     }
 
+    /**
+     * Polls the drop right away, the sync adapter is only scheduled if that fails.
+     */
+    private fun fetchDrop(dropId: String) {
+        try {
+            val result = dropMessageFetcher.fetchDrop(dropId)
+            if (result == null) {
+                warn("no identity found for drop $dropId")
+                AccountHelper.startOnDemandSyncAdapter()
+            } else if (result.isNotEmpty()) {
+                chatEventBus.messagesReceived(result.values.sumBy { it.size })
+            }
+        } catch (e: Throwable) {
+            warn("Polling drop $dropId failed, scheduling sync", e)
+            AccountHelper.startOnDemandSyncAdapter(dropId)
+        }
+    }
 
 }
 
@@ -6,6 +6,7 @@ import android.view.ViewGroup
 import android.widget.LinearLayout
 import de.qabel.chat.repository.entities.ChatDropMessage
 import de.qabel.qabelbox.R
+import de.qabel.qabelbox.box.ThumbnailCache
 import de.qabel.qabelbox.chat.dto.ChatMessage
 import de.qabel.qabelbox.chat.dto.MessagePayloadDto
 import de.qabel.qabelbox.ui.DataViewAdapter
@@ -15,8 +16,11 @@ open class ChatMessageAdapter(val onMsgClick: (msg: ChatMessage) -> Unit) :
 
     override var data: MutableList<ChatMessage> = mutableListOf()
 
+    var thumbnails: ThumbnailCache? = null
+
     override fun notifyView() = notifyDataSetChanged()
     override fun notifyViewRange(start: Int, count: Int) = notifyItemRangeChanged(start, count)
+    override fun notifyViewInserted(start: Int, count: Int) = notifyItemRangeInserted(start, count)
     fun notifyViewItem(item : ChatMessage) = notifyViewRange(data.indexOf(item), 1)
 
     enum class MessageType(val layout: Int, val contentLayout: Int) {
@@ -27,7 +31,12 @@ open class ChatMessageAdapter(val onMsgClick: (msg: ChatMessage) -> Unit) :
     }
 
     override fun prepend(models: List<ChatMessage>) {
+        val hadItems = data.isNotEmpty()
         super.prepend(models.reversed())
+        if (hadItems && models.isNotEmpty()) {
+            // the former first message is bound depending on its predecessor
+            notifyViewRange(models.size, 1)
+        }
     }
 
     override fun onCreateViewHolder(parent: ViewGroup?, viewType: Int): ChatMessageViewHolderBase<*> {
@@ -41,7 +50,7 @@ open class ChatMessageAdapter(val onMsgClick: (msg: ChatMessage) -> Unit) :
 
         (layout.findViewById(R.id.chatContent) as LinearLayout).addView(contentLayout)
         return when (viewTypeObj.contentLayout) {
-            R.layout.chat_message_share -> ShareChatMessageViewHolder(layout, onMsgClick)
+            R.layout.chat_message_share -> ShareChatMessageViewHolder(layout, onMsgClick, thumbnails)
             else -> TextChatMessageViewHolder(layout)
         }
     }
@@ -28,4 +28,6 @@ open class ChatOverviewAdapter(val clickListener: (ChatMessage) -> Unit,
 
     override fun notifyViewRange(start: Int, count: Int) = notifyItemRangeChanged(start, count)
 
+    override fun notifyViewInserted(start: Int, count: Int) = notifyItemRangeInserted(start, count)
+
 }
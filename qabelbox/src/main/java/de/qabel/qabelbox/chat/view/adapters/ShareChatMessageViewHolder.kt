@@ -6,17 +6,26 @@ import com.squareup.picasso.Picasso
 import de.qabel.chat.repository.entities.BoxFileChatShare
 import de.qabel.chat.repository.entities.ShareStatus
 import de.qabel.qabelbox.R
+import de.qabel.qabelbox.box.ThumbnailCache
 import de.qabel.qabelbox.box.provider.ShareId
 import de.qabel.qabelbox.chat.dto.ChatMessage
 import de.qabel.qabelbox.chat.dto.MessagePayloadDto
 import de.qabel.qabelbox.ui.extensions.setOrGone
 import kotlinx.android.synthetic.main.chat_message_share.view.*
+import rx.Observable
+import rx.Subscription
+import rx.android.schedulers.AndroidSchedulers
+import rx.schedulers.Schedulers
 import java.net.URLConnection
 
-open class ShareChatMessageViewHolder(itemView: View, val onClick: (msg: ChatMessage) -> Unit) :
+open class ShareChatMessageViewHolder(itemView: View, val onClick: (msg: ChatMessage) -> Unit,
+                                      private val thumbnails: ThumbnailCache? = null) :
         ChatMessageViewHolderBase<MessagePayloadDto.ShareMessage>(itemView) {
 
+    private var preview: Subscription? = null
+
     override fun bindTo(payload: MessagePayloadDto.ShareMessage, chatMsg: ChatMessage) {
+        preview?.unsubscribe()
         with(itemView) {
             var isPreviewed = false
             if (payload.share.isUnavailable()) {
@@ -30,10 +39,25 @@ open class ShareChatMessageViewHolder(itemView: View, val onClick: (msg: ChatMes
             } else {
                 msg_overlay.visibility = View.GONE
 
-                val shareUri = ShareId.create(payload.share).toUri()
+                val shareId = ShareId.create(payload.share)
+                val shareUri = shareId.toUri()
                 val mimeType = URLConnection.guessContentTypeFromName(shareUri.toString()) ?: ""
                 if (mimeType.startsWith("image")) {
-                    Picasso.with(context).load(shareUri).resize(700, 700).onlyScaleDown().centerInside().into(messageFilePreview)
+                    Picasso.with(context).cancelRequest(messageFilePreview)
+                    messageFilePreview.setImageDrawable(null)
+                    // the cache touches the disk, the preview is chosen once the lookup is done
+                    preview = Observable.fromCallable { thumbnails?.get(ThumbnailCache.key(shareId)) }
+                            .subscribeOn(Schedulers.io())
+                            .onErrorReturn { null }
+                            .observeOn(AndroidSchedulers.mainThread())
+                            .subscribe { thumbnail ->
+                                if (thumbnail != null) {
+                                    Picasso.with(context).load(thumbnail).into(messageFilePreview)
+                                } else {
+                                    // the provider caches a thumbnail of the downloaded share for the next time
+                                    Picasso.with(context).load(shareUri).resize(700, 700).onlyScaleDown().centerInside().into(messageFilePreview)
+                                }
+                            }
                     isPreviewed = true
                 }
             }
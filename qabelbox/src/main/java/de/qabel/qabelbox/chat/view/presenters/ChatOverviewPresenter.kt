@@ -6,6 +6,11 @@ interface ChatOverviewPresenter {
 
     fun refresh()
 
+    /**
+     * Reloads only the conversations with the given contact keys.
+     */
+    fun refresh(contactKeys: List<String>)
+
     fun handleClick(message : ChatMessage)
     fun handleLongClick(message : ChatMessage) : Boolean
 
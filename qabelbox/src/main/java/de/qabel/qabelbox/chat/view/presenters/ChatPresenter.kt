@@ -15,6 +15,8 @@ interface ChatPresenter {
 
     fun refreshMessages()
 
+    fun prefetchMessages()
+
     fun sendMessage()
 
     fun handleMsgClick(msg : ChatMessage)
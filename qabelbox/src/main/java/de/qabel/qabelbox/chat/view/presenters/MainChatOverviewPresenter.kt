@@ -1,5 +1,6 @@
 package de.qabel.qabelbox.chat.view.presenters
 
+import de.qabel.qabelbox.chat.dto.ChatConversationDto
 import de.qabel.qabelbox.chat.dto.ChatMessage
 import de.qabel.qabelbox.chat.interactor.FindLatestConversations
 import de.qabel.qabelbox.chat.interactor.MarkAsRead
@@ -12,16 +13,35 @@ class MainChatOverviewPresenter @Inject constructor(private val view: ChatOvervi
                                                     private val useCase: FindLatestConversations,
                                                     private val messageStateBroadcaster: MessageStateBroadcaster,
                                                     private val navigator: Navigator) : ChatOverviewPresenter {
+
+    private var conversations: List<ChatConversationDto>? = null
+
     override fun markAllAsRead() {
        messageStateBroadcaster.messagesRead(view.identity)
     }
 
     override fun refresh() {
         useCase.findLatest(view.identity).toList().subscribe({
+            conversations = it
             view.loadData(it)
         })
     }
 
+    override fun refresh(contactKeys: List<String>) {
+        val current = conversations
+        if (current == null) {
+            refresh()
+            return
+        }
+        useCase.findConversations(view.identity, contactKeys).toList().subscribe({ updated ->
+            val updatedContacts = updated.map { it.message.contact.id }.toSet()
+            val merged = (current.filter { !updatedContacts.contains(it.message.contact.id) } + updated)
+                    .sortedByDescending { it.message.time }
+            conversations = merged
+            view.loadData(merged)
+        })
+    }
+
     override fun handleClick(message: ChatMessage) {
         navigator.selectChatFragment(message.contact.keyIdentifier)
     }
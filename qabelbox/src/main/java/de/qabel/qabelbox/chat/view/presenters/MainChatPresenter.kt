@@ -30,6 +30,8 @@ class MainChatPresenter @Inject constructor(private val view: ChatView,
 
     override fun refreshMessages() = proxy.load()
 
+    override fun prefetchMessages() = useCase.prefetch()
+
     override fun sendMessage() {
         if (view.messageText.isNotEmpty()) {
             useCase.send(view.messageText).subscribe({ message ->
@@ -1,9 +1,6 @@
 package de.qabel.qabelbox.chat.view.views
 
-import android.content.BroadcastReceiver
-import android.content.Context
 import android.content.Intent
-import android.content.IntentFilter
 import android.net.Uri
 import android.os.Bundle
 import android.support.v7.widget.LinearLayoutManager
@@ -13,21 +10,27 @@ import android.view.ViewGroup
 import com.vanniktech.emoji.EmojiPopup
 import de.qabel.core.config.Contact
 import de.qabel.core.config.Identity
+import de.qabel.core.event.EventDispatcher
 import de.qabel.qabelbox.QblBroadcastConstants
 import de.qabel.qabelbox.R
 import de.qabel.qabelbox.base.BaseFragment
+import de.qabel.qabelbox.box.ThumbnailCache
 import de.qabel.qabelbox.box.provider.ShareId
 import de.qabel.qabelbox.chat.dagger.ChatModule
 import de.qabel.qabelbox.chat.dto.ChatMessage
+import de.qabel.qabelbox.chat.events.NewMessagesEvent
+import de.qabel.qabelbox.chat.services.ChatEventBus
 import de.qabel.qabelbox.chat.view.adapters.ChatMessageAdapter
 import de.qabel.qabelbox.chat.view.presenters.ChatPresenter
 import de.qabel.qabelbox.dagger.components.ActiveIdentityComponent
-import de.qabel.qabelbox.helper.Helper
+import de.qabel.qabelbox.ui.EndlessScrollRecyclerViewListener
 import de.qabel.qabelbox.ui.HeaderDecoration
 import de.qabel.qabelbox.viewer.ImageViewerActivity
 import kotlinx.android.synthetic.main.fragment_contact_chat.*
 import kotlinx.android.synthetic.main.fragment_contact_chat.view.*
 import org.jetbrains.anko.*
+import rx.Subscription
+import rx.android.schedulers.AndroidSchedulers
 import java.net.URLConnection
 import javax.inject.Inject
 
@@ -61,6 +64,13 @@ class ChatFragment : ChatView, BaseFragment(), AnkoLogger {
     lateinit var presenter: ChatPresenter
     @Inject
     lateinit var identity: Identity
+    @Inject
+    lateinit var chatEventBus: ChatEventBus
+    @Inject
+    lateinit var eventDispatcher: EventDispatcher
+    @Inject
+    lateinit var thumbnailCache: ThumbnailCache
+    lateinit var subscription: Subscription
 
     lateinit var emojiPopup: EmojiPopup
 
@@ -71,36 +81,23 @@ class ChatFragment : ChatView, BaseFragment(), AnkoLogger {
         val component = getComponent(ActiveIdentityComponent::class.java).plus(ChatModule(this))
         component.inject(this)
         injectCompleted = true
+        adapter.thumbnails = thumbnailCache
+        contact_chat_list.addOnScrollListener(EndlessScrollRecyclerViewListener(presenter.proxy,
+                { presenter.prefetchMessages() }))
     }
 
-    /**
-     * Block notifications in which only the currently active contact
-     * and identity are involved.
-     */
-    private val notificationBlockReceiver = object : BroadcastReceiver() {
-        override fun onReceive(context: Context, intent: Intent) {
-            if (isOrderedBroadcast) {
-                val ids = intent.getStringArrayListExtra(Helper.AFFECTED_IDENTITIES_AND_CONTACTS)
-                        ?.filterNotNull() ?: return
-
-                val currentKeys = listOf(contactKeyId, identity.keyIdentifier)
-                if (ids.containsAll(currentKeys)) {
+    override fun onResume() {
+        super.onResume()
+        // new messages of only this conversation do not show a notification
+        chatEventBus.setActiveConversation(identity.keyIdentifier, contactKeyId)
+        subscription = eventDispatcher.events(NewMessagesEvent::class.java)
+                .filter { it.affectedKeys.containsAll(listOf(contactKeyId, identity.keyIdentifier)) }
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe {
                     if (injectCompleted) {
                         presenter.refreshMessages()
                     }
-                    if (ids.all { currentKeys.contains(it) }) {
-                        abortBroadcast()
-                    }
                 }
-            }
-        }
-    }
-
-    override fun onResume() {
-        super.onResume()
-        ctx.registerReceiver(notificationBlockReceiver, IntentFilter(QblBroadcastConstants.Chat.NOTIFY_NEW_MESSAGES).apply {
-            priority = 1
-        })
         presenter.refreshMessages()
         refreshContactOverlay()
         mActivity?.toolbar?.setOnClickListener { presenter.handleHeaderClick() }
@@ -112,7 +109,8 @@ class ChatFragment : ChatView, BaseFragment(), AnkoLogger {
 
     override fun onPause() {
         super.onPause()
-        ctx.unregisterReceiver(notificationBlockReceiver)
+        chatEventBus.clearActiveConversation()
+        subscription.unsubscribe()
         emojiPopup.dismiss()
 
         mActivity?.toolbar?.isClickable = false
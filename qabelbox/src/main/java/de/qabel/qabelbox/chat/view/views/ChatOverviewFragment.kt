@@ -8,11 +8,13 @@ import android.os.Bundle
 import android.support.v7.widget.LinearLayoutManager
 import android.view.*
 import de.qabel.core.config.Identity
+import de.qabel.core.event.EventDispatcher
 import de.qabel.qabelbox.QblBroadcastConstants
 import de.qabel.qabelbox.R
 import de.qabel.qabelbox.base.BaseFragment
 import de.qabel.qabelbox.chat.dagger.ChatOverviewModule
 import de.qabel.qabelbox.chat.dto.ChatConversationDto
+import de.qabel.qabelbox.chat.events.NewMessagesEvent
 import de.qabel.qabelbox.chat.view.adapters.ChatOverviewAdapter
 import de.qabel.qabelbox.chat.view.presenters.ChatOverviewPresenter
 import de.qabel.qabelbox.dagger.components.ActiveIdentityComponent
@@ -20,6 +22,8 @@ import kotlinx.android.synthetic.main.fragment_contacts.*
 import org.jetbrains.anko.AnkoLogger
 import org.jetbrains.anko.ctx
 import org.jetbrains.anko.runOnUiThread
+import rx.Subscription
+import rx.android.schedulers.AndroidSchedulers
 import javax.inject.Inject
 
 class ChatOverviewFragment() : ChatOverview, BaseFragment(
@@ -33,6 +37,10 @@ class ChatOverviewFragment() : ChatOverview, BaseFragment(
     @Inject
     override lateinit var identity: Identity
 
+    @Inject
+    lateinit var eventDispatcher: EventDispatcher
+    lateinit var subscription: Subscription
+
     override val title: String by lazy { ctx.getString(R.string.conversations) }
 
     val adapter = ChatOverviewAdapter({ presenter.handleClick(it) }, { presenter.handleLongClick(it) })
@@ -74,16 +82,20 @@ class ChatOverviewFragment() : ChatOverview, BaseFragment(
     override fun onResume() {
         super.onResume()
         presenter.refresh()
-        ctx.registerReceiver(broadcastReceiver, IntentFilter().apply {
-            addAction(QblBroadcastConstants.Chat.NOTIFY_NEW_MESSAGES)
-            addAction(QblBroadcastConstants.Chat.MESSAGE_STATE_CHANGED)
-            priority = 1
-        })
+        ctx.registerReceiver(broadcastReceiver, IntentFilter(QblBroadcastConstants.Chat.MESSAGE_STATE_CHANGED))
+        subscription = eventDispatcher.events(NewMessagesEvent::class.java)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe {
+                    if (it.affectedKeys.contains(identity.keyIdentifier)) {
+                        presenter.refresh(it.affectedKeys.toList())
+                    }
+                }
     }
 
     override fun onPause() {
         super.onPause()
         ctx.unregisterReceiver(broadcastReceiver)
+        subscription.unsubscribe()
     }
 
     override fun handleFABAction(): Boolean {
@@ -7,16 +7,15 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import de.qabel.qabelbox.communication.callbacks.JsonRequestCallback;
 import de.qabel.qabelbox.communication.callbacks.RequestCallback;
 import de.qabel.qabelbox.communication.connection.ConnectivityManager;
 import de.qabel.qabelbox.config.AppPreference;
-import okhttp3.Call;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -25,13 +24,17 @@ import okhttp3.RequestBody;
 public class BaseServer {
 
     private static final String TAG = "BaseServer";
+    /**
+     * Shared by the outboxes of all servers, servers are created per screen and attempt.
+     */
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor();
     protected final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
     protected OkHttpClient client;
     private URLs urls;
     private AppPreference preferences;
 
     private ConnectivityManager connectivityManager;
-    private List<RequestAction> requestActionQueue = new LinkedList<>();
+    private RequestOutbox outbox;
 
     /**
      * create new instance of http client and set timeouts
@@ -42,36 +45,27 @@ public class BaseServer {
 
     public BaseServer(AppPreference preferences, Context context){
         this.preferences = preferences;
+        urls = new URLs(context);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        builder.connectTimeout(15, TimeUnit.SECONDS); // connect timeout
+        builder.readTimeout(15, TimeUnit.SECONDS);    // socket timeout
+        builder.writeTimeout(10, TimeUnit.SECONDS);
+        client = builder.build();
+
+        outbox = new RequestOutbox(client,
+                new RequestOutboxStore(context, preferences, getClass().getName()),
+                SCHEDULER);
         connectivityManager = new ConnectivityManager(context);
+        outbox.setConnected(connectivityManager.isConnected());
         connectivityManager.setListener(new ConnectivityManager.ConnectivityListener() {
             @Override
             public void handleConnectionLost() {
-                if (!requestActionQueue.isEmpty()) {
-                    for (RequestAction action : requestActionQueue) {
-                        if (action.isExecuted() && !action.isCanceled()) {
-                            action.getCall().cancel();
-                        }
-                    }
-                }
+                outbox.setConnected(false);
             }
 
             @Override
             public void handleConnectionEstablished() {
-                if (!requestActionQueue.isEmpty()) {
-                    List<RequestAction> failedActions = new LinkedList<RequestAction>();
-                    for (RequestAction action : requestActionQueue) {
-                        if (action.getExecuted() == action.getAutoRetry()) {
-                            failedActions.add(action);
-                            continue;
-                        }
-                        if (!action.isExecuted() || action.isCanceled()) {
-                            Call call = client.newCall(action.getRequest());
-                            call.enqueue(action.getCallback());
-                            action.setCall(call);
-                        }
-                    }
-                    requestActionQueue.removeAll(failedActions);
-                }
+                outbox.setConnected(true);
             }
 
             @Override
@@ -79,18 +73,13 @@ public class BaseServer {
                 //Nothing to do
             }
         });
-
-        urls = new URLs(context);
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
-        builder.connectTimeout(15, TimeUnit.SECONDS); // connect timeout
-        builder.readTimeout(15, TimeUnit.SECONDS);    // socket timeout
-        builder.writeTimeout(10, TimeUnit.SECONDS);
-        client = builder.build();
+        outbox.restoreInBackground();
     }
 
     public void onDestroy(){
         connectivityManager.onDestroy();
         connectivityManager = null;
+        outbox.shutdown();
         client = null;
     }
 
@@ -98,29 +87,12 @@ public class BaseServer {
         return preferences.getToken();
     }
 
-    protected void doRequest(final Request request, RequestCallback callback) {
-        final RequestAction requestAction = new RequestAction(request, callback);
-        callback.setSystemHandler(new RequestCallback.SystemHandler() {
-            @Override
-            public boolean onRequestError() {
-                if (requestAction.getExecuted() == requestAction.getAutoRetry()) {
-                    return true;
-                }
-                return false;
-            }
-
-            @Override
-            public void onRequestSuccess() {
-                requestActionQueue.remove(requestAction);
-            }
-        });
+    public RequestOutbox.Metrics getOutboxMetrics() {
+        return outbox.getMetrics();
+    }
 
-        if (connectivityManager.isConnected()) {
-            Call call = client.newCall(request);
-            call.enqueue(callback);
-            requestAction.setCall(call);
-        }
-        requestActionQueue.add(requestAction);
+    protected void doRequest(final Request request, RequestCallback callback) {
+        outbox.enqueue(new RequestAction(request, callback));
     }
 
     /**
@@ -1,20 +1,27 @@
 package de.qabel.qabelbox.communication;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.qabel.qabelbox.communication.callbacks.RequestCallback;
 import okhttp3.Call;
-import okhttp3.Callback;
 import okhttp3.Request;
 
 public class RequestAction {
 
-    private int autoRetry = 5;
-    private int executed = 0;
-    private Request request;
-    private Callback callback;
+    private static final List<String> IDEMPOTENT_METHODS = Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS");
 
+    private final Request request;
+    private final RequestCallback callback;
+    private final List<RequestCallback> duplicates = new ArrayList<>();
 
     private Call call;
+    private int attempts = 0;
+    private long notBefore = 0;
+    private long storeId = -1;
 
-    public RequestAction(Request request, Callback callback) {
+    public RequestAction(Request request, RequestCallback callback) {
         this.request = request;
         this.callback = callback;
     }
@@ -23,32 +30,74 @@ public class RequestAction {
         return request;
     }
 
-    public Callback getCallback() {
+    public RequestCallback getCallback() {
         return callback;
     }
 
+    /**
+     * Callbacks of identical requests that were merged into this one.
+     */
+    public List<RequestCallback> getDuplicates() {
+        return duplicates;
+    }
+
     public Call getCall() {
         return call;
     }
 
     public void setCall(Call call) {
         this.call = call;
-        this.executed++;
+        if (call != null) {
+            this.attempts++;
+        }
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getNotBefore() {
+        return notBefore;
+    }
+
+    public void setNotBefore(long notBefore) {
+        this.notBefore = notBefore;
+    }
+
+    public long getStoreId() {
+        return storeId;
+    }
+
+    public void setStoreId(long storeId) {
+        this.storeId = storeId;
+    }
+
+    public String getHost() {
+        return request.url().host();
     }
 
-    public boolean isExecuted() {
-        return this.call != null && this.call.isExecuted();
+    /**
+     * Requests with the same key are identical and can be merged.
+     */
+    public String getKey() {
+        return request.method() + " " + request.url() + "\n" + request.headers();
     }
 
-    public boolean isCanceled() {
-        return this.call != null && this.call.isCanceled();
+    /**
+     * Streamed bodies are consumed by the first attempt and cannot be sent again.
+     */
+    public boolean isReplayable() {
+        return !(request.body() instanceof UploadRequestBody);
     }
 
-    public int getAutoRetry() {
-        return autoRetry;
+    public boolean isIdempotent() {
+        return IDEMPOTENT_METHODS.contains(request.method());
     }
 
-    public int getExecuted(){
-        return executed;
+    /**
+     * Only bodyless deletes are merged and persisted, their result does not depend on who sent them.
+     */
+    public boolean isDeferrable() {
+        return "DELETE".equals(request.method()) && request.body() == null;
     }
 }
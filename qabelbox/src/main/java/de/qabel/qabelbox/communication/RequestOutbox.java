@@ -0,0 +1,382 @@
+package de.qabel.qabelbox.communication;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.qabel.qabelbox.communication.callbacks.RequestCallback;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Queue of requests that are sent while the device is connected.
+ *
+ * Failed idempotent requests are sent again with an exponential backoff, a non-idempotent
+ * request may have reached the server before the failure and is not sent twice. At most
+ * {@link #maxPerHost} requests run per host at the same time. Bodyless deletes
+ * are merged with identical pending deletes and kept in the {@link Store},
+ * so they are sent even if the process dies before the device is online again.
+ * Requests canceled because the device went offline are queued again, whatever their method.
+ *
+ * The scheduler may be shared by several outboxes, {@link #shutdown()} leaves it running.
+ */
+public class RequestOutbox {
+
+    private static final String TAG = "RequestOutbox";
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final int DEFAULT_MAX_PER_HOST = 4;
+    public static final long DEFAULT_BASE_DELAY = 1000;
+    public static final long DEFAULT_MAX_DELAY = 5 * 60 * 1000;
+
+    public interface Store {
+
+        /**
+         * @return id of the stored request
+         */
+        long save(RequestAction action);
+
+        void delete(long id);
+
+        List<RequestAction> load(RequestCallback callback);
+    }
+
+    public static class Metrics {
+        public final int queueDepth;
+        public final int inFlight;
+        public final long retries;
+        public final long giveUps;
+        public final long merged;
+
+        Metrics(int queueDepth, int inFlight, long retries, long giveUps, long merged) {
+            this.queueDepth = queueDepth;
+            this.inFlight = inFlight;
+            this.retries = retries;
+            this.giveUps = giveUps;
+            this.merged = merged;
+        }
+
+        @Override
+        public String toString() {
+            return "queued: " + queueDepth + ", in flight: " + inFlight + ", retries: " + retries +
+                    ", gave up: " + giveUps + ", merged: " + merged;
+        }
+    }
+
+    private static final RequestCallback RESTORED_CALLBACK = new RequestCallback(200, 204, 404) {
+        @Override
+        protected void onSuccess(int statusCode, Response response) {
+            response.body().close();
+            Log.d(TAG, "Restored request finished: " + response.request().url());
+        }
+
+        @Override
+        protected void onError(Exception e, Response response) {
+            if (response != null) {
+                response.body().close();
+            }
+            Log.w(TAG, "Restored request failed", e);
+        }
+    };
+
+    private final Call.Factory callFactory;
+    private final Store store;
+    private final ScheduledExecutorService scheduler;
+    private final int maxAttempts;
+    private final int maxPerHost;
+    private final long baseDelay;
+    private final long maxDelay;
+
+    private final List<RequestAction> pending = new LinkedList<>();
+    private final Map<String, RequestAction> deferred = new HashMap<>();
+    private final Map<RequestAction, String> inFlight = new LinkedHashMap<>();
+    private final Map<String, Integer> activePerHost = new HashMap<>();
+    private boolean connected = false;
+    private boolean shutdown = false;
+    private long retries = 0;
+    private long giveUps = 0;
+    private long merged = 0;
+    private ScheduledFuture<?> wakeUp;
+
+    public RequestOutbox(Call.Factory callFactory, Store store, ScheduledExecutorService scheduler) {
+        this(callFactory, store, scheduler, DEFAULT_MAX_ATTEMPTS, DEFAULT_MAX_PER_HOST,
+                DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+    }
+
+    public RequestOutbox(Call.Factory callFactory, Store store, ScheduledExecutorService scheduler,
+                         int maxAttempts, int maxPerHost, long baseDelay, long maxDelay) {
+        this.callFactory = callFactory;
+        this.store = store;
+        this.scheduler = scheduler;
+        this.maxAttempts = maxAttempts;
+        this.maxPerHost = maxPerHost;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Queue the requests that were stored by a previous process.
+     */
+    public void restore() {
+        List<RequestAction> restored = store.load(RESTORED_CALLBACK);
+        synchronized (this) {
+            for (RequestAction action : restored) {
+                if (deferred.containsKey(action.getKey())) {
+                    store.delete(action.getStoreId());
+                    continue;
+                }
+                deferred.put(action.getKey(), action);
+                pending.add(action);
+            }
+        }
+        if (!restored.isEmpty()) {
+            Log.i(TAG, "Restored " + restored.size() + " requests");
+        }
+        dispatch();
+    }
+
+    /**
+     * Restores the stored requests on the scheduler, so creating a server does not wait for the store.
+     */
+    public void restoreInBackground() {
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                restore();
+            }
+        });
+    }
+
+    public void enqueue(RequestAction action) {
+        synchronized (this) {
+            if (action.isDeferrable()) {
+                RequestAction existing = deferred.get(action.getKey());
+                if (existing != null && !inFlight.containsKey(existing)) {
+                    existing.getDuplicates().add(action.getCallback());
+                    merged++;
+                    return;
+                }
+                action.setStoreId(store.save(action));
+                deferred.put(action.getKey(), action);
+            }
+            pending.add(action);
+        }
+        dispatch();
+    }
+
+    public void setConnected(boolean connected) {
+        List<Call> canceled = new ArrayList<>();
+        synchronized (this) {
+            this.connected = connected;
+            if (!connected) {
+                for (RequestAction action : inFlight.keySet()) {
+                    canceled.add(action.getCall());
+                }
+            } else {
+                for (RequestAction action : pending) {
+                    action.setNotBefore(0);
+                }
+            }
+        }
+        for (Call call : canceled) {
+            call.cancel();
+        }
+        if (connected) {
+            dispatch();
+        }
+    }
+
+    public synchronized Metrics getMetrics() {
+        return new Metrics(pending.size(), inFlight.size(), retries, giveUps, merged);
+    }
+
+    public void shutdown() {
+        List<Call> canceled = new ArrayList<>();
+        synchronized (this) {
+            for (RequestAction action : inFlight.keySet()) {
+                canceled.add(action.getCall());
+            }
+            pending.clear();
+            shutdown = true;
+            if (wakeUp != null) {
+                wakeUp.cancel(false);
+                wakeUp = null;
+            }
+        }
+        for (Call call : canceled) {
+            call.cancel();
+        }
+    }
+
+    void dispatch() {
+        List<RequestAction> started = new ArrayList<>();
+        synchronized (this) {
+            if (!connected || shutdown) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long nextWakeUp = Long.MAX_VALUE;
+            Iterator<RequestAction> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                RequestAction action = iterator.next();
+                if (action.getNotBefore() > now) {
+                    nextWakeUp = Math.min(nextWakeUp, action.getNotBefore());
+                    continue;
+                }
+                String host = action.getHost();
+                Integer active = activePerHost.get(host);
+                if (active != null && active >= maxPerHost) {
+                    continue;
+                }
+                iterator.remove();
+                activePerHost.put(host, active == null ? 1 : active + 1);
+                action.setCall(callFactory.newCall(action.getRequest()));
+                inFlight.put(action, host);
+                started.add(action);
+            }
+            scheduleWakeUp(nextWakeUp, now);
+        }
+        for (RequestAction action : started) {
+            action.getCall().enqueue(new OutboxCallback(action));
+        }
+    }
+
+    private void scheduleWakeUp(long at, long now) {
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+            wakeUp = null;
+        }
+        if (at == Long.MAX_VALUE || shutdown) {
+            return;
+        }
+        wakeUp = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, at - now, TimeUnit.MILLISECONDS);
+    }
+
+    long backoff(int attempts) {
+        long delay = baseDelay << Math.min(attempts - 1, 20);
+        return Math.min(delay, maxDelay);
+    }
+
+    private synchronized void release(RequestAction action) {
+        String host = inFlight.remove(action);
+        if (host == null) {
+            return;
+        }
+        Integer active = activePerHost.get(host);
+        if (active == null || active <= 1) {
+            activePerHost.remove(host);
+        } else {
+            activePerHost.put(host, active - 1);
+        }
+    }
+
+    /**
+     * @param countAttempt false if the outbox canceled the request because the device went offline
+     * @return true if the action was queued again
+     */
+    private boolean retry(RequestAction action, boolean countAttempt) {
+        synchronized (this) {
+            if (!action.isReplayable() || (countAttempt && !action.isIdempotent())) {
+                return false;
+            }
+            if (countAttempt && action.getAttempts() >= maxAttempts) {
+                giveUps++;
+                Log.w(TAG, "Giving up " + action.getRequest().method() + " " + action.getRequest().url() +
+                        " after " + action.getAttempts() + " attempts");
+                return false;
+            }
+            if (countAttempt) {
+                retries++;
+                action.setNotBefore(System.currentTimeMillis() + backoff(action.getAttempts()));
+            } else {
+                action.setNotBefore(0);
+            }
+            pending.add(action);
+        }
+        dispatch();
+        return true;
+    }
+
+    private void complete(RequestAction action) {
+        synchronized (this) {
+            if (deferred.get(action.getKey()) == action) {
+                deferred.remove(action.getKey());
+            }
+        }
+        if (action.getStoreId() != -1) {
+            store.delete(action.getStoreId());
+        }
+        dispatch();
+    }
+
+    private static boolean isTemporaryFailure(int code) {
+        return code == 502 || code == 503 || code == 504;
+    }
+
+    private class OutboxCallback implements Callback {
+
+        private final RequestAction action;
+
+        OutboxCallback(RequestAction action) {
+            this.action = action;
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            boolean wasConnected;
+            synchronized (RequestOutbox.this) {
+                wasConnected = connected;
+            }
+            release(action);
+            if (retry(action, wasConnected)) {
+                return;
+            }
+            complete(action);
+            action.getCallback().onFailure(call, e);
+            for (RequestCallback duplicate : action.getDuplicates()) {
+                duplicate.onFailure(call, e);
+            }
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            release(action);
+            if (isTemporaryFailure(response.code()) && action.isIdempotent() && retry(action, true)) {
+                response.body().close();
+                return;
+            }
+            complete(action);
+            if (action.getDuplicates().isEmpty()) {
+                action.getCallback().onResponse(call, response);
+                return;
+            }
+            ResponseBody body = response.body();
+            byte[] content = body.bytes();
+            action.getCallback().onResponse(call, copy(response, body, content));
+            for (RequestCallback duplicate : action.getDuplicates()) {
+                duplicate.onResponse(call, copy(response, body, content));
+            }
+        }
+
+        private Response copy(Response response, ResponseBody body, byte[] content) {
+            return response.newBuilder().body(ResponseBody.create(body.contentType(), content)).build();
+        }
+    }
+}
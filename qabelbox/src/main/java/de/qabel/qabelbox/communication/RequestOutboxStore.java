@@ -0,0 +1,123 @@
+package de.qabel.qabelbox.communication;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.qabel.qabelbox.communication.callbacks.RequestCallback;
+import de.qabel.qabelbox.config.AppPreference;
+import okhttp3.Headers;
+import okhttp3.Request;
+
+/**
+ * Keeps the deferrable requests of the {@link RequestOutbox} of one server class.
+ *
+ * The authorization header is not stored, restored requests are sent with the current token.
+ */
+public class RequestOutboxStore extends SQLiteOpenHelper implements RequestOutbox.Store {
+
+    private static final String TAG = "RequestOutboxStore";
+    private static final String AUTHORIZATION = "Authorization";
+
+    public static final int DATABASE_VERSION = 1;
+    public static final String DATABASE_NAME = "RequestOutbox.db";
+
+    private static final String TABLE_NAME = "outbox";
+    private static final String COL_ID = "id";
+    private static final String COL_OWNER = "owner";
+    private static final String COL_METHOD = "method";
+    private static final String COL_URL = "url";
+    private static final String COL_HEADERS = "headers";
+    private static final String COL_AUTHORIZED = "authorized";
+
+    private static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + "( " +
+                    COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    COL_OWNER + " TEXT NOT NULL," +
+                    COL_METHOD + " TEXT NOT NULL," +
+                    COL_URL + " TEXT NOT NULL," +
+                    COL_HEADERS + " TEXT NOT NULL," +
+                    COL_AUTHORIZED + " INTEGER NOT NULL DEFAULT 0);";
+
+    private final AppPreference preferences;
+    private final String owner;
+
+    public RequestOutboxStore(Context context, AppPreference preferences, String owner) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.preferences = preferences;
+        this.owner = owner;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(CREATE_TABLE);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int from, int to) {
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME + ";");
+        onCreate(sqLiteDatabase);
+    }
+
+    @Override
+    public synchronized long save(RequestAction action) {
+        Request request = action.getRequest();
+        ContentValues values = new ContentValues();
+        values.put(COL_OWNER, owner);
+        values.put(COL_METHOD, request.method());
+        values.put(COL_URL, request.url().toString());
+        values.put(COL_HEADERS, request.headers().newBuilder().removeAll(AUTHORIZATION).build().toString());
+        values.put(COL_AUTHORIZED, request.header(AUTHORIZATION) != null ? 1 : 0);
+        long id = getWritableDatabase().insert(TABLE_NAME, null, values);
+        if (id == -1) {
+            Log.e(TAG, "Failed storing request: " + request.url());
+        }
+        return id;
+    }
+
+    @Override
+    public synchronized void delete(long id) {
+        getWritableDatabase().delete(TABLE_NAME, COL_ID + "=?", new String[]{String.valueOf(id)});
+    }
+
+    @Override
+    public synchronized List<RequestAction> load(RequestCallback callback) {
+        List<RequestAction> actions = new ArrayList<>();
+        Cursor cursor = getReadableDatabase().query(TABLE_NAME,
+                new String[]{COL_ID, COL_METHOD, COL_URL, COL_HEADERS, COL_AUTHORIZED},
+                COL_OWNER + "=?", new String[]{owner}, null, null, COL_ID + " ASC");
+        try {
+            while (cursor.moveToNext()) {
+                Request.Builder builder = new Request.Builder()
+                        .url(cursor.getString(cursor.getColumnIndex(COL_URL)))
+                        .method(cursor.getString(cursor.getColumnIndex(COL_METHOD)), null)
+                        .headers(parseHeaders(cursor.getString(cursor.getColumnIndex(COL_HEADERS))));
+                if (cursor.getInt(cursor.getColumnIndex(COL_AUTHORIZED)) == 1 && preferences.getToken() != null) {
+                    builder.addHeader(AUTHORIZATION, "Token " + preferences.getToken());
+                }
+                RequestAction action = new RequestAction(builder.build(), callback);
+                action.setStoreId(cursor.getLong(cursor.getColumnIndex(COL_ID)));
+                actions.add(action);
+            }
+        } finally {
+            cursor.close();
+        }
+        return actions;
+    }
+
+    private static Headers parseHeaders(String headers) {
+        Headers.Builder builder = new Headers.Builder();
+        for (String line : headers.split("\n")) {
+            if (!line.isEmpty()) {
+                builder.add(line);
+            }
+        }
+        return builder.build();
+    }
+}
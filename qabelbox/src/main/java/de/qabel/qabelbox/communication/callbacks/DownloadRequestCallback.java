@@ -1,6 +1,7 @@
 package de.qabel.qabelbox.communication.callbacks;
 
 import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -18,12 +19,22 @@ public abstract class DownloadRequestCallback extends RequestCallback {
     private static final int SEGMENT_SIZE = 2048; // okio.Segment.SIZE
 
     private File outputFile;
+    private boolean append;
 
     public DownloadRequestCallback(File outputFile) {
         super();
         this.outputFile = outputFile;
     }
 
+    /**
+     * Callback for range requests, partial content (206) is appended to the output file.
+     */
+    public DownloadRequestCallback(File outputFile, boolean append) {
+        super(200, 206);
+        this.outputFile = outputFile;
+        this.append = append;
+    }
+
     protected void onProgress(long current, long size) {
         //Empty body for not tracked downloads
     }
@@ -31,11 +42,12 @@ public abstract class DownloadRequestCallback extends RequestCallback {
     @Override
     protected void onSuccess(int statusCode, Response response) {
         Subscription progressSubscription = null;
+        InputStream input = null;
+        OutputStream output = null;
         try {
 
-            InputStream is = response.body().byteStream();
-            BufferedInputStream input = new BufferedInputStream(is);
-            OutputStream output = new FileOutputStream(outputFile);
+            input = new BufferedInputStream(response.body().byteStream());
+            output = new FileOutputStream(outputFile, append && statusCode == 206);
 
             final byte[] data = new byte[SEGMENT_SIZE];
             final long contentLength = response.body().contentLength();
@@ -53,14 +65,24 @@ public abstract class DownloadRequestCallback extends RequestCallback {
                 output.write(data, 0, count);
             }
             output.flush();
-            output.close();
-            input.close();
         } catch (IOException e) {
             this.onError(e, null);
         } finally {
             if (progressSubscription != null) {
                 progressSubscription.unsubscribe();
             }
+            closeQuietly(output);
+            closeQuietly(input);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
         }
     }
 }
@@ -15,16 +15,7 @@ public abstract class RequestCallback implements Callback {
 
     private static final int DEFAULT_SUCCESS_STATUS_CODE = 200;
 
-    public interface SystemHandler {
-
-        boolean onRequestError();
-
-        void onRequestSuccess();
-
-    }
-
     private Set<Integer> acceptedStatusCodes = new HashSet<>();
-    private SystemHandler systemHandler;
 
     public RequestCallback() {
         this(new int[]{DEFAULT_SUCCESS_STATUS_CODE});
@@ -38,28 +29,19 @@ public abstract class RequestCallback implements Callback {
 
     @Override
     public void onFailure(Call call, IOException e) {
-        if (this.systemHandler == null || systemHandler.onRequestError()) {
-            onError(e, null);
-        }
+        onError(e, null);
     }
 
     @Override
     public void onResponse(Call call, Response response) throws IOException {
         int statusCode = response.code();
         if (acceptedStatusCodes.contains(statusCode)) {
-            if (this.systemHandler != null) {
-                systemHandler.onRequestSuccess();
-            }
             onSuccess(statusCode, response);
         } else {
             onError(new QblServerException(statusCode, call.request().toString()), response);
         }
     }
 
-    public void setSystemHandler(SystemHandler systemHandler) {
-        this.systemHandler = systemHandler;
-    }
-
     protected abstract void onSuccess(int statusCode, Response response);
 
     protected abstract void onError(Exception e, @Nullable Response response);
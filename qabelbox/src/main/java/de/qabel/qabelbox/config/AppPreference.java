@@ -27,6 +27,7 @@ public class AppPreference {
     private static final String P_LAST_APP_START_VERSION = "lastappstartversion";
     private static final String P_WELCOME_SCREEN_SHOWN_AT = "welcomescreenshownat";
     private static final String P_LAST_ACTIVE_IDENTITY = "P_LAST_ACTIVE_IDENTITY";
+    private static final String P_BLOCK_DEDUPLICATION = "blockdeduplication";
 
     private final Context context;
     private final SharedPreferences settings;
@@ -110,6 +111,14 @@ public class AppPreference {
         settings.edit().putString(P_LAST_ACTIVE_IDENTITY, identityKey).commit();
     }
 
+    public boolean isBlockDeduplicationEnabled() {
+        return settings.getBoolean(P_BLOCK_DEDUPLICATION, false);
+    }
+
+    public void setBlockDeduplicationEnabled(boolean enabled) {
+        settings.edit().putBoolean(P_BLOCK_DEDUPLICATION, enabled).commit();
+    }
+
     public BoxQuota getBoxQuota() {
         BoxQuota quota = getJsonModel(P_ACCOUNT_QUOTA, boxQuotaJSONAdapter);
         if (quota == null) {
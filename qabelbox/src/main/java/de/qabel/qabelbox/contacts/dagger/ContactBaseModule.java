@@ -7,6 +7,8 @@ import de.qabel.core.repository.ContactRepository;
 import de.qabel.core.repository.IdentityRepository;
 import de.qabel.qabelbox.contacts.interactor.ContactsUseCase;
 import de.qabel.qabelbox.contacts.interactor.MainContactsUseCase;
+import de.qabel.qabelbox.dagger.qualifiers.ReadOnly;
+import de.qabel.qabelbox.persistence.EntityLookupCache;
 
 @Module
 public abstract class ContactBaseModule {
@@ -14,8 +16,11 @@ public abstract class ContactBaseModule {
     @Provides
     public ContactsUseCase provideContactsUseCase(Identity identity,
                                                   ContactRepository contactRepository,
-                                                  IdentityRepository identityRepository) {
-        return new MainContactsUseCase(identity, contactRepository, identityRepository);
+                                                  IdentityRepository identityRepository,
+                                                  EntityLookupCache lookupCache,
+                                                  @ReadOnly ContactRepository readContactRepository) {
+        return new MainContactsUseCase(identity, contactRepository, identityRepository, lookupCache,
+                readContactRepository);
     }
 
 }
@@ -14,6 +14,7 @@ import de.qabel.qabelbox.config.QabelSchema
 import de.qabel.qabelbox.contacts.dto.ContactDto
 import de.qabel.qabelbox.contacts.dto.ContactParseResult
 import de.qabel.qabelbox.contacts.dto.ContactsParseResult
+import de.qabel.qabelbox.persistence.EntityLookupCache
 import org.apache.commons.io.FileUtils
 import rx.lang.kotlin.observable
 import java.io.File
@@ -25,12 +26,15 @@ import javax.inject.Inject
 
 open class MainContactsUseCase @Inject constructor(private val activeIdentity: Identity,
                                                    private val contactRepository: ContactRepository,
-                                                   private val identityRepository: IdentityRepository) : ContactsUseCase {
+                                                   private val identityRepository: IdentityRepository,
+                                                   private val lookupCache: EntityLookupCache,
+                                                   private val readContactRepository: ContactRepository = contactRepository) :
+        ContactsUseCase {
 
     private val contactExchangeFormats = ContactExchangeFormats()
 
     override fun search(filter: String, showIgnored: Boolean) = observable<ContactDto> { subscriber ->
-        contactRepository.findWithIdentities(filter,
+        readContactRepository.findWithIdentities(filter,
                 listOf(Contact.ContactStatus.NORMAL, Contact.ContactStatus.VERIFIED),
                 !showIgnored).map { pair ->
             subscriber.onNext(transformContact(pair))
@@ -42,14 +46,14 @@ open class MainContactsUseCase @Inject constructor(private val activeIdentity: I
             = ContactDto(data.contact, data.identities, data.identities.contains(activeIdentity.keyIdentifier))
 
     override fun loadContact(keyIdentifier: String) = observable<ContactDto> { subscriber ->
-        val contact = contactRepository.findContactWithIdentities(keyIdentifier)
+        val contact = readContactRepository.findContactWithIdentities(keyIdentifier)
         subscriber.onNext(transformContact(contact))
         subscriber.onCompleted()
     }
 
     override fun loadContactAndIdentities(keyIdentifier: String) = observable<Pair<ContactDto, Identities>> {
         val identities = identityRepository.findAll()
-        val contact = contactRepository.findContactWithIdentities(keyIdentifier)
+        val contact = readContactRepository.findContactWithIdentities(keyIdentifier)
         it.onNext(Pair(transformContact(contact), identities))
         it.onCompleted()
     }
@@ -58,6 +62,7 @@ open class MainContactsUseCase @Inject constructor(private val activeIdentity: I
         contactRepository.findContactWithIdentities(contact.keyIdentifier).identities.forEach {
             contactRepository.delete(contact, it)
         }
+        lookupCache.invalidateContacts()
         subscriber.onNext(Unit)
         subscriber.onCompleted()
     }
@@ -112,6 +117,7 @@ open class MainContactsUseCase @Inject constructor(private val activeIdentity: I
             } catch(ex: EntityExistsException) {
             }
         }
+        lookupCache.invalidateContacts()
         subscriber.onNext(ContactsParseResult(importedContacts, contacts.size - importedContacts))
         subscriber.onCompleted()
     }
@@ -120,6 +126,7 @@ open class MainContactsUseCase @Inject constructor(private val activeIdentity: I
         subscriber ->
         val contact = contactExchangeFormats.importFromContactString(contactString)
         contactRepository.save(contact, activeIdentity)
+        lookupCache.invalidateContacts()
         subscriber.onNext(ContactParseResult(contact, true))
         subscriber.onCompleted()
     }
@@ -133,6 +140,7 @@ open class MainContactsUseCase @Inject constructor(private val activeIdentity: I
         } catch (e: EntityExistsException) {
             contactRepository.update(contact.contact, contact.identities)
         }
+        lookupCache.invalidateContacts()
         it.onNext(Unit)
         it.onCompleted()
     }
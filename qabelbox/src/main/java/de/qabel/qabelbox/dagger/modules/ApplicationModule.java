@@ -12,6 +12,8 @@ import de.qabel.chat.repository.ChatDropMessageRepository;
 import de.qabel.chat.service.ChatService;
 import de.qabel.chat.service.MainChatService;
 import de.qabel.chat.service.SharingService;
+import de.qabel.core.event.EventSink;
+import de.qabel.core.http.DropConnector;
 import de.qabel.core.http.MainDropConnector;
 import de.qabel.core.http.MainDropServer;
 import de.qabel.core.repository.ContactRepository;
@@ -28,6 +30,7 @@ import de.qabel.qabelbox.chat.notifications.ChatNotificationManager;
 import de.qabel.qabelbox.chat.notifications.MainChatNotificationManager;
 import de.qabel.qabelbox.chat.notifications.presenter.AndroidChatNotificationPresenter;
 import de.qabel.qabelbox.chat.notifications.presenter.ChatNotificationPresenter;
+import de.qabel.qabelbox.chat.services.ChatEventBus;
 import de.qabel.qabelbox.identity.interactor.IdentityUseCase;
 import de.qabel.qabelbox.identity.interactor.MainIdentityUseCase;
 import de.qabel.qabelbox.listeners.ActionIntentSender;
@@ -64,10 +67,17 @@ public class ApplicationModule extends ContextModule {
 
     @Singleton
     @Provides
-    ChatService providesChatService(IdentityRepository identityRepository, ContactRepository contactRepository,
+    DropConnector providesDropConnector() {
+        return new MainDropConnector(new MainDropServer());
+    }
+
+    @Singleton
+    @Provides
+    ChatService providesChatService(DropConnector dropConnector,
+                                    IdentityRepository identityRepository, ContactRepository contactRepository,
                                     DropStateRepository dropStateRepository, SharingService sharingService,
                                     ChatDropMessageRepository chatDropMessageRepository) {
-        return new MainChatService(new MainDropConnector(new MainDropServer()), identityRepository,
+        return new MainChatService(dropConnector, identityRepository,
                 contactRepository, chatDropMessageRepository, dropStateRepository, sharingService);
     }
 
@@ -83,6 +93,13 @@ public class ApplicationModule extends ContextModule {
         return mainChatServiceUseCase;
     }
 
+    @Singleton
+    @Provides
+    ChatEventBus providesChatEventBus(EventSink eventSink, ChatServiceUseCase chatServiceUseCase,
+                                      ChatNotificationManager notificationManager) {
+        return new ChatEventBus(eventSink, chatServiceUseCase, notificationManager);
+    }
+
     @Singleton
     @Provides
     MarkAsRead provideMarkAsRead(MainMarkAsRead mainMarkAsRead) {
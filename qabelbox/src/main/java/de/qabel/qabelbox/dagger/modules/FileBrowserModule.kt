@@ -12,6 +12,7 @@ import de.qabel.qabelbox.box.presenters.MainFileBrowserPresenter
 import de.qabel.qabelbox.box.presenters.MainNavigatingPresenter
 import de.qabel.qabelbox.box.presenters.NavigatingPresenter
 import de.qabel.qabelbox.box.provider.DocumentIdParser
+import de.qabel.qabelbox.box.repository.PartialDownloadRepository
 import de.qabel.qabelbox.config.AppPreference
 import de.qabel.qabelbox.dagger.scopes.ActivityScope
 import de.qabel.qabelbox.storage.server.BlockServer
@@ -60,8 +61,10 @@ class FileBrowserModule() {
 
     @ActivityScope
     @Provides
-    fun provideStorageBackend(blockServer: BlockServer, identity: Identity): BoxHttpStorageBackend {
-        return BoxHttpStorageBackend(blockServer, identity.prefixes.first().prefix)
+    fun provideStorageBackend(blockServer: BlockServer, identity: Identity,
+                              partialDownloads: PartialDownloadRepository): BoxHttpStorageBackend {
+        return BoxHttpStorageBackend(blockServer, identity.prefixes.first().prefix,
+                partialDownloads = partialDownloads)
     }
 
     @ActivityScope
@@ -1,6 +1,9 @@
 package de.qabel.qabelbox.dagger.modules;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 
 import javax.inject.Singleton;
 
@@ -11,6 +14,11 @@ import de.qabel.chat.repository.ChatShareRepository;
 import de.qabel.core.repository.ContactRepository;
 import de.qabel.core.repository.DropStateRepository;
 import de.qabel.core.repository.IdentityRepository;
+import de.qabel.qabelbox.QblBroadcastConstants;
+import de.qabel.qabelbox.chat.repository.ChatConversationRepository;
+import de.qabel.qabelbox.chat.repository.SqliteChatConversationRepository;
+import de.qabel.qabelbox.dagger.qualifiers.ReadOnly;
+import de.qabel.qabelbox.persistence.EntityLookupCache;
 import de.qabel.qabelbox.persistence.RepositoryFactory;
 
 @Module
@@ -19,7 +27,7 @@ public class RepositoryModule {
     @Singleton
     @Provides
     RepositoryFactory provideRepositoryFactory(Context context) {
-        return new RepositoryFactory(context);
+        return new RepositoryFactory(context, RepositoryFactory.DEFAULT_READ_POOL_SIZE);
     }
 
     @Singleton @Provides
@@ -34,6 +42,12 @@ public class RepositoryModule {
         return factory.getContactRepository();
     }
 
+    @Singleton @Provides @ReadOnly
+    ContactRepository provideReadOnlyContactRepository(
+            RepositoryFactory factory) {
+        return factory.getReadOnlyContactRepository();
+    }
+
     @Singleton @Provides
     DropStateRepository provideDropStateRepository(
             RepositoryFactory factory) {
@@ -46,6 +60,46 @@ public class RepositoryModule {
         return factory.getChatDropMessageRepository();
     }
 
+    @Singleton @Provides @ReadOnly
+    ChatDropMessageRepository provideReadOnlyChatDropMessageRepository(
+            RepositoryFactory factory) {
+        return factory.getReadOnlyChatDropMessageRepository();
+    }
+
+    @Singleton @Provides
+    ChatConversationRepository provideChatConversationRepository(
+            RepositoryFactory factory) {
+        return new SqliteChatConversationRepository(factory.getAndroidClientDatabase());
+    }
+
+    @Singleton @Provides @ReadOnly
+    ChatConversationRepository provideReadOnlyChatConversationRepository(
+            RepositoryFactory factory) {
+        return factory.getReadOnlyChatConversationRepository();
+    }
+
+    @Singleton @Provides
+    EntityLookupCache provideEntityLookupCache(Context context,
+                                               RepositoryFactory factory,
+                                               IdentityRepository identityRepository,
+                                               ContactRepository contactRepository) {
+        final EntityLookupCache cache = new EntityLookupCache(identityRepository, contactRepository,
+                factory.getEntityManager(), EntityLookupCache.DEFAULT_MAX_SIZE);
+        IntentFilter filter = new IntentFilter(QblBroadcastConstants.Contacts.CONTACTS_CHANGED);
+        filter.addAction(QblBroadcastConstants.Identities.IDENTITY_CHANGED);
+        filter.addAction(QblBroadcastConstants.Identities.IDENTITY_REMOVED);
+        context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (!QblBroadcastConstants.Contacts.CONTACTS_CHANGED.equals(intent.getAction())) {
+                    cache.invalidateIdentities();
+                }
+                cache.invalidateContacts();
+            }
+        }, filter);
+        return cache;
+    }
+
     @Singleton @Provides
     ChatShareRepository providesChatShareRepository(RepositoryFactory factory){
         return factory.getChatShareRepository();
@@ -1,6 +1,9 @@
 package de.qabel.qabelbox.dagger.modules
 
+import android.content.BroadcastReceiver
 import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
 
 import java.io.File
 import java.sql.Connection
@@ -20,13 +23,28 @@ import de.qabel.core.repositories.AndroidVersionAdapter
 import de.qabel.core.repository.ContactRepository
 import de.qabel.core.repository.IdentityRepository
 import de.qabel.core.repository.sqlite.VersionAdapter
+import de.qabel.qabelbox.QblBroadcastConstants
+import de.qabel.qabelbox.box.BlockDeduplicator
 import de.qabel.qabelbox.box.BoxScheduler
+import de.qabel.qabelbox.box.RecentDocuments
+import de.qabel.qabelbox.box.ThumbnailCache
+import de.qabel.qabelbox.box.TransferScheduler
 import de.qabel.qabelbox.box.interactor.*
 import de.qabel.qabelbox.box.provider.DocumentIdParser
+import de.qabel.qabelbox.box.repository.BlockIndexRepository
+import de.qabel.qabelbox.box.repository.FileSearchRepository
+import de.qabel.qabelbox.box.repository.RecentDocumentRepository
+import de.qabel.qabelbox.box.repository.PartialDownloadRepository
+import de.qabel.qabelbox.box.repository.SqliteBlockIndexRepository
+import de.qabel.qabelbox.box.repository.SqliteFileSearchRepository
+import de.qabel.qabelbox.box.repository.SqliteRecentDocumentRepository
+import de.qabel.qabelbox.box.repository.SqlitePartialDownloadRepository
 import de.qabel.qabelbox.config.AppPreference
 import de.qabel.qabelbox.box.notifications.AndroidStorageNotificationManager
 import de.qabel.qabelbox.box.notifications.AndroidStorageNotificationPresenter
 import de.qabel.qabelbox.box.notifications.StorageNotificationManager
+import de.qabel.qabelbox.persistence.RepositoryFactory
+import de.qabel.qabelbox.storage.FileCache
 import de.qabel.qabelbox.storage.server.AndroidBlockServer
 import de.qabel.qabelbox.storage.server.BlockServer
 import rx.Scheduler
@@ -86,7 +104,55 @@ open class StorageModule {
     @Provides
     @Singleton
     internal fun providesScheduler(): BoxScheduler {
-        return BoxScheduler(Schedulers.from(Executors.newCachedThreadPool()))
+        return BoxScheduler(Schedulers.from(Executors.newFixedThreadPool(BoxScheduler.MAX_THREADS)))
+    }
+
+    @Provides
+    @Singleton
+    internal fun providesTransferScheduler(): TransferScheduler {
+        return TransferScheduler()
+    }
+
+    @Singleton
+    @Provides
+    fun providesBlockIndexRepository(factory: RepositoryFactory): BlockIndexRepository {
+        return SqliteBlockIndexRepository(factory.getAndroidClientDatabase())
+    }
+
+    @Singleton
+    @Provides
+    fun providesBlockDeduplicator(blockIndex: BlockIndexRepository, preference: AppPreference): BlockDeduplicator {
+        return BlockDeduplicator(blockIndex, { preference.isBlockDeduplicationEnabled })
+    }
+
+    @Singleton
+    @Provides
+    fun providesThumbnailCache(context: Context): ThumbnailCache {
+        return ThumbnailCache(File(context.cacheDir, "thumbnails"))
+    }
+
+    @Singleton
+    @Provides
+    fun providesFileSearchRepository(factory: RepositoryFactory): FileSearchRepository {
+        return SqliteFileSearchRepository(factory.getAndroidClientDatabase())
+    }
+
+    @Singleton
+    @Provides
+    fun providesRecentDocumentRepository(factory: RepositoryFactory): RecentDocumentRepository {
+        return SqliteRecentDocumentRepository(factory.getAndroidClientDatabase())
+    }
+
+    @Singleton
+    @Provides
+    fun providesRecentDocuments(repository: RecentDocumentRepository, context: Context): RecentDocuments {
+        return RecentDocuments(repository, FileCache(context), File(context.cacheDir, "files"))
+    }
+
+    @Singleton
+    @Provides
+    fun providesPartialDownloadRepository(factory: RepositoryFactory): PartialDownloadRepository {
+        return SqlitePartialDownloadRepository(factory.getAndroidClientDatabase())
     }
 
     @Singleton
@@ -95,16 +161,34 @@ open class StorageModule {
         return useCase
     }
 
+    @Singleton
+    @Provides
+    fun provideVolumeNavigatorRegistry(context: Context): VolumeNavigatorRegistry {
+        val registry = VolumeNavigatorRegistry()
+        context.applicationContext.registerReceiver(object : BroadcastReceiver() {
+            override fun onReceive(context: Context, intent: Intent) {
+                registry.invalidateAll()
+            }
+        }, IntentFilter(QblBroadcastConstants.Storage.BOX_VOLUMES_CHANGES))
+        return registry
+    }
+
     @Singleton
     @Provides
     fun provideVolumeManager(identityRepository: IdentityRepository,
                              contactRepository: ContactRepository,
                              preference: AppPreference,
                              context: Context, blockServer: BlockServer,
-                             scheduler: BoxScheduler):
+                             scheduler: BoxScheduler,
+                             registry: VolumeNavigatorRegistry,
+                             deduplicator: BlockDeduplicator,
+                             searchIndex: FileSearchRepository,
+                             recents: RecentDocumentRepository,
+                             partialDownloads: PartialDownloadRepository):
             VolumeManager {
         val (read, operation) = makeFileBrowserFactory(
-                identityRepository, contactRepository, preference.deviceId, context.cacheDir, blockServer, scheduler)
+                identityRepository, contactRepository, preference.deviceId, context.cacheDir, blockServer, scheduler,
+                registry, deduplicator, searchIndex, recents, partialDownloads)
         return BoxVolumeManager(identityRepository, read, operation)
     }
 
@@ -0,0 +1,14 @@
+package de.qabel.qabelbox.dagger.qualifiers;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import javax.inject.Qualifier;
+
+/**
+ * Repositories that are only used for reading and may be served by the read connection pool.
+ */
+@Qualifier
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadOnly {
+}
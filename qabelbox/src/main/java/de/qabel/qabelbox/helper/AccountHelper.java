@@ -21,6 +21,7 @@ public class AccountHelper {
     // every 1 hour
     public static long SYNC_INTERVAL = 60*60;
     private static final String TAG = "AccountHelper";
+    public static final String EXTRA_DROP_ID = "drop_id";
 
     public static void createSyncAccount(Context context) {
         // Create the account type and default account
@@ -30,7 +31,17 @@ public class AccountHelper {
     }
 
     public static void startOnDemandSyncAdapter() {
+        startOnDemandSyncAdapter(null);
+    }
+
+    /**
+     * @param dropId only the drops of the identity owning this drop are polled, null polls all drops
+     */
+    public static void startOnDemandSyncAdapter(String dropId) {
         Bundle settingsBundle = new Bundle();
+        if (dropId != null) {
+            settingsBundle.putString(EXTRA_DROP_ID, dropId);
+        }
         settingsBundle.putBoolean(
                 ContentResolver.SYNC_EXTRAS_MANUAL, true);
         settingsBundle.putBoolean(
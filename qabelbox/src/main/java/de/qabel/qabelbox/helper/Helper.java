@@ -5,5 +5,4 @@ public class Helper {
     public static final String INTENT_REFRESH_CONTACTLIST = "de.qabel.qabelbox.refreshContactList";
     public static final String INTENT_REFRESH_CHAT = "de.qabel.qabelbox.refreshChat";
     public static final String INTENT_SHOW_NOTIFICATION = "de.qabel.qabelbox.chatNotification";
-    public static final String AFFECTED_IDENTITIES_AND_CONTACTS = "de.qqabel.qqabelbox.affected";
 }
@@ -0,0 +1,22 @@
+package de.qabel.qabelbox.helper
+
+import rx.Observable
+import rx.Scheduler
+import rx.schedulers.Schedulers
+import java.util.concurrent.TimeUnit
+
+/**
+ * Collects the items into bursts that end after [window] without a new item, at the latest
+ * [maxWindow] after their first item or as soon as [flush] emits.
+ */
+fun <T> Observable<T>.bursts(window: Long, unit: TimeUnit,
+                             maxWindow: Long = window * 10,
+                             scheduler: Scheduler = Schedulers.computation(),
+                             flush: Observable<Unit> = Observable.never()): Observable<List<T>> =
+        publish { items ->
+            items.buffer {
+                Observable.merge(items.debounce(window, unit, scheduler).map { Unit },
+                        items.take(1).flatMap { Observable.timer(maxWindow, unit, scheduler) }.map { Unit },
+                        flush)
+            }
+        }.filter { it.isNotEmpty() }
@@ -10,6 +10,8 @@ import de.qabel.core.extensions.letApply
 import de.qabel.core.repository.IdentityRepository
 import de.qabel.core.repository.exception.EntityExistsException
 import de.qabel.qabelbox.QblBroadcastConstants.Identities.*
+import de.qabel.qabelbox.QblBroadcastConstants.Storage.BOX_VOLUMES_CHANGES
+import de.qabel.qabelbox.box.interactor.VolumeNavigatorRegistry
 import de.qabel.qabelbox.listeners.ActionIntentSender
 import rx.Single
 import rx.lang.kotlin.single
@@ -19,7 +21,8 @@ import javax.inject.Inject
 
 
 class MainIdentityUseCase @Inject constructor(private val identityRepository: IdentityRepository,
-                                              private val actionEventSender: ActionIntentSender) : IdentityUseCase {
+                                              private val actionEventSender: ActionIntentSender,
+                                              private val volumeNavigators: VolumeNavigatorRegistry) : IdentityUseCase {
 
     override fun getIdentities() = single<Identities> { single ->
         identityRepository.findAll().let {
@@ -41,7 +44,9 @@ class MainIdentityUseCase @Inject constructor(private val identityRepository: Id
     private fun updateIdentity(identity: Identity) = single<Identity> {
         val oldIdentity = identityRepository.find(identity.keyIdentifier, true)
         identityRepository.save(identity)
+        volumeNavigators.invalidate(identity.keyIdentifier)
         actionEventSender.sendActionIntentBroadCast(IDENTITY_CHANGED, Pair(KEY_IDENTITY, identity), Pair(OLD_IDENTITY, oldIdentity))
+        actionEventSender.sendActionIntentBroadCast(BOX_VOLUMES_CHANGES)
         it.onSuccess(identity)
     }
 
@@ -49,12 +54,15 @@ class MainIdentityUseCase @Inject constructor(private val identityRepository: Id
         val identity = createIdentity()
         identityRepository.save(identity)
         actionEventSender.sendActionIntentBroadCast(IDENTITY_CREATED, Pair(KEY_IDENTITY, identity))
+        actionEventSender.sendActionIntentBroadCast(BOX_VOLUMES_CHANGES)
         it.onSuccess(identity)
     }
 
     override fun deleteIdentity(identity: Identity) = single<Unit> {
         identityRepository.delete(identity)
+        volumeNavigators.invalidate(identity.keyIdentifier)
         actionEventSender.sendActionIntentBroadCast(IDENTITY_REMOVED, Pair(KEY_IDENTITY, identity))
+        actionEventSender.sendActionIntentBroadCast(BOX_VOLUMES_CHANGES)
         it.onSuccess(Unit)
     }
 
@@ -66,6 +74,7 @@ class MainIdentityUseCase @Inject constructor(private val identityRepository: Id
         }
         identityRepository.save(identity)
         actionEventSender.sendActionIntentBroadCast(IDENTITY_CREATED, Pair(KEY_IDENTITY, identity))
+        actionEventSender.sendActionIntentBroadCast(BOX_VOLUMES_CHANGES)
         it.onSuccess(identity)
     }
 
@@ -21,6 +21,10 @@ class IdentitiesAdapter(private val onClick: (identity: Identity) -> Unit,
         notifyItemRangeChanged(start, count)
     }
 
+    override fun notifyViewInserted(start: Int, count: Int) {
+        notifyItemRangeInserted(start, count)
+    }
+
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): IdentityListViewHolder {
         val v = LayoutInflater.from(parent.context).inflate(R.layout.item_identities, parent, false)
         return IdentityListViewHolder(v, onClick, onLongClick)
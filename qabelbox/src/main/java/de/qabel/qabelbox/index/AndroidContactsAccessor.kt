@@ -3,6 +3,9 @@ package de.qabel.qabelbox.index
 import android.content.Context
 import android.database.Cursor
 import android.provider.ContactsContract
+import android.provider.ContactsContract.CommonDataKinds.Email
+import android.provider.ContactsContract.CommonDataKinds.Phone
+import android.provider.ContactsContract.DeletedContacts
 import com.google.i18n.phonenumbers.NumberParseException
 import de.qabel.core.index.RawContact
 import de.qabel.core.index.formatPhoneNumber
@@ -10,90 +13,135 @@ import de.qabel.core.index.server.ExternalContactsAccessor
 import de.qabel.core.logging.QabelLog
 import de.qabel.qabelbox.helper.Formatter
 
-class AndroidContactsAccessor(private val context: Context) : ExternalContactsAccessor, QabelLog {
+/**
+ * Reads the emails and phone numbers of the address book with a single query on
+ * [ContactsContract.Data], joined by contact id in memory.
+ *
+ * Contacts with the same name are merged into one [RawContact] with the addresses of all of them.
+ *
+ * @param changedSince only contacts updated after this timestamp are read, 0 reads all contacts.
+ * The changed contacts are read with all rows of their ids and names, so they are merged like
+ * in a full read. Deleted contacts have no update timestamp, after a deletion the whole address
+ * book is read.
+ */
+class AndroidContactsAccessor(private val context: Context,
+                              private val changedSince: Long = 0) : ExternalContactsAccessor, QabelLog {
+
+    private class ContactData(val id: String, val name: String) {
+        val phones = mutableListOf<String>()
+        val emails = mutableListOf<String>()
+    }
+
+    companion object {
+        private val PROJECTION = arrayOf(
+                ContactsContract.Data.CONTACT_ID,
+                ContactsContract.Data.MIMETYPE,
+                ContactsContract.Data.DISPLAY_NAME_PRIMARY,
+                ContactsContract.Data.DATA1)
+        private val TYPE_SELECTION = ContactsContract.Data.MIMETYPE + " IN (?, ?)"
+        private val TYPES = arrayOf(Email.CONTENT_ITEM_TYPE, Phone.CONTENT_ITEM_TYPE)
+
+        // stays below the limit of 999 sqlite variables
+        private const val MAX_AFFECTED = 400
+    }
 
     private fun Cursor.getString(columnName: String): String? =
             try { getString(getColumnIndex(columnName)) }
             catch (e: Throwable) { null }
-    private fun Cursor.getInt(columnName: String): Int? =
-    try { getInt(getColumnIndex(columnName)) }
-    catch (e: Throwable) { null }
 
     override fun getContacts(): List<RawContact> {
+        val since = if (changedSince > 0 && contactsDeleted()) {
+            info("Contacts were deleted since $changedSince, reading all contacts")
+            0L
+        } else {
+            changedSince
+        }
+        val contacts = queryContactData(since)
         val rawContacts: MutableMap<String, RawContact> = mutableMapOf()
-        val contentResolver = context.contentResolver
-        contentResolver.query(ContactsContract.Contacts.CONTENT_URI,
-                null, null, null, null).use { contactCursor ->
-            if (contactCursor.count > 0) {
-                while (contactCursor.moveToNext()) {
-                    val id = contactCursor.getString(ContactsContract.Contacts._ID) ?: continue
+        for (contact in contacts.values) {
+            if (contact.emails.isEmpty() && contact.phones.isEmpty()) {
+                debug("Ignoring contact ${contact.name} without searchable value. ")
+                continue
+            }
+            val rawContact = rawContacts[contact.name]
+            if (rawContact != null) {
+                rawContact.emailAddresses.addAll(contact.emails.filter { !rawContact.emailAddresses.contains(it) })
+                rawContact.mobilePhoneNumbers.addAll(contact.phones.filter { !rawContact.mobilePhoneNumbers.contains(it) })
+            } else {
+                rawContacts.put(contact.name, RawContact(contact.name, contact.phones, contact.emails, contact.id))
+            }
+        }
+        info("${rawContacts.size} contacts found in ${contacts.size} changed since $since")
+        return rawContacts.values.sortedBy { it.displayName }
+    }
 
-                    val name = contactCursor.getString(ContactsContract.Contacts.DISPLAY_NAME)
-                    val primaryName = contactCursor.getString(ContactsContract.Contacts.DISPLAY_NAME_PRIMARY)
+    private fun contactsDeleted(): Boolean {
+        val cursor = context.contentResolver.query(DeletedContacts.CONTENT_URI, arrayOf(DeletedContacts.CONTACT_ID),
+                DeletedContacts.CONTACT_DELETED_TIMESTAMP + " > ?", arrayOf(changedSince.toString()), null)
+                ?: return false
+        return cursor.use { it.count > 0 }
+    }
 
-                    val contactName = if (primaryName != null && !primaryName.isEmpty())
-                        primaryName else name ?: ""
-                    val hasPhoneNumber = contactCursor.getInt(ContactsContract.Contacts.HAS_PHONE_NUMBER)?:0 > 0
+    private fun queryContactData(since: Long): Map<String, ContactData> {
+        if (since <= 0) {
+            return queryContactData(TYPE_SELECTION, TYPES)
+        }
+        val changed = queryContactData(TYPE_SELECTION + " AND " +
+                ContactsContract.Data.CONTACT_LAST_UPDATED_TIMESTAMP + " > ?", TYPES + since.toString())
+        if (changed.isEmpty()) {
+            return changed
+        }
+        val ids = changed.keys.toList()
+        val names = changed.values.map { it.name }.distinct()
+        if (ids.size + names.size > MAX_AFFECTED) {
+            return queryContactData(TYPE_SELECTION, TYPES)
+        }
+        return queryContactData(TYPE_SELECTION + " AND (" +
+                ContactsContract.Data.CONTACT_ID + " IN (" + placeholders(ids.size) + ") OR " +
+                ContactsContract.Data.DISPLAY_NAME_PRIMARY + " IN (" + placeholders(names.size) + "))",
+                TYPES + ids + names)
+    }
 
-                    val phones: MutableList<String> = if (hasPhoneNumber) queryContactPhones(id) else mutableListOf()
-                    val emails: MutableList<String> = queryContactEmails(id)
+    private fun placeholders(count: Int) = (1..count).map { "?" }.joinToString(", ")
 
-                    if (!emails.isEmpty() || !phones.isEmpty()) {
-                        if (rawContacts.containsKey(contactName)) {
-                            rawContacts[contactName]?.let { rawContact ->
-                                rawContact.emailAddresses.addAll(
-                                        emails.filter { rawContact.emailAddresses.contains(it) })
-                                rawContact.mobilePhoneNumbers.addAll(
-                                        phones.filter { rawContact.mobilePhoneNumbers.contains(it) })
-                            }
-                        } else {
-                            rawContacts.put(contactName, RawContact(contactName, phones, emails, id))
-                        }
-                    } else {
-                        debug("Ignoring contact $contactName without searchable value. ")
-                    }
+    private fun queryContactData(selection: String, selectionArgs: Array<String>): Map<String, ContactData> {
+        val contacts = linkedMapOf<String, ContactData>()
+        val cursor = context.contentResolver.query(ContactsContract.Data.CONTENT_URI, PROJECTION,
+                selection, selectionArgs, ContactsContract.Data.CONTACT_ID) ?: return contacts
+        cursor.use {
+            while (it.moveToNext()) {
+                val id = it.getString(ContactsContract.Data.CONTACT_ID) ?: continue
+                val value = it.getString(ContactsContract.Data.DATA1) ?: continue
+                val contact = contacts.getOrPut(id) {
+                    ContactData(id, it.getString(ContactsContract.Data.DISPLAY_NAME_PRIMARY) ?: "")
+                }
+                when (it.getString(ContactsContract.Data.MIMETYPE)) {
+                    Email.CONTENT_ITEM_TYPE -> addEmail(contact, value)
+                    Phone.CONTENT_ITEM_TYPE -> addPhone(contact, value)
                 }
             }
         }
-        info("${rawContacts.size} contacts found!")
-        return rawContacts.values.sortedBy { it.displayName }
+        return contacts
     }
 
-    private fun queryContactEmails(identifier: String): MutableList<String> {
-        val resultList = mutableListOf<String>()
-        context.contentResolver.query(ContactsContract.CommonDataKinds.Email.CONTENT_URI, null,
-                ContactsContract.CommonDataKinds.Email.CONTACT_ID + " = ?",
-                arrayOf(identifier), null).use {
-            while (it.moveToNext()) {
-                val mail = it.getString(ContactsContract.CommonDataKinds.Email.ADDRESS) ?: continue
-                if (Formatter.isEMailValid(mail) && !resultList.contains(mail)) {
-                    resultList.add(mail)
-                }
-            }
+    private fun addEmail(contact: ContactData, mail: String) {
+        if (Formatter.isEMailValid(mail) && !contact.emails.contains(mail)) {
+            contact.emails.add(mail)
         }
-        return resultList
     }
 
-    private fun queryContactPhones(identifier: String): MutableList<String> {
-        val phones = mutableListOf<String>()
-        context.contentResolver.query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI, null,
-                ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " = ?",
-                arrayOf(identifier), null).use {
-            while (it.moveToNext()) {
-                val phoneNo = it.getString(ContactsContract.CommonDataKinds.Phone.NUMBER) ?: continue
-                if (phoneNo.isEmpty()) {
-                    try {
-                        val normalized = formatPhoneNumber(phoneNo)
-                        if (!phones.contains(normalized)) {
-                            phones.add(normalized)
-                        }
-                    } catch (ex: NumberParseException) {
-                        //Ignore invalid numbers
-                    }
-                }
+    private fun addPhone(contact: ContactData, phoneNo: String) {
+        if (phoneNo.isEmpty()) {
+            return
+        }
+        try {
+            val normalized = formatPhoneNumber(phoneNo)
+            if (!contact.phones.contains(normalized)) {
+                contact.phones.add(normalized)
             }
+        } catch (ex: NumberParseException) {
+            //Ignore invalid numbers
         }
-        return phones
     }
 
 }
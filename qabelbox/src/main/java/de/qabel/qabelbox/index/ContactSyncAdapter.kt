@@ -98,8 +98,12 @@ open class ContactSyncAdapter : AbstractThreadedSyncAdapter, QabelLog, DataPermi
             syncResult: SyncResult) {
         if (indexPreferences.contactSyncEnabled && hasContactsReadPermission()) {
             try {
-                info("Starting contact sync")
-                val syncResults = indexService.syncContacts(AndroidContactsAccessor(context))
+                val syncStart = System.currentTimeMillis()
+                val changedSince = if (extras.getBoolean(ContentResolver.SYNC_EXTRAS_MANUAL))
+                    0 else indexPreferences.contactSyncTime
+                info("Starting contact sync, changes since $changedSince")
+                val syncResults = indexService.syncContacts(AndroidContactsAccessor(context, changedSince))
+                indexPreferences.contactSyncTime = syncStart
                 if (syncResults.isNotEmpty()) {
                     context.sendBroadcast(Intent(QblBroadcastConstants.Contacts.CONTACTS_CHANGED))
                     val grouped = syncResults.groupBy { it.action }
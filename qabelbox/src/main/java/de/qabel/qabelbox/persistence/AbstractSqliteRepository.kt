@@ -0,0 +1,49 @@
+package de.qabel.qabelbox.persistence
+
+import de.qabel.core.logging.QabelLog
+import de.qabel.core.repository.exception.PersistenceException
+import de.qabel.core.repository.sqlite.ClientDatabase
+import java.sql.PreparedStatement
+import java.sql.ResultSet
+import java.sql.SQLException
+
+/**
+ * Base for the app specific repositories on top of the [ClientDatabase].
+ */
+abstract class AbstractSqliteRepository(protected val database: ClientDatabase) : QabelLog {
+
+    protected fun <T> query(sql: String, block: (PreparedStatement) -> T): T {
+        try {
+            val statement = database.prepare(sql)
+            try {
+                return block(statement)
+            } finally {
+                statement.close()
+            }
+        } catch (e: SQLException) {
+            error("Query failed: $sql", e)
+            throw PersistenceException("Query failed: $sql", e)
+        }
+    }
+
+    protected fun <T> read(result: ResultSet, block: (ResultSet) -> T): T? {
+        try {
+            return if (result.next()) block(result) else null
+        } finally {
+            result.close()
+        }
+    }
+
+    protected fun <T> readAll(result: ResultSet, block: (ResultSet) -> T): List<T> {
+        try {
+            val rows = mutableListOf<T>()
+            while (result.next()) {
+                rows.add(block(result))
+            }
+            return rows
+        } finally {
+            result.close()
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+package de.qabel.qabelbox.persistence
+
+import de.qabel.core.config.Contact
+import de.qabel.core.config.Identity
+import de.qabel.core.logging.QabelLog
+import de.qabel.core.repositories.AndroidEntityManager
+import de.qabel.core.repository.ContactRepository
+import de.qabel.core.repository.IdentityRepository
+import java.util.*
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Memoizes identity and contact lookups by id and key id for the most recently used entities.
+ *
+ * The repositories hydrate a new entity on every find, so transforming a page of chat messages
+ * would otherwise query the same identity and contacts once per message.
+ * Identities are kept in the [entityManager] the repositories share, only their ids are
+ * memoized per key id here. Contacts are kept here, the entity manager does not map them.
+ * Entries have to be invalidated when identities or contacts change.
+ */
+class EntityLookupCache(private val identityRepository: IdentityRepository,
+                        private val contactRepository: ContactRepository,
+                        private val entityManager: AndroidEntityManager = AndroidEntityManager(),
+                        private val maxSize: Int = DEFAULT_MAX_SIZE) : QabelLog {
+
+    private class LruMap<K, V>(private val maxSize: Int) : LinkedHashMap<K, V>(maxSize, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<K, V>?) = size > maxSize
+    }
+
+    private val identityIds = LruMap<String, Int>(maxSize)
+    private val contacts = LruMap<Any, Contact>(maxSize)
+
+    private var generation = 0L
+    private val hitCount = AtomicLong()
+    private val missCount = AtomicLong()
+
+    val hits: Long
+        get() = hitCount.get()
+
+    val misses: Long
+        get() = missCount.get()
+
+    fun identity(id: Int): Identity {
+        val lookupGeneration = synchronized(this) {
+            entityManager.get(Identity::class.java, id)?.let {
+                hitCount.incrementAndGet()
+                return it
+            }
+            generation
+        }
+        missCount.incrementAndGet()
+        return identityRepository.find(id).apply { mapIdentity(lookupGeneration, id, this) }
+    }
+
+    fun identity(keyId: String): Identity {
+        val lookupGeneration = synchronized(this) {
+            identityIds[keyId]?.let { id ->
+                entityManager.get(Identity::class.java, id)?.let {
+                    hitCount.incrementAndGet()
+                    return it
+                }
+            }
+            generation
+        }
+        missCount.incrementAndGet()
+        return identityRepository.find(keyId).apply {
+            synchronized(this@EntityLookupCache) {
+                if (generation == lookupGeneration) {
+                    identityIds.put(keyId, id)
+                }
+            }
+            mapIdentity(lookupGeneration, id, this)
+        }
+    }
+
+    @Synchronized
+    private fun mapIdentity(lookupGeneration: Long, id: Int, identity: Identity) {
+        // do not keep entities that were found before an invalidation
+        if (generation == lookupGeneration) {
+            entityManager.put(Identity::class.java, identity, id)
+        }
+    }
+
+    fun contact(id: Int): Contact = lookup(contacts, id) { contactRepository.find(id) }
+
+    fun contact(keyId: String): Contact = lookup(contacts, keyId) { contactRepository.findByKeyId(keyId) }
+
+    private fun <T> lookup(entries: LruMap<Any, T>, key: Any, find: () -> T): T {
+        val lookupGeneration = synchronized(this) {
+            entries[key]?.let {
+                hitCount.incrementAndGet()
+                return it
+            }
+            generation
+        }
+        missCount.incrementAndGet()
+        val entity = find()
+        synchronized(this) {
+            // do not keep entities that were found before an invalidation
+            if (generation == lookupGeneration) {
+                entries.put(key, entity)
+            }
+        }
+        return entity
+    }
+
+    @Synchronized
+    fun invalidateIdentities() {
+        generation++
+        identityIds.clear()
+        entityManager.remove(Identity::class.java)
+    }
+
+    @Synchronized
+    fun invalidateContacts() {
+        debug("Invalidating ${contacts.size} contacts (hits: $hits, misses: $misses)")
+        generation++
+        contacts.clear()
+    }
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 256
+    }
+
+}
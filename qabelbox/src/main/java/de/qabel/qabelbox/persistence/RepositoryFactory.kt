@@ -6,12 +6,16 @@ import de.qabel.chat.repository.ChatDropMessageRepository
 import de.qabel.chat.repository.ChatShareRepository
 import de.qabel.chat.repository.sqlite.SqliteChatDropMessageRepository
 import de.qabel.chat.repository.sqlite.SqliteChatShareRepository
+import de.qabel.core.config.Identity
 import de.qabel.core.repositories.AndroidClientDatabase
-import de.qabel.core.repositories.AndroidFakeEntityManager
+import de.qabel.core.repositories.AndroidEntityManager
 import de.qabel.core.repository.*
 import de.qabel.core.repository.sqlite.*
 import de.qabel.core.repository.sqlite.hydrator.DropURLHydrator
 import de.qabel.qabelbox.box.interactor.JdbcPrefix
+import de.qabel.qabelbox.chat.notifications.NotifiedMessages
+import de.qabel.qabelbox.chat.repository.ChatConversationRepository
+import de.qabel.qabelbox.chat.repository.SqliteChatConversationRepository
 import de.qabel.qabelbox.exceptions.QblPersistenceException
 import java.io.File
 import java.sql.Connection
@@ -19,17 +23,40 @@ import java.sql.Driver
 import java.sql.DriverManager
 import java.sql.SQLException
 
-class RepositoryFactory(private val context: Context) {
+/**
+ * Creates the repositories, each repository is created once and shared.
+ *
+ * With a [readPoolSize] above 0 the database is switched to write-ahead logging and
+ * the read-only repositories run on a pool of separate connections, so UI reads
+ * do not wait for writes of the sync adapters. Each pooled connection has its own
+ * read-only repositories, a call leases a connection and runs on the repository bound to it.
+ * If the database cannot switch to write-ahead logging, reads stay on the write connection.
+ */
+class RepositoryFactory @JvmOverloads constructor(private val context: Context,
+                                                  private val readPoolSize: Int = 0) {
 
     private var connection: Connection? = null
     private var androidClientDatabase: AndroidClientDatabase? = null
-    val entityManager: EntityManager by lazy { AndroidFakeEntityManager() }
+    private var writeAheadLog = false
+    private var readPool: ResourcePool<ReadConnection>? = null
+    private val repositories = mutableMapOf<Class<*>, Any>()
+    private val readRepositories = mutableMapOf<Class<*>, Any>()
+    val entityManager: AndroidEntityManager by lazy { AndroidEntityManager() }
 
     val databasePath: File get() = context.getFileStreamPath(DB_REPOSITORIES)
 
+    /**
+     * A read-only connection with the repositories bound to it, only used while it is leased from the pool.
+     */
+    private class ReadConnection(val connection: Connection) {
+        val database = AndroidClientDatabase(connection)
+        val repositories = mutableMapOf<Class<*>, Any>()
+    }
+
     companion object {
         private const val DB_REPOSITORIES = "client-database"
         private val TAG = "RepositorySQLite"
+        const val DEFAULT_READ_POOL_SIZE = 2
     }
 
     init {
@@ -48,6 +75,7 @@ class RepositoryFactory(private val context: Context) {
 
     fun deleteDatabase() {
         close()
+        entityManager.clear()
         try {
             val outputStream = context.openFileOutput(DB_REPOSITORIES, Context.MODE_PRIVATE)
             outputStream.write(1)
@@ -58,18 +86,18 @@ class RepositoryFactory(private val context: Context) {
         if (!context.deleteFile(DB_REPOSITORIES)) {
             throw IllegalStateException("Could not delete client database")
         }
+        NotifiedMessages.clear(context)
     }
 
+    @Synchronized
     @Throws(QblPersistenceException::class)
     fun getAndroidClientDatabase(): AndroidClientDatabase {
-        val conn = connection ?:
-                try {
-                    val c = DriverManager.getConnection(JdbcPrefix.jdbcPrefix + databasePath)
-                    connection = c
-                    c
-                } catch (e: SQLException) {
-                    throw QblPersistenceException(e)
-                }
+        val conn = connection ?: openConnection().apply {
+            if (readPoolSize > 0) {
+                writeAheadLog = enableWriteAheadLog(this)
+            }
+            connection = this
+        }
         val database = androidClientDatabase ?: AndroidClientDatabase(conn).apply {
             migrate()
             androidClientDatabase = this
@@ -77,7 +105,61 @@ class RepositoryFactory(private val context: Context) {
         return database
     }
 
+    private fun openConnection(): Connection =
+            try {
+                DriverManager.getConnection(JdbcPrefix.jdbcPrefix + databasePath)
+            } catch (e: SQLException) {
+                throw QblPersistenceException(e)
+            }
+
+    /**
+     * @return true if the database is in write-ahead logging mode, SQLite answers the pragma with the mode it is in
+     */
+    private fun enableWriteAheadLog(connection: Connection): Boolean {
+        try {
+            val statement = connection.createStatement()
+            try {
+                val result = statement.executeQuery("PRAGMA journal_mode=WAL")
+                val mode = if (result.next()) result.getString(1) else null
+                result.close()
+                if (!"wal".equals(mode, ignoreCase = true)) {
+                    Log.w(TAG, "Write-ahead logging not available, journal mode is $mode")
+                    return false
+                }
+                return true
+            } finally {
+                statement.close()
+            }
+        } catch (e: SQLException) {
+            Log.w(TAG, "Could not enable write-ahead logging", e)
+            return false
+        }
+    }
+
+    /**
+     * Pool of read-only connections, the write connection has to be migrated first.
+     */
+    @Synchronized
+    private fun getReadPool(): ResourcePool<ReadConnection> {
+        getAndroidClientDatabase()
+        return readPool ?: ResourcePool((1..readPoolSize).map {
+            ReadConnection(openConnection().apply { isReadOnly = true })
+        }).apply { readPool = this }
+    }
+
+    @Synchronized
     private fun close() {
+        readPool?.resources?.forEach {
+            try {
+                it.connection.close()
+            } catch (e: SQLException) {
+                Log.e(TAG, "Could not close read connection")
+            }
+        }
+        readPool = null
+        readRepositories.clear()
+        repositories.clear()
+        androidClientDatabase?.closeStatements()
         connection?.let {
             try {
                 it.close()
@@ -90,32 +172,90 @@ class RepositoryFactory(private val context: Context) {
         }
     }
 
-    fun getIdentityRepository(): IdentityRepository {
-        val dropUrlRepository = getDropUrlRepository()
-        val prefixRepository = getSqlitePrefixRepository()
-        return SqliteIdentityRepository(getAndroidClientDatabase(), entityManager, prefixRepository, dropUrlRepository)
+    @Suppress("UNCHECKED_CAST")
+    @Synchronized
+    private fun <T : Any> shared(type: Class<T>, create: () -> T): T =
+            repositories[type] as T? ?: create().apply { repositories.put(type, this) }
+
+    /**
+     * @return a repository that runs each call on one of the read connections
+     */
+    @Suppress("UNCHECKED_CAST")
+    @Synchronized
+    private fun <T : Any> readOnly(type: Class<T>, create: (AndroidClientDatabase) -> T): T {
+        getAndroidClientDatabase()
+        if (readPoolSize <= 0 || !writeAheadLog) {
+            return shared(type) { create(getAndroidClientDatabase()) }
+        }
+        return readRepositories[type] as T? ?: getReadPool().proxy(type) { read ->
+            read.repositories.getOrPut(type) { create(read.database) } as T
+        }.apply { readRepositories.put(type, this) }
+    }
+
+    /**
+     * Time spent waiting for a read connection, null without a read pool.
+     */
+    val readWaitMetrics: ResourcePool.Metrics?
+        @Synchronized get() = readPool?.metrics
+
+    /**
+     * Drops deleted identities from the entity manager, SQLite may hand their id to the next identity.
+     */
+    private class EvictingIdentityRepository(private val repository: IdentityRepository,
+                                             private val entityManager: AndroidEntityManager) :
+            IdentityRepository by repository {
+        override fun delete(identity: Identity) {
+            repository.delete(identity)
+            entityManager.remove(Identity::class.java, identity.id)
+        }
+    }
+
+    fun getIdentityRepository(): IdentityRepository = shared(IdentityRepository::class.java) {
+        EvictingIdentityRepository(SqliteIdentityRepository(getAndroidClientDatabase(), entityManager,
+                getSqlitePrefixRepository(), getDropUrlRepository()), entityManager)
+    }
+
+    fun getContactRepository(): ContactRepository = shared(ContactRepository::class.java) {
+        SqliteContactRepository(getAndroidClientDatabase(), entityManager,
+                getDropUrlRepository(), getIdentityRepository())
     }
 
-    fun getContactRepository(): ContactRepository =
-            SqliteContactRepository(getAndroidClientDatabase(),
-                    entityManager,
-                    getDropUrlRepository(),
-                    getIdentityRepository())
+    fun getReadOnlyContactRepository(): ContactRepository =
+            readOnly(ContactRepository::class.java) { createContactRepository(it) }
+
+    fun getSqlitePrefixRepository(): SqlitePrefixRepository = shared(SqlitePrefixRepository::class.java) {
+        SqlitePrefixRepository(getAndroidClientDatabase(), entityManager)
+    }
+
+    fun getDropUrlRepository(): DropUrlRepository = shared(DropUrlRepository::class.java) {
+        SqliteDropUrlRepository(getAndroidClientDatabase(), DropURLHydrator())
+    }
 
-    fun getSqlitePrefixRepository(): SqlitePrefixRepository =
-            SqlitePrefixRepository(getAndroidClientDatabase(), entityManager)
+    fun getChatDropMessageRepository(): ChatDropMessageRepository = shared(ChatDropMessageRepository::class.java) {
+        SqliteChatDropMessageRepository(getAndroidClientDatabase(), entityManager)
+    }
 
+    fun getReadOnlyChatDropMessageRepository(): ChatDropMessageRepository =
+            readOnly(ChatDropMessageRepository::class.java) {
+                SqliteChatDropMessageRepository(it, entityManager)
+            }
 
-    fun getDropUrlRepository(): DropUrlRepository =
-            SqliteDropUrlRepository(getAndroidClientDatabase(), DropURLHydrator())
+    fun getReadOnlyChatConversationRepository(): ChatConversationRepository =
+            readOnly(ChatConversationRepository::class.java) { SqliteChatConversationRepository(it) }
 
-    fun getChatDropMessageRepository(): ChatDropMessageRepository =
-            SqliteChatDropMessageRepository(getAndroidClientDatabase(), entityManager)
+    fun getDropStateRepository(): DropStateRepository = shared(DropStateRepository::class.java) {
+        SqliteDropStateRepository(getAndroidClientDatabase(), entityManager)
+    }
 
-    fun getDropStateRepository(): DropStateRepository =
-            SqliteDropStateRepository(getAndroidClientDatabase(), entityManager)
+    fun getChatShareRepository(): ChatShareRepository = shared(ChatShareRepository::class.java) {
+        SqliteChatShareRepository(getAndroidClientDatabase(), entityManager)
+    }
 
-    fun getChatShareRepository() : ChatShareRepository =
-            SqliteChatShareRepository(getAndroidClientDatabase(), entityManager)
+    private fun createContactRepository(database: AndroidClientDatabase): ContactRepository {
+        val dropUrlRepository = SqliteDropUrlRepository(database, DropURLHydrator())
+        return SqliteContactRepository(database, entityManager, dropUrlRepository,
+                SqliteIdentityRepository(database, entityManager,
+                        SqlitePrefixRepository(database, entityManager), dropUrlRepository))
+    }
 
 }
@@ -0,0 +1,80 @@
+package de.qabel.qabelbox.persistence
+
+import de.qabel.core.logging.QabelLog
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Proxy
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Hands out a fixed set of resources to one user at a time, callers block until a resource is free.
+ */
+class ResourcePool<T>(val resources: List<T>) : QabelLog {
+
+    data class Metrics(val acquisitions: Long, val totalWaitMillis: Long, val maxWaitMillis: Long) {
+        val averageWaitMillis: Long
+            get() = if (acquisitions > 0) totalWaitMillis / acquisitions else 0
+    }
+
+    private val free = ArrayBlockingQueue<T>(resources.size, false, resources)
+    private val acquisitions = AtomicLong()
+    private val totalWait = AtomicLong()
+    private val maxWait = AtomicLong()
+
+    val size = resources.size
+
+    val metrics: Metrics
+        get() = Metrics(acquisitions.get(), totalWait.get(), maxWait.get())
+
+    fun <R> use(block: (T) -> R): R {
+        val start = System.currentTimeMillis()
+        val resource = free.take()
+        recordWait(System.currentTimeMillis() - start)
+        try {
+            return block(resource)
+        } finally {
+            free.put(resource)
+        }
+    }
+
+    private fun recordWait(wait: Long) {
+        acquisitions.incrementAndGet()
+        totalWait.addAndGet(wait)
+        while (true) {
+            val max = maxWait.get()
+            if (wait <= max || maxWait.compareAndSet(max, wait)) {
+                break
+            }
+        }
+        if (wait > SLOW_WAIT_MILLIS) {
+            warn("Waited ${wait}ms for a pooled connection: $metrics")
+        }
+    }
+
+    /**
+     * Implements [type] by running each call on a pooled instance.
+     */
+    fun proxy(type: Class<T>): T = proxy(type) { it }
+
+    /**
+     * Implements [type] by running each call on the instance [bind] returns for a leased resource.
+     */
+    fun <R> proxy(type: Class<R>, bind: (T) -> R): R {
+        val handler = InvocationHandler { proxy, method, args ->
+            use {
+                try {
+                    method.invoke(bind(it), *(args ?: emptyArray()))
+                } catch (e: InvocationTargetException) {
+                    throw e.targetException
+                }
+            }
+        }
+        return type.cast(Proxy.newProxyInstance(type.classLoader, arrayOf(type), handler))
+    }
+
+    companion object {
+        const val SLOW_WAIT_MILLIS = 100L
+    }
+
+}
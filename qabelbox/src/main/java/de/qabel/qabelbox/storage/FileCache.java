@@ -4,15 +4,23 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.CursorIndexOutOfBoundsException;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import de.qabel.box.storage.BoxFile;
 import de.qabel.qabelbox.storage.FileCacheContract.FileEntry;
 
+/**
+ * Cache of decrypted files, bounded by a byte budget.
+ * If the budget is exceeded the least recently accessed files are evicted.
+ */
 public class FileCache extends SQLiteOpenHelper {
 
     private static final String CREATE_TABLE =
@@ -20,10 +28,16 @@ public class FileCache extends SQLiteOpenHelper {
                     FileEntry.COL_REF + " TEXT NOT NULL," +
                     FileEntry.COL_PATH + " TEXT NOT NULL," +
                     FileEntry.COL_MTIME + " LONG NOT NULL," +
-                    FileEntry.COL_SIZE + " LONG NOT NULL);";
+                    FileEntry.COL_SIZE + " LONG NOT NULL," +
+                    FileEntry.COL_ACCESSED + " LONG NOT NULL DEFAULT 0);";
 
-    public static final int DATABASE_VERSION = 1;
+    private static final String CREATE_INDEX =
+            "CREATE INDEX IF NOT EXISTS " + FileEntry.INDEX_REF + " ON " +
+                    FileEntry.TABLE_NAME + "(" + FileEntry.COL_REF + ");";
+
+    public static final int DATABASE_VERSION = 2;
     public static final String DATABASE_NAME = "FileCache.db";
+    public static final long DEFAULT_MAX_BYTES = 100 * 1024 * 1024;
     private static final String TAG = "FileCache";
 
     private class CacheEntry {
@@ -33,27 +47,80 @@ public class FileCache extends SQLiteOpenHelper {
         String path;
     }
 
+    public static class Statistics {
+        public final long hits;
+        public final long misses;
+        public final long bytesHeld;
+        public final long bytesEvicted;
+
+        Statistics(long hits, long misses, long bytesHeld, long bytesEvicted) {
+            this.hits = hits;
+            this.misses = misses;
+            this.bytesHeld = bytesHeld;
+            this.bytesEvicted = bytesEvicted;
+        }
+
+        public double getHitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "hits: " + hits + ", misses: " + misses + ", held: " + bytesHeld +
+                    "b, evicted: " + bytesEvicted + "b";
+        }
+    }
+
+    private long maxBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesEvicted = new AtomicLong();
+
     public FileCache(Context context) {
+        this(context, DEFAULT_MAX_BYTES);
+    }
+
+    public FileCache(Context context, long maxBytes) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.maxBytes = maxBytes;
     }
 
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
         sqLiteDatabase.execSQL(CREATE_TABLE);
+        sqLiteDatabase.execSQL(CREATE_INDEX);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int from, int to) {
-        sqLiteDatabase.execSQL("DROP TABLE " + FileEntry.TABLE_NAME + ";");
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + FileEntry.TABLE_NAME + ";");
+        onCreate(sqLiteDatabase);
     }
 
-    public void remove(CacheEntry entry) {
-        File cachedFile = new File(entry.path);
-        if (cachedFile.exists()) {
-            if (!cachedFile.delete()) {
-                Log.d(TAG, "Cannot delete cached file.");
-            }
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Change the byte budget, evicts entries immediately if the cache exceeds the new budget.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        SQLiteDatabase database = getWritableDatabase();
+        List<CacheEntry> evicted;
+        database.beginTransaction();
+        try {
+            evicted = evict(database, null);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
         }
+        deleteFiles(evicted);
+    }
+
+    public void remove(CacheEntry entry) {
+        deleteFile(entry);
         SQLiteDatabase database = getWritableDatabase();
         int rows = database.delete(FileEntry.TABLE_NAME, FileEntry.COL_REF + "=?",
                 new String[]{entry.ref});
@@ -70,37 +137,139 @@ public class FileCache extends SQLiteOpenHelper {
     }
 
     public long put(BoxFile boxFile, File file) {
-        remove(boxFile.getBlock());
-        Log.i(TAG, "Put into cache: " + boxFile.getBlock() + "(" + file.getAbsolutePath() + ")");
+        return put(boxFile.getBlock(), boxFile.getMtime(), file);
+    }
+
+    /**
+     * @param ref block of the file
+     * @param mTime modification time of the file, a cached file is only valid for the same mtime
+     */
+    public synchronized long put(String ref, long mTime, File file) {
+        Log.i(TAG, "Put into cache: " + ref + "(" + file.getAbsolutePath() + ")");
+        CacheEntry previous = getCachedEntry(ref);
         ContentValues values = new ContentValues();
-        values.put(FileEntry.COL_REF, boxFile.getBlock());
+        values.put(FileEntry.COL_REF, ref);
         values.put(FileEntry.COL_PATH, file.getAbsolutePath());
-        values.put(FileEntry.COL_MTIME, boxFile.getMtime());
+        values.put(FileEntry.COL_MTIME, mTime);
         values.put(FileEntry.COL_SIZE, file.length());
-        long id = getWritableDatabase().insert(FileEntry.TABLE_NAME, null, values);
+        values.put(FileEntry.COL_ACCESSED, System.currentTimeMillis());
+
+        SQLiteDatabase database = getWritableDatabase();
+        long id;
+        List<CacheEntry> evicted;
+        database.beginTransaction();
+        try {
+            database.delete(FileEntry.TABLE_NAME, FileEntry.COL_REF + "=?",
+                    new String[]{ref});
+            id = database.insert(FileEntry.TABLE_NAME, null, values);
+            evicted = evict(database, ref);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
         if (id == -1) {
-            Log.e(TAG, "Failed putting into cache: " + boxFile.getBlock());
+            Log.e(TAG, "Failed putting into cache: " + ref);
+        }
+        if (previous != null && !previous.path.equals(file.getAbsolutePath())) {
+            deleteFile(previous);
         }
+        deleteFiles(evicted);
         return id;
     }
 
     public File get(BoxFile boxFile) {
-        CacheEntry cacheEntry = getCachedEntry(boxFile.getBlock());
+        return get(boxFile.getBlock(), boxFile.getMtime());
+    }
+
+    public File get(String ref, long mTime) {
+        CacheEntry cacheEntry = getCachedEntry(ref);
 
-        Log.i(TAG, "get from cache: " + boxFile.getBlock() + "(" + (cacheEntry != null ? cacheEntry.path : "null") + ")");
+        Log.i(TAG, "get from cache: " + ref + "(" + (cacheEntry != null ? cacheEntry.path : "null") + ")");
         if (cacheEntry != null) {
             File file = new File(cacheEntry.path);
-            if (boxFile.getMtime() == cacheEntry.mTime &&
+            if (mTime == cacheEntry.mTime &&
                     file.exists() &&
                     file.length() == cacheEntry.size) {
+                touch(cacheEntry);
+                hits.incrementAndGet();
                 return file;
             } else {
                 remove(cacheEntry);
             }
         }
+        misses.incrementAndGet();
         return null;
     }
 
+    public Statistics getStatistics() {
+        return new Statistics(hits.get(), misses.get(), getBytesHeld(getReadableDatabase()), bytesEvicted.get());
+    }
+
+    private long getBytesHeld(SQLiteDatabase database) {
+        return DatabaseUtils.longForQuery(database,
+                "SELECT COALESCE(SUM(" + FileEntry.COL_SIZE + "), 0) FROM " + FileEntry.TABLE_NAME, null);
+    }
+
+    private void touch(CacheEntry entry) {
+        ContentValues values = new ContentValues();
+        values.put(FileEntry.COL_ACCESSED, System.currentTimeMillis());
+        getWritableDatabase().update(FileEntry.TABLE_NAME, values, FileEntry.COL_REF + "=?",
+                new String[]{entry.ref});
+    }
+
+    /**
+     * Removes the least recently accessed entries until the cache fits into the budget.
+     * Has to be called inside of a transaction, the returned entries files are not deleted yet.
+     *
+     * @param keepRef ref that must not be evicted or null
+     */
+    private List<CacheEntry> evict(SQLiteDatabase database, String keepRef) {
+        List<CacheEntry> evicted = new ArrayList<>();
+        long excess = getBytesHeld(database) - maxBytes;
+        if (excess <= 0) {
+            return evicted;
+        }
+        Cursor cursor = database.query(FileEntry.TABLE_NAME,
+                new String[]{FileEntry.COL_REF, FileEntry.COL_PATH, FileEntry.COL_SIZE},
+                null, null, null, null, FileEntry.COL_ACCESSED + " ASC, rowid ASC");
+        try {
+            while (excess > 0 && cursor.moveToNext()) {
+                CacheEntry entry = new CacheEntry();
+                entry.ref = cursor.getString(cursor.getColumnIndex(FileEntry.COL_REF));
+                if (entry.ref.equals(keepRef)) {
+                    continue;
+                }
+                entry.path = cursor.getString(cursor.getColumnIndex(FileEntry.COL_PATH));
+                entry.size = cursor.getLong(cursor.getColumnIndex(FileEntry.COL_SIZE));
+                evicted.add(entry);
+                excess -= entry.size;
+            }
+        } finally {
+            cursor.close();
+        }
+        for (CacheEntry entry : evicted) {
+            database.delete(FileEntry.TABLE_NAME, FileEntry.COL_REF + "=?", new String[]{entry.ref});
+            bytesEvicted.addAndGet(entry.size);
+            Log.d(TAG, "Evicted from cache: " + entry.ref);
+        }
+        return evicted;
+    }
+
+    private void deleteFiles(List<CacheEntry> entries) {
+        for (CacheEntry entry : entries) {
+            deleteFile(entry);
+        }
+    }
+
+    private void deleteFile(CacheEntry entry) {
+        File cachedFile = new File(entry.path);
+        if (cachedFile.exists()) {
+            if (!cachedFile.delete()) {
+                Log.d(TAG, "Cannot delete cached file.");
+            }
+        }
+    }
+
     private CacheEntry getCachedEntry(String ref) {
         SQLiteDatabase database = getReadableDatabase();
         Cursor cursor = database.query(FileEntry.TABLE_NAME, new String[]{FileEntry.COL_PATH, FileEntry.COL_MTIME, FileEntry.COL_SIZE},
@@ -14,6 +14,8 @@ public final class FileCacheContract {
         public static final String COL_PATH = "path";
         public static final String COL_MTIME = "mtime";
         public static final String COL_SIZE = "size";
+        public static final String COL_ACCESSED = "accessed";
+        public static final String INDEX_REF = "idx_cache_ref";
 
 
     }
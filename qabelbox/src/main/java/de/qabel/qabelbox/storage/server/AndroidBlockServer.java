@@ -39,8 +39,13 @@ public class AndroidBlockServer extends BaseServer implements BlockServer {
     private void doFileServerAction(String prefix, String path, String method,
                                     RequestBody body, RequestCallback callback,
                                     String ifModified, String eTag) {
-        Request.Builder builder = new Request.Builder()
-                .url(urlForFile(prefix, path));
+        doFileServerAction(new Request.Builder(), prefix, path, method, body, callback, ifModified, eTag);
+    }
+
+    private void doFileServerAction(Request.Builder builder, String prefix, String path, String method,
+                                    RequestBody body, RequestCallback callback,
+                                    String ifModified, String eTag) {
+        builder = builder.url(urlForFile(prefix, path));
 
         builder = builder.method(method, body);
 
@@ -62,6 +67,30 @@ public class AndroidBlockServer extends BaseServer implements BlockServer {
         doFileServerAction(prefix, path, "GET", null, callback, ifModified, null);
     }
 
+    @Override
+    public void downloadFile(String prefix, String path, long offset, String ifRange, DownloadRequestCallback callback) {
+        doFileServerAction(rangeRequest(offset, ifRange), prefix, path, "GET", null, callback, null, null);
+    }
+
+    @Override
+    public void streamFile(String prefix, String path, String ifModified, RequestCallback callback) {
+        doFileServerAction(prefix, path, "GET", null, callback, ifModified, null);
+    }
+
+    @Override
+    public void streamFile(String prefix, String path, long offset, String ifRange, RequestCallback callback) {
+        doFileServerAction(rangeRequest(offset, ifRange), prefix, path, "GET", null, callback, null, null);
+    }
+
+    private Request.Builder rangeRequest(long offset, String ifRange) {
+        Request.Builder builder = new Request.Builder()
+                .addHeader("Range", "bytes=" + offset + "-");
+        if (ifRange != null) {
+            builder.addHeader("If-Range", ifRange);
+        }
+        return builder;
+    }
+
     @Override
     public void uploadFile(String prefix, String name, InputStream input, String eTag, UploadRequestCallback callback) {
 
@@ -14,6 +14,24 @@ public interface BlockServer {
 
     void downloadFile(String prefix, String path, String ifModified, DownloadRequestCallback callback);
 
+    /**
+     * Requests the file from the offset on if it still matches the etag in ifRange.
+     * The server answers 206 with the remaining content, or 200 with the whole file if it changed.
+     */
+    void downloadFile(String prefix, String path, long offset, String ifRange, DownloadRequestCallback callback);
+
+    /**
+     * Like {@link #downloadFile} but passes the unconsumed response to the callback,
+     * the callback is responsible for closing the response body.
+     */
+    void streamFile(String prefix, String path, String ifModified, RequestCallback callback);
+
+    /**
+     * Range request like {@link #downloadFile(String, String, long, String, DownloadRequestCallback)}
+     * that passes the unconsumed response to the callback.
+     */
+    void streamFile(String prefix, String path, long offset, String ifRange, RequestCallback callback);
+
     void uploadFile(String prefix, String name, InputStream input, String eTag, UploadRequestCallback callback);
 
     void deleteFile(String prefix, String path, RequestCallback callback);
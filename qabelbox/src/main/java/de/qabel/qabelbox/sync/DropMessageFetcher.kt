@@ -0,0 +1,130 @@
+package de.qabel.qabelbox.sync
+
+import de.qabel.chat.repository.ChatDropMessageRepository
+import de.qabel.chat.repository.entities.ChatDropMessage
+import de.qabel.chat.service.ChatService
+import de.qabel.chat.service.MainChatService
+import de.qabel.chat.service.SharingService
+import de.qabel.core.config.Identities
+import de.qabel.core.config.Identity
+import de.qabel.core.drop.DropURL
+import de.qabel.core.http.DropConnector
+import de.qabel.core.http.DropResult
+import de.qabel.core.logging.QabelLog
+import de.qabel.core.repository.ContactRepository
+import de.qabel.core.repository.DropStateRepository
+import de.qabel.core.repository.IdentityRepository
+import de.qabel.core.repository.entities.DropState
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import javax.inject.Inject
+
+/**
+ * Fetches drop messages, either for all identities or only for the identity owning a single drop.
+ *
+ * The drops are requested in parallel on an executor shared by all fetchers. The results are
+ * handled afterwards one identity after another on the calling thread by a [MainChatService]
+ * that only sees this identity, so the ETags of the [DropStateRepository] and the message
+ * handling of the chat service are kept and nothing is stored concurrently.
+ */
+open class DropMessageFetcher @Inject constructor(private val dropConnector: DropConnector,
+                                                  private val identityRepository: IdentityRepository,
+                                                  private val contactRepository: ContactRepository,
+                                                  private val chatDropMessageRepository: ChatDropMessageRepository,
+                                                  private val dropStateRepository: DropStateRepository,
+                                                  private val sharingService: SharingService) : QabelLog {
+
+    private class SingleIdentityRepository(private val identity: Identity,
+                                           repository: IdentityRepository) : IdentityRepository by repository {
+        override fun findAll(): Identities = Identities().apply { put(identity) }
+    }
+
+    /**
+     * Serves each drop once from the requests started before, any further request goes to the
+     * network again.
+     */
+    private class PrefetchedConnector(private val connector: DropConnector,
+                                      private val requests: MutableMap<DropURL, Future<DropResult>>) :
+            DropConnector by connector {
+
+        override fun receiveDropMessages(identity: Identity, dropUrl: DropURL, dropState: DropState): DropResult {
+            val request = requests.remove(dropUrl)
+                    ?: return connector.receiveDropMessages(identity, dropUrl, dropState)
+            try {
+                return request.get()
+            } catch (e: ExecutionException) {
+                throw e.cause ?: e
+            }
+        }
+    }
+
+    fun fetchAll(): Map<Identity, List<ChatDropMessage>> {
+        val identities = identityRepository.findAll().identities
+        val start = System.currentTimeMillis()
+        val result = fetch(identities)
+        info("Polled ${identities.size} identities in ${System.currentTimeMillis() - start}ms")
+        return result
+    }
+
+    /**
+     * @return null if no identity owns the drop
+     */
+    fun fetchDrop(dropId: String): Map<Identity, List<ChatDropMessage>>? {
+        val identity = identityRepository.findAll().identities.firstOrNull {
+            it.dropUrls.any { it.uri.path.trimEnd('/').endsWith("/" + dropId) }
+        } ?: return null
+        val start = System.currentTimeMillis()
+        val result = fetch(listOf(identity))
+        info("Polled drop $dropId in ${System.currentTimeMillis() - start}ms")
+        return result
+    }
+
+    private fun fetch(identities: Collection<Identity>): Map<Identity, List<ChatDropMessage>> {
+        val requests = mutableMapOf<DropURL, Future<DropResult>>()
+        identities.forEach { identity ->
+            identity.dropUrls.forEach { dropUrl ->
+                val dropState = dropStateRepository.getDropState(dropUrl)
+                requests.put(dropUrl, executor.submit(Callable {
+                    dropConnector.receiveDropMessages(identity, dropUrl, dropState)
+                }))
+            }
+        }
+        val connector = PrefetchedConnector(dropConnector, requests)
+        val result = mutableMapOf<Identity, List<ChatDropMessage>>()
+        var failure: Throwable? = null
+        try {
+            identities.forEach {
+                try {
+                    result.putAll(createChatService(SingleIdentityRepository(it, identityRepository),
+                            connector).refreshMessages())
+                } catch (e: Exception) {
+                    error("Polling drops failed", e)
+                    failure = e
+                }
+            }
+        } finally {
+            requests.values.forEach { it.cancel(true) }
+        }
+        failure?.let { if (result.isEmpty()) throw it }
+        return result
+    }
+
+    protected open fun createChatService(identityRepository: IdentityRepository,
+                                         dropConnector: DropConnector): ChatService =
+            MainChatService(dropConnector, identityRepository, contactRepository, chatDropMessageRepository,
+                    dropStateRepository, sharingService)
+
+    companion object {
+        const val PARALLELISM = 3
+
+        private val executor: ExecutorService by lazy {
+            Executors.newFixedThreadPool(PARALLELISM) { runnable ->
+                Thread(runnable, "DropMessageFetcher").apply { isDaemon = true }
+            }
+        }
+    }
+
+}
@@ -3,12 +3,11 @@ package de.qabel.qabelbox.sync
 import android.accounts.Account
 import android.content.*
 import android.os.Bundle
-import de.qabel.chat.service.ChatService
 import de.qabel.core.repository.ContactRepository
 import de.qabel.qabelbox.QabelBoxApplication
-import de.qabel.qabelbox.QblBroadcastConstants
 import de.qabel.qabelbox.chat.services.AndroidChatService
 import de.qabel.qabelbox.config.AppPreference
+import de.qabel.qabelbox.helper.AccountHelper
 import de.qabel.qabelbox.reporter.CrashReporter
 import de.qabel.qabelbox.reporter.CrashSubmitter
 import org.jetbrains.anko.AnkoLogger
@@ -21,7 +20,7 @@ open class QabelSyncAdapter : AbstractThreadedSyncAdapter, AnkoLogger {
     lateinit internal var mContentResolver: ContentResolver
     @Inject lateinit internal var context: Context
     @Inject lateinit internal var contactRepository: ContactRepository
-    @Inject lateinit internal var chatService: ChatService
+    @Inject lateinit internal var dropMessageFetcher: DropMessageFetcher
     @Inject lateinit internal var preferences: AppPreference
     @Inject lateinit internal var crashReporter: CrashReporter
     @Inject lateinit internal var crashSubmitter: CrashSubmitter
@@ -51,14 +50,15 @@ open class QabelSyncAdapter : AbstractThreadedSyncAdapter, AnkoLogger {
             authority: String,
             provider: ContentProviderClient,
             syncResult: SyncResult) {
-        info("Starting drop message sync")
+        val dropId = extras.getString(AccountHelper.EXTRA_DROP_ID)
+        info("Starting drop message sync" + (dropId?.let { " for drop $it" } ?: ""))
         try {
-            val result = chatService.refreshMessages()
+            val result = dropId?.let { dropMessageFetcher.fetchDrop(it) } ?: dropMessageFetcher.fetchAll()
 
             info("Received messages for " + result.size + " identities")
             if (result.size > 0) {
-                context.applicationContext.startService(Intent(QblBroadcastConstants.Chat.Service.MESSAGES_UPDATED,
-                        null, context.applicationContext, AndroidChatService::class.java))
+                // the sync adapter runs in its own process, the chat service hands the messages to the event bus
+                AndroidChatService.notifyMessagesUpdated(context)
                 info("ChatService Intent sent")
             }
         } catch(ex: Throwable) {
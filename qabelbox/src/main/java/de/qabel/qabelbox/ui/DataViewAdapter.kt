@@ -16,16 +16,19 @@ interface DataViewAdapter<T> {
     }
 
     fun append(model: List<T>) {
+        val start = data.size
         data.addAll(model)
-        notifyView()
+        notifyViewInserted(start, model.size)
     }
 
     fun prepend(models: List<T>) {
         data.addAll(0, models)
-        notifyView()
+        notifyViewInserted(0, models.size)
     }
 
     fun notifyView()
 
     fun notifyViewRange(start: Int, count: Int)
+
+    fun notifyViewInserted(start: Int, count: Int)
 }
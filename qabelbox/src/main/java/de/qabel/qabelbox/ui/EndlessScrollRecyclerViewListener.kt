@@ -6,39 +6,41 @@ import android.support.v7.widget.RecyclerView.OnScrollListener
 import de.qabel.core.ui.DataViewProxy
 
 /**
- * TODO In development
- * Based on https://guides.codepath.com/android/Endless-Scrolling-with-AdapterViews-and-RecyclerView#implementing-with-recyclerview
- *
- * Buggy with loading and scrolling
+ * Loads older items while a list that is stacked from the end is scrolled towards its top.
  *
+ * Once the first visible item is within [prefetchThreshold] items of the top the next page is
+ * prefetched, within [visibleThreshold] items it is loaded into the view.
  */
-class EndlessScrollRecyclerViewListener(private val loader: DataViewProxy<*>) : OnScrollListener() {
-
-    private val visibleThreshold = 3 // The minimum amount of items to have above your current scroll position before loading more.
+class EndlessScrollRecyclerViewListener(private val loader: DataViewProxy<*>,
+                                        private val prefetch: () -> Unit = {},
+                                        private val visibleThreshold: Int = 3,
+                                        private val prefetchThreshold: Int = 15) : OnScrollListener() {
 
     private var previousTotal = 0 // The total number of items in the dataset after the last load
-    private var loading = true // True if we are still waiting for the last set of data to load.
-
-    private var firstVisibleItem: Int = 0
-    private var visibleItemCount: Int = 0
-    private var totalItemCount: Int = 0
+    private var loading = false // True if we are still waiting for the last set of data to load.
+    private var prefetched = false // True if the page following the last load has been prefetched.
 
     override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
         super.onScrolled(recyclerView, dx, dy)
 
         val layoutManager = recyclerView.layoutManager as LinearLayoutManager
-        visibleItemCount = layoutManager.childCount
-        totalItemCount = layoutManager.itemCount
-        firstVisibleItem = layoutManager.findLastCompletelyVisibleItemPosition()
+        val totalItemCount = layoutManager.itemCount
+        val firstVisibleItem = layoutManager.findFirstVisibleItemPosition()
 
-        if (loading) {
-            if (totalItemCount > previousTotal) {
-                loading = false
-                previousTotal = totalItemCount
-            }
-        } else if (totalItemCount < firstVisibleItem + visibleThreshold) {
+        if (totalItemCount != previousTotal) {
+            loading = false
+            prefetched = false
+            previousTotal = totalItemCount
+        }
+        if (dy >= 0 || loading || !loader.canLoadMore()) {
+            return
+        }
+        if (firstVisibleItem <= visibleThreshold) {
             loader.loadMore()
             loading = true
+        } else if (!prefetched && firstVisibleItem <= prefetchThreshold) {
+            prefetch()
+            prefetched = true
         }
     }
 
@@ -20,6 +20,7 @@ class MockStorageBackend : StorageReadBackend, StorageWriteBackend {
     }
 
     val storage = mutableMapOf<String, Pair<String, ByteArray>>()
+    val uploads = mutableListOf<String>()
 
 
     override fun getUrl(meta: String) = BASE + meta
@@ -44,6 +45,7 @@ class MockStorageBackend : StorageReadBackend, StorageWriteBackend {
             }
         }
         storage[name] = Pair(time.toString(), result.toByteArray())
+        uploads.add(name)
         return StorageWriteBackend.UploadResult(time, content.toString())
     }
 
@@ -0,0 +1,112 @@
+package de.qabel.qabelbox.storage.server
+
+import de.qabel.qabelbox.TestConstants
+import de.qabel.qabelbox.communication.callbacks.DownloadRequestCallback
+import de.qabel.qabelbox.communication.callbacks.JSONModelCallback
+import de.qabel.qabelbox.communication.callbacks.RequestCallback
+import de.qabel.qabelbox.communication.callbacks.UploadRequestCallback
+import de.qabel.qabelbox.storage.model.BoxQuota
+import okhttp3.*
+import okio.Okio
+import java.io.IOException
+import java.io.InputStream
+import java.util.*
+
+/**
+ * In memory stand-in for the block server, answers requests synchronously.
+ *
+ * [breakDownloadAfter] lets the next download break after the given number of bytes.
+ */
+class LocalBlockServer : BlockServer {
+
+    val files = mutableMapOf<String, ByteArray>()
+    var breakDownloadAfter: Int? = null
+    val rangeRequests = mutableListOf<Pair<Long, String?>>()
+
+    private val request = Request.Builder().url(TestConstants.BLOCK_URL).build()
+    private val call = OkHttpClient().newCall(request)
+
+    private fun key(prefix: String, path: String) = "$prefix/$path"
+
+    fun eTag(content: ByteArray) = Arrays.hashCode(content).toString()
+
+    private fun body(content: ByteArray): ResponseBody {
+        val contentType = MediaType.parse("application/octet-stream")
+        val breakAfter = breakDownloadAfter
+        if (breakAfter == null || content.isEmpty()) {
+            return ResponseBody.create(contentType, content)
+        }
+        breakDownloadAfter = null
+        val input = object : InputStream() {
+            var position = 0
+            override fun read(): Int {
+                if (position >= breakAfter) {
+                    throw IOException("Connection lost")
+                }
+                return content[position++].toInt() and 0xff
+            }
+        }
+        return ResponseBody.create(contentType, content.size.toLong(), Okio.buffer(Okio.source(input)))
+    }
+
+    private fun respond(callback: RequestCallback, code: Int, body: ByteArray = ByteArray(0),
+                        headers: Map<String, String> = emptyMap()) {
+        val builder = Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .body(body(body))
+        headers.forEach { builder.header(it.key, it.value) }
+        callback.onResponse(call, builder.build())
+    }
+
+    override fun downloadFile(prefix: String, path: String, ifModified: String?, callback: DownloadRequestCallback) =
+            streamFile(prefix, path, ifModified, callback)
+
+    override fun streamFile(prefix: String, path: String, ifModified: String?, callback: RequestCallback) {
+        val content = files[key(prefix, path)]
+        when {
+            content == null -> respond(callback, 404)
+            ifModified == eTag(content) -> respond(callback, 304)
+            else -> respond(callback, 200, content, mapOf("ETag" to eTag(content)))
+        }
+    }
+
+    override fun downloadFile(prefix: String, path: String, offset: Long, ifRange: String?,
+                              callback: DownloadRequestCallback) =
+            streamFile(prefix, path, offset, ifRange, callback)
+
+    override fun streamFile(prefix: String, path: String, offset: Long, ifRange: String?, callback: RequestCallback) {
+        rangeRequests.add(Pair(offset, ifRange))
+        val content = files[key(prefix, path)]
+        if (content == null) {
+            respond(callback, 404)
+            return
+        }
+        val eTag = eTag(content)
+        when {
+            ifRange != null && ifRange != eTag -> respond(callback, 200, content, mapOf("ETag" to eTag))
+            offset >= content.size -> respond(callback, 416)
+            else -> respond(callback, 206, content.copyOfRange(offset.toInt(), content.size), mapOf("ETag" to eTag))
+        }
+    }
+
+    override fun uploadFile(prefix: String, name: String, input: InputStream, eTag: String?,
+                            callback: UploadRequestCallback) {
+        val content = input.readBytes()
+        files.put(key(prefix, name), content)
+        respond(callback, 204, headers = mapOf("ETag" to eTag(content)))
+    }
+
+    override fun deleteFile(prefix: String, path: String, callback: RequestCallback) {
+        files.remove(key(prefix, path))
+        respond(callback, 204)
+    }
+
+    override fun getQuota(callback: JSONModelCallback<BoxQuota>) {
+        respond(callback, 200, "{\"size\": ${files.values.sumBy { it.size }}, \"quota\": 0}".toByteArray())
+    }
+
+    override fun urlForFile(prefix: String, path: String) = TestConstants.BLOCK_URL + "/" + key(prefix, path)
+
+}
@@ -32,6 +32,21 @@ public class MockBlockServer implements BlockServer {
 
     }
 
+    @Override
+    public void downloadFile(String prefix, String path, long offset, String ifRange, DownloadRequestCallback callback) {
+
+    }
+
+    @Override
+    public void streamFile(String prefix, String path, String ifModified, RequestCallback callback) {
+
+    }
+
+    @Override
+    public void streamFile(String prefix, String path, long offset, String ifRange, RequestCallback callback) {
+
+    }
+
     @Override
     public void uploadFile(String prefix, String name, InputStream input, String eTag, UploadRequestCallback callback) {
 
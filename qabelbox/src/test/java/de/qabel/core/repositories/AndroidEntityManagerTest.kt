@@ -0,0 +1,60 @@
+package de.qabel.core.repositories
+
+import com.natpryce.hamkrest.sameInstance
+import com.natpryce.hamkrest.should.shouldMatch
+import de.qabel.qabelbox.eq
+import org.junit.Test
+
+class AndroidEntityManagerTest {
+
+    val entityManager = AndroidEntityManager(2, setOf(Any::class.java))
+
+    @Test
+    fun testKeepsEntities() {
+        val entity = Any()
+        entityManager.put(Any::class.java, entity, 1)
+
+        entityManager.contains(Any::class.java, 1) eq true
+        entityManager.contains(String::class.java, 1) eq false
+        entityManager.get(Any::class.java, 1) shouldMatch sameInstance(entity)
+    }
+
+    @Test
+    fun testSoftlyReachableAfterStrongLimit() {
+        val entities = (1..3).map { Any().apply { entityManager.put(Any::class.java, this, it) } }
+
+        entityManager.size eq 3
+        entityManager.get(Any::class.java, 1) shouldMatch sameInstance(entities[0])
+    }
+
+    @Test
+    fun testRemove() {
+        entityManager.put(Any::class.java, Any(), 1)
+        entityManager.put(Any::class.java, Any(), 2)
+
+        entityManager.remove(Any::class.java, 1)
+        entityManager.contains(Any::class.java, 1) eq false
+
+        entityManager.clear()
+        entityManager.size eq 0
+    }
+
+    @Test
+    fun testRemoveType() {
+        entityManager.put(Any::class.java, Any(), 1)
+        entityManager.put(String::class.java, "kept", 1)
+
+        entityManager.remove(Any::class.java)
+        entityManager.contains(Any::class.java, 1) eq false
+        entityManager.contains(String::class.java, 1) eq true
+    }
+
+    @Test
+    fun testOnlyCachesConfiguredTypes() {
+        val defaultManager = AndroidEntityManager()
+        defaultManager.put(String::class.java, "message", 1)
+
+        defaultManager.contains(String::class.java, 1) eq false
+        defaultManager.size eq 0
+    }
+}
@@ -0,0 +1,201 @@
+package de.qabel.qabelbox.box
+
+import de.qabel.box.storage.dto.BoxPath
+import de.qabel.qabelbox.BuildConfig
+import de.qabel.qabelbox.SimpleApplication
+import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser.KeyAndPrefix
+import de.qabel.qabelbox.box.provider.DocumentId
+import de.qabel.qabelbox.box.repository.RecentDocumentRepository
+import de.qabel.qabelbox.box.repository.RecentDocumentRepository.RecentDocument
+import de.qabel.qabelbox.box.repository.SqliteRecentDocumentRepository
+import de.qabel.qabelbox.eq
+import de.qabel.qabelbox.persistence.RepositoryFactory
+import de.qabel.qabelbox.storage.FileCache
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricGradleTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.util.*
+
+@RunWith(RobolectricGradleTestRunner::class)
+@Config(application = SimpleApplication::class, constants = BuildConfig::class)
+class RecentDocumentsTest {
+
+    val volume = KeyAndPrefix("key", "prefix")
+    val documentId = DocumentId("key", "prefix", (BoxPath.Root / "docs") * "notes.txt")
+    val entry = BrowserEntry.File("notes.txt", 5, Date(1000), "block")
+
+    var time = 0L
+    lateinit var factory: RepositoryFactory
+    lateinit var fileCache: FileCache
+    lateinit var repository: RecentDocumentRepository
+    lateinit var directory: File
+    lateinit var recents: RecentDocuments
+
+    @Before
+    fun setUp() {
+        val application = RuntimeEnvironment.application
+        application.deleteDatabase(FileCache.DATABASE_NAME)
+        factory = RepositoryFactory(application)
+        fileCache = FileCache(application, 400)
+        repository = SqliteRecentDocumentRepository(factory.getAndroidClientDatabase(), { time++ })
+        directory = createTempDir("files")
+        recents = RecentDocuments(repository, fileCache, directory, { time })
+    }
+
+    @After
+    fun tearDown() {
+        fileCache.close()
+        factory.deleteDatabase()
+        directory.deleteRecursively()
+    }
+
+    private fun content(text: String) = createTempFile().apply { writeText(text) }
+
+    @Test
+    fun testOpensFromCache() {
+        recents.opened(documentId, entry, content("hello"))
+
+        val (recent, file) = recents.cachedFile(documentId, null) ?: throw AssertionError("not cached")
+        recent eq RecentDocument(documentId, "block", 5, 1000, recent.accessed)
+        file.readText() eq "hello"
+        recents.cachedFile(documentId, entry)?.second eq file
+    }
+
+    @Test
+    fun testUnlistedDocumentExpires() {
+        recents.opened(documentId, entry, content("hello"))
+        time += RecentDocuments.UNLISTED_TTL + 1
+
+        recents.cachedFile(documentId, null) eq null
+        recents.cachedFile(documentId, entry)?.second?.readText() eq "hello"
+    }
+
+    @Test
+    fun testCachingReplacesOpenFile() {
+        recents.opened(documentId, entry, content("hello"))
+        val (_, file) = recents.cachedFile(documentId, entry) ?: throw AssertionError("not cached")
+        file.inputStream().use { opened ->
+            recents.opened(documentId, entry, content("again"))
+
+            opened.reader().readText() eq "hello"
+        }
+        recents.cachedFile(documentId, entry)?.second?.readText() eq "again"
+    }
+
+    @Test
+    fun testChangedBlockIsNotServed() {
+        recents.opened(documentId, entry, content("hello"))
+
+        recents.cachedFile(documentId, BrowserEntry.File("notes.txt", 5, Date(2000), "other")) eq null
+    }
+
+    @Test
+    fun testLargeFilesAreOnlyRemembered() {
+        recents.opened(documentId, entry, content("x".repeat(101)))
+
+        recents.cachedFile(documentId, null) eq null
+        recents.recent(volume).map { it.documentId } eq listOf(documentId)
+    }
+
+    @Test
+    fun testSpool() {
+        val target = ByteArrayOutputStream()
+        val spool = recents.spool(target)
+        spool.write("hello".toByteArray())
+        spool.close()
+        recents.opened(documentId, entry, spool.content)
+
+        target.toString() eq "hello"
+        recents.cachedFile(documentId, null)?.second?.readText() eq "hello"
+    }
+
+    @Test
+    fun testSpoolAbandonsLargeFiles() {
+        val target = ByteArrayOutputStream()
+        val spool = recents.spool(target)
+        spool.write(ByteArray(101))
+        spool.close()
+
+        target.size() eq 101
+        spool.content eq null
+    }
+
+    @Test
+    fun testSpoolDeletedWithoutBlock() {
+        val spool = recents.spool(ByteArrayOutputStream())
+        spool.write("hello".toByteArray())
+        spool.close()
+        val content = spool.content ?: throw AssertionError("abandoned")
+
+        recents.opened(documentId, BrowserEntry.File("notes.txt", 5, Date(1000)), content)
+
+        content.exists() eq false
+        recents.recent(volume) eq emptyList<RecentDocument>()
+    }
+
+    @Test
+    fun testRemovesStraySpoolFiles() {
+        recents.opened(documentId, entry, content("hello"))
+        val stray = File(directory, "spool123.tmp").apply { writeText("partial") }
+
+        RecentDocuments(repository, fileCache, directory)
+
+        stray.exists() eq false
+        recents.cachedFile(documentId, null)?.second?.readText() eq "hello"
+    }
+
+    @Test
+    fun testUploaded() {
+        val recent = RecentDocument(documentId, "uploaded", 3, 2000)
+        repository.save(recent)
+        val uploaded = content("new")
+
+        recents.uploaded(documentId, uploaded)?.block eq recent.block
+
+        recents.cachedFile(documentId, null)?.second?.readText() eq "new"
+        uploaded.exists() eq true
+        recents.uploaded(documentId.copy(path = BoxPath.Root * "other.txt"), uploaded) eq null
+    }
+
+    @Test
+    fun testMostRecentFirst() {
+        val other = documentId.copy(path = BoxPath.Root * "other.txt")
+        recents.opened(documentId, entry, null)
+        recents.opened(other, entry, null)
+        recents.recent(volume).map { it.documentId } eq listOf(other, documentId)
+
+        recents.opened(documentId, entry, null)
+        recents.recent(volume).map { it.documentId } eq listOf(documentId, other)
+        recents.recent(KeyAndPrefix("key", "other")) eq emptyList<RecentDocument>()
+    }
+
+    @Test
+    fun testKeepsMostRecentPerVolume() {
+        for (i in 0..RecentDocumentRepository.MAX_PER_VOLUME) {
+            recents.opened(documentId.copy(path = BoxPath.Root * "file$i"), entry, null)
+        }
+
+        val recent = recents.recent(volume)
+        recent.size eq RecentDocumentRepository.MAX_PER_VOLUME
+        recent.last().documentId.path eq BoxPath.Root * "file1"
+    }
+
+    @Test
+    fun testRemovedFolder() {
+        val outside = documentId.copy(path = BoxPath.Root * "docs.txt")
+        recents.opened(documentId, entry, null)
+        recents.opened(outside, entry, null)
+
+        recents.removed(documentId.copy(path = BoxPath.Root / "docs"))
+
+        recents.recent(volume).map { it.documentId } eq listOf(outside)
+    }
+
+}
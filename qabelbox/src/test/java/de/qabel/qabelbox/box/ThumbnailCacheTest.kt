@@ -0,0 +1,56 @@
+package de.qabel.qabelbox.box
+
+import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.eq
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.*
+
+class ThumbnailCacheTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun testSampleSizeKeepsThumbnailSize() {
+        ThumbnailCache.sampleSize(4000, 3000, 720) eq 4
+        ThumbnailCache.sampleSize(1440, 1440, 720) eq 2
+        ThumbnailCache.sampleSize(700, 500, 720) eq 1
+    }
+
+    @Test
+    fun testKeyChangesWithBlockAndModification() {
+        val file = BrowserEntry.File("image.jpg", 100, Date(1000), "block")
+
+        ThumbnailCache.key(file) eq "block:1000"
+        ThumbnailCache.key(BrowserEntry.File("image.jpg", 100, Date(2000), "block")) eq "block:2000"
+        ThumbnailCache.key(BrowserEntry.File("image.jpg", 100, Date(1000))) eq null as String?
+    }
+
+    @Test
+    fun testOnlyImagesAreDecoded() {
+        val cache = ThumbnailCache(folder.root)
+        val text = folder.newFile("notes.txt").apply { writeText("no image") }
+
+        cache.put("key", text.name, text) eq null as File?
+        cache.contains("key") eq false
+    }
+
+    @Test
+    fun testTrimDeletesLeastRecentlyUsed() {
+        val cache = ThumbnailCache(folder.root, maxBytes = 20)
+        val files = (1..3).map { i ->
+            folder.newFile("thumb$i.jpg").apply {
+                writeBytes(ByteArray(10))
+                setLastModified(i * 10000L)
+            }
+        }
+
+        cache.trim()
+
+        files.map { it.exists() } eq listOf(false, true, true)
+    }
+
+}
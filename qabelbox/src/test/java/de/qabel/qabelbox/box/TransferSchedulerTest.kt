@@ -0,0 +1,90 @@
+package de.qabel.qabelbox.box
+
+import de.qabel.box.storage.dto.BoxPath
+import de.qabel.qabelbox.box.TransferScheduler.Priority
+import de.qabel.qabelbox.box.dto.FileOperationState
+import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser
+import de.qabel.qabelbox.eq
+import org.junit.Test
+import rx.subjects.PublishSubject
+
+class TransferSchedulerTest {
+
+    val volume = BoxReadFileBrowser.KeyAndPrefix("key", "prefix")
+    val otherVolume = BoxReadFileBrowser.KeyAndPrefix("key", "otherPrefix")
+
+    private fun operation(keyAndPrefix: BoxReadFileBrowser.KeyAndPrefix = volume) =
+            FileOperationState(keyAndPrefix, "file", BoxPath.Root)
+
+    @Test
+    fun testLimitsTransfersPerVolume() {
+        val scheduler = TransferScheduler(4, 2)
+        val sources = (1..3).map { PublishSubject.create<Unit>() }
+        sources.forEach { scheduler.schedule(operation(), Priority.BACKGROUND, it).subscribe() }
+        val other = PublishSubject.create<Unit>()
+        scheduler.schedule(operation(otherVolume), Priority.BACKGROUND, other).subscribe()
+
+        sources.map { it.hasObservers() } eq listOf(true, true, false)
+        other.hasObservers() eq true
+        scheduler.metrics.queueDepth eq 1
+        scheduler.metrics.active eq 3
+
+        sources[0].onCompleted()
+
+        sources[2].hasObservers() eq true
+        scheduler.metrics.queueDepth eq 0
+        scheduler.metrics.completed eq 1L
+    }
+
+    @Test
+    fun testUserVisibleFirst() {
+        val scheduler = TransferScheduler(1, 1)
+        val running = PublishSubject.create<Unit>()
+        val background = PublishSubject.create<Unit>()
+        val visible = PublishSubject.create<Unit>()
+        scheduler.schedule(operation(), Priority.BACKGROUND, running).subscribe({}, {})
+        scheduler.schedule(operation(), Priority.BACKGROUND, background).subscribe()
+        scheduler.schedule(operation(), Priority.USER_VISIBLE, visible).subscribe()
+
+        running.onError(IllegalStateException())
+
+        visible.hasObservers() eq true
+        background.hasObservers() eq false
+    }
+
+    @Test
+    fun testCancelQueued() {
+        val scheduler = TransferScheduler(1, 1)
+        val running = PublishSubject.create<Unit>()
+        val queued = PublishSubject.create<Unit>()
+        scheduler.schedule(operation(), Priority.BACKGROUND, running).subscribe()
+        val subscription = scheduler.schedule(operation(), Priority.BACKGROUND, queued).subscribe()
+
+        subscription.unsubscribe()
+        scheduler.metrics.queueDepth eq 0
+
+        running.onCompleted()
+        queued.hasObservers() eq false
+    }
+
+    @Test
+    fun testCanceledTransferKeepsSlotUntilStopped() {
+        val scheduler = TransferScheduler(1, 1)
+        val running = PublishSubject.create<Unit>()
+        val queued = PublishSubject.create<Unit>()
+        var events = 0
+        val subscription = scheduler.schedule(operation(), Priority.BACKGROUND, running).subscribe { events++ }
+        scheduler.schedule(operation(), Priority.BACKGROUND, queued).subscribe()
+
+        subscription.unsubscribe()
+        running.onNext(Unit)
+
+        events eq 0
+        queued.hasObservers() eq false
+        scheduler.metrics.active eq 1
+
+        running.onCompleted()
+
+        queued.hasObservers() eq true
+    }
+}
@@ -11,8 +11,12 @@ import com.nhaarman.mockito_kotlin.whenever
 import de.qabel.box.storage.UnmodifiedException
 import de.qabel.box.storage.exceptions.QblStorageException
 import de.qabel.box.storage.exceptions.QblStorageNotFound
+import de.qabel.qabelbox.box.repository.InMemoryPartialDownloadRepository
 import de.qabel.qabelbox.isEqual
 import de.qabel.qabelbox.storage.server.AndroidBlockServer
+import de.qabel.qabelbox.storage.server.LocalBlockServer
+import okhttp3.MediaType
+import okhttp3.ResponseBody
 import org.junit.Before
 import org.junit.Test
 
@@ -63,6 +67,92 @@ class BoxHttpStorageBackendTest {
                 status = 200, error = IllegalArgumentException()), mock())
     }
 
+    @Test
+    fun streamDownload() {
+        val body = ResponseBody.create(MediaType.parse("application/octet-stream"), "content")
+        val download = backend.handleStreamResponse(response.copy(status = 200, eTag = "etag", body = body))
+
+        download.inputStream.reader().readText() isEqual "content"
+        backend.metrics.bytesWrittenToDisk.get() isEqual 0L
+    }
+
+    @Test
+    fun resumeBrokenDownload() {
+        val server = LocalBlockServer()
+        val content = ByteArray(100) { it.toByte() }
+        server.files.put("$prefix/blocks/block", content)
+        server.breakDownloadAfter = 40
+        val partials = InMemoryPartialDownloadRepository()
+        backend = BoxHttpStorageBackend(server, prefix, partialDownloads = partials)
+
+        backend.download("blocks/block").inputStream.readBytes() isEqual content
+
+        server.rangeRequests isEqual listOf(Pair(40L, server.eTag(content)))
+        backend.metrics.bytesResumed.get() isEqual 40L
+        partials.downloads.size isEqual 0
+    }
+
+    @Test
+    fun resumeBrokenStream() {
+        val server = LocalBlockServer()
+        val content = ByteArray(100) { it.toByte() }
+        server.files.put("$prefix/blocks/block", content)
+        server.breakDownloadAfter = 40
+        backend = BoxHttpStorageBackend(server, prefix, streaming = true)
+
+        backend.download("blocks/block").inputStream.readBytes() isEqual content
+
+        server.rangeRequests isEqual listOf(Pair(40L, server.eTag(content)))
+    }
+
+    @Test
+    fun resumeInterruptedStreamOnNextDownload() {
+        val server = LocalBlockServer()
+        val content = ByteArray(100) { it.toByte() }
+        server.files.put("$prefix/blocks/block", content)
+        val partials = InMemoryPartialDownloadRepository()
+        backend = BoxHttpStorageBackend(server, prefix, streaming = true, partialDownloads = partials)
+
+        backend.download("blocks/block").inputStream.apply {
+            read(ByteArray(40))
+            close()
+        }
+        partials.downloads.size isEqual 1
+
+        backend.download("blocks/block").inputStream.readBytes() isEqual content
+        server.rangeRequests isEqual listOf(Pair(40L, server.eTag(content)))
+        backend.metrics.bytesResumed.get() isEqual 40L
+        partials.downloads.size isEqual 0
+    }
+
+    @Test
+    fun changedBlockIsStreamedAgain() {
+        val server = LocalBlockServer()
+        server.files.put("$prefix/blocks/block", ByteArray(100))
+        val partials = InMemoryPartialDownloadRepository()
+        backend = BoxHttpStorageBackend(server, prefix, streaming = true, partialDownloads = partials)
+        backend.download("blocks/block").inputStream.apply {
+            read(ByteArray(40))
+            close()
+        }
+
+        val changed = ByteArray(100) { it.toByte() }
+        server.files.put("$prefix/blocks/block", changed)
+
+        backend.download("blocks/block").inputStream.readBytes() isEqual changed
+        partials.downloads.size isEqual 0
+    }
+
+    @Test(expected = UnmodifiedException::class)
+    fun streamDownloadUnmodified() {
+        backend.handleStreamResponse(response.copy(status = 304))
+    }
+
+    @Test(expected = QblStorageNotFound::class)
+    fun streamDownloadNotFound() {
+        backend.handleStreamResponse(response.copy(status = 404))
+    }
+
     @Test(expected = QblStorageException::class)
     fun uploadFailed() {
         backend.handleUploadResponse(response)
@@ -0,0 +1,46 @@
+package de.qabel.qabelbox.box.backends
+
+import de.qabel.qabelbox.eq
+import org.junit.Test
+import java.io.File
+
+class RecordingInputStreamTest {
+
+    val content = "0123456789"
+    var finished = 0
+    var interrupted = 0
+
+    private fun record(file: File, limit: Long) = RecordingInputStream(content.byteInputStream(), file, limit,
+            finished = { finished++ }, interrupted = { interrupted++ })
+
+    @Test
+    fun testRecordsUpToLimit() {
+        val file = createTempFile()
+
+        record(file, 4).use { it.readBytes() }
+
+        String(file.readBytes()) eq "0123"
+        finished eq 1
+        interrupted eq 0
+    }
+
+    @Test
+    fun testInterruptedByClose() {
+        val file = createTempFile()
+
+        record(file, 100).use { it.read(ByteArray(3)) }
+
+        String(file.readBytes()) eq "012"
+        interrupted eq 1
+    }
+
+    @Test
+    fun testUnwritableFileDoesNotFailRead() {
+        val directory = createTempDir()
+
+        String(record(directory, 100).use { it.readBytes() }) eq content
+
+        finished eq 1
+    }
+
+}
@@ -80,6 +80,17 @@ class BoxDocumentIdAdapterTest {
                 ProviderEntry((volume.documentID + sample.name).toDocumentId(), sample)))
     }
 
+    @Test
+    fun testQueryCachedChildDocuments() {
+        whenever(readFileBrowser.listCached(BoxPath.Root)).thenReturn(sampleFiles.toSingletonObservable())
+
+        val lst = useCase.queryCachedChildDocuments(docId).toBlocking().first()
+
+        lst shouldMatch equalTo(listOf(
+                ProviderEntry((volume.documentID + sample.name).toDocumentId(), sample)))
+        verify(readFileBrowser, never()).list(any())
+    }
+
     @Test
     fun testQuery() {
         whenever(readFileBrowser.query(file)).thenReturn(sample.toSingletonObservable())
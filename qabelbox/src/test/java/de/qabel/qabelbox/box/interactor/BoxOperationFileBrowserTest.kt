@@ -2,22 +2,27 @@ package de.qabel.qabelbox.box.interactor
 
 import com.nhaarman.mockito_kotlin.any
 import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.verify
 import com.nhaarman.mockito_kotlin.whenever
 import de.qabel.box.storage.*
 import de.qabel.box.storage.dto.BoxPath
 import de.qabel.box.storage.exceptions.QblStorageException
 import de.qabel.qabelbox.*
+import de.qabel.qabelbox.box.BlockDeduplicator
 import de.qabel.qabelbox.box.BoxScheduler
 import de.qabel.qabelbox.box.backends.MockStorageBackend
 import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.box.dto.FileOperationState
 import de.qabel.qabelbox.box.dto.UploadSource
 import de.qabel.qabelbox.box.provider.DocumentId
+import de.qabel.qabelbox.box.repository.InMemoryBlockIndexRepository
 import de.qabel.qabelbox.util.IdentityHelper
 import de.qabel.qabelbox.util.toUploadSource
 import de.qabel.qabelbox.util.waitFor
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
+import org.mockito.Mockito
 import org.robolectric.RobolectricGradleTestRunner
 import org.robolectric.annotation.Config
 import rx.schedulers.Schedulers
@@ -33,6 +38,8 @@ class BoxOperationFileBrowserTest() {
     val docId = DocumentId(identity.keyIdentifier, identity.prefixes.first().prefix, BoxPath.Root)
 
     lateinit var useCase: OperationFileBrowser
+    lateinit var keys: BoxReadFileBrowser.KeyAndPrefix
+    lateinit var navigator: VolumeNavigator
 
     val samplePayload: String = "payload"
     val sampleName = "sampleName"
@@ -41,7 +48,7 @@ class BoxOperationFileBrowserTest() {
     @Before
     fun setUp() {
         val prefix = identity.prefixes.first()
-        val keys = BoxReadFileBrowser.KeyAndPrefix(identity)
+        keys = BoxReadFileBrowser.KeyAndPrefix(identity)
         val volume = AndroidBoxVolume(BoxVolumeConfig(
                 prefix.prefix,
                 RootRefCalculator().rootFor(identity.primaryKeyPair.privateKey, prefix.type, prefix.prefix),
@@ -50,7 +57,7 @@ class BoxOperationFileBrowserTest() {
                 storage,
                 "Blake2b",
                 createTempDir()), identity.primaryKeyPair)
-        val navigator = BoxVolumeNavigator(keys, volume)
+        navigator = BoxVolumeNavigator(keys, volume)
         useCase = BoxOperationFileBrowser(keys, navigator, mock(), BoxScheduler(Schedulers.immediate()))
     }
 
@@ -65,6 +72,17 @@ class BoxOperationFileBrowserTest() {
         }
     }
 
+    @Test
+    fun downloadRange() {
+        val path = BoxPath.Root * sampleName
+        val file = createTempFile()
+
+        useCase.upload(path, samplePayload.toUploadSource(sample)).second.waitFor()
+        useCase.download(path, file.outputStream(), 2, 3).second.waitFor()
+
+        file.readText() isEqual samplePayload.substring(2, 5)
+    }
+
     @Test
     fun createSubfolder() {
         val path = BoxPath.Root / "firstFolder" / "subFolder"
@@ -84,6 +102,102 @@ class BoxOperationFileBrowserTest() {
         }
     }
 
+    @Test
+    fun uploadAll() {
+        val folder = BoxPath.Root / "firstFolder"
+        val files = listOf(folder * "first", folder * "second", BoxPath.Root * "third")
+        val (operations, observable) = useCase.uploadAll(files.map {
+            Pair(it, (samplePayload + it.name).toUploadSource(BrowserEntry.File(it.name, 42, Date())))
+        })
+        observable.toBlocking().last()
+
+        operations.map { it.status } isEqual files.map { FileOperationState.Status.COMPLETE }
+        useCase.list(folder).waitFor().map { it.name } isEqual listOf("first", "second")
+        files.forEach {
+            val file = createTempFile()
+            useCase.download(it, file.outputStream()).second.waitFor()
+            file.readText() isEqual samplePayload + it.name
+        }
+    }
+
+    @Test
+    fun uploadAllCommitsOncePerFolder() {
+        val folder = BoxPath.Root / "firstFolder"
+        useCase.createFolder(folder).waitFor()
+        storage.uploads.clear()
+        val files = listOf(folder * "first", folder * "second", folder * "third",
+                BoxPath.Root * "fourth", BoxPath.Root * "fifth")
+
+        useCase.uploadAll(files.map {
+            Pair(it, samplePayload.toUploadSource(BrowserEntry.File(it.name, 42, Date())))
+        }).second.toBlocking().last()
+
+        val metadataUploads = storage.uploads.filterNot { it.startsWith("blocks/") }
+        metadataUploads.size isEqual 2
+        metadataUploads.distinct().size isEqual 2
+    }
+
+    @Test
+    fun uploadAllClosesSources() {
+        val sources = listOf(BoxPath.Root * "first", BoxPath.Root * "second").map {
+            Pair(it, UploadSource(Mockito.spy(samplePayload.byteInputStream()), BrowserEntry.File(it.name, 42, Date())))
+        }
+
+        useCase.uploadAll(sources).second.toBlocking().last()
+
+        sources.forEach { verify(it.second.source, Mockito.atLeastOnce()).close() }
+    }
+
+    @Test
+    fun deduplicatedUpload() {
+        val deduplicator = BlockDeduplicator(InMemoryBlockIndexRepository())
+        val dedupUseCase = BoxOperationFileBrowser(keys, navigator, mock(), BoxScheduler(Schedulers.immediate()),
+                deduplicator)
+        val path = BoxPath.Root * "first"
+
+        dedupUseCase.upload(path, samplePayload.toUploadSource(sample)).second.waitFor()
+        val blocks = storage.storage.keys.filter { it.startsWith("blocks/") }
+        dedupUseCase.upload(path, samplePayload.toUploadSource(sample)).second.waitFor()
+
+        storage.storage.keys.filter { it.startsWith("blocks/") } isEqual blocks
+        deduplicator.bytesSaved eq samplePayload.length.toLong()
+    }
+
+    @Test
+    fun deduplicationNeverSharesBlocks() {
+        val deduplicator = BlockDeduplicator(InMemoryBlockIndexRepository())
+        val dedupUseCase = BoxOperationFileBrowser(keys, navigator, mock(), BoxScheduler(Schedulers.immediate()),
+                deduplicator)
+        val first = BoxPath.Root * "first"
+        val second = BoxPath.Root / "folder" * "second"
+
+        dedupUseCase.upload(first, samplePayload.toUploadSource(sample)).second.waitFor()
+        dedupUseCase.upload(second, samplePayload.toUploadSource(sample)).second.waitFor()
+        dedupUseCase.delete(first).waitFor()
+
+        deduplicator.bytesSaved eq 0L
+        val file = createTempFile()
+        dedupUseCase.download(second, file.outputStream()).second.waitFor()
+        file.readText() isEqual samplePayload
+    }
+
+    @Test
+    fun deduplicationUploadsChangedContent() {
+        val deduplicator = BlockDeduplicator(InMemoryBlockIndexRepository())
+        val dedupUseCase = BoxOperationFileBrowser(keys, navigator, mock(), BoxScheduler(Schedulers.immediate()),
+                deduplicator)
+        val path = BoxPath.Root * "first"
+        val changed = samplePayload.reversed()
+
+        dedupUseCase.upload(path, samplePayload.toUploadSource(sample)).second.waitFor()
+        dedupUseCase.upload(path, changed.toUploadSource(sample)).second.waitFor()
+
+        deduplicator.bytesSaved eq 0L
+        val file = createTempFile()
+        dedupUseCase.download(path, file.outputStream()).second.waitFor()
+        file.readText() isEqual changed
+    }
+
     @Test
     fun deleteFile() {
         val path = BoxPath.Root / "firstFolder" / "subFolder" * sampleName
@@ -0,0 +1,59 @@
+package de.qabel.qabelbox.box.interactor
+
+import com.natpryce.hamkrest.sameInstance
+import com.natpryce.hamkrest.should.shouldMatch
+import com.nhaarman.mockito_kotlin.mock
+import de.qabel.qabelbox.eq
+import org.junit.Test
+
+class VolumeNavigatorRegistryTest {
+
+    val first = BoxReadFileBrowser.KeyAndPrefix("key", "prefix")
+    val second = BoxReadFileBrowser.KeyAndPrefix("key", "otherPrefix")
+    val third = BoxReadFileBrowser.KeyAndPrefix("otherKey", "prefix")
+
+    val registry = VolumeNavigatorRegistry(2)
+
+    private fun navigator(): VolumeNavigator = mock()
+
+    @Test
+    fun testReusesNavigator() {
+        val navigator = registry.get(first) { navigator() }
+        registry.get(first) { throw AssertionError("Navigator created twice") } shouldMatch sameInstance(navigator)
+        registry.hits eq 1L
+        registry.misses eq 1L
+    }
+
+    @Test
+    fun testEvictsLeastRecentlyUsed() {
+        val navigator = registry.get(first) { navigator() }
+        registry.get(second) { navigator() }
+        registry.get(first) { navigator() }
+        registry.get(third) { navigator() }
+
+        registry.size eq 2
+        registry.get(first) { navigator() } shouldMatch sameInstance(navigator)
+        registry.misses eq 3L
+    }
+
+    @Test
+    fun testInvalidateIdentity() {
+        registry.get(first) { navigator() }
+        registry.get(third) { navigator() }
+
+        registry.invalidate("key")
+
+        registry.size eq 1
+        registry.get(third) { throw AssertionError("Navigator of other identity dropped") }
+    }
+
+    @Test
+    fun testInvalidateAll() {
+        registry.get(first) { navigator() }
+        registry.get(second) { navigator() }
+
+        registry.invalidateAll()
+
+        registry.size eq 0
+    }
+}
@@ -7,6 +7,7 @@ import de.qabel.qabelbox.BuildConfig
 import de.qabel.qabelbox.SimpleApplication
 import de.qabel.qabelbox.box.dto.FileOperationState
 import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser
+import de.qabel.qabelbox.box.provider.DocumentId
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -29,6 +30,8 @@ class StorageNotificationManagerTest {
         private val TEST_KEYS = BoxReadFileBrowser.KeyAndPrefix(TEST_OWNER, "")
         private val TEST_UPLOAD_PATH = "path"
         private val TEST_FILE_NAME = "FILE"
+        private val TEST_DOCUMENT_ID = DocumentId(TEST_OWNER, "",
+                (BoxPath.Root / TEST_UPLOAD_PATH) * TEST_FILE_NAME).toString()
     }
 
     @Before
@@ -40,7 +43,7 @@ class StorageNotificationManagerTest {
 
     @Test
     fun testSingleUpload() {
-        val expectedInfo = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1)
+        val expectedInfo = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1, TEST_DOCUMENT_ID)
         val operation = FileOperationState(TEST_KEYS, TEST_FILE_NAME, BoxPath.Root / TEST_UPLOAD_PATH, 100L, 0, 1)
 
         storageNotificationManager.updateUploadNotification(operation)
@@ -53,12 +56,12 @@ class StorageNotificationManagerTest {
 
     @Test
     fun testMultipleUpload() {
-        val expectedInfo = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1)
+        val expectedInfo = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1, TEST_DOCUMENT_ID)
         val operation = FileOperationState(TEST_KEYS, TEST_FILE_NAME, BoxPath.Root / TEST_UPLOAD_PATH, 100L, 0, 1).apply {
             status = FileOperationState.Status.LOADING
         }
 
-        val expectedInfo2 = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1)
+        val expectedInfo2 = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1, TEST_DOCUMENT_ID)
         val operation2 = FileOperationState(TEST_KEYS, TEST_FILE_NAME, BoxPath.Root / TEST_UPLOAD_PATH, 100L, 0, 1).apply {
             status = FileOperationState.Status.ERROR
         }
@@ -71,7 +74,7 @@ class StorageNotificationManagerTest {
 
     @Test
     fun testSingleDownload() {
-        val expectedInfo = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1)
+        val expectedInfo = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1, TEST_DOCUMENT_ID)
         val operation = FileOperationState(TEST_KEYS, TEST_FILE_NAME, BoxPath.Root / TEST_UPLOAD_PATH, 100L, 0, 1)
 
         storageNotificationManager.updateDownloadNotification(operation)
@@ -84,12 +87,12 @@ class StorageNotificationManagerTest {
 
     @Test
     fun testMultiDownload() {
-        val expectedInfo = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1)
+        val expectedInfo = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1, TEST_DOCUMENT_ID)
         val operation = FileOperationState(TEST_KEYS, TEST_FILE_NAME, BoxPath.Root / TEST_UPLOAD_PATH, 100L, 0, 1).apply {
             status = FileOperationState.Status.LOADING
         }
 
-        val expectedInfo2 = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1)
+        val expectedInfo2 = StorageNotificationInfo(TEST_FILE_NAME, "/" + TEST_UPLOAD_PATH, TEST_OWNER, 100L, 0, 1, TEST_DOCUMENT_ID)
         val operation2 = FileOperationState(TEST_KEYS, TEST_FILE_NAME, BoxPath.Root / TEST_UPLOAD_PATH, 100L, 0, 1).apply {
             status = FileOperationState.Status.ERROR
         }
@@ -8,6 +8,7 @@ import com.natpryce.hamkrest.should.shouldMatch
 import de.qabel.qabelbox.*
 import de.qabel.qabelbox.base.ACTIVE_IDENTITY
 import de.qabel.qabelbox.base.MainActivity
+import de.qabel.qabelbox.box.AndroidBoxService
 import org.junit.Assert.assertEquals
 import org.junit.Before
 import org.junit.Test
@@ -56,6 +57,32 @@ class StorageNotificationPresenterTest : UITest {
         assertEquals(MainActivity::class.java.name, intent.component.className)
     }
 
+    @Test
+    fun testCancelIntent() {
+        val intent = presenter.createCancelIntent("docId")
+        intent.action isEqual AndroidBoxService.Actions.CANCEL
+        intent.getStringExtra(AndroidBoxService.KEY_DOC_ID) isEqual "docId"
+        intent.component.className isEqual AndroidBoxService::class.java.name
+    }
+
+    @Test
+    fun testProgressCancelAction() {
+        val info = StorageNotificationInfo(TEST_FILE_NAME, TEST_UPLOAD_PATH, TEST_OWNER, 1L, 2L, 3L, "docId")
+        presenter.showUploadProgressNotification(info)
+        presenter.showDownloadProgressNotification(info.copy(fileName = "File 2"))
+
+        val actions = shadowOf(notificationManager).allNotifications.map { it.actions.single() }
+        actions.map { it.title.toString() } isEqual listOf(getString(R.string.cancel), getString(R.string.cancel))
+    }
+
+    @Test
+    fun testNoCancelActionWithoutDocument() {
+        val info = StorageNotificationInfo(TEST_FILE_NAME, TEST_UPLOAD_PATH, TEST_OWNER, 1L, 2L, 3L)
+        presenter.showUploadProgressNotification(info)
+
+        shadowOf(notificationManager).allNotifications.single().actions eq null
+    }
+
     private fun checkNotification(notification: ShadowNotification, title: String, content: String? = null) {
         notification.contentTitle isEqual title
         content?.let {
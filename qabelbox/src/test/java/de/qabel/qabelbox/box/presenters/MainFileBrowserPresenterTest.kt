@@ -0,0 +1,118 @@
+package de.qabel.qabelbox.box.presenters
+
+import android.net.Uri
+import com.nhaarman.mockito_kotlin.any
+import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.times
+import com.nhaarman.mockito_kotlin.verify
+import com.nhaarman.mockito_kotlin.whenever
+import de.qabel.box.storage.dto.BoxPath
+import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.box.interactor.BoxServiceStarter
+import de.qabel.qabelbox.box.interactor.ReadFileBrowser
+import de.qabel.qabelbox.box.provider.DocumentId
+import de.qabel.qabelbox.box.repository.FileSearchRepository.Match
+import de.qabel.qabelbox.box.views.FileBrowserView
+import de.qabel.qabelbox.eq
+import org.junit.Before
+import org.junit.Test
+import rx.lang.kotlin.toSingletonObservable
+import java.util.*
+
+class MainFileBrowserPresenterTest {
+
+    val view: FileBrowserView = mock()
+    val useCase: ReadFileBrowser = mock()
+    val boxServiceStarter: BoxServiceStarter = mock()
+    var refreshed = 0
+    val navigatingPresenter: NavigatingPresenter = object : MainNavigatingPresenter(view, useCase) {
+        override fun onRefresh() {
+            refreshed++
+        }
+    }
+    val folder = BoxPath.Root / "folder"
+    val reportFile = BrowserEntry.File("report.txt", 1, Date())
+    val reportFolder = BrowserEntry.Folder("reports")
+    val matches = listOf(Match((folder / "reports"), reportFolder), Match(folder * "report.txt", reportFile))
+    lateinit var presenter: MainFileBrowserPresenter
+
+    @Before
+    fun setUp() {
+        presenter = MainFileBrowserPresenter(view, useCase, mock(), mock(), mock(), boxServiceStarter,
+                navigatingPresenter)
+        whenever(useCase.asDocumentId(any())).thenAnswer {
+            DocumentId("key", "prefix", it.arguments[0] as BoxPath).toSingletonObservable()
+        }
+        whenever(useCase.search("rep")).thenReturn(matches.toSingletonObservable())
+    }
+
+    @Test
+    fun uploadAll() {
+        val first: Uri = mock()
+        val second: Uri = mock()
+        presenter.path = folder
+
+        presenter.uploadAll(listOf(Pair(BrowserEntry.File("first", 1, Date()), first),
+                Pair(BrowserEntry.File("second", 2, Date()), second)))
+
+        verify(boxServiceStarter).startUploads(listOf(
+                Pair(DocumentId("key", "prefix", folder * "first"), first),
+                Pair(DocumentId("key", "prefix", folder * "second"), second)))
+    }
+
+    @Test
+    fun searchShowsMatches() {
+        presenter.search("rep")
+
+        verify(view).showEntries(listOf(reportFolder, reportFile))
+        presenter.onRefresh()
+        verify(useCase, times(2)).search("rep")
+        refreshed eq 0
+    }
+
+    @Test
+    fun blankQueryClosesSearch() {
+        presenter.search("rep")
+
+        presenter.search(" ")
+
+        refreshed eq 1
+        presenter.onRefresh()
+        refreshed eq 2
+        verify(useCase).search("rep")
+    }
+
+    @Test
+    fun openFileOfMatch() {
+        presenter.search("rep")
+
+        presenter.onClick(reportFile)
+
+        verify(view).open(DocumentId("key", "prefix", folder * "report.txt"))
+    }
+
+    @Test
+    fun openFolderOfMatchClosesSearch() {
+        presenter.search("rep")
+
+        presenter.onClick(reportFolder)
+
+        presenter.path eq folder / "reports"
+        verify(view).searchClosed()
+        refreshed eq 1
+        verify(useCase).search("rep")
+    }
+
+    @Test
+    fun navigateUpClosesSearch() {
+        presenter.path = folder
+        presenter.search("rep")
+
+        presenter.navigateUp() eq true
+
+        verify(view).searchClosed()
+        presenter.path eq folder
+        refreshed eq 1
+    }
+
+}
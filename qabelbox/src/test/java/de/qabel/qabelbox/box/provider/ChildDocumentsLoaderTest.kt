@@ -0,0 +1,83 @@
+package de.qabel.qabelbox.box.provider
+
+import com.natpryce.hamkrest.equalTo
+import com.natpryce.hamkrest.should.shouldMatch
+import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.times
+import com.nhaarman.mockito_kotlin.verify
+import com.nhaarman.mockito_kotlin.whenever
+import de.qabel.box.storage.dto.BoxPath
+import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.box.dto.ProviderEntry
+import de.qabel.qabelbox.box.interactor.DocumentIdAdapter
+import org.junit.Before
+import org.junit.Test
+import rx.lang.kotlin.toSingletonObservable
+import rx.subjects.PublishSubject
+import java.io.IOException
+
+class ChildDocumentsLoaderTest {
+
+    val folder = DocumentId("identity", "prefix", BoxPath.Root)
+    val cached = listOf(ProviderEntry(folder.copy(path = BoxPath.Root / "old"), BrowserEntry.Folder("old")))
+    val refreshed = listOf(ProviderEntry(folder.copy(path = BoxPath.Root / "new"), BrowserEntry.Folder("new")))
+
+    val useCase: DocumentIdAdapter = mock()
+    val notified = mutableListOf<DocumentId>()
+    lateinit var refresh: PublishSubject<List<ProviderEntry>>
+    lateinit var loader: ChildDocumentsLoader
+
+    @Before
+    fun setUp() {
+        refresh = PublishSubject.create()
+        whenever(useCase.queryCachedChildDocuments(folder)).thenReturn(cached.toSingletonObservable())
+        whenever(useCase.queryChildDocuments(folder)).thenReturn(refresh)
+        loader = ChildDocumentsLoader(useCase, { notified.add(it) })
+    }
+
+    @Test
+    fun cachedListingIsLoadingUntilRefreshed() {
+        val first = loader.load(folder)
+        first.entries shouldMatch equalTo(cached)
+        first.loading shouldMatch equalTo(true)
+
+        refresh.onNext(refreshed)
+
+        notified shouldMatch equalTo(listOf(folder))
+        val second = loader.load(folder)
+        second.entries shouldMatch equalTo(refreshed)
+        second.loading shouldMatch equalTo(false)
+        verify(useCase).queryChildDocuments(folder)
+    }
+
+    @Test
+    fun refreshIsStartedOnce() {
+        loader.load(folder)
+        loader.load(folder).entries shouldMatch equalTo(cached)
+
+        verify(useCase).queryChildDocuments(folder)
+        verify(useCase, times(1)).queryCachedChildDocuments(folder)
+    }
+
+    @Test
+    fun failedRefreshKeepsCachedEntries() {
+        loader.load(folder)
+
+        refresh.onError(IOException("offline"))
+
+        val listing = loader.load(folder)
+        listing.entries shouldMatch equalTo(cached)
+        listing.loading shouldMatch equalTo(false)
+        listing.error shouldMatch equalTo("offline" as String?)
+    }
+
+    @Test
+    fun nextQueryRefreshesAgain() {
+        loader.load(folder)
+        refresh.onNext(refreshed)
+        loader.load(folder)
+
+        loader.load(folder).loading shouldMatch equalTo(true)
+    }
+
+}
@@ -0,0 +1,17 @@
+package de.qabel.qabelbox.box.repository
+
+class InMemoryBlockIndexRepository : BlockIndexRepository {
+
+    val hashes = mutableMapOf<Pair<String, String>, String>()
+
+    override fun findHash(prefix: String, block: String): String? = hashes[Pair(prefix, block)]
+
+    override fun save(prefix: String, block: String, hash: String) {
+        hashes.put(Pair(prefix, block), hash)
+    }
+
+    override fun delete(prefix: String, block: String) {
+        hashes.remove(Pair(prefix, block))
+    }
+
+}
@@ -0,0 +1,19 @@
+package de.qabel.qabelbox.box.repository
+
+import de.qabel.qabelbox.box.repository.PartialDownloadRepository.PartialDownload
+
+class InMemoryPartialDownloadRepository : PartialDownloadRepository {
+
+    val downloads = mutableMapOf<Pair<String, String>, PartialDownload>()
+
+    override fun find(prefix: String, name: String) = downloads[Pair(prefix, name)]
+
+    override fun save(download: PartialDownload) {
+        downloads.put(Pair(download.prefix, download.name), download)
+    }
+
+    override fun delete(prefix: String, name: String) {
+        downloads.remove(Pair(prefix, name))
+    }
+
+}
@@ -0,0 +1,59 @@
+package de.qabel.qabelbox.box.repository
+
+import de.qabel.qabelbox.BuildConfig
+import de.qabel.qabelbox.SimpleApplication
+import de.qabel.qabelbox.eq
+import de.qabel.qabelbox.persistence.RepositoryFactory
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricGradleTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricGradleTestRunner::class)
+@Config(application = SimpleApplication::class, constants = BuildConfig::class)
+class SqliteBlockIndexRepositoryTest {
+
+    lateinit var factory: RepositoryFactory
+    lateinit var repository: BlockIndexRepository
+
+    @Before
+    fun setUp() {
+        factory = RepositoryFactory(RuntimeEnvironment.application)
+        repository = SqliteBlockIndexRepository(factory.getAndroidClientDatabase())
+    }
+
+    @After
+    fun tearDown() {
+        factory.deleteDatabase()
+    }
+
+    @Test
+    fun testFindHash() {
+        repository.save("prefix", "block", "hash")
+
+        repository.findHash("prefix", "block") eq "hash"
+        repository.findHash("otherPrefix", "block") eq null
+    }
+
+    @Test
+    fun testSameContentInOtherBlock() {
+        repository.save("prefix", "block", "hash")
+        repository.save("prefix", "otherBlock", "hash")
+
+        repository.findHash("prefix", "block") eq "hash"
+        repository.findHash("prefix", "otherBlock") eq "hash"
+    }
+
+    @Test
+    fun testDelete() {
+        repository.save("prefix", "block", "hash")
+
+        repository.delete("prefix", "block")
+
+        repository.findHash("prefix", "block") eq null
+    }
+
+}
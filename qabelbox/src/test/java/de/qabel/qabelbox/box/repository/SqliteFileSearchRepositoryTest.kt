@@ -0,0 +1,119 @@
+package de.qabel.qabelbox.box.repository
+
+import de.qabel.box.storage.dto.BoxPath
+import de.qabel.qabelbox.BuildConfig
+import de.qabel.qabelbox.SimpleApplication
+import de.qabel.qabelbox.box.dto.BrowserEntry
+import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser.KeyAndPrefix
+import de.qabel.qabelbox.box.repository.FileSearchRepository.Match
+import de.qabel.qabelbox.eq
+import de.qabel.qabelbox.persistence.RepositoryFactory
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricGradleTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+import java.util.*
+
+@RunWith(RobolectricGradleTestRunner::class)
+@Config(application = SimpleApplication::class, constants = BuildConfig::class)
+class SqliteFileSearchRepositoryTest {
+
+    val volume = KeyAndPrefix("key", "prefix")
+    val otherVolume = KeyAndPrefix("key", "other")
+    val documents = BoxPath.Root / "Documents"
+    val report = BrowserEntry.File("Holiday-Report.pdf", 42, Date(1000), "block")
+
+    lateinit var factory: RepositoryFactory
+    lateinit var repository: FileSearchRepository
+
+    @Before
+    fun setUp() {
+        factory = RepositoryFactory(RuntimeEnvironment.application)
+        repository = SqliteFileSearchRepository(factory.getAndroidClientDatabase())
+        repository.update(volume, BoxPath.Root, listOf(BrowserEntry.Folder("Documents"),
+                BrowserEntry.File("notes.txt", 1, Date(2000))))
+        repository.update(volume, documents, listOf(report))
+    }
+
+    @After
+    fun tearDown() {
+        factory.deleteDatabase()
+    }
+
+    @Test
+    fun testSearchByPrefix() {
+        repository.search(volume, "rep") eq listOf(Match(documents * report.name, report))
+        repository.search(volume, "holiday report") eq listOf(Match(documents * report.name, report))
+        repository.search(otherVolume, "rep") eq emptyList<Match>()
+    }
+
+    @Test
+    fun testList() {
+        repository.list(volume, BoxPath.Root) eq listOf(BrowserEntry.Folder("Documents"),
+                BrowserEntry.File("notes.txt", 1, Date(2000)))
+        repository.list(volume, documents) eq listOf<BrowserEntry>(report)
+        repository.list(otherVolume, documents) eq emptyList<BrowserEntry>()
+        repository.list(volume, documents / "unknown") eq emptyList<BrowserEntry>()
+    }
+
+    @Test
+    fun testSearchFolderFirst() {
+        repository.search(volume, "doc").map { it.path } eq listOf(documents, documents * report.name)
+    }
+
+    @Test
+    fun testSearchNonAsciiNames() {
+        val overview = BrowserEntry.File("Übersicht.pdf", 1, Date(4000), "overview")
+        repository.update(volume, BoxPath.Root / "Büro", listOf(overview))
+
+        val match = Match((BoxPath.Root / "Büro") * overview.name, overview)
+        repository.search(volume, "über") eq listOf(match)
+        repository.search(volume, "Über") eq listOf(match)
+        repository.search(volume, "ÜBERSICHT") eq listOf(match)
+        repository.search(volume, "büro über") eq listOf(match)
+    }
+
+    @Test
+    fun testIgnoresOperators() {
+        repository.search(volume, "\"") eq emptyList<Match>()
+        repository.search(volume, "NOT* rep-").size eq 0
+        repository.search(volume, "notes*").size eq 1
+    }
+
+    @Test
+    fun testUpdateReplacesFolder() {
+        val changed = BrowserEntry.File(report.name, 84, Date(3000), "changed")
+        repository.update(volume, documents, listOf(changed, BrowserEntry.File("other.txt", 1, Date())))
+
+        val match = repository.search(volume, "report").single()
+        match.entry eq changed
+        (match.entry as BrowserEntry.File).block eq "changed"
+        repository.search(volume, "other").size eq 1
+
+        repository.update(volume, documents, emptyList())
+        repository.search(volume, "report") eq emptyList<Match>()
+    }
+
+    @Test
+    fun testRemovedFolderDropsContent() {
+        repository.update(volume, documents / "Archive", listOf(BrowserEntry.File("old.txt", 1, Date())))
+
+        repository.update(volume, BoxPath.Root, emptyList())
+
+        repository.search(volume, "old") eq emptyList<Match>()
+        repository.search(volume, "report") eq emptyList<Match>()
+    }
+
+    @Test
+    fun testDelete() {
+        repository.update(volume, BoxPath.Root / "Docs", listOf(BrowserEntry.File("report.txt", 1, Date())))
+
+        repository.delete(volume, documents)
+
+        repository.search(volume, "report").map { it.path } eq listOf((BoxPath.Root / "Docs") * "report.txt")
+    }
+
+}
@@ -10,7 +10,9 @@ import de.qabel.core.repository.inmemory.InMemoryContactRepository
 import de.qabel.core.repository.inmemory.InMemoryIdentityRepository
 import de.qabel.qabelbox.BuildConfig
 import de.qabel.qabelbox.SimpleApplication
+import de.qabel.qabelbox.chat.repository.InMemoryChatConversationRepository
 import de.qabel.qabelbox.chat.transformers.ChatMessageTransformer
+import de.qabel.qabelbox.persistence.EntityLookupCache
 import de.qabel.qabelbox.util.IdentityHelper
 import org.hamcrest.Matchers.*
 import org.junit.Assert.assertThat
@@ -45,8 +47,10 @@ class ChatServiceUseCaseTest {
         identityRepo.save(identityB)
         contactRepo = InMemoryContactRepository()
         messageRepo = InMemoryChatDropMessageRepository()
-        contactsUseCase = MainChatServiceUseCase(messageRepo, contactRepo, identityRepo, ChatMessageTransformer(identityRepo, contactRepo))
-        markAsRead = MainMarkAsRead(messageRepo, contactRepo, identityRepo)
+        val lookupCache = EntityLookupCache(identityRepo, contactRepo)
+        contactsUseCase = MainChatServiceUseCase(messageRepo, contactRepo, identityRepo,
+                ChatMessageTransformer(lookupCache), lookupCache)
+        markAsRead = MainMarkAsRead(InMemoryChatConversationRepository(messageRepo), lookupCache)
     }
 
     private fun createMsg(contact: Contact, identity: Identity, status: ChatDropMessage.Status) =
@@ -78,6 +82,18 @@ class ChatServiceUseCaseTest {
         assertThat(result, hasSize(2))
     }
 
+    @Test
+    fun testMarkMessagesOfContactsRead() {
+        contactRepo.save(contactA, identityB)
+        contactRepo.save(contactB, identityB)
+        messageRepo.persist(createMsg(contactA, identityB, ChatDropMessage.Status.NEW))
+        messageRepo.persist(createMsg(contactB, identityB, ChatDropMessage.Status.NEW))
+        messageRepo.persist(createMsg(contactB, identityA, ChatDropMessage.Status.NEW))
+        markAsRead.forContacts(identityB.keyIdentifier, listOf(contactA.keyIdentifier, contactB.keyIdentifier))
+        assertThat(messageRepo.findNew(identityA.id), hasSize(1))
+        assertThat(messageRepo.findNew(identityB.id), hasSize(0))
+    }
+
     @Test
     fun testAddContact() {
         contactA.status = Contact.ContactStatus.UNKNOWN
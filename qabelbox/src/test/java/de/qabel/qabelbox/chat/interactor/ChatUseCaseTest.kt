@@ -2,6 +2,7 @@ package de.qabel.qabelbox.chat.interactor
 
 import com.nhaarman.mockito_kotlin.mock
 import com.nhaarman.mockito_kotlin.spy
+import com.nhaarman.mockito_kotlin.times
 import com.nhaarman.mockito_kotlin.verify
 import de.qabel.core.config.Contact
 import de.qabel.core.http.DropConnector
@@ -19,8 +20,10 @@ import de.qabel.qabelbox.BuildConfig
 import de.qabel.qabelbox.QblBroadcastConstants
 import de.qabel.qabelbox.SimpleApplication
 import de.qabel.qabelbox.chat.dto.ChatMessage
+import de.qabel.qabelbox.chat.repository.InMemoryChatConversationRepository
 import de.qabel.qabelbox.chat.transformers.ChatMessageTransformer
 import de.qabel.qabelbox.listeners.ActionIntentSender
+import de.qabel.qabelbox.persistence.EntityLookupCache
 import de.qabel.qabelbox.storage.server.MockBlockServer
 import de.qabel.qabelbox.util.IdentityHelper
 import org.hamcrest.Matchers.equalTo
@@ -60,10 +63,13 @@ class ChatUseCaseTest {
         val contactRepo = InMemoryContactRepository()
         contactRepo.save(contact, identity)
         chatDropRepository = spy(InMemoryChatDropMessageRepository())
-        transformer = ChatMessageTransformer(identityRepo, contactRepo)
+        val lookupCache = EntityLookupCache(identityRepo, contactRepo)
+        transformer = ChatMessageTransformer(lookupCache)
         chatService = spy(MainChatService(dropConnector, identityRepo, contactRepo, chatDropRepository, InMemoryDropStateRepository(), mock()))
-        markAsRead = MainMarkAsRead(chatDropRepository, contactRepo, identityRepo)
-        chatUseCase = TransformingChatUseCase(identity, contact, markAsRead, transformer, chatService, mock(), MockBlockServer(), chatDropRepository, chatServiceUseCase, actionIntentSender)
+        val conversationRepository = InMemoryChatConversationRepository(chatDropRepository)
+        markAsRead = MainMarkAsRead(conversationRepository, lookupCache)
+        chatUseCase = TransformingChatUseCase(identity, contact, markAsRead, transformer, chatService, mock(), MockBlockServer(),
+                chatDropRepository, conversationRepository, chatServiceUseCase, actionIntentSender)
     }
 
     @Test
@@ -75,18 +81,57 @@ class ChatUseCaseTest {
 
     @Test
     fun testMessagesRetrieved() {
-        chatDropRepository.persist(ChatDropMessage(contact.id, identity.id,
+        val message = ChatDropMessage(contact.id, identity.id,
                 ChatDropMessage.Direction.OUTGOING, ChatDropMessage.Status.NEW,
-                ChatDropMessage.MessageType.BOX_MESSAGE, ChatDropMessage.MessagePayload.TextMessage("test123"), Date().time))
+                ChatDropMessage.MessageType.BOX_MESSAGE, ChatDropMessage.MessagePayload.TextMessage("test123"), Date().time)
+        chatDropRepository.persist(message)
 
         val result: PagingResult<ChatMessage> = chatUseCase.load(0, 50).toBlocking().first()
         assertThat(result.availableRange, equalTo(1))
         assertThat(result.result, hasSize(1))
-        verify(chatDropRepository).markAsRead(contact, identity)
-        verify(chatDropRepository).findByContact(contact.id, identity.id)
+        assertThat(chatDropRepository.findNew(identity.id), hasSize(0))
+        verify(chatDropRepository).findById(message.id)
         verify(actionIntentSender).sendActionIntentBroadCast(QblBroadcastConstants.Chat.MESSAGE_STATE_CHANGED)
     }
 
+    private fun persistMessages(count: Int, createdOn: Long) {
+        for (i in 1..count) {
+            chatDropRepository.persist(ChatDropMessage(contact.id, identity.id,
+                    ChatDropMessage.Direction.INCOMING, ChatDropMessage.Status.READ,
+                    ChatDropMessage.MessageType.BOX_MESSAGE, ChatDropMessage.MessagePayload.TextMessage("msg" + i), createdOn))
+        }
+    }
+
+    @Test
+    fun testPagesContinueBeforeOldestMessage() {
+        // same timestamp for all messages, the id has to break the tie
+        persistMessages(5, 1000L)
+
+        val first = chatUseCase.load(0, 2).toBlocking().first()
+        val second = chatUseCase.load(2, 2).toBlocking().first()
+        val third = chatUseCase.load(4, 2).toBlocking().first()
+
+        assertThat(first.availableRange, equalTo(5))
+        assertThat(first.result.map { it.messagePayload.toMessage() }, equalTo(listOf("msg5", "msg4")))
+        assertThat(second.result.map { it.messagePayload.toMessage() }, equalTo(listOf("msg3", "msg2")))
+        assertThat(third.result.map { it.messagePayload.toMessage() }, equalTo(listOf("msg1")))
+    }
+
+    @Test
+    fun testPrefetchedPageIsUsed() {
+        persistMessages(4, 1000L)
+        val first = chatUseCase.load(0, 2).toBlocking().first()
+
+        chatUseCase.prefetch()
+        val second = chatUseCase.load(2, 2).toBlocking().first()
+
+        assertThat(first.result.map { it.messagePayload.toMessage() }, equalTo(listOf("msg4", "msg3")))
+        assertThat(second.result.map { it.messagePayload.toMessage() }, equalTo(listOf("msg2", "msg1")))
+        chatDropRepository.findByContact(contact.id, identity.id).forEach {
+            verify(chatDropRepository, times(1)).findById(it.id)
+        }
+    }
+
     @Test
     fun sendMessage() {
         val result: ChatMessage = chatUseCase.send("Text").toBlocking().single()
@@ -9,7 +9,9 @@ import de.qabel.core.repository.inmemory.InMemoryContactRepository
 import de.qabel.core.repository.inmemory.InMemoryIdentityRepository
 import de.qabel.qabelbox.BuildConfig
 import de.qabel.qabelbox.SimpleApplication
+import de.qabel.qabelbox.chat.repository.InMemoryChatConversationRepository
 import de.qabel.qabelbox.chat.transformers.ChatMessageTransformer
+import de.qabel.qabelbox.persistence.EntityLookupCache
 import org.hamcrest.Matchers.equalTo
 import org.hamcrest.Matchers.hasSize
 import org.junit.Assert.assertThat
@@ -34,7 +36,9 @@ class FindLatestConversationsTest : CoreTestCase {
         save(identity)
     }
     val chatRepo = InMemoryChatDropMessageRepository()
-    val useCase = MainFindLatestConversations(chatRepo, ChatMessageTransformer(identityRepo, contactRepo))
+    val lookupCache = EntityLookupCache(identityRepo, contactRepo)
+    val useCase = MainFindLatestConversations(chatRepo, InMemoryChatConversationRepository(chatRepo),
+            lookupCache, ChatMessageTransformer(lookupCache))
 
     @Before
     fun setUp() {
@@ -55,6 +59,15 @@ class FindLatestConversationsTest : CoreTestCase {
         assertThat(conversationDto.message.messagePayload.toMessage(), equalTo("4"))
     }
 
+    @Test
+    fun testLoadConversationsOfContacts() {
+        val result = useCase.findConversations(identity,
+                listOf(identity.keyIdentifier, contact.keyIdentifier, "unknown")).toList().toBlocking().first()
+        assertThat(result, hasSize(1))
+        assertThat(result.first().newMsgCount, equalTo(4))
+        assertThat(result.first().message.messagePayload.toMessage(), equalTo("4"))
+    }
+
     private fun createMsg(text: String, status: ChatDropMessage.Status = ChatDropMessage.Status.READ) =
             ChatDropMessage(contact.id, identity.id,
                     ChatDropMessage.Direction.OUTGOING, status,
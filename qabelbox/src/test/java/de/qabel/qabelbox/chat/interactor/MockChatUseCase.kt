@@ -21,6 +21,9 @@ open class MockChatUseCase(val chatMessage: ChatMessage,
         }).toSingletonObservable()
     }
 
+    override fun prefetch() {
+    }
+
     override fun send(text: String): Observable<ChatMessage> {
         messages = listOf(chatMessage)
         return chatMessage.toSingletonObservable()
@@ -10,6 +10,7 @@ import de.qabel.qabelbox.SimpleApplication
 import de.qabel.qabelbox.chat.dto.ChatMessage
 import de.qabel.qabelbox.chat.dto.MessagePayloadDto
 import de.qabel.qabelbox.chat.notifications.presenter.ChatNotificationPresenter
+import de.qabel.qabelbox.persistence.RepositoryFactory
 import de.qabel.qabelbox.util.IdentityHelper
 import org.apache.commons.lang3.time.DateUtils
 import org.hamcrest.Matchers.*
@@ -18,6 +19,7 @@ import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.mockito.Mockito.mock
+import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
 import org.robolectric.RobolectricGradleTestRunner
 import org.robolectric.RuntimeEnvironment
@@ -67,6 +69,39 @@ class MainChatNotificationManagerTest {
     }
 
 
+    @Test
+    fun testNotifiedMessagesSurviveRestart() {
+        val msg = createExampleMessage(now).copy(id = 42)
+        doUpdateNotifications(listOf(msg))
+        manager = MainChatNotificationManager(presenter, RuntimeEnvironment.application)
+        doUpdateNotifications(listOf(msg))
+        verify(presenter).showNotification(ContactChatNotification(identity, contact, "message", now))
+    }
+
+    @Test
+    fun testOldUnreadMessagesAreNotNotifiedAgain() {
+        val msg = createExampleMessage(now).copy(id = 42)
+        var time = now.time
+        manager = MainChatNotificationManager(presenter, context,
+                NotifiedMessages(context.getSharedPreferences("test", Context.MODE_PRIVATE), maxAge = 100,
+                        clock = { time }))
+        doUpdateNotifications(listOf(msg))
+        time += 200
+        doUpdateNotifications(listOf(msg))
+        verify(presenter).showNotification(ContactChatNotification(identity, contact, "message", now))
+    }
+
+    @Test
+    fun testNotifiedMessagesClearedWithDatabase() {
+        val msg = createExampleMessage(now).copy(id = 42)
+        doUpdateNotifications(listOf(msg))
+
+        RepositoryFactory(context).deleteDatabase()
+        doUpdateNotifications(listOf(msg))
+
+        verify(presenter, times(2)).showNotification(ContactChatNotification(identity, contact, "message", now))
+    }
+
     fun doUpdateNotifications(messages : List<ChatMessage> = listOf(createExampleMessage(now))): Map<Identity, List<ChatMessage>> =
             mapOf(Pair(identity, messages)).apply {
                 manager.updateNotifications(this)
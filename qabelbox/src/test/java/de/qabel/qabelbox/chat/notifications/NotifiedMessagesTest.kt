@@ -0,0 +1,83 @@
+package de.qabel.qabelbox.chat.notifications
+
+import android.content.Context
+import de.qabel.qabelbox.BuildConfig
+import de.qabel.qabelbox.SimpleApplication
+import de.qabel.qabelbox.eq
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricGradleTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricGradleTestRunner::class)
+@Config(application = SimpleApplication::class, constants = BuildConfig::class)
+class NotifiedMessagesTest {
+
+    val preferences = RuntimeEnvironment.application.getSharedPreferences("test", Context.MODE_PRIVATE)
+    var now = 1000L
+    val notified = NotifiedMessages(preferences, maxSize = 3, maxAge = 100, clock = { now })
+
+    @Test
+    fun testContains() {
+        notified.addAll(listOf("a", "b"))
+        notified.contains("a") eq true
+        notified.contains("c") eq false
+    }
+
+    @Test
+    fun testBounded() {
+        notified.addAll(listOf("a", "b", "c"))
+        notified.addAll(listOf("d"))
+        notified.size() eq 3
+        notified.contains("a") eq false
+        notified.contains("d") eq true
+    }
+
+    @Test
+    fun testExpires() {
+        notified.addAll(listOf("a"))
+        now += 50
+        notified.addAll(listOf("b"))
+        now += 60
+        notified.contains("a") eq false
+        notified.contains("b") eq true
+    }
+
+    @Test
+    fun testPersisted() {
+        notified.addAll(listOf("a", "b"))
+        val restored = NotifiedMessages(preferences, maxSize = 3, maxAge = 100, clock = { now })
+        restored.contains("a") eq true
+        restored.contains("b") eq true
+        restored.size() eq 2
+    }
+
+    @Test
+    fun testMessagesOfForgottenKeysStayNotified() {
+        notified.addAll(mapOf(Pair("a", 1L), Pair("b", 3L), Pair("c", 2L)))
+        now += 10
+        notified.addAll(mapOf(Pair("d", 5L)))
+
+        notified.isNotified("a", 1) eq true
+        notified.isNotified("e", 4) eq false
+
+        now += 200
+        notified.isNotified("d", 5) eq true
+        notified.isNotified("e", 6) eq false
+        notified.isNotified("unstored", 0) eq false
+    }
+
+    @Test
+    fun testForgottenPersisted() {
+        notified.addAll(mapOf(Pair("a", 7L)))
+        now += 200
+        notified.addAll(mapOf(Pair("b", 8L)))
+
+        val restored = NotifiedMessages(preferences, maxSize = 3, maxAge = 100, clock = { now })
+        restored.isNotified("a", 7) eq true
+        restored.contains("b") eq true
+        restored.isNotified("c", 9) eq false
+    }
+
+}
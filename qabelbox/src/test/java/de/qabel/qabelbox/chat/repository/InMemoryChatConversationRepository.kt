@@ -0,0 +1,40 @@
+package de.qabel.qabelbox.chat.repository
+
+import de.qabel.chat.repository.ChatDropMessageRepository
+import de.qabel.chat.repository.entities.ChatDropMessage
+
+class InMemoryChatConversationRepository(private val chatRepo: ChatDropMessageRepository) :
+        ChatConversationRepository {
+
+    override fun countNew(identityId: Int): Map<Int, Int> =
+            chatRepo.findNew(identityId).groupBy { it.contactId }.mapValues { it.value.size }
+
+    override fun countNew(identityId: Int, contactId: Int): Int =
+            chatRepo.findNew(identityId).count { it.contactId == contactId }
+
+    override fun findLatestMessageId(identityId: Int, contactId: Int): Int? =
+            chatRepo.findLatest(identityId).firstOrNull { it.contactId == contactId }?.id
+
+    override fun countMessages(identityId: Int, contactId: Int): Int =
+            chatRepo.findByContact(contactId, identityId).size
+
+    override fun findKeysBefore(identityId: Int, contactId: Int, before: MessageKey?, limit: Int): List<MessageKey> =
+            chatRepo.findByContact(contactId, identityId)
+                    .map { MessageKey(it.createdOn, it.id) }
+                    .filter { before == null || it.createdOn < before.createdOn ||
+                            (it.createdOn == before.createdOn && it.id < before.id) }
+                    .sortedWith(compareByDescending<MessageKey> { it.createdOn }.thenByDescending { it.id })
+                    .take(limit)
+
+    override fun markAsRead(identityId: Int): Int = markAsRead(identityId) { true }
+
+    override fun markAsRead(identityId: Int, contactIds: Collection<Int>): Int =
+            markAsRead(identityId) { contactIds.contains(it.contactId) }
+
+    private fun markAsRead(identityId: Int, filter: (ChatDropMessage) -> Boolean): Int {
+        val messages = chatRepo.findNew(identityId).filter(filter)
+        messages.forEach { it.status = ChatDropMessage.Status.READ }
+        return messages.size
+    }
+
+}
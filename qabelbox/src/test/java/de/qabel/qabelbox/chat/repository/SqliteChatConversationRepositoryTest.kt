@@ -0,0 +1,131 @@
+package de.qabel.qabelbox.chat.repository
+
+import de.qabel.chat.repository.ChatDropMessageRepository
+import de.qabel.chat.repository.entities.ChatDropMessage
+import de.qabel.core.config.Contact
+import de.qabel.core.config.Identity
+import de.qabel.qabelbox.BuildConfig
+import de.qabel.qabelbox.SimpleApplication
+import de.qabel.qabelbox.eq
+import de.qabel.qabelbox.persistence.RepositoryFactory
+import de.qabel.qabelbox.util.IdentityHelper
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricGradleTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricGradleTestRunner::class)
+@Config(application = SimpleApplication::class, constants = BuildConfig::class)
+class SqliteChatConversationRepositoryTest {
+
+    lateinit var factory: RepositoryFactory
+    lateinit var messageRepository: ChatDropMessageRepository
+    lateinit var repository: SqliteChatConversationRepository
+    lateinit var identity: Identity
+    lateinit var contact: Contact
+
+    @Before
+    fun setUp() {
+        factory = RepositoryFactory(RuntimeEnvironment.application)
+        identity = IdentityHelper.createIdentity("identity", null)
+        contact = IdentityHelper.createContact("contact")
+        factory.getIdentityRepository().save(identity)
+        factory.getContactRepository().save(contact, identity)
+        messageRepository = factory.getChatDropMessageRepository()
+        repository = SqliteChatConversationRepository(factory.getAndroidClientDatabase())
+    }
+
+    @After
+    fun tearDown() {
+        factory.deleteDatabase()
+    }
+
+    private fun message(createdOn: Long, status: ChatDropMessage.Status = ChatDropMessage.Status.NEW,
+                        contact: Contact = this.contact) =
+            ChatDropMessage(contact.id, identity.id, ChatDropMessage.Direction.INCOMING, status,
+                    ChatDropMessage.MessageType.BOX_MESSAGE, ChatDropMessage.MessagePayload.TextMessage("text"),
+                    createdOn).apply { messageRepository.persist(this) }
+
+    @Test
+    fun testMessageIsReadAfterMarkAsRead() {
+        val message = message(1000)
+        messageRepository.findById(message.id).status eq ChatDropMessage.Status.NEW
+
+        repository.markAsRead(identity.id, listOf(contact.id)) eq 1
+
+        messageRepository.findById(message.id).status eq ChatDropMessage.Status.READ
+        repository.countNew(identity.id, contact.id) eq 0
+    }
+
+    @Test
+    fun testCountNewByContact() {
+        val other = IdentityHelper.createContact("other")
+        factory.getContactRepository().save(other, identity)
+        message(1000)
+        message(2000)
+        message(3000, ChatDropMessage.Status.READ)
+        message(4000, contact = other)
+
+        repository.countNew(identity.id) eq mapOf(contact.id to 2, other.id to 1)
+        repository.countNew(identity.id, contact.id) eq 2
+        repository.countMessages(identity.id, contact.id) eq 3
+
+        repository.markAsRead(identity.id) eq 3
+        repository.countNew(identity.id) eq emptyMap<Int, Int>()
+    }
+
+    @Test
+    fun testLatestMessageByCreationTime() {
+        repository.findLatestMessageId(identity.id, contact.id) eq null
+        val latest = message(3000)
+        message(1000)
+
+        repository.findLatestMessageId(identity.id, contact.id) eq latest.id
+    }
+
+    @Test
+    fun testKeysetPages() {
+        val first = message(1000)
+        val second = message(2000)
+        val third = message(2000)
+
+        val page = repository.findKeysBefore(identity.id, contact.id, null, 2)
+        page eq listOf(MessageKey(2000, third.id), MessageKey(2000, second.id))
+        repository.findKeysBefore(identity.id, contact.id, page.last(), 2) eq listOf(MessageKey(1000, first.id))
+    }
+
+    @Test
+    fun testMarkAsReadInChunks() {
+        message(1000)
+        val contactIds = (1..1200).map { contact.id + it } + contact.id
+
+        repository.markAsRead(identity.id, contactIds) eq 1
+
+        repository.countNew(identity.id) eq emptyMap<Int, Int>()
+    }
+
+    @Test
+    fun testStatementsOfOtherThreadsWaitForTransaction() {
+        val database = factory.getAndroidClientDatabase()
+        var other: ChatDropMessage? = null
+        val thread = Thread { other = message(2000) }
+
+        try {
+            database.transaction {
+                message(1000)
+                thread.start()
+                thread.join(200)
+                throw IllegalStateException("rollback")
+            }
+        } catch (e: IllegalStateException) {
+        }
+        thread.join()
+
+        repository.countMessages(identity.id, contact.id) eq 1
+        repository.findLatestMessageId(identity.id, contact.id) eq other?.id
+    }
+
+}
@@ -11,6 +11,7 @@ import de.qabel.qabelbox.QblBroadcastConstants
 import de.qabel.qabelbox.SimpleApplication
 import de.qabel.qabelbox.chat.dto.ChatMessage
 import de.qabel.qabelbox.chat.services.AndroidChatService
+import de.qabel.qabelbox.chat.services.ChatEventBus
 import de.qabel.qabelbox.util.IdentityHelper
 import org.hamcrest.Matchers.notNullValue
 import org.junit.Assert.assertThat
@@ -20,6 +21,7 @@ import org.junit.runner.RunWith
 import org.robolectric.RobolectricGradleTestRunner
 import org.robolectric.RuntimeEnvironment
 import org.robolectric.annotation.Config
+import rx.schedulers.TestScheduler
 
 @RunWith(RobolectricGradleTestRunner::class)
 @Config(application = SimpleApplication::class, constants = BuildConfig::class)
@@ -49,6 +51,7 @@ class AndroidChatServiceTest() {
         androidService.markAsRead = mock()
         androidService.chatMessageTransformer = mock()
         androidService.chatNotificationManager = mock()
+        androidService.chatEventBus = mock()
     }
 
     @Test
@@ -90,7 +93,12 @@ class AndroidChatServiceTest() {
 
     @Test
     fun testHandleShowNotification() {
+        val scheduler = TestScheduler()
+        androidService.chatEventBus = ChatEventBus(mock(), androidService.chatService,
+                androidService.chatNotificationManager, ChatEventBus.DEFAULT_WINDOW, scheduler)
+        whenever(androidService.chatService.getNewMessageAffectedKeyIds()).thenReturn(listOf(identityKey))
         androidService.onHandleIntent(Intent(QblBroadcastConstants.Chat.Service.MESSAGES_UPDATED))
+        // delivered before the service finishes, without waiting for the window
         verify(androidService.chatService).getNewMessageAffectedKeyIds()
     }
 
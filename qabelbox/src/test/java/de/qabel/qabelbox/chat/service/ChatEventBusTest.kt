@@ -0,0 +1,85 @@
+package de.qabel.qabelbox.chat.service
+
+import com.nhaarman.mockito_kotlin.*
+import de.qabel.core.event.EventSink
+import de.qabel.qabelbox.chat.events.NewMessagesEvent
+import de.qabel.qabelbox.chat.interactor.ChatServiceUseCase
+import de.qabel.qabelbox.chat.notifications.ChatNotificationManager
+import de.qabel.qabelbox.chat.services.ChatEventBus
+import org.junit.Before
+import org.junit.Test
+import rx.schedulers.TestScheduler
+import java.util.concurrent.TimeUnit
+
+class ChatEventBusTest {
+
+    val scheduler = TestScheduler()
+    val eventSink: EventSink = mock()
+    val chatServiceUseCase: ChatServiceUseCase = mock()
+    val notificationManager: ChatNotificationManager = mock()
+    val bus = ChatEventBus(eventSink, chatServiceUseCase, notificationManager, 500, scheduler)
+
+    @Before
+    fun setUp() {
+        whenever(chatServiceUseCase.getNewMessageAffectedKeyIds()).thenReturn(listOf("identity", "contact"))
+        whenever(chatServiceUseCase.getNewMessageMap()).thenReturn(emptyMap())
+    }
+
+    @Test
+    fun testCoalescesBurst() {
+        repeat(200) {
+            bus.messagesReceived()
+            scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS)
+        }
+        verify(eventSink, never()).push(any())
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS)
+        verify(eventSink).push(NewMessagesEvent(setOf("identity", "contact")))
+        verify(chatServiceUseCase, times(1)).getNewMessageAffectedKeyIds()
+        verify(notificationManager, times(1)).updateNotifications(any())
+    }
+
+    @Test
+    fun testLongBurstEndsAfterMaxWindow() {
+        repeat(60) {
+            bus.messagesReceived()
+            scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS)
+        }
+        verify(eventSink).push(any())
+    }
+
+    @Test
+    fun testFlush() {
+        bus.messagesReceived()
+        bus.flush()
+        verify(eventSink).push(NewMessagesEvent(setOf("identity", "contact")))
+
+        bus.flush()
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS)
+        verify(eventSink, times(1)).push(any())
+    }
+
+    @Test
+    fun testSeparateBursts() {
+        bus.messagesReceived()
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS)
+        bus.messagesReceived()
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS)
+        verify(eventSink, times(2)).push(any())
+    }
+
+    @Test
+    fun testActiveConversationSuppressesNotification() {
+        bus.setActiveConversation("identity", "contact")
+        bus.messagesReceived()
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS)
+        verify(eventSink).push(NewMessagesEvent(setOf("identity", "contact")))
+        verify(notificationManager, never()).updateNotifications(any())
+
+        bus.clearActiveConversation()
+        bus.messagesReceived()
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS)
+        verify(notificationManager).updateNotifications(any())
+    }
+
+}
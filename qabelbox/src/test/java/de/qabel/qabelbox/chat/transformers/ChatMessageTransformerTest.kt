@@ -9,6 +9,7 @@ import de.qabel.core.repository.inmemory.InMemoryIdentityRepository
 import de.qabel.qabelbox.BuildConfig
 import de.qabel.qabelbox.SimpleApplication
 import de.qabel.qabelbox.chat.dto.MessagePayloadDto
+import de.qabel.qabelbox.persistence.EntityLookupCache
 import de.qabel.qabelbox.util.IdentityHelper
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -26,7 +27,7 @@ class ChatMessageTransformerTest {
     val contactRepository = InMemoryContactRepository().apply {
         save(contact, identity)
     }
-    val chatMessageTransformer = ChatMessageTransformer(identityRepository, contactRepository)
+    val chatMessageTransformer = ChatMessageTransformer(EntityLookupCache(identityRepository, contactRepository))
     val now = Date()
 
     @Test fun testIncomingTextMessage() {
@@ -1,10 +1,12 @@
 package de.qabel.qabelbox.chat.view.adapters
 
+import android.support.v7.widget.RecyclerView
 import android.widget.LinearLayout
 import com.natpryce.hamkrest.assertion.assertThat
 import com.natpryce.hamkrest.equalTo
 import com.natpryce.hamkrest.should.shouldMatch
 import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.never
 import com.nhaarman.mockito_kotlin.verify
 import de.qabel.chat.repository.entities.BoxFileChatShare
 import de.qabel.chat.repository.entities.ChatDropMessage
@@ -61,6 +63,21 @@ class ChatMessageAdapterTest {
         adapter.getItemAtPosition(2) shouldMatch equalTo(null as ChatMessage?)
     }
 
+    @Test
+    fun prependNotifiesInsertedRange() {
+        val observer: RecyclerView.AdapterDataObserver = mock()
+        adapter.init(listOf(message))
+        adapter.registerAdapterDataObserver(observer)
+
+        val older = message.copy(direction = ChatDropMessage.Direction.OUTGOING)
+        adapter.prepend(listOf(older, older))
+
+        verify(observer).onItemRangeInserted(0, 2)
+        verify(observer).onItemRangeChanged(2, 1, null)
+        verify(observer, never()).onChanged()
+        adapter.getItemAtPosition(2)!! shouldMatch equalTo(message)
+    }
+
     @Test
     fun differentViewsForShareAndTextMessage() {
         val shareMessage = message.copy(messagePayload =
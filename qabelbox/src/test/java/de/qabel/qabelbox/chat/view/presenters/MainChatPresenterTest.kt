@@ -46,6 +46,11 @@ class MainChatPresenterTest {
         verify(view).prependData(useCase.messages)
     }
 
+    @Test fun testPrefetchMessages() {
+        presenter.prefetchMessages()
+        verify(useCase).prefetch()
+    }
+
     @Test fun messageIsSent() {
         stub(view.messageText).toReturn("Text")
         presenter.sendMessage()
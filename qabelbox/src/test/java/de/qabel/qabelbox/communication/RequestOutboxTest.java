@@ -0,0 +1,282 @@
+package de.qabel.qabelbox.communication;
+
+import android.support.annotation.Nullable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import de.qabel.qabelbox.communication.callbacks.RequestCallback;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RequestOutboxTest {
+
+    private static class MemoryStore implements RequestOutbox.Store {
+        final Map<Long, RequestAction> actions = new HashMap<>();
+        long nextId = 1;
+
+        @Override
+        public long save(RequestAction action) {
+            actions.put(nextId, action);
+            return nextId++;
+        }
+
+        @Override
+        public void delete(long id) {
+            actions.remove(id);
+        }
+
+        @Override
+        public List<RequestAction> load(RequestCallback callback) {
+            List<RequestAction> loaded = new ArrayList<>();
+            for (Map.Entry<Long, RequestAction> entry : actions.entrySet()) {
+                RequestAction action = new RequestAction(entry.getValue().getRequest(), callback);
+                action.setStoreId(entry.getKey());
+                loaded.add(action);
+            }
+            return loaded;
+        }
+    }
+
+    private static class ResultCallback extends RequestCallback {
+        int status = -1;
+        Exception error;
+
+        ResultCallback() {
+            super(200, 204);
+        }
+
+        @Override
+        protected void onSuccess(int statusCode, Response response) {
+            status = statusCode;
+        }
+
+        @Override
+        protected void onError(Exception e, @Nullable Response response) {
+            error = e;
+            status = response != null ? response.code() : 0;
+        }
+    }
+
+    private final List<Call> calls = new ArrayList<>();
+    private MemoryStore store;
+    private RequestOutbox outbox;
+
+    @Before
+    public void setUp() {
+        store = new MemoryStore();
+        outbox = new RequestOutbox(recordingFactory(), store, mock(ScheduledExecutorService.class), 2, 2, 0, 0);
+    }
+
+    private Call.Factory recordingFactory() {
+        Call.Factory factory = mock(Call.Factory.class);
+        when(factory.newCall(any(Request.class))).then(new Answer<Call>() {
+            @Override
+            public Call answer(InvocationOnMock invocation) {
+                Call call = mock(Call.class);
+                when(call.request()).thenReturn((Request) invocation.getArguments()[0]);
+                calls.add(call);
+                return call;
+            }
+        });
+        return factory;
+    }
+
+    private Request request(String method, String url) {
+        return new Request.Builder().url(url).method(method, null).build();
+    }
+
+    private Callback callbackOf(Call call) {
+        ArgumentCaptor<Callback> captor = ArgumentCaptor.forClass(Callback.class);
+        verify(call).enqueue(captor.capture());
+        return captor.getValue();
+    }
+
+    private void respond(Call call, int code) throws IOException {
+        Response response = new Response.Builder()
+                .request(call.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .body(ResponseBody.create(MediaType.parse("text/plain"), ""))
+                .build();
+        callbackOf(call).onResponse(call, response);
+    }
+
+    @Test
+    public void testLimitsRequestsPerHost() throws IOException {
+        outbox.setConnected(true);
+        for (int i = 0; i < 3; i++) {
+            outbox.enqueue(new RequestAction(request("GET", "http://block/" + i), new ResultCallback()));
+        }
+        outbox.enqueue(new RequestAction(request("GET", "http://drop/"), new ResultCallback()));
+
+        assertEquals(3, calls.size());
+        assertEquals(1, outbox.getMetrics().queueDepth);
+
+        respond(calls.get(0), 200);
+
+        assertEquals(4, calls.size());
+        assertEquals(0, outbox.getMetrics().queueDepth);
+    }
+
+    @Test
+    public void testRetriesUntilGivingUp() {
+        outbox.setConnected(true);
+        ResultCallback callback = new ResultCallback();
+        outbox.enqueue(new RequestAction(request("GET", "http://block/file"), callback));
+
+        IOException failure = new IOException("Connection reset");
+        callbackOf(calls.get(0)).onFailure(calls.get(0), failure);
+        assertEquals(2, calls.size());
+        assertEquals(-1, callback.status);
+
+        callbackOf(calls.get(1)).onFailure(calls.get(1), failure);
+        assertEquals(2, calls.size());
+        assertEquals(failure, callback.error);
+        assertEquals(1, outbox.getMetrics().retries);
+        assertEquals(1, outbox.getMetrics().giveUps);
+    }
+
+    @Test
+    public void testDoesNotSendPostTwice() {
+        outbox.setConnected(true);
+        ResultCallback callback = new ResultCallback();
+        Request post = new Request.Builder().url("http://drop/drop")
+                .post(RequestBody.create(MediaType.parse("text/plain"), "message"))
+                .build();
+        outbox.enqueue(new RequestAction(post, callback));
+
+        IOException failure = new IOException("Connection reset");
+        callbackOf(calls.get(0)).onFailure(calls.get(0), failure);
+        assertEquals(1, calls.size());
+        assertEquals(failure, callback.error);
+        assertEquals(0, outbox.getMetrics().retries);
+    }
+
+    @Test
+    public void testRestoresInBackground() {
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        outbox.enqueue(new RequestAction(request("DELETE", "http://block/file"), new ResultCallback()));
+        RequestOutbox restarted = new RequestOutbox(recordingFactory(), store, scheduler);
+        restarted.setConnected(true);
+
+        restarted.restoreInBackground();
+        assertEquals(0, calls.size());
+
+        ArgumentCaptor<Runnable> restore = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).execute(restore.capture());
+        restore.getValue().run();
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    public void testFailureWhileOfflineWaitsForConnection() {
+        outbox.setConnected(true);
+        outbox.enqueue(new RequestAction(request("GET", "http://block/file"), new ResultCallback()));
+        outbox.setConnected(false);
+        verify(calls.get(0)).cancel();
+
+        callbackOf(calls.get(0)).onFailure(calls.get(0), new IOException("Canceled"));
+        assertEquals(1, outbox.getMetrics().queueDepth);
+        assertEquals(0, outbox.getMetrics().retries);
+
+        outbox.setConnected(true);
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    public void testBackoff() {
+        RequestOutbox backingOff = new RequestOutbox(mock(Call.Factory.class), store,
+                mock(ScheduledExecutorService.class), 10, 1, 1000, 5000);
+        assertEquals(1000, backingOff.backoff(1));
+        assertEquals(4000, backingOff.backoff(3));
+        assertEquals(5000, backingOff.backoff(8));
+    }
+
+    @Test
+    public void testMergesIdenticalDeletes() throws IOException {
+        ResultCallback first = new ResultCallback();
+        ResultCallback second = new ResultCallback();
+        outbox.enqueue(new RequestAction(request("DELETE", "http://block/file"), first));
+        outbox.enqueue(new RequestAction(request("DELETE", "http://block/file"), second));
+
+        assertEquals(1, store.actions.size());
+        assertEquals(1, outbox.getMetrics().merged);
+
+        outbox.setConnected(true);
+        assertEquals(1, calls.size());
+        respond(calls.get(0), 204);
+
+        assertEquals(204, first.status);
+        assertEquals(204, second.status);
+        assertTrue(store.actions.isEmpty());
+    }
+
+    @Test
+    public void testRestoresStoredRequests() {
+        outbox.enqueue(new RequestAction(request("DELETE", "http://block/file"), new ResultCallback()));
+
+        RequestOutbox restarted = new RequestOutbox(recordingFactory(), store,
+                mock(ScheduledExecutorService.class));
+        restarted.restore();
+        restarted.setConnected(true);
+
+        assertEquals(1, calls.size());
+        assertEquals("DELETE", calls.get(0).request().method());
+    }
+
+    @Test
+    public void testPostCanceledOfflineIsQueued() {
+        outbox.setConnected(true);
+        ResultCallback callback = new ResultCallback();
+        Request post = new Request.Builder().url("http://drop/drop")
+                .post(RequestBody.create(MediaType.parse("text/plain"), "message"))
+                .build();
+        outbox.enqueue(new RequestAction(post, callback));
+        outbox.setConnected(false);
+
+        callbackOf(calls.get(0)).onFailure(calls.get(0), new IOException("Canceled"));
+        assertEquals(1, outbox.getMetrics().queueDepth);
+        assertEquals(null, callback.error);
+
+        outbox.setConnected(true);
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    public void testShutdownKeepsSharedScheduler() {
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        RequestOutbox first = new RequestOutbox(recordingFactory(), store, scheduler);
+
+        first.shutdown();
+        first.enqueue(new RequestAction(request("GET", "http://block/file"), new ResultCallback()));
+        first.setConnected(true);
+
+        verify(scheduler, never()).shutdownNow();
+        assertEquals(0, calls.size());
+    }
+}
@@ -11,6 +11,7 @@ import de.qabel.qabelbox.config.QabelSchema
 import de.qabel.qabelbox.contacts.ContactMatcher
 import de.qabel.qabelbox.contacts.dto.ContactDto
 import de.qabel.qabelbox.eq
+import de.qabel.qabelbox.persistence.EntityLookupCache
 import de.qabel.qabelbox.persistence.RepositoryFactory
 import de.qabel.qabelbox.test.files.FileHelper
 import de.qabel.qabelbox.util.IdentityHelper
@@ -44,7 +45,9 @@ class ContactsUseCaseTest {
     @Before
     fun setUp() {
         contactRepo = InMemoryContactRepository()
-        contactsUseCase = MainContactsUseCase(identityA, contactRepo, InMemoryIdentityRepository())
+        val identityRepo = InMemoryIdentityRepository()
+        contactsUseCase = MainContactsUseCase(identityA, contactRepo, identityRepo,
+                EntityLookupCache(identityRepo, contactRepo))
     }
 
     @Test
@@ -162,7 +165,7 @@ class ContactsUseCaseTest {
         identityRepository.save(identityA)
         identityRepository.save(identityB)
         contactsUseCase = MainContactsUseCase(identityA, contactRepo,
-                identityRepository)
+                identityRepository, EntityLookupCache(identityRepository, contactRepo))
         contactRepo.save(contactA, identityA)
         contactRepo.save(contactA, identityB)
         contactsUseCase.deleteContact(contactA).waitFor()
@@ -15,6 +15,7 @@ import de.qabel.qabelbox.contacts.interactor.MainContactsUseCase
 import de.qabel.qabelbox.contacts.view.presenters.MainContactDetailsPresenter
 import de.qabel.qabelbox.contacts.view.views.ContactDetailsView
 import de.qabel.qabelbox.navigation.Navigator
+import de.qabel.qabelbox.persistence.EntityLookupCache
 import de.qabel.qabelbox.test.TestConstants
 import de.qabel.qabelbox.util.IdentityHelper
 import org.hamcrest.Matchers.equalTo
@@ -49,7 +50,8 @@ class ContactDetailsPresenterTest {
 
     @Before
     fun setUp() {
-        contactUseCase = spy(MainContactsUseCase(identity, contactRepo, identityRepo))
+        contactUseCase = spy(MainContactsUseCase(identity, contactRepo, identityRepo,
+                EntityLookupCache(identityRepo, contactRepo)))
         detailsView = mock()
         navigator = mock()
         Mockito.`when`(detailsView.contactKeyId).thenAnswer { contactA.keyIdentifier }
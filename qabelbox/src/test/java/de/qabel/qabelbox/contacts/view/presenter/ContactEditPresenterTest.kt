@@ -11,6 +11,7 @@ import de.qabel.core.repository.inmemory.InMemoryContactRepository
 import de.qabel.core.repository.inmemory.InMemoryIdentityRepository
 import de.qabel.qabelbox.BuildConfig
 import de.qabel.qabelbox.SimpleApplication
+import de.qabel.qabelbox.box.interactor.VolumeNavigatorRegistry
 import de.qabel.qabelbox.contacts.dto.ContactDto
 import de.qabel.qabelbox.contacts.interactor.ContactsUseCase
 import de.qabel.qabelbox.contacts.view.presenters.ContactEditPresenter
@@ -69,7 +70,7 @@ class ContactEditPresenterTest {
         whenever(contactUseCase.saveContact(contactADto)).then {
             contactRepo.update(contactADto.contact, contactADto.identities).toSingletonObservable()
         }
-        identityUseCase = MainIdentityUseCase(identityRepo, mock())
+        identityUseCase = MainIdentityUseCase(identityRepo, mock(), VolumeNavigatorRegistry())
 
         detailsView = mock()
         whenever(detailsView.getEditLabel()).thenReturn("EDIT LABEL")
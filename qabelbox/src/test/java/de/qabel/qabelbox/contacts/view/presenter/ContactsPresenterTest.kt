@@ -20,6 +20,7 @@ import de.qabel.qabelbox.contacts.view.views.ContactsView
 import de.qabel.qabelbox.external.ExternalAction
 import de.qabel.qabelbox.external.ExternalFileAction
 import de.qabel.qabelbox.navigation.Navigator
+import de.qabel.qabelbox.persistence.EntityLookupCache
 import de.qabel.qabelbox.test.TestConstants
 import de.qabel.qabelbox.test.files.FileHelper
 import de.qabel.qabelbox.util.IdentityHelper
@@ -70,7 +71,8 @@ class ContactsPresenterTest {
     fun setUp() {
         whenever(contactsView.showIgnored).thenReturn(false)
         whenever(contactsView.searchString).thenReturn(searchSubject)
-        contactUseCase = spy(MainContactsUseCase(identity, contactRepo, identityRepo))
+        contactUseCase = spy(MainContactsUseCase(identity, contactRepo, identityRepo,
+                EntityLookupCache(identityRepo, contactRepo)))
         presenter = MainContactsPresenter(contactsView, contactUseCase,navigator)
     }
 
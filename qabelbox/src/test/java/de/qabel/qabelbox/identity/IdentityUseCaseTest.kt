@@ -10,6 +10,8 @@ import de.qabel.core.repository.sqlite.SqliteIdentityRepository
 import de.qabel.qabelbox.BuildConfig
 import de.qabel.qabelbox.QblBroadcastConstants.Identities.*
 import de.qabel.qabelbox.SimpleApplication
+import de.qabel.qabelbox.box.interactor.BoxReadFileBrowser.KeyAndPrefix
+import de.qabel.qabelbox.box.interactor.VolumeNavigatorRegistry
 import de.qabel.qabelbox.eq
 import de.qabel.qabelbox.identity.interactor.IdentityUseCase
 import de.qabel.qabelbox.identity.interactor.MainIdentityUseCase
@@ -29,6 +31,7 @@ class IdentityUseCaseTest() : CoreTestCase {
     val identity = createIdentity("Alice")
 
     val actionSender: ActionIntentSender = mock()
+    val volumeNavigators = VolumeNavigatorRegistry()
     lateinit var identityRepo: IdentityRepository
     lateinit var useCase: IdentityUseCase
 
@@ -36,7 +39,7 @@ class IdentityUseCaseTest() : CoreTestCase {
     fun setUp() {
         val factory = RepositoryFactory(RuntimeEnvironment.application)
         identityRepo = factory.getIdentityRepository()
-        useCase = MainIdentityUseCase(identityRepo, actionSender)
+        useCase = MainIdentityUseCase(identityRepo, actionSender, volumeNavigators)
         identityRepo.save(identity)
     }
 
@@ -70,9 +73,11 @@ class IdentityUseCaseTest() : CoreTestCase {
 
     @Test
     fun testDeleteIdentity() {
+        volumeNavigators.get(KeyAndPrefix(identity.keyIdentifier, "prefix")) { mock() }
         useCase.deleteIdentity(identity).toBlocking().value()
         verify(actionSender).sendActionIntentBroadCast(IDENTITY_REMOVED, Pair(KEY_IDENTITY, identity))
         identityRepo.findAll().contains(identity) eq false
+        volumeNavigators.size eq 0
     }
 
 }
@@ -0,0 +1,109 @@
+package de.qabel.qabelbox.index
+
+import android.content.ContentProvider
+import android.content.ContentValues
+import android.database.Cursor
+import android.database.MatrixCursor
+import android.net.Uri
+import android.provider.ContactsContract
+import android.provider.ContactsContract.CommonDataKinds.Email
+import android.provider.ContactsContract.CommonDataKinds.Phone
+import de.qabel.qabelbox.BuildConfig
+import de.qabel.qabelbox.SimpleApplication
+import de.qabel.qabelbox.eq
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricGradleTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import org.robolectric.fakes.RoboCursor
+import org.robolectric.shadows.ShadowContentResolver
+
+@RunWith(RobolectricGradleTestRunner::class)
+@Config(application = SimpleApplication::class, constants = BuildConfig::class)
+class AndroidContactsAccessorTest {
+
+    val context = RuntimeEnvironment.application
+    val data = RoboCursor()
+    lateinit var contentResolver: ShadowContentResolver
+
+    @Before
+    fun setUp() {
+        contentResolver = shadowOf(context.contentResolver)
+        contentResolver.setCursor(ContactsContract.Data.CONTENT_URI, data.apply {
+            setColumnNames(listOf(ContactsContract.Data.CONTACT_ID, ContactsContract.Data.MIMETYPE,
+                    ContactsContract.Data.DISPLAY_NAME_PRIMARY, ContactsContract.Data.DATA1))
+            setResults(arrayOf(
+                    arrayOf<Any>("1", Email.CONTENT_ITEM_TYPE, "Alice", "alice@example.com"),
+                    arrayOf<Any>("1", Phone.CONTENT_ITEM_TYPE, "Alice", "+49 170 1234567"),
+                    arrayOf<Any>("2", Email.CONTENT_ITEM_TYPE, "Alice", "alice@work.example.com"),
+                    arrayOf<Any>("2", Email.CONTENT_ITEM_TYPE, "Alice", "alice@example.com"),
+                    arrayOf<Any>("3", Email.CONTENT_ITEM_TYPE, "Bob", "invalid"),
+                    arrayOf<Any>("4", Email.CONTENT_ITEM_TYPE, "Carol", "carol@example.com")))
+        })
+    }
+
+    @Test
+    fun testMergesContactsWithSameName() {
+        val contacts = AndroidContactsAccessor(context).contacts
+
+        contacts.map { it.displayName } eq listOf("Alice", "Carol")
+        val alice = contacts.first()
+        alice.emailAddresses eq mutableListOf("alice@example.com", "alice@work.example.com")
+        alice.mobilePhoneNumbers.size eq 1
+    }
+
+    @Test
+    fun testReadsAllContactsAfterDeletion() {
+        contentResolver.setCursor(ContactsContract.DeletedContacts.CONTENT_URI, RoboCursor().apply {
+            setColumnNames(listOf(ContactsContract.DeletedContacts.CONTACT_ID))
+            setResults(arrayOf(arrayOf<Any>("5")))
+        })
+
+        AndroidContactsAccessor(context, 1000).contacts.size eq 2
+
+        data.selection.contains(ContactsContract.Data.CONTACT_LAST_UPDATED_TIMESTAMP) eq false
+    }
+
+    @Test
+    fun testReadsChangedContactsWithAllRowsOfTheirName() {
+        val selections = mutableListOf<Pair<String, List<String>>>()
+        ShadowContentResolver.registerProvider(ContactsContract.AUTHORITY, object : ContentProvider() {
+            override fun onCreate() = true
+            override fun getType(uri: Uri?): String? = null
+            override fun insert(uri: Uri?, values: ContentValues?): Uri? = null
+            override fun delete(uri: Uri?, selection: String?, selectionArgs: Array<out String>?) = 0
+            override fun update(uri: Uri?, values: ContentValues?, selection: String?,
+                                selectionArgs: Array<out String>?) = 0
+
+            override fun query(uri: Uri?, projection: Array<out String>?, selection: String?,
+                               selectionArgs: Array<out String>?, sortOrder: String?): Cursor? {
+                if (uri != ContactsContract.Data.CONTENT_URI) {
+                    return null
+                }
+                selections.add(Pair(selection!!, selectionArgs!!.toList()))
+                return MatrixCursor(projection).apply {
+                    if (selections.size > 1) {
+                        addRow(arrayOf("1", Email.CONTENT_ITEM_TYPE, "Alice", "alice@example.com"))
+                        addRow(arrayOf("1", Phone.CONTENT_ITEM_TYPE, "Alice", "+49 170 1234567"))
+                    }
+                    addRow(arrayOf("2", Email.CONTENT_ITEM_TYPE, "Alice", "alice@work.example.com"))
+                }
+            }
+        })
+
+        val contacts = AndroidContactsAccessor(context, 1000).contacts
+
+        contacts.map { it.displayName } eq listOf("Alice")
+        contacts.first().emailAddresses eq mutableListOf("alice@example.com", "alice@work.example.com")
+        contacts.first().mobilePhoneNumbers.size eq 1
+        selections.size eq 2
+        selections[0].first.contains(ContactsContract.Data.CONTACT_LAST_UPDATED_TIMESTAMP) eq true
+        selections[0].second.last() eq "1000"
+        selections[1].first.contains(ContactsContract.Data.CONTACT_LAST_UPDATED_TIMESTAMP) eq false
+        selections[1].second.containsAll(listOf("2", "Alice")) eq true
+    }
+
+}
@@ -0,0 +1,80 @@
+package de.qabel.qabelbox.persistence
+
+import com.natpryce.hamkrest.sameInstance
+import com.natpryce.hamkrest.should.shouldMatch
+import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.times
+import com.nhaarman.mockito_kotlin.verify
+import com.nhaarman.mockito_kotlin.whenever
+import de.qabel.core.config.Contact
+import de.qabel.core.config.Identity
+import de.qabel.core.repositories.AndroidEntityManager
+import de.qabel.core.repository.ContactRepository
+import de.qabel.core.repository.IdentityRepository
+import de.qabel.core.repository.exception.EntityNotFoundException
+import de.qabel.qabelbox.eq
+import org.junit.Test
+
+class EntityLookupCacheTest {
+
+    val identity: Identity = mock()
+    val contact: Contact = mock()
+    val identityRepository: IdentityRepository = mock<IdentityRepository>().apply {
+        whenever(find(1)).thenReturn(identity)
+        whenever(find("identityKey")).thenReturn(identity)
+    }
+    val contactRepository: ContactRepository = mock<ContactRepository>().apply {
+        whenever(find(2)).thenReturn(contact)
+        whenever(find(3)).thenThrow(EntityNotFoundException("not found"))
+    }
+    val entityManager = AndroidEntityManager()
+    val cache = EntityLookupCache(identityRepository, contactRepository, entityManager, 2)
+
+    @Test
+    fun testMemoizesLookups() {
+        repeat(3) {
+            cache.identity(1) shouldMatch sameInstance(identity)
+            cache.contact(2) shouldMatch sameInstance(contact)
+        }
+        cache.identity("identityKey") shouldMatch sameInstance(identity)
+
+        verify(identityRepository).find(1)
+        verify(contactRepository).find(2)
+        cache.hits eq 4L
+        cache.misses eq 3L
+    }
+
+    @Test
+    fun testInvalidateContacts() {
+        cache.identity(1)
+        cache.contact(2)
+
+        cache.invalidateContacts()
+        cache.identity(1)
+        cache.contact(2)
+
+        verify(identityRepository).find(1)
+        verify(contactRepository, times(2)).find(2)
+    }
+
+    @Test
+    fun testInvalidateIdentities() {
+        cache.identity(1)
+        entityManager.contains(Identity::class.java, 1) eq true
+
+        cache.invalidateIdentities()
+        entityManager.contains(Identity::class.java, 1) eq false
+        cache.identity(1)
+
+        verify(identityRepository, times(2)).find(1)
+    }
+
+    @Test(expected = EntityNotFoundException::class)
+    fun testMissingEntityIsNotCached() {
+        try {
+            cache.contact(3)
+        } catch (e: EntityNotFoundException) {
+        }
+        cache.contact(3)
+    }
+}
@@ -0,0 +1,72 @@
+package de.qabel.qabelbox.persistence
+
+import de.qabel.qabelbox.eq
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+class ResourcePoolTest {
+
+    interface Lookup {
+        fun find(id: Int): String
+    }
+
+    class NamedLookup(val name: String) : Lookup {
+        override fun find(id: Int) = "$name:$id"
+    }
+
+    @Test
+    fun testProxyRunsOnPooledInstance() {
+        val pool = ResourcePool(listOf<Lookup>(NamedLookup("first")))
+        val lookup = pool.proxy(Lookup::class.java)
+
+        lookup.find(1) eq "first:1"
+        lookup.find(2) eq "first:2"
+        pool.metrics.acquisitions eq 2L
+    }
+
+    @Test
+    fun testBoundProxiesShareResources() {
+        val pool = ResourcePool(listOf("connection"))
+        val first = pool.proxy(Lookup::class.java) { NamedLookup("first on $it") }
+        val second = pool.proxy(Lookup::class.java) { NamedLookup("second on $it") }
+
+        first.find(1) eq "first on connection:1"
+        second.find(2) eq "second on connection:2"
+        pool.metrics.acquisitions eq 2L
+        pool.size eq 1
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun testProxyRethrowsCause() {
+        val failing = object : Lookup {
+            override fun find(id: Int) = throw IllegalStateException()
+        }
+        ResourcePool(listOf(failing)).proxy(Lookup::class.java).find(1)
+    }
+
+    @Test
+    fun testWaitsForFreeResource() {
+        val pool = ResourcePool(listOf("connection"))
+        val acquired = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        val holder = thread {
+            pool.use {
+                acquired.countDown()
+                release.await()
+            }
+        }
+        acquired.await()
+        thread {
+            Thread.sleep(50)
+            release.countDown()
+        }
+
+        pool.use { it } eq "connection"
+        holder.join(TimeUnit.SECONDS.toMillis(1))
+
+        (pool.metrics.maxWaitMillis >= 40) eq true
+        pool.size eq 1
+    }
+}
@@ -87,4 +87,55 @@ class FileCacheTest {
         mHelper!!.put(boxFile, file)
         assertNull(mHelper!!.get(boxFile))
     }
+
+    private fun boxFile(block: String) =
+            BoxFile("prefix", block, "name", 20L, System.currentTimeMillis() / 1000, ByteArray(0))
+
+    @Test
+    fun testEvictsLeastRecentlyUsed() {
+        val cache = mHelper!!
+        cache.maxBytes = 250 * 1024L
+        val first = boxFile("first")
+        val second = boxFile("second")
+        val firstFile = File(FileHelper.createTestFile())
+        val secondFile = File(FileHelper.createTestFile())
+        cache.put(first, firstFile)
+        Thread.sleep(5)
+        cache.put(second, secondFile)
+        Thread.sleep(5)
+        assertThat(cache.get(first), equalTo(firstFile))
+        Thread.sleep(5)
+
+        cache.put(boxFile("third"), File(FileHelper.createTestFile()))
+
+        assertThat(cache.get(first), equalTo(firstFile))
+        assertNull(cache.get(second))
+        assertFalse(secondFile.exists())
+        assertThat(cache.statistics.bytesEvicted, equalTo(100 * 1024L))
+        assertThat(cache.statistics.bytesHeld, equalTo(200 * 1024L))
+    }
+
+    @Test
+    fun testShrinkBudget() {
+        val cache = mHelper!!
+        cache.put(boxFile("first"), File(FileHelper.createTestFile()))
+        cache.put(boxFile("second"), File(FileHelper.createTestFile()))
+
+        cache.maxBytes = 100 * 1024L
+
+        assertThat(cache.statistics.bytesHeld, equalTo(100 * 1024L))
+    }
+
+    @Test
+    fun testHitRatio() {
+        val boxFile = boxFile
+        mHelper!!.put(boxFile, testFile)
+        mHelper!!.get(boxFile)
+        mHelper!!.get(boxFile("other"))
+
+        val statistics = mHelper!!.statistics
+        assertThat(statistics.hits, equalTo(1L))
+        assertThat(statistics.misses, equalTo(1L))
+        assertThat(statistics.hitRatio, equalTo(0.5))
+    }
 }
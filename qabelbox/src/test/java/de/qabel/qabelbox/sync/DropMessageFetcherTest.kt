@@ -0,0 +1,115 @@
+package de.qabel.qabelbox.sync
+
+import com.nhaarman.mockito_kotlin.any
+import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.times
+import com.nhaarman.mockito_kotlin.verify
+import de.qabel.chat.repository.entities.ChatDropMessage
+import de.qabel.chat.repository.inmemory.InMemoryChatDropMessageRepository
+import de.qabel.chat.service.ChatService
+import de.qabel.core.config.Identity
+import de.qabel.core.drop.DropURL
+import de.qabel.core.http.DropConnector
+import de.qabel.core.http.DropResult
+import de.qabel.core.repository.IdentityRepository
+import de.qabel.core.repository.entities.DropState
+import de.qabel.core.repository.inmemory.InMemoryContactRepository
+import de.qabel.core.repository.inmemory.InMemoryDropStateRepository
+import de.qabel.core.repository.inmemory.InMemoryIdentityRepository
+import de.qabel.qabelbox.BuildConfig
+import de.qabel.qabelbox.SimpleApplication
+import de.qabel.qabelbox.util.IdentityHelper
+import org.hamcrest.Matchers.*
+import org.junit.Assert.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mockito.`when`
+import org.mockito.Mockito.doAnswer
+import org.robolectric.RobolectricGradleTestRunner
+import org.robolectric.annotation.Config
+import java.util.*
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
+
+@RunWith(RobolectricGradleTestRunner::class)
+@Config(application = SimpleApplication::class, constants = BuildConfig::class)
+class DropMessageFetcherTest {
+
+    val identityA = IdentityHelper.createIdentity("identityA", null)
+    val identityB = IdentityHelper.createIdentity("identityB", null)
+    val identityRepo = InMemoryIdentityRepository().apply {
+        save(identityA)
+        save(identityB)
+    }
+    val polled = Collections.synchronizedList(mutableListOf<Identity>())
+    @Volatile var requests: CyclicBarrier? = null
+    val requestThreads = Collections.synchronizedList(mutableListOf<Thread>())
+    val persistThreads = mutableListOf<Thread>()
+    val results = Collections.synchronizedMap(mutableMapOf<DropURL, DropResult>())
+    val received = mutableListOf<DropResult>()
+
+    val dropConnector: DropConnector = mock<DropConnector>().apply {
+        doAnswer {
+            requestThreads.add(Thread.currentThread())
+            requests?.await(5, TimeUnit.SECONDS)
+            mock<DropResult>().apply { results.put(it.arguments[1] as DropURL, this) }
+        }.`when`(this).receiveDropMessages(any(), any(), any())
+    }
+
+    val fetcher = object : DropMessageFetcher(dropConnector, identityRepo, InMemoryContactRepository(),
+            InMemoryChatDropMessageRepository(), InMemoryDropStateRepository(), mock()) {
+        override fun createChatService(identityRepository: IdentityRepository,
+                                       dropConnector: DropConnector): ChatService {
+            val identities = identityRepository.findAll().identities
+            polled.addAll(identities)
+            return mock<ChatService>().apply {
+                `when`(refreshMessages()).thenAnswer {
+                    persistThreads.add(Thread.currentThread())
+                    identities.forEach { identity ->
+                        identity.dropUrls.forEach {
+                            received.add(dropConnector.receiveDropMessages(identity, it, DropState(it.toString())))
+                        }
+                    }
+                    identities.associate { Pair(it, listOf<ChatDropMessage>(mock())) }
+                }
+            }
+        }
+    }
+
+    private fun dropId(identity: Identity) = identity.dropUrls.first().uri.path.trimEnd('/').substringAfterLast('/')
+
+    @Test
+    fun testFetchDropPollsOnlyOwningIdentity() {
+        val result = fetcher.fetchDrop(dropId(identityB))!!
+        assertThat(result.keys, contains(identityB))
+        assertThat(polled, contains(identityB))
+    }
+
+    @Test
+    fun testFetchUnknownDrop() {
+        assertThat(fetcher.fetchDrop("unknown"), nullValue())
+        assertThat(polled, empty())
+    }
+
+    @Test
+    fun testFetchAllPollsEveryIdentity() {
+        val result = fetcher.fetchAll()
+        assertThat(result.keys, containsInAnyOrder(identityA, identityB))
+        assertThat(polled, containsInAnyOrder(identityA, identityB))
+    }
+
+    @Test
+    fun testRequestsDropsInParallelAndPersistsOnCaller() {
+        requests = CyclicBarrier(2)
+
+        val result = fetcher.fetchAll()
+
+        assertThat(result.keys, containsInAnyOrder(identityA, identityB))
+        assertThat(requestThreads, hasSize(2))
+        assertThat(requestThreads, not(hasItem(Thread.currentThread())))
+        assertThat(persistThreads, contains(Thread.currentThread(), Thread.currentThread()))
+        assertThat(received, containsInAnyOrder(*results.values.toTypedArray()))
+        verify(dropConnector, times(2)).receiveDropMessages(any(), any(), any())
+    }
+
+}